@@ -38,6 +38,7 @@ import app.nzyme.core.monitors.Monitors;
 import app.nzyme.core.ouis.OuiService;
 import app.nzyme.core.quota.QuotaService;
 import app.nzyme.core.registry.RegistryChangeMonitorImpl;
+import app.nzyme.core.registry.RegistryCache;
 import app.nzyme.core.registry.RegistryImpl;
 import app.nzyme.core.rest.server.NzymeHttpServer;
 import app.nzyme.core.security.authentication.AuthenticationService;
@@ -59,6 +60,7 @@ import app.nzyme.core.configuration.node.NodeConfiguration;
 import app.nzyme.core.configuration.node.NodeConfigurationLoader;
 import app.nzyme.core.crypto.Crypto;
 import app.nzyme.core.database.DatabaseImpl;
+import app.nzyme.core.database.ReadOnlyDatabase;
 import app.nzyme.core.ethernet.Ethernet;
 import app.nzyme.core.tables.TablesService;
 import app.nzyme.core.taps.TapManager;
@@ -93,7 +95,7 @@ public class MockNzyme implements NzymeNode {
     private final MetricRegistry metricRegistry;
     private final ObjectMapper objectMapper;
     private final Version version;
-    private final Database database;
+    private final DatabaseImpl database;
     private final Path dataDirectory;
     private final MessageBus messageBus;
     private final TasksQueue tasksQueue;
@@ -101,8 +103,10 @@ public class MockNzyme implements NzymeNode {
     private final Crypto crypto;
     private final ClusterManager clusterManager;
     private final AuthenticationService authenticationService;
+    private final TapManager tapManager;
     private final GeoIpService geoIp;
     private final Registry registry;
+    private final RegistryCache registryCache;
     private final RegistryChangeMonitor registryChangeMonitor;
     private final EventEngine eventEngine;
 
@@ -139,6 +143,7 @@ public class MockNzyme implements NzymeNode {
             throw new RuntimeException(e);
         }
 
+        this.registryCache = new RegistryCache(this);
         this.registry = new RegistryImpl(this, "core");
         this.registryChangeMonitor = new RegistryChangeMonitorImpl(this);
 
@@ -174,6 +179,7 @@ public class MockNzyme implements NzymeNode {
         ((PostgresTasksQueueImpl) this.tasksQueue).initialize(taskAndMessagePollInterval, taskAndMessagePollIntervalUnit);
 
         this.authenticationService = new AuthenticationService(this);
+        this.tapManager = new TapManager(this);
 
 
         this.database.useHandle(handle -> handle.execute("TRUNCATE sentry_ssids"));
@@ -200,6 +206,11 @@ public class MockNzyme implements NzymeNode {
 
     @Override
     public void shutdown() {
+        ((RegistryChangeMonitorImpl) this.registryChangeMonitor).shutdown();
+        eventEngine.shutdown();
+        ((PostgresMessageBusImpl) this.messageBus).shutdown();
+        ((PostgresTasksQueueImpl) this.tasksQueue).shutdown();
+        database.close();
     }
 
     @Override
@@ -297,6 +308,11 @@ public class MockNzyme implements NzymeNode {
         return database;
     }
 
+    @Override
+    public ReadOnlyDatabase getReadOnlyDatabase() {
+        return database.getReadOnly();
+    }
+
     @Override
     public QuotaService getQuotaService() {
         return null;
@@ -304,7 +320,7 @@ public class MockNzyme implements NzymeNode {
 
     @Override
     public TapManager getTapManager() {
-        return null;
+        return tapManager;
     }
 
     @Override
@@ -352,6 +368,11 @@ public class MockNzyme implements NzymeNode {
         return new RegistryImpl(this, "core");
     }
 
+    @Override
+    public RegistryCache getRegistryCache() {
+        return registryCache;
+    }
+
     @Override
     public RegistryChangeMonitor getRegistryChangeMonitor() {
         return registryChangeMonitor;
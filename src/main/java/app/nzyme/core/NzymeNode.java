@@ -23,6 +23,7 @@ import app.nzyme.core.bluetooth.sig.BluetoothSigService;
 import app.nzyme.core.configuration.base.BaseConfiguration;
 import app.nzyme.core.connect.ConnectService;
 import app.nzyme.core.context.ContextService;
+import app.nzyme.core.database.ReadOnlyDatabase;
 import app.nzyme.core.detection.alerts.DetectionAlertService;
 import app.nzyme.core.distributed.ClusterManager;
 import app.nzyme.core.distributed.NodeManager;
@@ -34,6 +35,7 @@ import app.nzyme.core.monitoring.health.HealthMonitor;
 import app.nzyme.core.monitors.Monitors;
 import app.nzyme.core.ouis.OuiService;
 import app.nzyme.core.quota.QuotaService;
+import app.nzyme.core.registry.RegistryCache;
 import app.nzyme.core.rest.server.NzymeHttpServer;
 import app.nzyme.core.security.authentication.AuthenticationService;
 import app.nzyme.core.subsystems.Subsystems;
@@ -87,6 +89,7 @@ public interface NzymeNode extends PluginEntryPoint, DatabaseProvider, NodeIdent
     MetricRegistry getMetrics();
 
     Database getDatabase();
+    ReadOnlyDatabase getReadOnlyDatabase();
 
     QuotaService getQuotaService();
 
@@ -111,6 +114,7 @@ public interface NzymeNode extends PluginEntryPoint, DatabaseProvider, NodeIdent
     ObjectMapper getObjectMapper();
 
     Registry getDatabaseCoreRegistry();
+    RegistryCache getRegistryCache();
     RegistryChangeMonitor getRegistryChangeMonitor();
 
     DetectionAlertService getDetectionAlertService();
@@ -52,7 +52,9 @@ import app.nzyme.core.ouis.OuiService;
 import app.nzyme.core.periodicals.connect.ConnectStatusReporter;
 import app.nzyme.core.context.ContextCleaner;
 import app.nzyme.core.periodicals.distributed.NodeUpdater;
+import app.nzyme.core.periodicals.housekeeping.DatabasePartitionManager;
 import app.nzyme.core.periodicals.housekeeping.DatabaseRetentionCleaner;
+import app.nzyme.core.periodicals.housekeeping.MetricsRollupCalculator;
 import app.nzyme.core.quota.QuotaService;
 import app.nzyme.core.registry.RegistryChangeMonitorImpl;
 import app.nzyme.core.rest.server.NzymeHttpServer;
@@ -76,10 +78,12 @@ import app.nzyme.core.configuration.base.BaseConfiguration;
 import app.nzyme.core.configuration.node.NodeConfiguration;
 import app.nzyme.core.crypto.Crypto;
 import app.nzyme.core.database.DatabaseImpl;
+import app.nzyme.core.database.ReadOnlyDatabase;
 import app.nzyme.core.ethernet.Ethernet;
 import app.nzyme.core.periodicals.PeriodicalManager;
 import app.nzyme.core.periodicals.versioncheck.VersioncheckThread;
 import app.nzyme.core.plugin.loading.PluginLoader;
+import app.nzyme.core.registry.RegistryCache;
 import app.nzyme.core.registry.RegistryImpl;
 import app.nzyme.core.tables.TablesService;
 import app.nzyme.core.taps.TapManager;
@@ -115,6 +119,7 @@ public class NzymeNodeImpl implements NzymeNode {
     private final AuthenticationService authenticationService;
 
     private final RegistryImpl registry;
+    private final RegistryCache registryCache;
     private final RegistryChangeMonitor registryChangeMonitor;
 
     private final Subsystems subsystems;
@@ -172,6 +177,7 @@ public class NzymeNodeImpl implements NzymeNode {
         this.database = database;
         this.configuration = configuration;
 
+        this.registryCache = new RegistryCache(this);
         this.registry = new RegistryImpl(this, "core");
         this.registryChangeMonitor = new RegistryChangeMonitorImpl(this);
 
@@ -314,12 +320,17 @@ public class NzymeNodeImpl implements NzymeNode {
         this.authenticationService.initialize();
         LOG.info("Done.");
 
+        LOG.info("Initializing event engine...");
+        this.eventEngine.initialize();
+        LOG.info("Done.");
+
         // Metrics JMX reporter.
         final JmxReporter reporter = JmxReporter.forRegistry(metrics).build();
         reporter.start();
 
         // Database metrics.
         metrics.register(MetricNames.DATABASE_SIZE, (Gauge<Long>) database::getTotalSize);
+        database.registerMetrics(metrics);
 
         // Periodicals. (TODO: Replace with scheduler service)
         PeriodicalManager periodicalManager = new PeriodicalManager();
@@ -332,6 +343,8 @@ public class NzymeNodeImpl implements NzymeNode {
         periodicalManager.scheduleAtFixedRate(new KnownSSIDMonitor(this), 1, 1, TimeUnit.MINUTES);
         periodicalManager.scheduleAtFixedRate(new KnownClientMonitor(this), 1, 1, TimeUnit.MINUTES);
         periodicalManager.scheduleAtFixedRate(new DatabaseRetentionCleaner(this), 1, 60, TimeUnit.MINUTES);
+        periodicalManager.scheduleAtFixedRate(new DatabasePartitionManager(this), 0, 60, TimeUnit.MINUTES);
+        periodicalManager.scheduleAtFixedRate(new MetricsRollupCalculator(this), 1, 1, TimeUnit.MINUTES);
         periodicalManager.scheduleAtFixedRate(new AssetMonitor(this), 1, 1, TimeUnit.MINUTES);
         periodicalManager.scheduleAtFixedRate(new AssetStatisticsCleaner(this), 1, 10, TimeUnit.MINUTES);
         periodicalManager.scheduleAtFixedRate(new MonitorsThread(this), 1, 1, TimeUnit.MINUTES);
@@ -382,6 +395,24 @@ public class NzymeNodeImpl implements NzymeNode {
             httpServer.shutdownNow();
         }
 
+        // Write pending tap data.
+        if (tablesService != null) {
+            LOG.info("Stopping data tables.");
+            tablesService.shutdown();
+        }
+
+        // Stop executing event actions. Pending deliveries are persisted and retried after restart.
+        LOG.info("Stopping event actions.");
+        eventEngine.shutdown();
+
+        LOG.info("Stopping message bus, tasks queue and registry change monitor.");
+        ((PostgresMessageBusImpl) messageBus).shutdown();
+        ((PostgresTasksQueueImpl) tasksQueue).shutdown();
+        ((RegistryChangeMonitorImpl) registryChangeMonitor).shutdown();
+
+        LOG.info("Closing database connection pool.");
+        database.close();
+
         LOG.info("Shutdown complete.");
     }
 
@@ -536,6 +567,11 @@ public class NzymeNodeImpl implements NzymeNode {
         return database;
     }
 
+    @Override
+    public ReadOnlyDatabase getReadOnlyDatabase() {
+        return database.getReadOnly();
+    }
+
     @Override
     public QuotaService getQuotaService() {
         return quotaService;
@@ -575,6 +611,11 @@ public class NzymeNodeImpl implements NzymeNode {
         return registry;
     }
 
+    @Override
+    public RegistryCache getRegistryCache() {
+        return registryCache;
+    }
+
     @Override
     public RegistryChangeMonitor getRegistryChangeMonitor() {
         return registryChangeMonitor;
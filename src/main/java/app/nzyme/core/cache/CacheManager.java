@@ -1,6 +1,7 @@
 package app.nzyme.core.cache;
 
 import app.nzyme.core.NzymeNode;
+import app.nzyme.core.taps.TapChangeType;
 import app.nzyme.plugin.distributed.messaging.MessageHandler;
 import app.nzyme.plugin.distributed.messaging.MessageProcessingResult;
 import app.nzyme.plugin.distributed.messaging.MessageType;
@@ -8,6 +9,8 @@ import app.nzyme.plugin.distributed.messaging.ReceivedMessage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.UUID;
+
 public class CacheManager {
 
     private static final Logger LOG = LogManager.getLogger(CacheManager.class);
@@ -41,6 +44,29 @@ public class CacheManager {
                                     message.sender());
                             nzyme.getEnvironmentService().initialize();
                             break;
+                        case "dot11_monitored_probereqs":
+                            LOG.info("Invalidating monitored probe request cache on request of node [{}].",
+                                    message.sender());
+                            nzyme.getDot11().invalidateMonitoredProbeRequestCache();
+                            break;
+                        case "dot11_monitoring":
+                            LOG.info("Invalidating 802.11 monitoring configuration on request of node [{}].",
+                                    message.sender());
+                            nzyme.getDot11().invalidateMonitoringConfiguration();
+                            break;
+                        case "taps":
+                            if (message.sender().equals(nzyme.getNodeInformation().id())) {
+                                // Already handled locally when the change was made.
+                                break;
+                            }
+
+                            LOG.info("Invalidating tap directory on request of node [{}].",
+                                    message.sender());
+                            nzyme.getTapManager().handleTapChange(
+                                    UUID.fromString((String) message.parametersMap().get("tap_uuid")),
+                                    TapChangeType.valueOf((String) message.parametersMap().get("change_type"))
+                            );
+                            break;
                         default:
                             LOG.error("Could not handle [{}] message: Unknown cache type.",
                                     MessageType.INVALIDATE_CACHE);
@@ -27,6 +27,12 @@ public class ConfigurationKeys {
     public static final String INTERFACES = "interfaces";
     public static final String NAME = "name";
     public static final String DATABASE_PATH = "database_path";
+    public static final String DATABASE_POOL = "database_pool";
+    public static final String DATABASE_REPLICA_PATH = "database_replica_path";
+    public static final String MIN_IDLE = "min_idle";
+    public static final String MAX_SIZE = "max_size";
+    public static final String MAX_LIFETIME_SECONDS = "max_lifetime_seconds";
+    public static final String ACQUIRE_TIMEOUT_SECONDS = "acquire_timeout_seconds";
     public static final String VERSIONCHECKS = "versionchecks";
     public static final String VERSIONCHECKS_URI = "versionchecks_uri";
     public static final String REST_LISTEN_URI = "rest_listen_uri";
@@ -34,7 +40,14 @@ public class ConfigurationKeys {
     public static final String HTTP_MAX_POST_SIZE = "http_max_post_size";
     public static final String SLOW_QUERY_LOG_THRESHOLD = "slow_query_log_threshold";
     public static final String PERFORMANCE = "performance";
-    public static final String REPORT_PROCESSOR_POOL_SIZE = "report_processor_pool_size";
+    public static final String L4_SESSION_FLUSH_INTERVAL_SECONDS = "l4_session_flush_interval_seconds";
+    public static final String GEOIP_CACHE_SIZE = "geoip_cache_size";
+    public static final String GEOIP_CACHE_TTL_MINUTES = "geoip_cache_ttl_minutes";
+    public static final String TAP_REPORT_MAX_DECOMPRESSED_SIZE = "tap_report_max_decompressed_size";
+    public static final String TABLE_INGEST = "table_ingest";
+    public static final String TABLE_INGEST_DEFAULT = "default";
+    public static final String WORKERS = "workers";
+    public static final String QUEUE_SIZE = "queue_size";
     public static final String MISC = "misc";
     public static final String CUSTOM_TITLE = "custom_title";
     public static final String CUSTOM_FAVICON_URL = "custom_favicon_url";
@@ -0,0 +1,38 @@
+package app.nzyme.core.configuration.node;
+
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class DatabasePoolConfiguration {
+
+    public abstract int minIdle();
+    public abstract int maxSize();
+    public abstract int maxLifetimeSeconds();
+    public abstract int acquireTimeoutSeconds();
+
+    public static DatabasePoolConfiguration create(int minIdle, int maxSize, int maxLifetimeSeconds, int acquireTimeoutSeconds) {
+        return builder()
+                .minIdle(minIdle)
+                .maxSize(maxSize)
+                .maxLifetimeSeconds(maxLifetimeSeconds)
+                .acquireTimeoutSeconds(acquireTimeoutSeconds)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_DatabasePoolConfiguration.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder minIdle(int minIdle);
+
+        public abstract Builder maxSize(int maxSize);
+
+        public abstract Builder maxLifetimeSeconds(int maxLifetimeSeconds);
+
+        public abstract Builder acquireTimeoutSeconds(int acquireTimeoutSeconds);
+
+        public abstract DatabasePoolConfiguration build();
+    }
+}
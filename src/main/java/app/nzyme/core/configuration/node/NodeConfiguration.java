@@ -12,6 +12,8 @@ public abstract class NodeConfiguration {
     public abstract Optional<String> versioncheckUri();
 
     public abstract String databasePath();
+    public abstract DatabasePoolConfiguration databasePool();
+    public abstract Optional<String> databaseReplicaPath();
 
     public abstract URI restListenUri();
     public abstract URI httpExternalUri();
@@ -33,11 +35,13 @@ public abstract class NodeConfiguration {
     public abstract PerformanceConfiguration performance();
     public abstract MiscConfiguration misc();
 
-    public static NodeConfiguration create(boolean versionchecksEnabled, Optional<String> versioncheckUri, String databasePath, URI restListenUri, URI httpExternalUri, Optional<Integer> httpMaxPostSize, String pluginDirectory, String cryptoDirectory, Optional<Integer> slowQueryLogThreshold, String ntpServer, Optional<ProtocolsConfiguration> protocols, Optional<String> connectApiUri, boolean connectSkip, PerformanceConfiguration performance, MiscConfiguration misc) {
+    public static NodeConfiguration create(boolean versionchecksEnabled, Optional<String> versioncheckUri, String databasePath, DatabasePoolConfiguration databasePool, Optional<String> databaseReplicaPath, URI restListenUri, URI httpExternalUri, Optional<Integer> httpMaxPostSize, String pluginDirectory, String cryptoDirectory, Optional<Integer> slowQueryLogThreshold, String ntpServer, Optional<ProtocolsConfiguration> protocols, Optional<String> connectApiUri, boolean connectSkip, PerformanceConfiguration performance, MiscConfiguration misc) {
         return builder()
                 .versionchecksEnabled(versionchecksEnabled)
                 .versioncheckUri(versioncheckUri)
                 .databasePath(databasePath)
+                .databasePool(databasePool)
+                .databaseReplicaPath(databaseReplicaPath)
                 .restListenUri(restListenUri)
                 .httpExternalUri(httpExternalUri)
                 .httpMaxPostSize(httpMaxPostSize)
@@ -65,6 +69,10 @@ public abstract class NodeConfiguration {
 
         public abstract Builder databasePath(String databasePath);
 
+        public abstract Builder databasePool(DatabasePoolConfiguration databasePool);
+
+        public abstract Builder databaseReplicaPath(Optional<String> databaseReplicaPath);
+
         public abstract Builder restListenUri(URI restListenUri);
 
         public abstract Builder httpExternalUri(URI httpExternalUri);
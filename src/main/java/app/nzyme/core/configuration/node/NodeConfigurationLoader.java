@@ -17,6 +17,7 @@
 
 package app.nzyme.core.configuration.node;
 
+import com.google.common.collect.Maps;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigFactory;
@@ -29,12 +30,24 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.net.URI;
 import java.nio.file.Files;
+import java.util.Map;
 import java.util.Optional;
 
 public class NodeConfigurationLoader {
 
     private static final Logger LOG = LogManager.getLogger(NodeConfigurationLoader.class);
 
+    private static final int DEFAULT_TABLE_INGEST_WORKERS = 2;
+    private static final int DEFAULT_TABLE_INGEST_QUEUE_SIZE = 100;
+    private static final int DEFAULT_L4_SESSION_FLUSH_INTERVAL_SECONDS = 10;
+    private static final int DEFAULT_GEOIP_CACHE_SIZE = 10000;
+    private static final int DEFAULT_GEOIP_CACHE_TTL_MINUTES = 10;
+    private static final long DEFAULT_TAP_REPORT_MAX_DECOMPRESSED_SIZE = 268435456; // 256 MB
+    private static final int DEFAULT_DATABASE_POOL_MIN_IDLE = 2;
+    private static final int DEFAULT_DATABASE_POOL_MAX_SIZE = 20;
+    private static final int DEFAULT_DATABASE_POOL_MAX_LIFETIME_SECONDS = 1800;
+    private static final int DEFAULT_DATABASE_POOL_ACQUIRE_TIMEOUT_SECONDS = 30;
+
     private final Config root;
     private final Config general;
     private final Config interfaces;
@@ -70,6 +83,8 @@ public class NodeConfigurationLoader {
                 parseVersionchecksEnabled(),
                 parseVersioncheckUri(),
                 parseDatabasePath(),
+                parseDatabasePool(),
+                parseDatabaseReplicaPath(),
                 parseRestListenUri(),
                 parseHttpExternalUri(),
                 parseHttpMaxPostSize(),
@@ -97,6 +112,38 @@ public class NodeConfigurationLoader {
         return general.getString(ConfigurationKeys.DATABASE_PATH);
     }
 
+    private Optional<String> parseDatabaseReplicaPath() {
+        if (general.hasPath(ConfigurationKeys.DATABASE_REPLICA_PATH)) {
+            return Optional.of(general.getString(ConfigurationKeys.DATABASE_REPLICA_PATH));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private DatabasePoolConfiguration parseDatabasePool() {
+        if (!general.hasPath(ConfigurationKeys.DATABASE_POOL)) {
+            return DatabasePoolConfiguration.create(
+                    DEFAULT_DATABASE_POOL_MIN_IDLE,
+                    DEFAULT_DATABASE_POOL_MAX_SIZE,
+                    DEFAULT_DATABASE_POOL_MAX_LIFETIME_SECONDS,
+                    DEFAULT_DATABASE_POOL_ACQUIRE_TIMEOUT_SECONDS
+            );
+        }
+
+        Config pool = general.getConfig(ConfigurationKeys.DATABASE_POOL);
+
+        return DatabasePoolConfiguration.create(
+                pool.hasPath(ConfigurationKeys.MIN_IDLE) ?
+                        pool.getInt(ConfigurationKeys.MIN_IDLE) : DEFAULT_DATABASE_POOL_MIN_IDLE,
+                pool.hasPath(ConfigurationKeys.MAX_SIZE) ?
+                        pool.getInt(ConfigurationKeys.MAX_SIZE) : DEFAULT_DATABASE_POOL_MAX_SIZE,
+                pool.hasPath(ConfigurationKeys.MAX_LIFETIME_SECONDS) ?
+                        pool.getInt(ConfigurationKeys.MAX_LIFETIME_SECONDS) : DEFAULT_DATABASE_POOL_MAX_LIFETIME_SECONDS,
+                pool.hasPath(ConfigurationKeys.ACQUIRE_TIMEOUT_SECONDS) ?
+                        pool.getInt(ConfigurationKeys.ACQUIRE_TIMEOUT_SECONDS) : DEFAULT_DATABASE_POOL_ACQUIRE_TIMEOUT_SECONDS
+        );
+    }
+
     private boolean parseVersionchecksEnabled() {
         return general.getBoolean(ConfigurationKeys.VERSIONCHECKS);
     }
@@ -178,7 +225,54 @@ public class NodeConfigurationLoader {
     }
 
     private PerformanceConfiguration parsePerformance() {
-        return PerformanceConfiguration.create(performance.getInt(ConfigurationKeys.REPORT_PROCESSOR_POOL_SIZE));
+        TableIngestConfiguration defaultTableIngest = TableIngestConfiguration.create(
+                DEFAULT_TABLE_INGEST_WORKERS, DEFAULT_TABLE_INGEST_QUEUE_SIZE
+        );
+        Map<String, TableIngestConfiguration> tableIngest = Maps.newHashMap();
+
+        if (performance.hasPath(ConfigurationKeys.TABLE_INGEST)) {
+            Config ingest = performance.getConfig(ConfigurationKeys.TABLE_INGEST);
+
+            if (ingest.hasPath(ConfigurationKeys.TABLE_INGEST_DEFAULT)) {
+                defaultTableIngest = parseTableIngest(
+                        ingest.getConfig(ConfigurationKeys.TABLE_INGEST_DEFAULT), defaultTableIngest
+                );
+            }
+
+            for (String tableName : ingest.root().keySet()) {
+                if (tableName.equals(ConfigurationKeys.TABLE_INGEST_DEFAULT)) {
+                    continue;
+                }
+
+                tableIngest.put(tableName, parseTableIngest(ingest.getConfig(tableName), defaultTableIngest));
+            }
+        }
+
+        return PerformanceConfiguration.create(
+                performance.hasPath(ConfigurationKeys.L4_SESSION_FLUSH_INTERVAL_SECONDS) ?
+                        performance.getInt(ConfigurationKeys.L4_SESSION_FLUSH_INTERVAL_SECONDS)
+                        : DEFAULT_L4_SESSION_FLUSH_INTERVAL_SECONDS,
+                performance.hasPath(ConfigurationKeys.GEOIP_CACHE_SIZE) ?
+                        performance.getInt(ConfigurationKeys.GEOIP_CACHE_SIZE)
+                        : DEFAULT_GEOIP_CACHE_SIZE,
+                performance.hasPath(ConfigurationKeys.GEOIP_CACHE_TTL_MINUTES) ?
+                        performance.getInt(ConfigurationKeys.GEOIP_CACHE_TTL_MINUTES)
+                        : DEFAULT_GEOIP_CACHE_TTL_MINUTES,
+                performance.hasPath(ConfigurationKeys.TAP_REPORT_MAX_DECOMPRESSED_SIZE) ?
+                        performance.getLong(ConfigurationKeys.TAP_REPORT_MAX_DECOMPRESSED_SIZE)
+                        : DEFAULT_TAP_REPORT_MAX_DECOMPRESSED_SIZE,
+                defaultTableIngest,
+                tableIngest
+        );
+    }
+
+    private TableIngestConfiguration parseTableIngest(Config c, TableIngestConfiguration defaults) {
+        return TableIngestConfiguration.create(
+                c.hasPath(ConfigurationKeys.WORKERS) ?
+                        c.getInt(ConfigurationKeys.WORKERS) : defaults.workers(),
+                c.hasPath(ConfigurationKeys.QUEUE_SIZE) ?
+                        c.getInt(ConfigurationKeys.QUEUE_SIZE) : defaults.queueSize()
+        );
     }
 
     private MiscConfiguration parseMisc() {
@@ -202,7 +296,56 @@ public class NodeConfigurationLoader {
         ConfigurationValidator.expect(general, ConfigurationKeys.PLUGIN_DIRECTORY, ConfigurationKeys.GENERAL, String.class);
         ConfigurationValidator.expect(general, ConfigurationKeys.CRYPTO_DIRECTORY, ConfigurationKeys.GENERAL, String.class);
         ConfigurationValidator.expect(general, ConfigurationKeys.NTP_SERVER, ConfigurationKeys.GENERAL, String.class);
-        ConfigurationValidator.expect(performance, ConfigurationKeys.REPORT_PROCESSOR_POOL_SIZE, ConfigurationKeys.PERFORMANCE, Integer.class);
+
+        DatabasePoolConfiguration databasePool = parseDatabasePool();
+        if (databasePool.minIdle() < 0) {
+            throw new InvalidConfigurationException("Parameter [general." + ConfigurationKeys.DATABASE_POOL + "."
+                    + ConfigurationKeys.MIN_IDLE + "] must not be negative.");
+        }
+
+        if (databasePool.maxSize() <= 0 || databasePool.maxSize() < databasePool.minIdle()) {
+            throw new InvalidConfigurationException("Parameter [general." + ConfigurationKeys.DATABASE_POOL + "."
+                    + ConfigurationKeys.MAX_SIZE + "] must be greater than 0 and at least ["
+                    + ConfigurationKeys.MIN_IDLE + "].");
+        }
+
+        // Pools reject lifetimes below 30 seconds.
+        if (databasePool.maxLifetimeSeconds() < 30) {
+            throw new InvalidConfigurationException("Parameter [general." + ConfigurationKeys.DATABASE_POOL + "."
+                    + ConfigurationKeys.MAX_LIFETIME_SECONDS + "] must be at least 30.");
+        }
+
+        if (databasePool.acquireTimeoutSeconds() <= 0) {
+            throw new InvalidConfigurationException("Parameter [general." + ConfigurationKeys.DATABASE_POOL + "."
+                    + ConfigurationKeys.ACQUIRE_TIMEOUT_SECONDS + "] must be greater than 0.");
+        }
+
+        // Performance settings must be positive.
+        PerformanceConfiguration performanceConfiguration = parsePerformance();
+        if (performanceConfiguration.l4SessionFlushIntervalSeconds() <= 0) {
+            throw new InvalidConfigurationException("Parameter [performance."
+                    + ConfigurationKeys.L4_SESSION_FLUSH_INTERVAL_SECONDS + "] must be greater than 0.");
+        }
+
+        if (performanceConfiguration.geoIpCacheSize() < 0) {
+            throw new InvalidConfigurationException("Parameter [performance."
+                    + ConfigurationKeys.GEOIP_CACHE_SIZE + "] must not be negative.");
+        }
+
+        if (performanceConfiguration.geoIpCacheTtlMinutes() <= 0) {
+            throw new InvalidConfigurationException("Parameter [performance."
+                    + ConfigurationKeys.GEOIP_CACHE_TTL_MINUTES + "] must be greater than 0.");
+        }
+
+        if (performanceConfiguration.tapReportMaxDecompressedSize() <= 0) {
+            throw new InvalidConfigurationException("Parameter [performance."
+                    + ConfigurationKeys.TAP_REPORT_MAX_DECOMPRESSED_SIZE + "] must be greater than 0.");
+        }
+
+        validateTableIngest(ConfigurationKeys.TABLE_INGEST_DEFAULT, performanceConfiguration.defaultTableIngest());
+        for (Map.Entry<String, TableIngestConfiguration> ingest : performanceConfiguration.tableIngest().entrySet()) {
+            validateTableIngest(ingest.getKey(), ingest.getValue());
+        }
 
         // Plugin directory exists and is readable?
         File pluginDirectory = new File(parsePluginDirectory());
@@ -259,4 +402,16 @@ public class NodeConfigurationLoader {
         }
     }
 
+    private void validateTableIngest(String tableName, TableIngestConfiguration c) throws InvalidConfigurationException {
+        if (c.workers() <= 0) {
+            throw new InvalidConfigurationException("Parameter [performance." + ConfigurationKeys.TABLE_INGEST + "."
+                    + tableName + "." + ConfigurationKeys.WORKERS + "] must be greater than 0.");
+        }
+
+        if (c.queueSize() <= 0) {
+            throw new InvalidConfigurationException("Parameter [performance." + ConfigurationKeys.TABLE_INGEST + "."
+                    + tableName + "." + ConfigurationKeys.QUEUE_SIZE + "] must be greater than 0.");
+        }
+    }
+
 }
@@ -2,14 +2,33 @@ package app.nzyme.core.configuration.node;
 
 import com.google.auto.value.AutoValue;
 
+import java.util.Map;
+
 @AutoValue
 public abstract class PerformanceConfiguration {
 
-    public abstract int reportProcessorPoolSize();
+    public abstract int l4SessionFlushIntervalSeconds();
+
+    public abstract int geoIpCacheSize();
+    public abstract int geoIpCacheTtlMinutes();
+
+    public abstract long tapReportMaxDecompressedSize();
+
+    public abstract TableIngestConfiguration defaultTableIngest();
+    public abstract Map<String, TableIngestConfiguration> tableIngest();
+
+    public TableIngestConfiguration tableIngest(String tableName) {
+        return tableIngest().getOrDefault(tableName, defaultTableIngest());
+    }
 
-    public static PerformanceConfiguration create(int reportProcessorPoolSize) {
+    public static PerformanceConfiguration create(int l4SessionFlushIntervalSeconds, int geoIpCacheSize, int geoIpCacheTtlMinutes, long tapReportMaxDecompressedSize, TableIngestConfiguration defaultTableIngest, Map<String, TableIngestConfiguration> tableIngest) {
         return builder()
-                .reportProcessorPoolSize(reportProcessorPoolSize)
+                .l4SessionFlushIntervalSeconds(l4SessionFlushIntervalSeconds)
+                .geoIpCacheSize(geoIpCacheSize)
+                .geoIpCacheTtlMinutes(geoIpCacheTtlMinutes)
+                .tapReportMaxDecompressedSize(tapReportMaxDecompressedSize)
+                .defaultTableIngest(defaultTableIngest)
+                .tableIngest(tableIngest)
                 .build();
     }
 
@@ -19,7 +38,17 @@ public abstract class PerformanceConfiguration {
 
     @AutoValue.Builder
     public abstract static class Builder {
-        public abstract Builder reportProcessorPoolSize(int reportProcessorPoolSize);
+        public abstract Builder l4SessionFlushIntervalSeconds(int l4SessionFlushIntervalSeconds);
+
+        public abstract Builder geoIpCacheSize(int geoIpCacheSize);
+
+        public abstract Builder geoIpCacheTtlMinutes(int geoIpCacheTtlMinutes);
+
+        public abstract Builder tapReportMaxDecompressedSize(long tapReportMaxDecompressedSize);
+
+        public abstract Builder defaultTableIngest(TableIngestConfiguration defaultTableIngest);
+
+        public abstract Builder tableIngest(Map<String, TableIngestConfiguration> tableIngest);
 
         public abstract PerformanceConfiguration build();
     }
@@ -0,0 +1,30 @@
+package app.nzyme.core.configuration.node;
+
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class TableIngestConfiguration {
+
+    public abstract int workers();
+    public abstract int queueSize();
+
+    public static TableIngestConfiguration create(int workers, int queueSize) {
+        return builder()
+                .workers(workers)
+                .queueSize(queueSize)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_TableIngestConfiguration.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder workers(int workers);
+
+        public abstract Builder queueSize(int queueSize);
+
+        public abstract TableIngestConfiguration build();
+    }
+}
@@ -5,6 +5,7 @@ import app.nzyme.core.assets.db.AssetHostnameEntryMapper;
 import app.nzyme.core.assets.db.AssetIpAddressEntryMapper;
 import app.nzyme.core.bluetooth.db.BluetoothDeviceEntryMapper;
 import app.nzyme.core.bluetooth.db.BluetoothDeviceSummaryMapper;
+import app.nzyme.core.configuration.node.DatabasePoolConfiguration;
 import app.nzyme.core.configuration.node.NodeConfiguration;
 import app.nzyme.core.context.db.MacAddressContextEntryMapper;
 import app.nzyme.core.context.db.MacAddressTransparentContextEntryMapper;
@@ -38,6 +39,7 @@ import app.nzyme.core.ethernet.ssh.db.SSHSessionEntryMapper;
 import app.nzyme.core.ethernet.l4.tcp.db.TcpSessionEntryMapper;
 import app.nzyme.core.ethernet.l4.udp.db.UdpConversationEntryMapper;
 import app.nzyme.core.ethernet.time.ntp.db.NTPTransactionEntryMapper;
+import app.nzyme.core.events.db.EventActionDeliveryEntryMapper;
 import app.nzyme.core.events.db.EventActionEntryMapper;
 import app.nzyme.core.events.db.EventEntryMapper;
 import app.nzyme.core.events.db.SubscriptionEntryMapper;
@@ -60,10 +62,20 @@ import app.nzyme.core.uav.db.UavEntryMapper;
 import app.nzyme.core.uav.db.UavTimelineEntryMapper;
 import app.nzyme.core.uav.db.UavTypeEntryMapper;
 import app.nzyme.core.uav.db.UavVectorEntryMapper;
+import app.nzyme.core.util.MetricNames;
 import app.nzyme.plugin.Database;
 import app.nzyme.core.crypto.database.PGPKeyFingerprintMapper;
 import app.nzyme.core.taps.db.*;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
 import liquibase.*;
 import liquibase.database.DatabaseFactory;
 import liquibase.database.jvm.JdbcConnection;
@@ -77,32 +89,148 @@ import org.jdbi.v3.core.HandleCallback;
 import org.jdbi.v3.core.HandleConsumer;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.StatementCustomizer;
 import org.jdbi.v3.core.statement.StatementContext;
 import org.jdbi.v3.jodatime2.JodaTimePlugin;
 import org.jdbi.v3.postgres.PostgresPlugin;
 import org.joda.time.DateTime;
+import org.postgresql.PGStatement;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 public class DatabaseImpl implements Database {
 
     private static final Logger LOG = LogManager.getLogger(DatabaseImpl.class);
 
+    /*
+     * The PostgreSQL driver switches a statement to a named server-side prepared statement after it was executed this
+     * many times on a connection. The statement, and with it the parsed query and plan, is kept in a per-connection
+     * cache and reused by every later execution of the same SQL text.
+     */
+    private static final int PREPARE_THRESHOLD = 3;
+    private static final int PREPARED_STATEMENT_CACHE_QUERIES = 512;
+    private static final int PREPARED_STATEMENT_CACHE_SIZE_MIB = 16;
+
     private final NodeConfiguration configuration;
 
+    // Connection acquisition times. Created before the metrics registry exists and registered with it later.
+    private final Timer poolAcquireTimer;
+    private final Meter poolTimeoutMeter;
+    private final Meter preparedStatementHitMeter;
+    private final Meter preparedStatementMissMeter;
+
+    private HikariDataSource dataSource;
+    private volatile PoolStats poolStats;
+
     private Jdbi jdbi;
 
+    private HikariDataSource replicaDataSource;
+    private ReadOnlyDatabase readOnly;
+
     public DatabaseImpl(NodeConfiguration configuration) {
         this.configuration = configuration;
+        this.poolAcquireTimer = new Timer();
+        this.poolTimeoutMeter = new Meter();
+        this.preparedStatementHitMeter = new Meter();
+        this.preparedStatementMissMeter = new Meter();
     }
 
     public void initialize() throws LiquibaseException {
+        HikariConfig poolConfig = buildPoolConfig("nzyme-database", configuration.databasePath());
+        poolConfig.setMetricsTrackerFactory((poolName, stats) -> {
+            this.poolStats = stats;
+            return new PoolMetricsTracker();
+        });
+
+        if (configuration.slowQueryLogThreshold().isPresent()) {
+            LOG.info("Slow query log enabled with threshold <{}ms>.", configuration.slowQueryLogThreshold().get());
+        }
+
+        this.dataSource = new HikariDataSource(poolConfig);
+        this.jdbi = configureJdbi(Jdbi.create(dataSource));
+
+        if (configuration.databaseReplicaPath().isPresent()) {
+            LOG.info("Routing read-only queries to database replica.");
+
+            HikariConfig replicaPoolConfig = buildPoolConfig(
+                    "nzyme-database-replica", configuration.databaseReplicaPath().get()
+            );
+            replicaPoolConfig.setReadOnly(true);
+
+            this.replicaDataSource = new HikariDataSource(replicaPoolConfig);
+            this.readOnly = new ReadOnlyDatabase(configureJdbi(Jdbi.create(replicaDataSource)));
+        } else {
+            this.readOnly = new ReadOnlyDatabase(jdbi);
+        }
+
+        // Try to establish connection, retry if connection fails.
+        JdbcConnection connection;
+        while (true) {
+            try {
+                connection = new JdbcConnection(jdbi.open().getConnection());
+                break;
+            } catch (ConnectionException e) {
+                LOG.warn("Could not connect to PostgreSQL. Retrying.", e);
+
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        Liquibase liquibase = null;
+        try {
+            liquibase.database.Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(connection);
+            liquibase = new liquibase.Liquibase("db/migrations.xml", new ClassLoaderResourceAccessor(), database);
+
+            routeLiquibaseLogging(liquibase);
+
+            if (!liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression()).isEmpty()) {
+                throw new RuntimeException("There are pending database changesets. Please run migrations.");
+            }
+        } finally {
+            if (liquibase != null) {
+                liquibase.close();
+            }
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        }
+    }
+
+    private HikariConfig buildPoolConfig(String poolName, String databasePath) {
+        DatabasePoolConfiguration pool = configuration.databasePool();
+
+        HikariConfig poolConfig = new HikariConfig();
+        poolConfig.setPoolName(poolName);
+        poolConfig.setJdbcUrl("jdbc:" + databasePath);
+        poolConfig.setMinimumIdle(pool.minIdle());
+        poolConfig.setMaximumPoolSize(pool.maxSize());
+        poolConfig.setMaxLifetime(TimeUnit.SECONDS.toMillis(pool.maxLifetimeSeconds()));
+        poolConfig.setConnectionTimeout(TimeUnit.SECONDS.toMillis(pool.acquireTimeoutSeconds()));
+
+        // Do not fail if PostgreSQL is not reachable yet. We retry in initialize().
+        poolConfig.setInitializationFailTimeout(-1);
+
+        poolConfig.addDataSourceProperty("prepareThreshold", PREPARE_THRESHOLD);
+        poolConfig.addDataSourceProperty("preparedStatementCacheQueries", PREPARED_STATEMENT_CACHE_QUERIES);
+        poolConfig.addDataSourceProperty("preparedStatementCacheSizeMiB", PREPARED_STATEMENT_CACHE_SIZE_MIB);
+
+        return poolConfig;
+    }
+
+    private Jdbi configureJdbi(Jdbi jdbi) {
         // TODO use reflection here at some point.
-        this.jdbi = Jdbi.create("jdbc:" + configuration.databasePath())
-                .installPlugin(new PostgresPlugin())
+        jdbi.installPlugin(new PostgresPlugin())
                 .installPlugin(new JodaTimePlugin())
                 .registerRowMapper(new TapMapper())
                 .registerRowMapper(new BusMapper())
@@ -131,6 +259,7 @@ public class DatabaseImpl implements Database {
                 .registerRowMapper(new RegistryEntryMapper())
                 .registerRowMapper(new EventEntryMapper())
                 .registerRowMapper(new EventActionEntryMapper())
+                .registerRowMapper(new EventActionDeliveryEntryMapper())
                 .registerRowMapper(new SubscriptionEntryMapper())
                 .registerRowMapper(new BSSIDSummaryMapper())
                 .registerRowMapper(new SSIDChannelDetailsMapper())
@@ -217,10 +346,24 @@ public class DatabaseImpl implements Database {
                 .registerRowMapper(new MonitorEntryMapper())
                 .registerRowMapper(new TimelineEventEntryMapper());
 
-        if (configuration.slowQueryLogThreshold().isPresent()) {
-            LOG.info("Slow query log enabled with threshold <{}ms>.", configuration.slowQueryLogThreshold().get());
+        // Executions that reuse a cached server-side prepared statement skip parsing and planning.
+        jdbi.addCustomizer(new StatementCustomizer() {
+            @Override
+            public void beforeExecution(PreparedStatement statement, StatementContext context) throws SQLException {
+                if (!statement.isWrapperFor(PGStatement.class)) {
+                    return;
+                }
+
+                if (statement.unwrap(PGStatement.class).isUseServerPrepare()) {
+                    preparedStatementHitMeter.mark();
+                } else {
+                    preparedStatementMissMeter.mark();
+                }
+            }
+        });
 
-            this.jdbi.setSqlLogger(new SqlLogger() {
+        if (configuration.slowQueryLogThreshold().isPresent()) {
+            jdbi.setSqlLogger(new SqlLogger() {
                 @Override
                 public void logAfterExecution(StatementContext context) {
                     if (context.getElapsedTime(ChronoUnit.MILLIS) > configuration.slowQueryLogThreshold().get()) {
@@ -231,41 +374,7 @@ public class DatabaseImpl implements Database {
             });
         }
 
-        // Try to establish connection, retry if connection fails.
-        JdbcConnection connection;
-        while (true) {
-            try {
-                connection = new JdbcConnection(jdbi.open().getConnection());
-                break;
-            } catch (ConnectionException e) {
-                LOG.warn("Could not connect to PostgreSQL. Retrying.", e);
-
-                try {
-                    Thread.sleep(5000);
-                } catch (InterruptedException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
-        }
-
-        Liquibase liquibase = null;
-        try {
-            liquibase.database.Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(connection);
-            liquibase = new liquibase.Liquibase("db/migrations.xml", new ClassLoaderResourceAccessor(), database);
-
-            routeLiquibaseLogging(liquibase);
-
-            if (!liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression()).isEmpty()) {
-                throw new RuntimeException("There are pending database changesets. Please run migrations.");
-            }
-        } finally {
-            if (liquibase != null) {
-                liquibase.close();
-            }
-            if (!connection.isClosed()) {
-                connection.close();
-            }
-        }
+        return jdbi;
     }
 
     public void migrate() throws LiquibaseException {
@@ -313,6 +422,49 @@ public class DatabaseImpl implements Database {
         }
     }
 
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricNames.DATABASE_POOL_ACTIVE, (Gauge<Integer>) () -> poolStat(PoolStats::getActiveConnections));
+        metrics.register(MetricNames.DATABASE_POOL_IDLE, (Gauge<Integer>) () -> poolStat(PoolStats::getIdleConnections));
+        metrics.register(MetricNames.DATABASE_POOL_TOTAL, (Gauge<Integer>) () -> poolStat(PoolStats::getTotalConnections));
+        metrics.register(MetricNames.DATABASE_POOL_WAITING, (Gauge<Integer>) () -> poolStat(PoolStats::getPendingThreads));
+        metrics.register(MetricNames.DATABASE_POOL_ACQUIRE_TIMER, poolAcquireTimer);
+        metrics.register(MetricNames.DATABASE_POOL_TIMEOUTS, poolTimeoutMeter);
+        metrics.register(MetricNames.DATABASE_PREPARED_STATEMENT_HITS, preparedStatementHitMeter);
+        metrics.register(MetricNames.DATABASE_PREPARED_STATEMENT_MISSES, preparedStatementMissMeter);
+        metrics.register(MetricNames.DATABASE_PREPARED_STATEMENT_HIT_RATIO, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(
+                        preparedStatementHitMeter.getOneMinuteRate(),
+                        preparedStatementHitMeter.getOneMinuteRate() + preparedStatementMissMeter.getOneMinuteRate()
+                );
+            }
+        });
+    }
+
+    /**
+     * Read-only handles for heavy analytical queries. Served by the replica if one is configured and by the primary
+     * otherwise. Replicas can lag behind the primary, so never use this for reads that must see a preceding write.
+     */
+    public ReadOnlyDatabase getReadOnly() {
+        return readOnly;
+    }
+
+    public void close() {
+        if (replicaDataSource != null) {
+            replicaDataSource.close();
+        }
+
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    private int poolStat(ToIntFunction<PoolStats> stat) {
+        PoolStats stats = this.poolStats;
+        return stats == null ? 0 : stat.applyAsInt(stats);
+    }
+
     public long getTotalSize() {
         return withHandle(handle ->
                 handle.createQuery("SELECT pg_database_size(current_database())")
@@ -322,7 +474,11 @@ public class DatabaseImpl implements Database {
 
     public long getTableSize(String tableName) {
         return withHandle(handle ->
-                handle.createQuery("SELECT pg_total_relation_size(:table)")
+                // Partitioned tables have no storage of their own. Include the size of all partitions.
+                handle.createQuery("SELECT pg_total_relation_size(:table::regclass) + " +
+                                "COALESCE((SELECT SUM(pg_total_relation_size(relid)) " +
+                                "FROM pg_partition_tree(:table::regclass) " +
+                                "WHERE relid <> :table::regclass), 0)")
                         .bind("table", tableName)
                         .mapTo(Long.class)
                         .one());
@@ -435,6 +591,18 @@ public class DatabaseImpl implements Database {
                         "SELECT COUNT(*) FROM ntp_transactions WHERE tap_uuid IN (<taps>)",
                         "DELETE FROM ntp_transactions WHERE (timestamp_client_tap_receive < :since OR timestamp_server_tap_receive < :since) AND tap_uuid IN (<taps>)"
                 ));
+
+                tables.add(new DataTableInformation(
+                        "heavy_hitter_buckets",
+                        "SELECT COUNT(*) FROM heavy_hitter_buckets WHERE dimension LIKE 'L4_%' AND tap_uuid IN (<taps>)",
+                        "DELETE FROM heavy_hitter_buckets WHERE bucket_start < :since AND dimension LIKE 'L4_%' AND tap_uuid IN (<taps>)"
+                ));
+
+                tables.add(new DataTableInformation(
+                        "heavy_hitter_gaps",
+                        "SELECT COUNT(*) FROM heavy_hitter_gaps WHERE dimension LIKE 'L4_%' AND tap_uuid IN (<taps>)",
+                        "DELETE FROM heavy_hitter_gaps WHERE bucket_start < :since AND dimension LIKE 'L4_%' AND tap_uuid IN (<taps>)"
+                ));
             }
             case ETHERNET_DNS -> {
                 tables.add(new DataTableInformation(
@@ -460,6 +628,18 @@ public class DatabaseImpl implements Database {
                         "SELECT COUNT(*) FROM dns_statistics WHERE tap_uuid IN (<taps>)",
                         "DELETE FROM dns_statistics WHERE created_at < :since AND tap_uuid IN (<taps>)"
                 ));
+
+                tables.add(new DataTableInformation(
+                        "heavy_hitter_buckets",
+                        "SELECT COUNT(*) FROM heavy_hitter_buckets WHERE dimension LIKE 'DNS_%' AND tap_uuid IN (<taps>)",
+                        "DELETE FROM heavy_hitter_buckets WHERE bucket_start < :since AND dimension LIKE 'DNS_%' AND tap_uuid IN (<taps>)"
+                ));
+
+                tables.add(new DataTableInformation(
+                        "heavy_hitter_gaps",
+                        "SELECT COUNT(*) FROM heavy_hitter_gaps WHERE dimension LIKE 'DNS_%' AND tap_uuid IN (<taps>)",
+                        "DELETE FROM heavy_hitter_gaps WHERE bucket_start < :since AND dimension LIKE 'DNS_%' AND tap_uuid IN (<taps>)"
+                ));
             }
             case UAV -> {
                 tables.add(new DataTableInformation(
@@ -529,4 +709,18 @@ public class DatabaseImpl implements Database {
     }
 
 
+    private class PoolMetricsTracker implements IMetricsTracker {
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            poolAcquireTimer.update(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            poolTimeoutMeter.mark();
+        }
+
+    }
+
 }
@@ -0,0 +1,27 @@
+package app.nzyme.core.database;
+
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.HandleConsumer;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Handle path for queries that only read. Points at the read replica if one is configured and at the primary
+ * otherwise, so that dashboard and monitor queries do not compete with tap report writes.
+ */
+public class ReadOnlyDatabase {
+
+    private final Jdbi jdbi;
+
+    public ReadOnlyDatabase(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    public <R, X extends Exception> R withHandle(HandleCallback<R, X> callback) throws X {
+        return jdbi.withHandle(callback);
+    }
+
+    public <X extends Exception> void useHandle(final HandleConsumer<X> callback) throws X {
+        jdbi.useHandle(callback);
+    }
+
+}
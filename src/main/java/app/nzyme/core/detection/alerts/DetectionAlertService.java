@@ -5,7 +5,11 @@ import app.nzyme.core.detection.alerts.db.DetectionAlertAttributeEntry;
 import app.nzyme.core.detection.alerts.db.DetectionAlertEntry;
 import app.nzyme.core.detection.alerts.db.DetectionAlertTimelineEntry;
 import app.nzyme.core.events.types.DetectionEvent;
+import app.nzyme.core.util.MetricNames;
 import app.nzyme.plugin.Subsystem;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.hash.Hashing;
@@ -17,6 +21,7 @@ import org.joda.time.DateTime;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class DetectionAlertService {
@@ -24,11 +29,20 @@ public class DetectionAlertService {
     private static final Logger LOG = LogManager.getLogger(DetectionAlertService.class);
 
     public static final int ACTIVE_THRESHOLD_MINUTES = 5;
+    private static final int DEDUPLICATION_WINDOW_SECONDS = 30;
 
     private final NzymeNode nzyme;
 
+    // Comparison checksum -> attributes of the last raise that was written to the database.
+    private final Cache<String, Map<String, String>> recentlyRaised;
+
     public DetectionAlertService(NzymeNode nzyme) {
         this.nzyme = nzyme;
+
+        this.recentlyRaised = CacheBuilder.newBuilder()
+                .expireAfterWrite(DEDUPLICATION_WINDOW_SECONDS, TimeUnit.SECONDS)
+                .maximumSize(10000)
+                .build();
     }
 
     public int countAllDetectionTypes(@Nullable Subsystem subsystem) {
@@ -89,74 +103,45 @@ public class DetectionAlertService {
                 comparisonAttributes
         );
 
-        Optional<DetectionAlertEntry> existingAlert = findAlertWithComparisonChecksum(comparisonChecksum);
-        if (existingAlert.isPresent()) {
-            // This alert has been raised in the past.
-            LOG.debug("Alert of type [{}] with checksum [{}] is not new. Updating.",
-                    detectionType.name(), comparisonChecksum);
-
-            nzyme.getDatabase().withHandle(handle ->
-                    handle.createUpdate("UPDATE detection_alerts SET last_seen = NOW(), is_resolved = false " +
-                                    "WHERE id = :id")
-                            .bind("id", existingAlert.get().id())
-                            .execute()
-            );
-
-            // Update alert attributes.
-            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
-                nzyme.getDatabase().useHandle(handle ->
-                        handle.createUpdate("UPDATE detection_alert_attributes " +
-                                        "SET attribute_value = :attribute_value " +
-                                        "WHERE detection_alert_id = :detection_alert_id " +
-                                        "AND attribute_key = :attribute_key")
-                                .bind("detection_alert_id", existingAlert.get().id())
-                                .bind("attribute_key", attribute.getKey())
-                                .bind("attribute_value", attribute.getValue())
-                                .execute()
-                );
-            }
-
-            /*
-             * Write alert timeline.
-             *
-             * To show when a potentially re-activated alert was seen, we store a timeline of alerts. A new timeline
-             * entry starts when the alert is not currently active. If the alert is currently active, the current
-             * timeline entry is extended. This allows for very easy querying.
-             */
-            if (existingAlert.get().lastSeen()
-                    .isAfter(DateTime.now().minusMinutes(DetectionAlertService.ACTIVE_THRESHOLD_MINUTES))) {
-                // Active alert. Extend existing timeline entry.
-                nzyme.getDatabase().useHandle(handle ->
-                        handle.createUpdate("UPDATE detection_alert_timeline SET seen_to = NOW() " +
-                                        "WHERE id = (SELECT MAX(id) FROM detection_alert_timeline " +
-                                        "WHERE detection_alert_id = :detection_alert_id)")
-                                .bind("detection_alert_id", existingAlert.get().id())
-                                .execute()
-                );
-            } else {
-                // Inactive alert. Create new timeline entry.
-                createAlertTimelineEntry(existingAlert.get().id());
-
-                // Create event.
-                nzyme.getEventEngine().processEvent(
-                        DetectionEvent.create(existingAlert.get().uuid(), detectionType, details, DateTime.now()),
-                        organizationId,
-                        tenantId
-                );
-            }
-
+        /*
+         * Detections re-raise the same alert for every report they process. Identical raises within a short window
+         * are collapsed here and never touch the database. The window is far below ACTIVE_THRESHOLD_MINUTES, so
+         * last_seen and the timeline are still extended long before an alert could be considered inactive.
+         */
+        Map<String, String> recentAttributes = recentlyRaised.getIfPresent(comparisonChecksum);
+        if (recentAttributes != null && recentAttributes.equals(attributes)) {
+            nzyme.getMetrics().meter(MetricNames.DETECTION_ALERTS_COLLAPSED_RAISES).mark();
             return;
         }
 
-        // New alert / not re-triggered.
-        UUID alertUUID = UUID.randomUUID();
-        long alertId = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("INSERT INTO detection_alerts(uuid, organization_id, tenant_id, " +
-                                "dot11_monitored_network_id, tap_id, detection_type, subsystem, comparison_checksum, " +
-                                "details, created_at, last_seen) VALUES(:uuid, :organization_id, :tenant_id, " +
-                                ":dot11_monitored_network_id, :tap_id, :detection_type, :subsystem, " +
-                                ":comparison_checksum, :details, NOW(), NOW()) RETURNING id")
-                        .bind("uuid", alertUUID)
+        List<String> attributeKeys = Lists.newArrayList();
+        List<String> attributeValues = Lists.newArrayList();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            attributeKeys.add(attribute.getKey());
+            attributeValues.add(attribute.getValue());
+        }
+
+        RaisedAlert raised;
+        try (Timer.Context ignored = nzyme.getMetrics().timer(MetricNames.DETECTION_ALERTS_RAISE_TIMER).time()) {
+            raised = nzyme.getDatabase().withHandle(h -> h.inTransaction(handle -> {
+                /*
+                 * Insert the alert or, if it has been raised in the past, mark it as seen again. The previous
+                 * last_seen value is selected alongside to decide if the alert was still active.
+                 */
+                RaisedAlert alert = handle.createQuery("WITH previous AS (SELECT id, last_seen " +
+                                "FROM detection_alerts WHERE comparison_checksum = :comparison_checksum), " +
+                                "upserted AS (INSERT INTO detection_alerts(uuid, organization_id, tenant_id, " +
+                                "dot11_monitored_network_id, tap_id, detection_type, subsystem, " +
+                                "comparison_checksum, details, created_at, last_seen) VALUES(:uuid, " +
+                                ":organization_id, :tenant_id, :dot11_monitored_network_id, :tap_id, " +
+                                ":detection_type, :subsystem, :comparison_checksum, :details, NOW(), NOW()) " +
+                                "ON CONFLICT (comparison_checksum) DO UPDATE SET last_seen = NOW(), " +
+                                "is_resolved = false RETURNING id, uuid, (xmax = 0) AS inserted) " +
+                                "SELECT upserted.id, upserted.uuid, upserted.inserted, " +
+                                "(previous.last_seen IS NULL OR previous.last_seen > NOW() - " +
+                                "make_interval(mins => :active_threshold)) AS was_active " +
+                                "FROM upserted LEFT JOIN previous ON previous.id = upserted.id")
+                        .bind("uuid", UUID.randomUUID())
                         .bind("organization_id", organizationId)
                         .bind("tenant_id", tenantId)
                         .bind("dot11_monitored_network_id", dot11MonitoredNetworkId)
@@ -165,31 +150,64 @@ public class DetectionAlertService {
                         .bind("subsystem", subsystem)
                         .bind("comparison_checksum", comparisonChecksum)
                         .bind("details", details)
-                        .mapTo(Long.class)
-                        .one()
-        );
-
-        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
-            nzyme.getDatabase().useHandle(handle ->
+                        .bind("active_threshold", ACTIVE_THRESHOLD_MINUTES)
+                        .map((rs, ctx) -> new RaisedAlert(
+                                rs.getLong("id"),
+                                UUID.fromString(rs.getString("uuid")),
+                                rs.getBoolean("inserted"),
+                                rs.getBoolean("was_active")
+                        ))
+                        .one();
+
+                if (!attributeKeys.isEmpty()) {
                     handle.createUpdate("INSERT INTO detection_alert_attributes(detection_alert_id, " +
-                                    "attribute_key, attribute_value) VALUES(:detection_alert_id, :attribute_key, " +
-                                    ":attribute_value)")
-                            .bind("detection_alert_id", alertId)
-                            .bind("attribute_key", attribute.getKey())
-                            .bind("attribute_value", attribute.getValue())
-                            .execute()
-            );
+                                    "attribute_key, attribute_value) SELECT :detection_alert_id, a.key, a.value " +
+                                    "FROM UNNEST(:attribute_keys, :attribute_values) AS a(key, value) " +
+                                    "ON CONFLICT (detection_alert_id, attribute_key) " +
+                                    "DO UPDATE SET attribute_value = EXCLUDED.attribute_value")
+                            .bind("detection_alert_id", alert.id())
+                            .bindArray("attribute_keys", String.class, attributeKeys)
+                            .bindArray("attribute_values", String.class, attributeValues)
+                            .execute();
+                }
+
+                /*
+                 * Write alert timeline.
+                 *
+                 * To show when a potentially re-activated alert was seen, we store a timeline of alerts. A new
+                 * timeline entry starts when the alert is not currently active. If the alert is currently active,
+                 * the current timeline entry is extended. This allows for very easy querying.
+                 */
+                if (alert.startsNewTimelineEntry()) {
+                    handle.createUpdate("INSERT INTO detection_alert_timeline(detection_alert_id, seen_from, " +
+                                    "seen_to) VALUES(:detection_alert_id, NOW(), NOW())")
+                            .bind("detection_alert_id", alert.id())
+                            .execute();
+                } else {
+                    handle.createUpdate("UPDATE detection_alert_timeline SET seen_to = NOW() " +
+                                    "WHERE id = (SELECT MAX(id) FROM detection_alert_timeline " +
+                                    "WHERE detection_alert_id = :detection_alert_id)")
+                            .bind("detection_alert_id", alert.id())
+                            .execute();
+                }
+
+                return alert;
+            }));
         }
 
-        // Write initial alert timeline entry. See comment in re-raised alert update above.
-        createAlertTimelineEntry(alertId);
+        recentlyRaised.put(comparisonChecksum, Map.copyOf(attributes));
 
-        // Create event.
-        nzyme.getEventEngine().processEvent(
-                DetectionEvent.create(alertUUID, detectionType, details, DateTime.now()),
-                organizationId,
-                tenantId
-        );
+        if (raised.startsNewTimelineEntry()) {
+            LOG.debug("Alert of type [{}] with checksum [{}] is new or re-activated.",
+                    detectionType.name(), comparisonChecksum);
+
+            // Create event. Only after the transaction committed, so actions never see an alert that doesn't exist.
+            nzyme.getEventEngine().processEvent(
+                    DetectionEvent.create(raised.uuid(), detectionType, details, DateTime.now()),
+                    organizationId,
+                    tenantId
+            );
+        }
     }
 
     private String buildSubsystemSelectorFragment(@Nullable Subsystem subsystem) {
@@ -419,6 +437,8 @@ public class DetectionAlertService {
                         .bind("uuid", uuid)
                         .execute()
         );
+
+        recentlyRaised.invalidateAll();
     }
 
     public void markAlertAsResolved(UUID uuid) {
@@ -427,6 +447,9 @@ public class DetectionAlertService {
                         .bind("uuid", uuid)
                         .execute()
         );
+
+        // A resolved alert must be re-opened by the next raise.
+        recentlyRaised.invalidateAll();
     }
 
     public List<DetectionAlertTimelineEntry> findAlertTimeline(long alertId,
@@ -455,25 +478,6 @@ public class DetectionAlertService {
         );
     }
 
-    private Optional<DetectionAlertEntry> findAlertWithComparisonChecksum(String comparisonChecksum) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM detection_alerts " +
-                                "WHERE comparison_checksum = :comparison_checksum")
-                        .bind("comparison_checksum", comparisonChecksum)
-                        .mapTo(DetectionAlertEntry.class)
-                        .findOne()
-        );
-    }
-
-    private void createAlertTimelineEntry(long alertId) {
-        nzyme.getDatabase().useHandle(handle ->
-                handle.createUpdate("INSERT INTO detection_alert_timeline(detection_alert_id, seen_from, " +
-                                "seen_to) VALUES(:detection_alert_id, NOW(), NOW())")
-                        .bind("detection_alert_id", alertId)
-                        .execute()
-        );
-    }
-
     private String buildChecksum(@Nullable UUID organizationId,
                                  @Nullable UUID tenantId,
                                  @Nullable UUID dot11MonitoredNetworkId,
@@ -507,4 +511,32 @@ public class DetectionAlertService {
                 .toString();
     }
 
+    private static final class RaisedAlert {
+
+        private final long id;
+        private final UUID uuid;
+        private final boolean inserted;
+        private final boolean wasActive;
+
+        private RaisedAlert(long id, UUID uuid, boolean inserted, boolean wasActive) {
+            this.id = id;
+            this.uuid = uuid;
+            this.inserted = inserted;
+            this.wasActive = wasActive;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public UUID uuid() {
+            return uuid;
+        }
+
+        public boolean startsNewTimelineEntry() {
+            return inserted || !wasActive;
+        }
+
+    }
+
 }
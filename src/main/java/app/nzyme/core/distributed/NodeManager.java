@@ -5,6 +5,8 @@ import app.nzyme.core.crypto.pgp.PGPKeys;
 import app.nzyme.core.distributed.database.NodeEntry;
 import app.nzyme.core.distributed.database.metrics.GaugeHistogramBucket;
 import app.nzyme.core.logging.CountingAppender;
+import app.nzyme.core.metrics.MetricsRollupSource;
+import app.nzyme.core.metrics.MetricsRollups;
 import app.nzyme.core.monitoring.GaugeEntryAverage;
 import app.nzyme.core.monitoring.TimerEntry;
 import app.nzyme.core.monitoring.TimerEntryAverage;
@@ -27,6 +29,7 @@ import jakarta.validation.constraints.NotNull;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
 import org.joda.time.DateTime;
 import org.joda.time.Period;
 import org.joda.time.PeriodType;
@@ -55,6 +58,7 @@ public class NodeManager {
     private long localCycle;
 
     private final NodeInformation nodeInformation;
+    private final MetricsRollups metricsRollups;
 
     private final AtomicLong tapReportSize;
 
@@ -64,6 +68,7 @@ public class NodeManager {
         this.nzyme = nzyme;
 
         this.nodeInformation = new NodeInformation();
+        this.metricsRollups = new MetricsRollups(nzyme);
 
         this.tapReportSize = new AtomicLong(0);
         this.nodeNameCache = CacheBuilder.newBuilder().
@@ -303,55 +308,75 @@ public class NodeManager {
             long tapReportSize = this.tapReportSize.getAndSet(0);
             NodeInformation.Info ni = new NodeInformation().collect();
             Map<String, Long> logCounts = CountingAppender.getCounts();
+            DateTime now = DateTime.now();
+
+            // All metrics of this run are written in two batches.
+            nzyme.getDatabase().useHandle(handle -> {
+                PreparedBatch gauges = handle.prepareBatch("INSERT INTO node_metrics_gauges(node_id, metric_name, " +
+                        "metric_value, created_at) VALUES(:node_id, :metric_name, :metric_value, :created_at)");
+                PreparedBatch timers = handle.prepareBatch("INSERT INTO node_metrics_timers(node_id, metric_name, " +
+                        "metric_max, metric_min, metric_mean, metric_p99, metric_stddev, metric_counter, created_at) " +
+                        "VALUES(:node_id, :metric_name, :metric_max, :metric_min, :metric_mean, :metric_p99, " +
+                        ":metric_stddev, :metric_counter, :created_at)");
+
+                writeGauge(gauges, now, MetricExternalName.MEMORY_BYTES_TOTAL.database_label, ni.memoryTotal());
+                writeGauge(gauges, now, MetricExternalName.MEMORY_BYTES_AVAILABLE.database_label, ni.memoryAvailable());
+                writeGauge(gauges, now, MetricExternalName.MEMORY_BYTES_USED.database_label, ni.memoryUsed());
+                writeGauge(gauges, now, MetricExternalName.HEAP_BYTES_TOTAL.database_label, ni.heapTotal());
+                writeGauge(gauges, now, MetricExternalName.HEAP_BYTES_AVAILABLE.database_label, ni.heapAvailable());
+                writeGauge(gauges, now, MetricExternalName.HEAP_BYTES_USED.database_label, ni.heapUsed());
+                writeGauge(gauges, now, MetricExternalName.CPU_SYSTEM_LOAD.database_label, ni.cpuSystemLoad());
+                writeGauge(gauges, now, MetricExternalName.PROCESS_VIRTUAL_SIZE.database_label, ni.processVirtualSize());
+                writeGauge(gauges, now, MetricExternalName.TAP_REPORT_SIZE.database_label, tapReportSize);
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_TRACE.database_label, logCounts.getOrDefault("TRACE", 0L));
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_DEBUG.database_label, logCounts.getOrDefault("DEBUG", 0L));
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_INFO.database_label, logCounts.getOrDefault("INFO", 0L));
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_WARN.database_label, logCounts.getOrDefault("WARN", 0L));
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_ERROR.database_label, logCounts.getOrDefault("ERROR", 0L));
+                writeGauge(gauges, now, MetricExternalName.LOG_COUNTS_FATAL.database_label, logCounts.getOrDefault("FATAL", 0L));
+                writeGauge(gauges, now, MetricExternalName.GEOIP_CACHE_SIZE.database_label, getLocalMetricsGaugeValue(metrics, MetricNames.GEOIP_CACHE_SIZE));
+                writeGauge(gauges, now, MetricExternalName.CONTEXT_MAC_CACHE_SIZE.database_label, getLocalMetricsGaugeValue(metrics, MetricNames.CONTEXT_MAC_CACHE_SIZE));
+
+                writeTimer(timers, now, MetricExternalName.PGP_ENCRYPTION_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.PGP_ENCRYPTION_TIMING));
+                writeTimer(timers, now, MetricExternalName.PGP_DECRYPTION_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.PGP_DECRYPTION_TIMING));
+                writeTimer(timers, now, MetricExternalName.PASSWORD_HASHING_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.PASSWORD_HASHING_TIMER));
+                writeTimer(timers, now, MetricExternalName.CONTEXT_MAC_LOOKUP_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.CONTEXT_MAC_LOOKUP_TIMING));
+
+                writeTimer(timers, now, MetricExternalName.REPORT_PROCESSING_DOT11_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.DOT11_TOTAL_REPORT_PROCESSING_TIMER));
+                writeTimer(timers, now, MetricExternalName.REPORT_PROCESSING_TCP_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.TCP_TOTAL_REPORT_PROCESSING_TIMER));
+                writeTimer(timers, now, MetricExternalName.REPORT_PROCESSING_DNS_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.DNS_TOTAL_REPORT_PROCESSING_TIMER));
+                writeTimer(timers, now, MetricExternalName.REPORT_PROCESSING_SSH_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.SSH_TOTAL_REPORT_PROCESSING_TIMER));
+                writeTimer(timers, now, MetricExternalName.REPORT_PROCESSING_SOCKS_TIMER.database_label,
+                        metrics.getTimers().get(MetricNames.SOCKS_TOTAL_REPORT_PROCESSING_TIMER));
+
+                // Write all report execution timers.
+                for (Map.Entry<String, Timer> timer : metrics.getTimers().entrySet()) {
+                    if (timer.getKey().startsWith(MetricNames.MONITOR_EXECUTION_TIMER_BASE)) {
+                        writeTimer(
+                                timers,
+                                now,
+                                "monitor_execution_" + timer.getKey().split(MetricNames.MONITOR_EXECUTION_TIMER_BASE)[1],
+                                timer.getValue()
+                        );
+                    }
+                }
 
-            writeGauge(MetricExternalName.MEMORY_BYTES_TOTAL.database_label, ni.memoryTotal());
-            writeGauge(MetricExternalName.MEMORY_BYTES_AVAILABLE.database_label, ni.memoryAvailable());
-            writeGauge(MetricExternalName.MEMORY_BYTES_USED.database_label, ni.memoryUsed());
-            writeGauge(MetricExternalName.HEAP_BYTES_TOTAL.database_label, ni.heapTotal());
-            writeGauge(MetricExternalName.HEAP_BYTES_AVAILABLE.database_label, ni.heapAvailable());
-            writeGauge(MetricExternalName.HEAP_BYTES_USED.database_label, ni.heapUsed());
-            writeGauge(MetricExternalName.CPU_SYSTEM_LOAD.database_label, ni.cpuSystemLoad());
-            writeGauge(MetricExternalName.PROCESS_VIRTUAL_SIZE.database_label, ni.processVirtualSize());
-            writeGauge(MetricExternalName.TAP_REPORT_SIZE.database_label, tapReportSize);
-            writeGauge(MetricExternalName.LOG_COUNTS_TRACE.database_label, logCounts.getOrDefault("TRACE", 0L));
-            writeGauge(MetricExternalName.LOG_COUNTS_DEBUG.database_label, logCounts.getOrDefault("DEBUG", 0L));
-            writeGauge(MetricExternalName.LOG_COUNTS_INFO.database_label, logCounts.getOrDefault("INFO", 0L));
-            writeGauge(MetricExternalName.LOG_COUNTS_WARN.database_label, logCounts.getOrDefault("WARN", 0L));
-            writeGauge(MetricExternalName.LOG_COUNTS_ERROR.database_label, logCounts.getOrDefault("ERROR", 0L));
-            writeGauge(MetricExternalName.LOG_COUNTS_FATAL.database_label, logCounts.getOrDefault("FATAL", 0L));
-            writeGauge(MetricExternalName.GEOIP_CACHE_SIZE.database_label, getLocalMetricsGaugeValue(metrics, MetricNames.GEOIP_CACHE_SIZE));
-            writeGauge(MetricExternalName.CONTEXT_MAC_CACHE_SIZE.database_label, getLocalMetricsGaugeValue(metrics, MetricNames.CONTEXT_MAC_CACHE_SIZE));
-
-            writeTimer(MetricExternalName.PGP_ENCRYPTION_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.PGP_ENCRYPTION_TIMING));
-            writeTimer(MetricExternalName.PGP_DECRYPTION_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.PGP_DECRYPTION_TIMING));
-            writeTimer(MetricExternalName.PASSWORD_HASHING_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.PASSWORD_HASHING_TIMER));
-            writeTimer(MetricExternalName.CONTEXT_MAC_LOOKUP_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.CONTEXT_MAC_LOOKUP_TIMING));
-
-            writeTimer(MetricExternalName.REPORT_PROCESSING_DOT11_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.DOT11_TOTAL_REPORT_PROCESSING_TIMER));
-            writeTimer(MetricExternalName.REPORT_PROCESSING_TCP_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.TCP_TOTAL_REPORT_PROCESSING_TIMER));
-            writeTimer(MetricExternalName.REPORT_PROCESSING_DNS_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.DNS_TOTAL_REPORT_PROCESSING_TIMER));
-            writeTimer(MetricExternalName.REPORT_PROCESSING_SSH_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.SSH_TOTAL_REPORT_PROCESSING_TIMER));
-            writeTimer(MetricExternalName.REPORT_PROCESSING_SOCKS_TIMER.database_label,
-                    metrics.getTimers().get(MetricNames.SOCKS_TOTAL_REPORT_PROCESSING_TIMER));
-
-            // Write all report execution timers.
-            for (Map.Entry<String, Timer> timer : metrics.getTimers().entrySet()) {
-                if (timer.getKey().startsWith(MetricNames.MONITOR_EXECUTION_TIMER_BASE)) {
-                    writeTimer(
-                            "monitor_execution_" + timer.getKey().split(MetricNames.MONITOR_EXECUTION_TIMER_BASE)[1],
-                            timer.getValue()
-                    );
+                if (gauges.size() > 0) {
+                    gauges.execute();
                 }
-            }
 
+                if (timers.size() > 0) {
+                    timers.execute();
+                }
+            });
         } catch(Exception e) {
             LOG.error("Could not write node metrics.", e);
         } finally {
@@ -359,13 +384,14 @@ public class NodeManager {
         }
 
         // Retention clean old metrics.
+        DateTime rawCutoff = metricsRollups.rawRetentionCutoff();
         nzyme.getDatabase().useHandle(handle ->
                 handle.createUpdate("DELETE FROM node_metrics_gauges WHERE created_at < :created_at")
-                        .bind("created_at", DateTime.now().minusHours(24))
+                        .bind("created_at", rawCutoff)
                         .execute());
         nzyme.getDatabase().useHandle(handle ->
                 handle.createUpdate("DELETE FROM node_metrics_timers WHERE created_at < :created_at")
-                        .bind("created_at", DateTime.now().minusHours(24))
+                        .bind("created_at", rawCutoff)
                         .execute());
     }
 
@@ -397,68 +423,42 @@ public class NodeManager {
         }
     }
 
-    private void writeGauge(String metricName, double metricValue) {
-        nzyme.getDatabase().withHandle(handle -> handle.createUpdate("INSERT INTO node_metrics_gauges(node_id, " +
-                        "metric_name, metric_value, created_at) VALUES(:node_id, :metric_name, :metric_value, " +
-                        ":created_at)")
-                .bind("node_id", nzyme.getNodeInformation().id())
+    private void writeGauge(PreparedBatch batch, DateTime timestamp, String metricName, double metricValue) {
+        batch.bind("node_id", nzyme.getNodeInformation().id())
                 .bind("metric_name", metricName)
                 .bind("metric_value", metricValue)
-                .bind("created_at", DateTime.now())
-                .execute()
-        );
+                .bind("created_at", timestamp)
+                .add();
     }
 
-    private void writeTimer(String metricName, @Nullable Timer timer) {
+    private void writeTimer(PreparedBatch batch, DateTime timestamp, String metricName, @Nullable Timer timer) {
         if (timer == null) {
             return;
         }
 
         Snapshot s = timer.getSnapshot();
-        writeTimer(
-                metricName,
-                TimeUnit.MICROSECONDS.convert(s.getMax(), TimeUnit.NANOSECONDS),
-                TimeUnit.MICROSECONDS.convert(s.getMin(), TimeUnit.NANOSECONDS),
-                TimeUnit.MICROSECONDS.convert((long) s.getMean(), TimeUnit.NANOSECONDS),
-                TimeUnit.MICROSECONDS.convert((long) s.get99thPercentile(), TimeUnit.NANOSECONDS),
-                TimeUnit.MICROSECONDS.convert((long) s.getStdDev(), TimeUnit.NANOSECONDS),
-                timer.getCount()
-        );
-    }
-
-    private void writeTimer(String metricName, long max, long min, long mean, long p99, long stddev, long counter) {
-        nzyme.getDatabase().withHandle(handle -> handle.createUpdate("INSERT INTO node_metrics_timers(node_id, " +
-                        "metric_name, metric_max, metric_min, metric_mean, metric_p99, metric_stddev, metric_counter, " +
-                        "created_at) VALUES(:node_id, :metric_name, :metric_max, :metric_min, :metric_mean, " +
-                        ":metric_p99, :metric_stddev, :metric_counter, :created_at)")
-                .bind("node_id", nzyme.getNodeInformation().id())
+        batch.bind("node_id", nzyme.getNodeInformation().id())
                 .bind("metric_name", metricName)
-                .bind("metric_max", max)
-                .bind("metric_min", min)
-                .bind("metric_mean", mean)
-                .bind("metric_p99", p99)
-                .bind("metric_stddev", stddev)
-                .bind("metric_counter", counter)
-                .bind("created_at", DateTime.now())
-                .execute()
-        );
+                .bind("metric_max", TimeUnit.MICROSECONDS.convert(s.getMax(), TimeUnit.NANOSECONDS))
+                .bind("metric_min", TimeUnit.MICROSECONDS.convert(s.getMin(), TimeUnit.NANOSECONDS))
+                .bind("metric_mean", TimeUnit.MICROSECONDS.convert((long) s.getMean(), TimeUnit.NANOSECONDS))
+                .bind("metric_p99", TimeUnit.MICROSECONDS.convert((long) s.get99thPercentile(), TimeUnit.NANOSECONDS))
+                .bind("metric_stddev", TimeUnit.MICROSECONDS.convert((long) s.getStdDev(), TimeUnit.NANOSECONDS))
+                .bind("metric_counter", timer.getCount())
+                .bind("created_at", timestamp)
+                .add();
     }
 
     public Optional<Map<DateTime, GaugeHistogramBucket>> findMetricsHistogram(UUID nodeId, String metricName, int hours, BucketSize bucketSize) {
         Map<DateTime, GaugeHistogramBucket> result = Maps.newHashMap();
 
-        List<GaugeHistogramBucket> agg = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT AVG(metric_value) AS average, MAX(metric_value) AS maximum, " +
-                                "MIN(metric_value) AS minimum, SUM(metric_value) AS sum, " +
-                                "date_trunc(:bucket_size, created_at) AS bucket " +
-                                "FROM node_metrics_gauges WHERE node_id = :node_id AND metric_name = :metric_name " +
-                                "AND created_at > :created_at GROUP BY bucket ORDER BY bucket DESC")
-                        .bind("bucket_size", bucketSize.toString().toLowerCase())
-                        .bind("node_id", nodeId)
-                        .bind("metric_name", metricName)
-                        .bind("created_at", DateTime.now().minusHours(hours))
-                        .mapTo(GaugeHistogramBucket.class)
-                        .list()
+        List<GaugeHistogramBucket> agg = metricsRollups.findHistogram(
+                MetricsRollupSource.NODE_GAUGES,
+                nodeId,
+                metricName,
+                hours,
+                bucketSize,
+                GaugeHistogramBucket.class
         );
 
         if (agg == null || agg.isEmpty()) {
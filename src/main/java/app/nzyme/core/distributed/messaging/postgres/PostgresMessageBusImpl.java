@@ -2,7 +2,10 @@ package app.nzyme.core.distributed.messaging.postgres;
 
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.distributed.Node;
+import app.nzyme.core.util.MetricNames;
 import app.nzyme.plugin.distributed.messaging.*;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.beust.jcommander.internal.Lists;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
@@ -19,8 +22,18 @@ import tools.jackson.databind.json.JsonMapper;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PostgresMessageBusImpl implements MessageBus {
 
@@ -29,8 +42,24 @@ public class PostgresMessageBusImpl implements MessageBus {
     private final NzymeNode nzyme;
     private final ObjectMapper om;
 
+    // Messages are pushed via LISTEN/NOTIFY. Polling only catches anything a lost notification did not deliver.
+    private static final int FALLBACK_POLL_INTERVAL_SECONDS = 30;
+
     private final Map<MessageType, List<MessageHandler>> messageHandlers;
 
+    private final Timer deliveryLatencyTimer;
+    private final Meter pushWakeupsMeter;
+
+    private final ScheduledExecutorService poller;
+    private final Map<MessageType, ExecutorService> dispatchers;
+    private final ScheduledExecutorService retentionCleaner;
+    private final AtomicBoolean wakeupPending;
+    private final Queue<MessageResult> pendingResults;
+    private final AtomicBoolean resultsFlushPending;
+
+    private PostgresMessageBusListener listener;
+    private Thread listenerThread;
+
     private boolean initialized;
 
     public PostgresMessageBusImpl(NzymeNode nzyme) {
@@ -39,6 +68,30 @@ public class PostgresMessageBusImpl implements MessageBus {
 
         this.messageHandlers = Maps.newConcurrentMap();
 
+        this.deliveryLatencyTimer = nzyme.getMetrics().timer(MetricNames.MESSAGE_BUS_DELIVERY_LATENCY_TIMER);
+        this.pushWakeupsMeter = nzyme.getMetrics().meter(MetricNames.MESSAGE_BUS_PUSH_WAKEUPS);
+
+        // Single poller thread. Scheduled and pushed polls never run concurrently.
+        this.poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-bus-poller-%d")
+                .build()
+        );
+        this.wakeupPending = new AtomicBoolean(false);
+
+        // Results of handled messages are written in batches by the poller thread.
+        this.pendingResults = new ConcurrentLinkedQueue<>();
+        this.resultsFlushPending = new AtomicBoolean(false);
+
+        // One dispatcher thread per message type. Created on first message of a type.
+        this.dispatchers = Maps.newConcurrentMap();
+
+        this.retentionCleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-bus-retention-cleaner-%d")
+                .build()
+        );
+
         this.om = JsonMapper.builder()
                 .disable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES)
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
@@ -46,6 +99,14 @@ public class PostgresMessageBusImpl implements MessageBus {
     }
 
     public void initialize(int pollInterval, TimeUnit pollIntervalUnit) {
+        initialize(pollInterval, pollIntervalUnit, false);
+    }
+
+    /**
+     * @param pollInterval Interval of regular polling. Acts as a fallback if push delivery is enabled.
+     * @param push Wake up the poller immediately when a message for this node is sent, using LISTEN/NOTIFY.
+     */
+    public void initialize(int pollInterval, TimeUnit pollIntervalUnit, boolean push) {
         // Find existing still ACK'd messages of this node and mark as failed. They were stuck/running at last shutdown.
         nzyme.getDatabase().withHandle(handle ->
                 handle.createUpdate("UPDATE message_bus_messages SET status = :failed " +
@@ -56,17 +117,20 @@ public class PostgresMessageBusImpl implements MessageBus {
                         .execute()
         );
 
-        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("psql-bus-poller-%d")
-                .build()
-        ).scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, pollIntervalUnit);
+        poller.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, pollIntervalUnit);
 
-        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("psql-bus-retention-cleaner-%d")
-                .build()
-        ).scheduleAtFixedRate(() -> retentionClean(DateTime.now().minusDays(7)),
+        if (push) {
+            this.listener = new PostgresMessageBusListener(
+                    "jdbc:" + nzyme.getConfiguration().databasePath(),
+                    nzyme.getNodeManager().getLocalNodeId(),
+                    this::wakeup
+            );
+            this.listenerThread = new Thread(listener, "psql-bus-listener");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+
+        retentionCleaner.scheduleAtFixedRate(() -> retentionClean(DateTime.now().minusDays(7)),
                 1, 1, TimeUnit.HOURS);
 
         this.initialized = true;
@@ -74,7 +138,108 @@ public class PostgresMessageBusImpl implements MessageBus {
 
     @Override
     public void initialize() {
-        initialize(5, TimeUnit.SECONDS);
+        initialize(FALLBACK_POLL_INTERVAL_SECONDS, TimeUnit.SECONDS, true);
+    }
+
+    /**
+     * Stops polling and waits briefly for running handlers. Messages still ACK'd at this point are marked as failed
+     * on the next start of this node.
+     */
+    public void shutdown() {
+        if (listener != null) {
+            listener.close();
+            listenerThread.interrupt();
+
+            try {
+                listenerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        poller.shutdownNow();
+        retentionCleaner.shutdownNow();
+
+        for (ExecutorService dispatcher : dispatchers.values()) {
+            dispatcher.shutdown();
+        }
+
+        try {
+            for (ExecutorService dispatcher : dispatchers.values()) {
+                if (!dispatcher.awaitTermination(10, TimeUnit.SECONDS)) {
+                    LOG.warn("Message bus handlers did not finish in time.");
+                    dispatcher.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            dispatchers.values().forEach(ExecutorService::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+
+        // Write results of handlers that finished after the poller stopped.
+        flushResults();
+    }
+
+    /**
+     * Waits until all messages dispatched by previous polls have been handled and writes the results of all
+     * messages handled so far.
+     *
+     * @return false if the timeout elapsed before that.
+     */
+    public boolean awaitDispatched(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        // Dispatchers are single-threaded. A marker completes after everything queued before it.
+        List<Future<?>> markers = Lists.newArrayList();
+        for (ExecutorService dispatcher : dispatchers.values()) {
+            markers.add(dispatcher.submit(() -> {}));
+        }
+
+        try {
+            for (Future<?> marker : markers) {
+                try {
+                    marker.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    return false;
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            return true;
+        } finally {
+            flushResults();
+        }
+    }
+
+    /**
+     * Schedules an immediate poll. Wakeups that arrive while a poll is already pending are coalesced into it.
+     */
+    private void wakeup() {
+        pushWakeupsMeter.mark();
+        executeCoalesced(wakeupPending, this::poll);
+    }
+
+    /**
+     * Runs the task on the poller thread unless the same task is already pending. Tasks submitted after shutdown
+     * are dropped.
+     */
+    private void executeCoalesced(AtomicBoolean pending, Runnable task) {
+        if (poller.isShutdown()) {
+            return;
+        }
+
+        if (pending.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    pending.set(false);
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down concurrently.
+                pending.set(false);
+            }
+        }
     }
 
     public void poll() {
@@ -92,11 +257,22 @@ public class PostgresMessageBusImpl implements MessageBus {
 
             LOG.debug("Polled <{}> messages from message bus.", messages.size());
 
+            if (messages.isEmpty()) {
+                return;
+            }
+
+            // Acknowledge all messages of this poll.
+            ackMessages(messages);
+
+            /*
+             * Hand messages to the dispatcher of their type and do not wait for handlers. Messages of the same type are
+             * handled in order and a slow handler never holds up polling or messages of other types.
+             */
             for (PostgresMessageEntry message : messages) {
                 LOG.debug("Polled message from bus: [{}]", message);
 
-                // Acknowledge message.
-                ackMessage(message.id());
+                long latencyMs = DateTime.now().getMillis() - message.createdAt().getMillis();
+                deliveryLatencyTimer.update(Math.max(latencyMs, 0), TimeUnit.MILLISECONDS);
 
                 MessageType type;
                 try {
@@ -106,47 +282,122 @@ public class PostgresMessageBusImpl implements MessageBus {
                     continue;
                 }
 
-                // Send to registered handlers.
-                if (messageHandlers.containsKey(type)) {
-                    for (MessageHandler handler : messageHandlers.get(type)) {
-                        Map<String, Object> serializedParameters = this.om.readValue(
-                                message.parameters(),
-                                new TypeReference<HashMap<String,Object>>() {}
-                        );
-
-                        Stopwatch stopwatch = Stopwatch.createStarted();
-                        MessageProcessingResult opResult = handler.handle(ReceivedMessage.create(
-                                message.receiver(),
-                                message.sender(),
-                                type,
-                                serializedParameters,
-                                message.parameters(),
-                                message.cycleLimiter() != null
-                        ));
-                        long tookMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
-                        if (tookMs == 0) {
-                            tookMs = 1;
-                        }
-
-                        if (opResult.equals(MessageProcessingResult.FAILURE)) {
-                            LOG.error("Could not handle cluster message <#{}> of type [{}]. Marking as failure.",
-                                    message.id(), message.type());
-                        }
-
-                        setMessageStatus(message.id(),
-                                opResult == MessageProcessingResult.SUCCESS
-                                        ? MessageStatus.PROCESSED_SUCCESS : MessageStatus.PROCESSED_FAILURE
-                        );
-
-                        setMessagePostProcessMetadata(message.id(), (int) tookMs);
-                    }
+                if (!messageHandlers.containsKey(type)) {
+                    continue;
                 }
+
+                dispatcherOf(type).execute(() -> handleMessage(type, message));
             }
         } catch(Exception e) {
             LOG.error("Could not poll message bus.", e);
         }
     }
 
+    private ExecutorService dispatcherOf(MessageType type) {
+        return dispatchers.computeIfAbsent(type, t -> Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-bus-dispatcher-" + t.name().toLowerCase() + "-%d")
+                .build()
+        ));
+    }
+
+    private void handleMessage(MessageType type, PostgresMessageEntry message) {
+        boolean success = true;
+        long tookMs = 0;
+
+        try {
+            Map<String, Object> serializedParameters = this.om.readValue(
+                    message.parameters(),
+                    new TypeReference<HashMap<String,Object>>() {}
+            );
+
+            ReceivedMessage receivedMessage = ReceivedMessage.create(
+                    message.receiver(),
+                    message.sender(),
+                    type,
+                    serializedParameters,
+                    message.parameters(),
+                    message.cycleLimiter() != null
+            );
+
+            for (MessageHandler handler : messageHandlers.get(type)) {
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                MessageProcessingResult opResult;
+                try {
+                    opResult = handler.handle(receivedMessage);
+                } catch (Exception e) {
+                    LOG.error("Message bus handler [{}] failed on message <#{}>.", handler.getName(), message.id(), e);
+                    opResult = MessageProcessingResult.FAILURE;
+                }
+
+                long handlerTookNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+                nzyme.getMetrics().timer(MetricNames.MESSAGE_BUS_HANDLER_TIMER_BASE + handler.getName())
+                        .update(handlerTookNanos, TimeUnit.NANOSECONDS);
+                tookMs += TimeUnit.NANOSECONDS.toMillis(handlerTookNanos);
+
+                if (opResult.equals(MessageProcessingResult.FAILURE)) {
+                    LOG.error("Could not handle cluster message <#{}> of type [{}]. Marking as failure.",
+                            message.id(), message.type());
+                    success = false;
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Could not handle cluster message <#{}> of type [{}]. Marking as failure.",
+                    message.id(), message.type(), e);
+            success = false;
+        }
+
+        /*
+         * Results are not written one by one. Messages handled until the poller thread gets to the flush are written
+         * in a single statement. That is usually all messages of a poll.
+         */
+        pendingResults.add(new MessageResult(
+                message.id(),
+                success ? MessageStatus.PROCESSED_SUCCESS : MessageStatus.PROCESSED_FAILURE,
+                (int) Math.max(tookMs, 1)
+        ));
+        executeCoalesced(resultsFlushPending, this::flushResults);
+    }
+
+    /*
+     * Synchronized, so that callers waiting for results do not return while a concurrent flush is still writing.
+     */
+    private synchronized void flushResults() {
+        List<MessageResult> results = Lists.newArrayList();
+        MessageResult result;
+        while ((result = pendingResults.poll()) != null) {
+            results.add(result);
+        }
+
+        if (results.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = Lists.newArrayList();
+        List<String> statuses = Lists.newArrayList();
+        List<Integer> took = Lists.newArrayList();
+        for (MessageResult r : results) {
+            ids.add(r.id);
+            statuses.add(r.status.name());
+            took.add(r.tookMs);
+        }
+
+        try {
+            nzyme.getDatabase().useHandle(handle ->
+                    handle.createUpdate("UPDATE message_bus_messages SET status = r.status, " +
+                                    "processing_time_ms = r.took_ms " +
+                                    "FROM UNNEST(:ids, :statuses, :took) AS r(id, status, took_ms) " +
+                                    "WHERE message_bus_messages.id = r.id")
+                            .bindArray("ids", Long.class, ids)
+                            .bindArray("statuses", String.class, statuses)
+                            .bindArray("took", Integer.class, took)
+                            .execute()
+            );
+        } catch (Exception e) {
+            LOG.error("Could not write results of <{}> cluster messages.", results.size(), e);
+        }
+    }
+
     @Override
     public void send(Message message) {
         if (!initialized) {
@@ -164,19 +415,23 @@ public class PostgresMessageBusImpl implements MessageBus {
 
         long currentCycleOfReceiver = nzyme.getNodeManager().getCycleOfNode(message.receiver());
 
-        nzyme.getDatabase().useHandle(handle ->
-                handle.createUpdate("INSERT INTO message_bus_messages(sender_node_id, receiver_node_id, type, " +
-                                "parameters, status, cycle_limiter, created_at) VALUES(:sender_node_id, " +
-                                ":receiver_node_id, :type, :parameters, :status, :cycle_limiter, :created_at)")
-                        .bind("sender_node_id", nzyme.getNodeInformation().id())
-                        .bind("receiver_node_id", message.receiver())
-                        .bind("type", message.type())
-                        .bind("parameters", parameters)
-                        .bind("status", MessageStatus.NEW)
-                        .bind("cycle_limiter", currentCycleOfReceiver)
-                        .bind("created_at", DateTime.now())
-                        .execute()
-        );
+        nzyme.getDatabase().useHandle(handle -> {
+            handle.createUpdate("INSERT INTO message_bus_messages(sender_node_id, receiver_node_id, type, " +
+                            "parameters, status, cycle_limiter, created_at) VALUES(:sender_node_id, " +
+                            ":receiver_node_id, :type, :parameters, :status, :cycle_limiter, :created_at)")
+                    .bind("sender_node_id", nzyme.getNodeInformation().id())
+                    .bind("receiver_node_id", message.receiver())
+                    .bind("type", message.type())
+                    .bind("parameters", parameters)
+                    .bind("status", MessageStatus.NEW)
+                    .bind("cycle_limiter", currentCycleOfReceiver)
+                    .bind("created_at", DateTime.now())
+                    .execute();
+
+            // Wake up receiver. Polling still picks the message up if the receiver is not listening.
+            handle.execute("SELECT pg_notify(?, ?)",
+                    PostgresMessageBusListener.CHANNEL, message.receiver().toString());
+        });
     }
 
     @Override
@@ -203,11 +458,8 @@ public class PostgresMessageBusImpl implements MessageBus {
     public void onMessageReceived(MessageType type, MessageHandler messageHandler) {
         LOG.debug("Registering message bus handler [{}] for type [{}]", messageHandler.getName(), type);
 
-        if (!messageHandlers.containsKey(type)) {
-            messageHandlers.put(type, Lists.newArrayList());
-        }
-
-        messageHandlers.get(type).add(messageHandler);
+        // Handlers can be registered while messages are dispatched.
+        messageHandlers.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(messageHandler);
     }
 
     @Override
@@ -295,28 +547,23 @@ public class PostgresMessageBusImpl implements MessageBus {
         );
     }
 
-    private void ackMessage(long messageId) {
+    private void ackMessages(List<PostgresMessageEntry> messages) {
+        List<Long> ids = Lists.newArrayList();
+        for (PostgresMessageEntry message : messages) {
+            ids.add(message.id());
+        }
+
         nzyme.getDatabase().useHandle(handle ->
                 handle.createUpdate("UPDATE message_bus_messages SET status = :status, " +
-                                "acknowledged_at = :acknowledged_at, acknowledged_by = :node_id WHERE id = :id")
+                                "acknowledged_at = :acknowledged_at, acknowledged_by = :node_id WHERE id = ANY(:ids)")
                         .bind("status", MessageStatus.ACK.name())
                         .bind("node_id", nzyme.getNodeInformation().id())
-                        .bind("id", messageId)
+                        .bindArray("ids", Long.class, ids)
                         .bind("acknowledged_at", DateTime.now())
                         .execute()
         );
     }
 
-    private void setMessagePostProcessMetadata(long id, int tookMs) {
-        nzyme.getDatabase().useHandle(handle ->
-                handle.createUpdate("UPDATE message_bus_messages SET processing_time_ms = :took_ms " +
-                                "WHERE id = :id")
-                        .bind("took_ms", tookMs)
-                        .bind("id", id)
-                        .execute()
-        );
-    }
-
     private List<StoredMessage> entriesToStoredMessages(List<PostgresMessageEntry> failures) {
         List<StoredMessage> result = Lists.newArrayList();
 
@@ -348,4 +595,18 @@ public class PostgresMessageBusImpl implements MessageBus {
         return result;
     }
 
+    private static final class MessageResult {
+
+        private final long id;
+        private final MessageStatus status;
+        private final int tookMs;
+
+        MessageResult(long id, MessageStatus status, int tookMs) {
+            this.id = id;
+            this.status = status;
+            this.tookMs = tookMs;
+        }
+
+    }
+
 }
@@ -0,0 +1,123 @@
+package app.nzyme.core.distributed.messaging.postgres;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Holds a dedicated PostgreSQL connection that LISTENs on the message bus channel and wakes up the local message
+ * bus poller as soon as a message for this node was sent. Reconnects if the connection breaks. Notifications can be
+ * lost while disconnected, so the poller is also woken up after every (re-)connect.
+ */
+public class PostgresMessageBusListener implements Runnable {
+
+    private static final Logger LOG = LogManager.getLogger(PostgresMessageBusListener.class);
+
+    public static final String CHANNEL = "message_bus";
+
+    private static final int NOTIFICATION_TIMEOUT_MS = 10_000;
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    private final String jdbcUrl;
+    private final String localNodeId;
+    private final Runnable onMessage;
+
+    private volatile boolean running;
+    private volatile Connection connection;
+
+    public PostgresMessageBusListener(String jdbcUrl, UUID localNodeId, Runnable onMessage) {
+        this.jdbcUrl = jdbcUrl;
+        this.localNodeId = localNodeId.toString();
+        this.onMessage = onMessage;
+        this.running = true;
+    }
+
+    @Override
+    public void run() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+                this.connection = connection;
+                if (!running) {
+                    // Closed while connecting.
+                    return;
+                }
+
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+
+                LOG.debug("Listening for message bus notifications.");
+
+                // Catch up on anything we missed while not listening.
+                onMessage.run();
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running && !Thread.currentThread().isInterrupted()) {
+                    PGNotification[] notifications = pgConnection.getNotifications(NOTIFICATION_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+
+                    for (PGNotification notification : notifications) {
+                        if (localNodeId.equals(notification.getParameter())) {
+                            onMessage.run();
+                            break;
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    // Our connection was closed to stop the listener.
+                    return;
+                }
+
+                LOG.warn("Message bus listener connection failed. Reconnecting in <{}ms>. Messages are " +
+                        "delivered by fallback polling in the meantime.", RECONNECT_DELAY_MS, e);
+
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+
+                LOG.error("Unexpected error in message bus listener.", e);
+
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                this.connection = null;
+            }
+        }
+    }
+
+    /**
+     * Stops listening. Closing the connection interrupts a pending wait for notifications.
+     */
+    public void close() {
+        this.running = false;
+
+        Connection c = this.connection;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                LOG.debug("Could not close message bus listener connection.", e);
+            }
+        }
+    }
+
+}
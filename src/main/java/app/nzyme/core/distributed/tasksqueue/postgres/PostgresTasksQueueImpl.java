@@ -1,15 +1,18 @@
 package app.nzyme.core.distributed.tasksqueue.postgres;
 
 import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
 import app.nzyme.plugin.distributed.tasksqueue.*;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.ObjectMapper;
+import com.codahale.metrics.Gauge;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,18 +22,33 @@ import tools.jackson.databind.json.JsonMapper;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 public class PostgresTasksQueueImpl implements TasksQueue {
 
     private static final Logger LOG = LogManager.getLogger(PostgresTasksQueueImpl.class);
 
+    // Maximum number of tasks this node processes at the same time. Other tasks are left for other nodes.
+    private static final int MAX_CONCURRENT_TASKS = 4;
+
+    // ACK'd tasks without lease renewal for this long are considered abandoned and returned to the queue.
+    private static final int LEASE_TIMEOUT_MINUTES = 5;
+    private static final int MAX_LEASE_EXPIRATION_RETRIES = 3;
+
     public NzymeNode nzyme;
     private final ObjectMapper om;
 
     private final Map<TaskType, List<TaskHandler>> taskHandlers;
 
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService poller;
+    private final ScheduledExecutorService leases;
+    private final ScheduledExecutorService retentionCleaner;
+    private final Set<Long> inFlight;
+    private final Map<TaskType, Long> queueDepths;
+
     private boolean initialized;
 
     public PostgresTasksQueueImpl(NzymeNode nzyme) {
@@ -38,6 +56,37 @@ public class PostgresTasksQueueImpl implements TasksQueue {
         this.initialized = false;
 
         this.taskHandlers = Maps.newConcurrentMap();
+        this.inFlight = Sets.newConcurrentHashSet();
+        this.queueDepths = Maps.newConcurrentMap();
+
+        this.workers = new ThreadPoolExecutor(
+                MAX_CONCURRENT_TASKS,
+                MAX_CONCURRENT_TASKS,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("psql-tasks-worker-%d")
+                        .build()
+        );
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-tasks-poller-%d")
+                .build()
+        );
+
+        this.leases = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-tasks-leases-%d")
+                .build()
+        );
+
+        this.retentionCleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("psql-tasks-retention-cleaner-%d")
+                .build()
+        );
 
         this.om = JsonMapper.builder()
                 .disable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES)
@@ -61,22 +110,48 @@ public class PostgresTasksQueueImpl implements TasksQueue {
                         .execute()
         );
 
-        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("psql-tasks-poller-%d")
-                .build()
-        ).scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, pollIntervalUnit);
+        for (TaskType type : TaskType.values()) {
+            nzyme.getMetrics().register(MetricNames.TASKS_QUEUE_DEPTH_BASE + type.name(), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return queueDepths.getOrDefault(type, 0L);
+                }
+            });
+        }
 
-        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("psql-tasks-retention-cleaner-%d")
-                .build()
-        ).scheduleAtFixedRate(() -> retentionClean(DateTime.now().minusDays(7)),
+        poller.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, pollIntervalUnit);
+
+        leases.scheduleWithFixedDelay(this::renewLeases, 1, 1, TimeUnit.MINUTES);
+        leases.scheduleWithFixedDelay(this::expireLeases, 1, 1, TimeUnit.MINUTES);
+        leases.scheduleWithFixedDelay(this::updateQueueDepths, 0, 15, TimeUnit.SECONDS);
+
+        retentionCleaner.scheduleAtFixedRate(() -> retentionClean(DateTime.now().minusDays(7)),
                 1, 1, TimeUnit.HOURS);
 
         this.initialized = true;
     }
 
+    /**
+     * Stops polling and waits briefly for running tasks. Tasks still ACK'd at this point are marked as failed on the
+     * next start of this node.
+     */
+    public void shutdown() {
+        poller.shutdownNow();
+        leases.shutdownNow();
+        retentionCleaner.shutdownNow();
+        workers.shutdown();
+
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("Tasks queue workers did not finish in time.");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void publish(Task task) {
         if (!initialized) {
@@ -112,15 +187,33 @@ public class PostgresTasksQueueImpl implements TasksQueue {
     }
 
     @Override
-    public void poll() {
+    public synchronized void poll() {
         try {
+            /*
+             * Only claim as many tasks as this node has free workers, and only of types it has handlers for. Rows
+             * locked by another polling node are skipped, so concurrent polls spread the backlog across the cluster
+             * instead of the first node taking all of it.
+             */
+            int capacity = MAX_CONCURRENT_TASKS - inFlight.size();
+            if (capacity <= 0 || taskHandlers.isEmpty()) {
+                LOG.debug("No free task workers or no task handlers registered. Not polling.");
+                return;
+            }
+
+            List<String> types = taskHandlers.keySet().stream().map(TaskType::name).toList();
+
             List<PostgresTasksQueueEntry> tasks = nzyme.getDatabase().withHandle(handle ->
                     handle.createQuery("UPDATE tasks_queue SET status = 'ACK', previous_status = status, " +
                                     "last_acked_at = :timestamp, acked_by = :own_node_id " +
-                                    "WHERE status IN ('NEW', 'NEW_RETRY') AND (allow_process_self = true " +
-                                    "OR (allow_process_self = false AND sender_node_id != :own_node_id)) RETURNING *")
+                                    "WHERE id IN (SELECT id FROM tasks_queue " +
+                                    "WHERE status IN ('NEW', 'NEW_RETRY') AND type IN (<types>) " +
+                                    "AND (allow_process_self = true " +
+                                    "OR (allow_process_self = false AND sender_node_id != :own_node_id)) " +
+                                    "ORDER BY created_at ASC LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *")
                             .bind("own_node_id", nzyme.getNodeInformation().id())
                             .bind("timestamp", DateTime.now())
+                            .bindList("types", types)
+                            .bind("limit", capacity)
                             .mapTo(PostgresTasksQueueEntry.class)
                             .list()
             );
@@ -133,70 +226,147 @@ public class PostgresTasksQueueImpl implements TasksQueue {
             for (PostgresTasksQueueEntry task : tasks) {
                 LOG.debug("Polled task from bus: [{}]", task);
 
-                TaskType type;
-                try {
-                    type = TaskType.valueOf(task.type());
-                } catch (IllegalArgumentException e) {
-                    LOG.warn("Unsupported task type [{}]. Skipping.", task.type());
-                    continue;
-                }
+                inFlight.add(task.id());
+                workers.execute(() -> {
+                    try {
+                        process(task);
+                    } catch (Exception e) {
+                        LOG.error("Could not process task <#{}> of type [{}].", task.id(), task.type(), e);
+                    } finally {
+                        inFlight.remove(task.id());
+                    }
+                });
+            }
+        } catch(Exception e) {
+            LOG.error("Could not poll tasks queue.", e);
+        }
+    }
 
-                TaskStatus previousStatus;
-                try {
-                    previousStatus = TaskStatus.valueOf(task.previousStatus());
-                } catch (IllegalArgumentException e) {
-                    LOG.warn("Unsupported task status [{}]. Skipping.", task.previousStatus());
-                    continue;
-                }
+    private void process(PostgresTasksQueueEntry task) {
+        TaskType type;
+        try {
+            type = TaskType.valueOf(task.type());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unsupported task type [{}]. Skipping.", task.type());
+            return;
+        }
 
-                DateTime timestamp = DateTime.now();
+        TaskStatus previousStatus;
+        try {
+            previousStatus = TaskStatus.valueOf(task.previousStatus());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unsupported task status [{}]. Skipping.", task.previousStatus());
+            return;
+        }
 
-                // Send to registered handlers.
-                if (taskHandlers.containsKey(type)) {
-                    for (TaskHandler handler : taskHandlers.get(type)) {
-                        if (previousStatus.equals(TaskStatus.NEW_RETRY)) {
-                            incrementRetryCount(task.id());
-                        }
+        DateTime timestamp = DateTime.now();
 
-                        Map<String, Object> serializedParameters = this.om.readValue(
-                                task.parameters(),
-                                new TypeReference<HashMap<String, Object>>() {
-                                }
-                        );
-
-                        Stopwatch stopwatch = Stopwatch.createStarted();
-                        TaskProcessingResult opResult = handler.handle(ReceivedTask.create(
-                                type,
-                                task.senderNodeId(),
-                                task.allowProcessSelf(),
-                                serializedParameters,
-                                task.parameters(),
-                                task.allowRetry()
-                        ));
-                        long tookMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
-                        if (tookMs == 0) {
-                            tookMs = 1;
-                        }
+        if (previousStatus.equals(TaskStatus.NEW)) {
+            nzyme.getMetrics().timer(MetricNames.TASKS_QUEUE_WAIT_TIMER_BASE + type.name()).update(
+                    Math.max(0, timestamp.getMillis() - task.createdAt().getMillis()), TimeUnit.MILLISECONDS
+            );
+        }
+
+        // Send to registered handlers.
+        if (taskHandlers.containsKey(type)) {
+            for (TaskHandler handler : taskHandlers.get(type)) {
+                if (previousStatus.equals(TaskStatus.NEW_RETRY)) {
+                    incrementRetryCount(task.id());
+                }
 
-                        if (opResult.equals(TaskProcessingResult.FAILURE)) {
-                            LOG.error("Could not execute cluster task <#{}> of type [{}]. Marking as failure.",
-                                    task.id(), task.type());
+                Map<String, Object> serializedParameters = this.om.readValue(
+                        task.parameters(),
+                        new TypeReference<HashMap<String, Object>>() {
                         }
+                );
 
-                        setTaskStatus(task.id(),
-                                opResult == TaskProcessingResult.SUCCESS
-                                        ? TaskStatus.PROCESSED_SUCCESS : TaskStatus.PROCESSED_FAILURE
-                        );
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                TaskProcessingResult opResult = handler.handle(ReceivedTask.create(
+                        type,
+                        task.senderNodeId(),
+                        task.allowProcessSelf(),
+                        serializedParameters,
+                        task.parameters(),
+                        task.allowRetry()
+                ));
+                long tookMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+                if (tookMs == 0) {
+                    tookMs = 1;
+                }
 
-                        if (previousStatus.equals(TaskStatus.NEW)) {
-                            setTaskFirstProcessedAt(task.id(), timestamp);
-                        }
-                        setTaskPostProcessMetadata(task.id(), timestamp, (int) tookMs);
-                    }
+                if (opResult.equals(TaskProcessingResult.FAILURE)) {
+                    LOG.error("Could not execute cluster task <#{}> of type [{}]. Marking as failure.",
+                            task.id(), task.type());
+                }
+
+                setTaskStatus(task.id(),
+                        opResult == TaskProcessingResult.SUCCESS
+                                ? TaskStatus.PROCESSED_SUCCESS : TaskStatus.PROCESSED_FAILURE
+                );
+
+                if (previousStatus.equals(TaskStatus.NEW)) {
+                    setTaskFirstProcessedAt(task.id(), timestamp);
                 }
+                setTaskPostProcessMetadata(task.id(), timestamp, (int) tookMs);
             }
-        } catch(Exception e) {
-            LOG.error("Could not poll tasks queue.", e);
+        }
+    }
+
+    private void renewLeases() {
+        try {
+            if (inFlight.isEmpty()) {
+                return;
+            }
+
+            nzyme.getDatabase().useHandle(handle ->
+                    handle.createUpdate("UPDATE tasks_queue SET last_acked_at = :timestamp " +
+                                    "WHERE id = ANY(:ids) AND status = 'ACK' AND acked_by = :own_node_id")
+                            .bind("timestamp", DateTime.now())
+                            .bindArray("ids", Long.class, List.copyOf(inFlight))
+                            .bind("own_node_id", nzyme.getNodeInformation().id())
+                            .execute()
+            );
+        } catch (Exception e) {
+            LOG.error("Could not renew task leases.", e);
+        }
+    }
+
+    private void expireLeases() {
+        try {
+            // Return tasks whose processing node stopped renewing the lease. Retry limit stops poison tasks.
+            int expired = nzyme.getDatabase().withHandle(handle ->
+                    handle.createUpdate("UPDATE tasks_queue SET status = CASE " +
+                                    "WHEN allow_retry = true AND retries < :max_retries THEN 'NEW_RETRY' " +
+                                    "ELSE 'PROCESSED_FAILURE' END " +
+                                    "WHERE status = 'ACK' AND last_acked_at < :cutoff")
+                            .bind("max_retries", MAX_LEASE_EXPIRATION_RETRIES)
+                            .bind("cutoff", DateTime.now().minusMinutes(LEASE_TIMEOUT_MINUTES))
+                            .execute()
+            );
+
+            if (expired > 0) {
+                LOG.warn("Returned [{}] tasks with expired leases to tasks queue.", expired);
+                nzyme.getMetrics().meter(MetricNames.TASKS_QUEUE_LEASE_EXPIRATIONS).mark(expired);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not expire task leases.", e);
+        }
+    }
+
+    private void updateQueueDepths() {
+        try {
+            Map<String, Long> depths = nzyme.getDatabase().withHandle(handle ->
+                    handle.createQuery("SELECT type, COUNT(*) AS count FROM tasks_queue " +
+                                    "WHERE status IN ('NEW', 'NEW_RETRY') GROUP BY type")
+                            .map((rs, ctx) -> Maps.immutableEntry(rs.getString("type"), rs.getLong("count")))
+                            .list()
+            ).stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+            for (TaskType type : TaskType.values()) {
+                queueDepths.put(type, depths.getOrDefault(type.name(), 0L));
+            }
+        } catch (Exception e) {
+            LOG.error("Could not update tasks queue depths.", e);
         }
     }
 
@@ -301,11 +471,7 @@ public class PostgresTasksQueueImpl implements TasksQueue {
     public void onMessageReceived(TaskType type, TaskHandler taskHandler) {
         LOG.debug("Registering task queue handler [{}] for type [{}]", taskHandler.getName(), type);
 
-        if (!taskHandlers.containsKey(type)) {
-            taskHandlers.put(type, Lists.newArrayList());
-        }
-
-        taskHandlers.get(type).add(taskHandler);
+        taskHandlers.computeIfAbsent(type, t -> Lists.newCopyOnWriteArrayList()).add(taskHandler);
     }
 
     public void retentionClean(DateTime cutoff) {
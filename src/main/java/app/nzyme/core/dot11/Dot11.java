@@ -17,6 +17,7 @@ import app.nzyme.core.rest.responses.dot11.Dot11MacAddressContextResponse;
 import app.nzyme.core.rest.responses.dot11.Dot11MacAddressResponse;
 import app.nzyme.core.rest.responses.dot11.clients.ConnectedBSSID;
 import app.nzyme.core.shared.db.TapBasedSignalStrengthResult;
+import app.nzyme.core.shared.db.TapBasedSignalStrengthResultMapper;
 import app.nzyme.core.util.Bucketing;
 import app.nzyme.core.util.TimeRange;
 import app.nzyme.core.util.TimeRangeFactory;
@@ -24,6 +25,8 @@ import app.nzyme.core.util.Tools;
 import app.nzyme.core.util.filters.FilterSql;
 import app.nzyme.core.util.filters.FilterSqlFragment;
 import app.nzyme.core.util.filters.Filters;
+import app.nzyme.plugin.distributed.messaging.ClusterMessage;
+import app.nzyme.plugin.distributed.messaging.MessageType;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
@@ -41,8 +44,11 @@ import org.joda.time.DateTime;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
+import static app.nzyme.core.timelines.tasks.Dot11SSIDTimelineCalculationTaskHandler.buildSSIDKey;
+
 public class Dot11 {
 
     /*
@@ -164,10 +170,51 @@ public class Dot11 {
                 }
             });
 
+    /*
+     * Monitored probe request SSIDs are checked on every client report. Invalidated when monitored probe requests
+     * change on any node. The expiry only catches a missed invalidation message.
+     */
+    private final LoadingCache<Dot11TenantCacheKey, Set<String>> monitoredProbeRequestSSIDs = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build(new CacheLoader<>() {
+                @Override
+                public Set<String> load(Dot11TenantCacheKey key) {
+                    Set<String> ssids = new HashSet<>();
+                    for (MonitoredProbeRequestEntry entry : findAllMonitoredProbeRequests(
+                            key.organizationId(), key.tenantId(), Integer.MAX_VALUE, 0)) {
+                        ssids.add(entry.ssid());
+                    }
+
+                    return Collections.unmodifiableSet(ssids);
+                }
+            });
+
+    // Bumped on every change of monitored networks or custom bandits. Report processing rebuilds snapshots on change.
+    private final AtomicLong monitoringConfigurationVersion = new AtomicLong(0);
+
     public Dot11(NzymeNode nzyme) {
         this.nzyme = nzyme;
     }
 
+    public long getMonitoringConfigurationVersion() {
+        return monitoringConfigurationVersion.get();
+    }
+
+    public void invalidateMonitoringConfiguration() {
+        monitoringConfigurationVersion.incrementAndGet();
+    }
+
+    private void monitoringConfigurationChanged() {
+        invalidateMonitoringConfiguration();
+
+        nzyme.getMessageBus().sendToAllOnlineNodes(ClusterMessage.create(
+                MessageType.INVALIDATE_CACHE,
+                Map.of("cache_type", "dot11_monitoring"),
+                false
+        ));
+    }
+
     public Dot11MacAddressMetadata getMacAddressMetadata(String macAddress, List<UUID> taps) {
         try {
             return macAddressMetadata.get(Dot11MacAddressLookupCompositeKey.create(macAddress, taps));
@@ -204,7 +251,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(ssid) FROM dot11_ssids " +
                                 "WHERE tap_uuid IN (<taps>) ORDER BY ssid ASC")
                         .bindList("taps", taps)
@@ -218,7 +265,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(ssid) FROM dot11_ssids " +
                                 "WHERE tap_uuid IN (<taps>) AND created_at > :cutoff " +
                                 "ORDER BY ssid ASC")
@@ -230,7 +277,7 @@ public class Dot11 {
     }
 
     public List<SSIDWithOrganizationAndTenant> findAllSSIDsAndOwner(DateTime since) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT s.ssid, t.organization_id, t.tenant_id, " +
                                 "COUNT(DISTINCT date_trunc('minute', s.created_at)) AS active_minutes, " +
                                 "MAX(s.created_at) AS last_seen FROM dot11_ssids AS s " +
@@ -244,7 +291,7 @@ public class Dot11 {
     }
 
     public Optional<BSSIDSummary> findBSSID(String bssid, TimeRange timeRange, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.bssid, AVG(b.signal_strength_average) AS signal_strength_average, " +
                                 "MIN(b.created_at) AS first_seen, MAX(b.created_at) AS last_seen, " +
                                 "SUM(b.hidden_ssid_frames) as hidden_ssid_frames, " +
@@ -283,7 +330,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT SUM(beacon_advertisements) AS beacons, " +
                                 "SUM(proberesp_advertisements) AS proberesponses, " +
                                 "DATE_TRUNC(:date_trunc, created_at) AS bucket FROM dot11_ssids " +
@@ -306,7 +353,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT c.frequency, sum(c.stats_frames) AS frames, sum(c.stats_bytes) AS bytes " +
                                 "FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channels c on s.id = c.ssid_id " +
@@ -330,7 +377,7 @@ public class Dot11 {
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11BSSIDFilters());
 
         // We need the entire query, including SELECTs here to make the HAVING filters work.
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(*) FROM (" +
                                 "SELECT b.bssid, AVG(b.signal_strength_average) AS signal_strength_average, " +
                                 "MIN(b.created_at) AS first_seen, MAX(b.created_at) AS last_seen, " +
@@ -370,7 +417,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11BSSIDFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.bssid, AVG(b.signal_strength_average) AS signal_strength_average, " +
                                 "MIN(b.created_at) AS first_seen, MAX(b.created_at) AS last_seen, " +
                                 "SUM(b.hidden_ssid_frames) as hidden_ssid_frames, " +
@@ -410,7 +457,7 @@ public class Dot11 {
             return false;
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT EXISTS (SELECT 1 FROM dot11_bssids " +
                                 "WHERE created_at >= :tr_from AND created_at <= :tr_to " +
                                 "AND tap_uuid IN (<taps>) " +
@@ -429,7 +476,7 @@ public class Dot11 {
             return false;
         }
 
-        boolean isDisconnectedClient = nzyme.getDatabase().withHandle(handle ->
+        boolean isDisconnectedClient = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT EXISTS (SELECT 1 FROM dot11_clients " +
                                 "WHERE created_at > :cutoff AND tap_uuid IN (<taps>) " +
                                 "AND client_mac = :client_mac)")
@@ -440,7 +487,7 @@ public class Dot11 {
                         .one()
         );
 
-        boolean isConnectedClient = nzyme.getDatabase().withHandle(handle ->
+        boolean isConnectedClient = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT EXISTS (SELECT 1 FROM dot11_bssid_clients AS c LEFT JOIN dot11_bssids AS b ON c.bssid_id = b.id " +
                                 "WHERE b.created_at > :cutoff AND b.tap_uuid IN (<taps>) " +
                                 "AND c.client_mac = :client_mac)")
@@ -454,37 +501,209 @@ public class Dot11 {
         return isDisconnectedClient || isConnectedClient;
     }
 
-    public Optional<Integer> findMostActiveChannelOfBSSID(TimeRange timeRange, String bssid, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT c.frequency, MAX(c.stats_frames) AS frames FROM dot11_ssids AS s " +
+    public List<String> findActiveBSSIDAddresses(TimeRange timeRange, List<UUID> taps) {
+        if (taps.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
+                handle.createQuery("SELECT DISTINCT bssid FROM dot11_bssids " +
+                                "WHERE created_at >= :tr_from AND created_at <= :tr_to AND tap_uuid IN (<taps>) " +
+                                "ORDER BY bssid ASC")
+                        .bind("tr_from", timeRange.from())
+                        .bind("tr_to", timeRange.to())
+                        .bindList("taps", taps)
+                        .mapTo(String.class)
+                        .list()
+        );
+    }
+
+    public Map<String, Integer> findMostActiveChannelsOfBSSIDs(TimeRange timeRange,
+                                                              List<String> bssids,
+                                                              List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT ON (s.bssid) s.bssid, c.frequency FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channels AS c ON c.ssid_id = s.id " +
-                                "WHERE s.bssid = :bssid AND s.tap_uuid IN (<taps>) " +
+                                "WHERE s.bssid = ANY(:bssids) AND s.tap_uuid IN (<taps>) " +
                                 "AND s.created_at >= :tr_from AND s.created_at <= :tr_to " +
-                                "GROUP BY c.frequency ORDER BY SUM(c.stats_frames) DESC LIMIT 1")
-                        .bind("bssid", bssid)
+                                "AND c.frequency IS NOT NULL " +
+                                "GROUP BY s.bssid, c.frequency ORDER BY s.bssid, SUM(c.stats_frames) DESC")
+                        .bindArray("bssids", String.class, bssids)
                         .bind("tr_from", timeRange.from())
                         .bind("tr_to", timeRange.to())
                         .bindList("taps", taps)
-                        .mapTo(Integer.class)
-                        .findOne()
+                        .map((rs, ctx) -> Maps.immutableEntry(rs.getString("bssid"), rs.getInt("frequency")))
+                        .forEach(e -> result.put(e.getKey(), e.getValue()))
         );
+
+        return result;
     }
 
-    public Optional<Integer> findMostActiveChannelOfSSID(TimeRange timeRange, String bssid, String ssid, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT c.frequency, MAX(c.stats_frames) AS frames FROM dot11_ssids AS s " +
+    public Map<String, Integer> findMostActiveChannelsOfSSIDs(TimeRange timeRange,
+                                                             List<String> bssids,
+                                                             List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Keyed by BSSID/SSID timeline key.
+        Map<String, Integer> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT ON (s.bssid, s.ssid) s.bssid, s.ssid, c.frequency " +
+                                "FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channels AS c ON c.ssid_id = s.id " +
-                                "WHERE s.bssid = :bssid AND s.ssid = :ssid AND s.tap_uuid IN (<taps>) " +
+                                "WHERE s.bssid = ANY(:bssids) AND s.tap_uuid IN (<taps>) " +
                                 "AND s.created_at >= :tr_from AND s.created_at <= :tr_to " +
-                                "GROUP BY c.frequency ORDER BY SUM(c.stats_frames) DESC LIMIT 1")
-                        .bind("bssid", bssid)
-                        .bind("ssid", ssid)
+                                "AND c.frequency IS NOT NULL " +
+                                "GROUP BY s.bssid, s.ssid, c.frequency " +
+                                "ORDER BY s.bssid, s.ssid, SUM(c.stats_frames) DESC")
+                        .bindArray("bssids", String.class, bssids)
                         .bind("tr_from", timeRange.from())
                         .bind("tr_to", timeRange.to())
                         .bindList("taps", taps)
-                        .mapTo(Integer.class)
-                        .findOne()
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                buildSSIDKey(rs.getString("bssid"), rs.getString("ssid")),
+                                rs.getInt("frequency"))
+                        )
+                        .forEach(e -> result.put(e.getKey(), e.getValue()))
+        );
+
+        return result;
+    }
+
+    public Map<String, Set<String>> findSSIDNamesOfBSSIDs(TimeRange timeRange,
+                                                         List<String> bssids,
+                                                         List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Set<String>> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT bssid, ssid FROM dot11_ssids " +
+                                "WHERE created_at >= :tr_from AND created_at <= :tr_to " +
+                                "AND bssid = ANY(:bssids) AND tap_uuid IN (<taps>)")
+                        .bindArray("bssids", String.class, bssids)
+                        .bind("tr_from", timeRange.from())
+                        .bind("tr_to", timeRange.to())
+                        .bindList("taps", taps)
+                        .map((rs, ctx) -> Maps.immutableEntry(rs.getString("bssid"), rs.getString("ssid")))
+                        .forEach(e -> result.computeIfAbsent(e.getKey(), k -> new HashSet<>()).add(e.getValue()))
+        );
+
+        return result;
+    }
+
+    public Map<String, Set<String>> findFingerprintsOfBSSIDs(TimeRange timeRange,
+                                                            List<String> bssids,
+                                                            List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Set<String>> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT bssid, fingerprints_elem FROM dot11_bssids " +
+                                "CROSS JOIN LATERAL UNNEST(fingerprints) AS fingerprints_elem " +
+                                "WHERE bssid = ANY(:bssids) AND tap_uuid IN (<taps>) " +
+                                "AND created_at >= :tr_from AND created_at <= :tr_to")
+                        .bindArray("bssids", String.class, bssids)
+                        .bind("tr_from", timeRange.from())
+                        .bind("tr_to", timeRange.to())
+                        .bindList("taps", taps)
+                        .map((rs, ctx) ->
+                                Maps.immutableEntry(rs.getString("bssid"), rs.getString("fingerprints_elem")))
+                        .forEach(e -> result.computeIfAbsent(e.getKey(), k -> new HashSet<>()).add(e.getValue()))
+        );
+
+        return result;
+    }
+
+    public Map<String, TapBasedSignalStrengthResult> findStrongestTapsOfBSSIDs(TimeRange timeRange,
+                                                                              List<String> bssids,
+                                                                              List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, TapBasedSignalStrengthResult> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT ON (b.bssid) b.bssid, b.tap_uuid AS tap_uuid, " +
+                                "t.name AS tap_name, AVG(b.signal_strength_average) AS signal_strength " +
+                                "FROM dot11_bssids AS b " +
+                                "LEFT JOIN taps AS t ON b.tap_uuid = t.uuid " +
+                                "WHERE b.bssid = ANY(:bssids) AND b.tap_uuid IN (<taps>) " +
+                                "AND b.created_at >= :tr_from AND b.created_at <= :tr_to " +
+                                "GROUP BY b.bssid, b.tap_uuid, t.name " +
+                                "ORDER BY b.bssid, signal_strength DESC")
+                        .bindArray("bssids", String.class, bssids)
+                        .bindList("taps", taps)
+                        .bind("tr_from", timeRange.from())
+                        .bind("tr_to", timeRange.to())
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                rs.getString("bssid"),
+                                new TapBasedSignalStrengthResultMapper().map(rs, ctx))
+                        )
+                        .forEach(e -> result.put(e.getKey(), e.getValue()))
+        );
+
+        return result;
+    }
+
+    public Map<String, SSIDDetails> findSSIDDetailsOfBSSIDs(TimeRange timeRange,
+                                                           List<String> bssids,
+                                                           List<UUID> taps) {
+        if (bssids.isEmpty() || taps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Keyed by BSSID/SSID timeline key.
+        Map<String, SSIDDetails> result = Maps.newHashMap();
+        nzyme.getReadOnlyDatabase().useHandle(handle ->
+                handle.createQuery("SELECT s.bssid, s.ssid, MAX(s.created_at) AS last_seen, " +
+                                "COALESCE(ARRAY_AGG(DISTINCT protocol_elem) FILTER (WHERE protocol_elem IS NOT NULL), " +
+                                "ARRAY[]::text[]) AS security_protocols, " +
+                                "COALESCE(ARRAY_AGG(DISTINCT security_elem) FILTER (WHERE security_elem IS NOT NULL), " +
+                                "ARRAY[]::jsonb[]) AS security_settings, " +
+                                "ARRAY_AGG(DISTINCT rate_elem) AS rates, " +
+                                "ARRAY_AGG(DISTINCT infratypes_elem) AS infrastructure_types, " +
+                                "ARRAY_AGG(DISTINCT fingerprints_elem) AS fingerprints, " +
+                                "ARRAY_AGG(DISTINCT wps_elem) AS has_wps, " +
+                                "AVG(s.signal_strength_average) AS signal_strength_average, " +
+                                "ARRAY_AGG(DISTINCT(cl.client_mac)) AS access_point_clients, " +
+                                "ARRAY_AGG(DISTINCT(c.frequency)) AS frequencies, " +
+                                "SUM(c.stats_bytes) AS total_bytes, SUM(c.stats_frames) AS total_frames " +
+                                "FROM dot11_ssids AS s " +
+                                "LEFT JOIN dot11_bssids AS b on s.bssid_id = b.id " +
+                                "LEFT JOIN dot11_channels AS c on s.id = c.ssid_id " +
+                                "LEFT JOIN LATERAL UNNEST(s.rates) AS rate_elem ON TRUE " +
+                                "LEFT JOIN LATERAL UNNEST(s.infrastructure_types) AS infratypes_elem ON TRUE " +
+                                "LEFT JOIN LATERAL UNNEST(s.has_wps) AS wps_elem ON TRUE " +
+                                "LEFT JOIN LATERAL JSONB_ARRAY_ELEMENTS(s.security_settings) AS security_elem ON TRUE " +
+                                "LEFT JOIN LATERAL JSONB_ARRAY_ELEMENTS_TEXT(security_elem->'protocols') AS protocol_elem ON TRUE " +
+                                "LEFT JOIN LATERAL UNNEST(s.fingerprints) AS fingerprints_elem ON TRUE " +
+                                "LEFT JOIN dot11_bssid_clients cl on b.id = cl.bssid_id " +
+                                "WHERE s.created_at >= :tr_from AND s.created_at <= :tr_to " +
+                                "AND s.bssid = ANY(:bssids) " +
+                                "AND s.tap_uuid IN (<taps>) " +
+                                "GROUP BY s.bssid, s.ssid")
+                        .bind("tr_from", timeRange.from())
+                        .bind("tr_to", timeRange.to())
+                        .bindArray("bssids", String.class, bssids)
+                        .bindList("taps", taps)
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                buildSSIDKey(rs.getString("bssid"), rs.getString("ssid")),
+                                new SSIDDetailsMapper().map(rs, ctx))
+                        )
+                        .forEach(e -> result.put(e.getKey(), e.getValue()))
         );
+
+        return result;
     }
 
     public List<SSIDChannelDetails> findSSIDPerChannelsOfBSSID(TimeRange timeRange, String bssid, List<UUID> taps) {
@@ -492,7 +711,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT s.ssid, c.frequency, MAX(s.created_at) AS last_seen, " +
                                 "COALESCE(ARRAY_AGG(DISTINCT protocol_elem) FILTER (WHERE protocol_elem IS NOT NULL), " +
                                 "ARRAY[]::text[]) AS security_protocols, " +
@@ -523,7 +742,7 @@ public class Dot11 {
             return Collections.emptySet();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(ssid) FROM dot11_ssids " +
                                 "WHERE created_at >= :tr_from AND created_at <= :tr_to " +
                                 "AND bssid = :bssid AND tap_uuid IN (<taps>)")
@@ -541,7 +760,7 @@ public class Dot11 {
             return Optional.empty();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT s.ssid, MAX(s.created_at) AS last_seen, " +
                                 "COALESCE(ARRAY_AGG(DISTINCT protocol_elem) FILTER (WHERE protocol_elem IS NOT NULL), " +
                                 "ARRAY[]::text[]) AS security_protocols, " +
@@ -584,7 +803,7 @@ public class Dot11 {
             return Collections.emptySet();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT rate_elem " +
                                 "FROM dot11_ssids AS s " +
                                 "CROSS JOIN LATERAL UNNEST(s.rates) AS rate_elem " +
@@ -606,7 +825,7 @@ public class Dot11 {
             return Collections.emptySet();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT rate_elem " +
                                 "FROM dot11_ssids AS s " +
                                 "CROSS JOIN LATERAL UNNEST(s.rates) AS rate_elem " +
@@ -633,7 +852,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11BSSIDFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(DISTINCT b.bssid) AS bssid_count, " +
                                 "COUNT(DISTINCT s.ssid) AS ssid_count, " +
                                 "DATE_TRUNC(:date_trunc, b.created_at) AS bucket " +
@@ -664,7 +883,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT SUM(beacon_advertisements) AS beacons, " +
                                 "SUM(proberesp_advertisements) AS proberesponses, " +
                                 "DATE_TRUNC(:date_trunc, created_at) AS bucket FROM dot11_ssids " +
@@ -691,7 +910,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT c.frequency, sum(c.stats_frames) AS frames, sum(c.stats_bytes) AS bytes " +
                                 "FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channels c on s.id = c.ssid_id " +
@@ -713,7 +932,7 @@ public class Dot11 {
                                                                           int frequency,
                                                                           TimeRange timeRange,
                                                                           UUID tapId) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DATE_TRUNC('minute', s.created_at) AS bucket, signal_strength, " +
                                 "SUM(frame_count) AS frame_count FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channel_histograms h on s.id = h.ssid_id " +
@@ -736,7 +955,7 @@ public class Dot11 {
                                                                            int frequency,
                                                                            TimeRange timeRange,
                                                                            UUID tapId) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DATE_TRUNC('minute', s.created_at) AS bucket, " +
                                 "h.signal_strength AS signal_strength, SUM(h.frame_count) AS frame_count " +
                                 "FROM dot11_ssids AS s " +
@@ -830,7 +1049,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11ConnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(DISTINCT(c.client_mac)) " +
                                 "FROM dot11_bssids AS b " +
                                 "LEFT JOIN dot11_bssid_clients c on b.id = c.bssid_id " +
@@ -859,7 +1078,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11ConnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.bssid AS bssid, c.client_mac AS client_mac, " +
                                 "AVG(c.signal_strength_average) AS signal_strength_average, " +
                                 "MAX(b.created_at) AS last_seen FROM dot11_bssids AS b " +
@@ -888,7 +1107,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(b.bssid) AS bssid " +
                                 "FROM dot11_bssids AS b " +
                                 "WHERE b.created_at >= :tr_from AND b.created_at <= :tr_to " +
@@ -907,7 +1126,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(s.ssid) " +
                                 "FROM dot11_clients AS c " +
                                 "LEFT JOIN dot11_client_probereq_ssids s on c.id = s.client_id " +
@@ -931,7 +1150,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11DisconnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(DISTINCT(c.client_mac)) " +
                                 "FROM dot11_clients AS c " +
                                 "LEFT JOIN dot11_client_probereq_ssids AS pr on c.id = pr.client_id " +
@@ -963,7 +1182,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11DisconnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT c.client_mac, MAX(created_at) AS last_seen, " +
                                 "AVG(c.signal_strength_average) AS signal_strength_average, " +
                                 "ARRAY_AGG(DISTINCT(pr.ssid)) AS probe_requests " +
@@ -1027,7 +1246,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11DisconnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(DISTINCT(c.client_mac)) AS client_count, " +
                                 "DATE_TRUNC(:date_trunc, c.created_at) as bucket " +
                                 "FROM dot11_clients AS c " +
@@ -1059,7 +1278,7 @@ public class Dot11 {
 
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new Dot11ConnectedClientFilters());
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(DISTINCT(c.client_mac)) AS client_count, " +
                                 "DATE_TRUNC(:date_trunc, b.created_at) as bucket " +
                                 "FROM dot11_bssids AS b " +
@@ -1083,7 +1302,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.bssid " +
                                 "FROM dot11_bssids AS b " +
                                 "LEFT JOIN dot11_bssid_clients c on b.id = c.bssid_id " +
@@ -1102,7 +1321,7 @@ public class Dot11 {
             return Collections.emptyList();
         }
 
-        Optional<String[]> x = nzyme.getDatabase().withHandle(handle ->
+        Optional<String[]> x = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT ARRAY_AGG(DISTINCT(s.ssid)) " +
                                 "FROM dot11_ssids AS s " +
                                 "WHERE s.created_at >= :tr_from AND s.created_at <= :tr_to AND " +
@@ -1134,7 +1353,7 @@ public class Dot11 {
             return Optional.empty();
         }
 
-        Optional<FirstLastSeenTuple> connected = nzyme.getDatabase().withHandle(handle ->
+        Optional<FirstLastSeenTuple> connected = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT MAX(b.created_at) AS last_seen, MIN(b.created_at) AS first_seen " +
                                 "FROM dot11_bssids AS b " +
                                 "LEFT JOIN dot11_bssid_clients AS c on b.id = c.bssid_id " +
@@ -1151,7 +1370,7 @@ public class Dot11 {
             connected = Optional.empty();
         }
 
-        Optional<String> currentlyConnectedBSSID = nzyme.getDatabase().withHandle(handle ->
+        Optional<String> currentlyConnectedBSSID = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.bssid " +
                                 "FROM dot11_bssids AS b " +
                                 "LEFT JOIN dot11_bssid_clients AS c on b.id = c.bssid_id " +
@@ -1194,7 +1413,7 @@ public class Dot11 {
             }
 
             if (histogramTimeRange != null) {
-                connectedHistogram = nzyme.getDatabase().withHandle(handle ->
+                connectedHistogram = nzyme.getReadOnlyDatabase().withHandle(handle ->
                         handle.createQuery("SELECT DATE_TRUNC(:date_trunc, b.created_at) as bucket, " +
                                         "COALESCE(SUM(c.rx_frames) + SUM(c.tx_frames), 0) AS frames " +
                                         "FROM dot11_bssids AS b " +
@@ -1219,7 +1438,7 @@ public class Dot11 {
             connectedHistogram = Collections.emptyList();
         }
 
-        Optional<FirstLastSeenTuple> disconnected = nzyme.getDatabase().withHandle(handle ->
+        Optional<FirstLastSeenTuple> disconnected = nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT MAX(c.created_at) AS last_seen, MIN(c.created_at) AS first_seen " +
                                 "FROM dot11_clients AS c " +
                                 "WHERE c.client_mac = :client_mac AND c.tap_uuid IN (<taps>)")
@@ -1241,7 +1460,7 @@ public class Dot11 {
             probeRequests = findProbeRequestsOfClient(clientMac, taps);
 
             if (histogramTimeRange != null) {
-                disconnectedHistogram = nzyme.getDatabase().withHandle(handle ->
+                disconnectedHistogram = nzyme.getReadOnlyDatabase().withHandle(handle ->
                         handle.createQuery("SELECT DATE_TRUNC(:date_trunc, c.created_at) as bucket, " +
                                         "COALESCE(SUM(wildcard_probe_requests), 0) " +
                                         "+ COALESCE(SUM(pr.frame_count), 0) AS frames " +
@@ -1334,7 +1553,7 @@ public class Dot11 {
     public List<TapBasedSignalStrengthResult> findDisconnectedClientSignalStrengthPerTap(String clientMac,
                                                                                          TimeRange timeRange,
                                                                                          List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT c.tap_uuid AS tap_uuid, t.name AS tap_name, " +
                                 "AVG(c.signal_strength_average) AS signal_strength " +
                                 "FROM dot11_clients AS c " +
@@ -1354,7 +1573,7 @@ public class Dot11 {
     public List<TapBasedSignalStrengthResult> findBssidClientSignalStrengthPerTap(String clientMac,
                                                                                   TimeRange timeRange,
                                                                                   List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.tap_uuid AS tap_uuid, t.name AS tap_name, " +
                                 "AVG(c.signal_strength_average) AS signal_strength " +
                                 "FROM dot11_bssid_clients AS c " +
@@ -1376,7 +1595,7 @@ public class Dot11 {
                                                                                           TimeRange timeRange,
                                                                                           Bucketing.BucketingConfiguration bucketing,
                                                                                           UUID tap) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT AVG(signal_strength_average) AS signal_strength, " +
                                 "DATE_TRUNC(:date_trunc, created_at) AS bucket " +
                                 "FROM dot11_clients " +
@@ -1397,7 +1616,7 @@ public class Dot11 {
                                                                                    TimeRange timeRange,
                                                                                    Bucketing.BucketingConfiguration bucketing,
                                                                                    UUID tap) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT AVG(c.signal_strength_average) AS signal_strength, " +
                                 "DATE_TRUNC(:date_trunc, b.created_at) AS bucket " +
                                 "FROM dot11_bssid_clients AS c " +
@@ -1420,7 +1639,7 @@ public class Dot11 {
                                                                                                                TimeRange timeRange,
                                                                                                                Bucketing.BucketingConfiguration bucketing,
                                                                                                                List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DATE_TRUNC('minute', c.created_at) AS bucket, " +
                                 "c.tap_uuid, t.name AS tap_name, AVG(c.signal_strength_average) AS signal_strength " +
                                 "FROM dot11_clients AS c LEFT JOIN taps AS t ON c.tap_uuid = t.uuid " +
@@ -1441,7 +1660,7 @@ public class Dot11 {
                                                                                                             TimeRange timeRange,
                                                                                                             Bucketing.BucketingConfiguration bucketing,
                                                                                                             List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DATE_TRUNC('minute', b.created_at) AS bucket, " +
                                 "b.tap_uuid, t.name AS tap_name, AVG(c.signal_strength_average) AS signal_strength " +
                                 "FROM dot11_bssid_clients AS c " +
@@ -1471,6 +1690,8 @@ public class Dot11 {
                     .bind("tenant_id", tenantId)
                     .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void bumpMonitoredSSIDUpdatedAt(long networkId) {
@@ -1488,6 +1709,8 @@ public class Dot11 {
                     .bind("id", networkId)
                     .execute();
         });
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteMonitoredSSID(long networkId) {
@@ -1496,6 +1719,8 @@ public class Dot11 {
                     .bind("id", networkId)
                     .execute();
         });
+
+        monitoringConfigurationChanged();
     }
 
     public Optional<MonitoredSSID> findMonitoredSSID(UUID uuid) {
@@ -1583,7 +1808,7 @@ public class Dot11 {
             throw new RuntimeException("Invalid MAC address: " + uppercaseBSSID);
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        long id = nzyme.getDatabase().withHandle(handle ->
                 handle.createQuery("INSERT INTO dot11_monitored_networks_bssids(uuid, monitored_network_id, " +
                                 "bssid) VALUES(:uuid, :monitored_network_id, :bssid) RETURNING *")
                         .bind("uuid", UUID.randomUUID())
@@ -1592,6 +1817,10 @@ public class Dot11 {
                         .mapTo(Long.class)
                         .one()
         );
+
+        monitoringConfigurationChanged();
+
+        return id;
     }
 
     public void deleteMonitoredBSSID(long id) {
@@ -1600,6 +1829,8 @@ public class Dot11 {
                         .bind("id", id)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteAllMonitoredBSSIDs(long ssidId) {
@@ -1609,6 +1840,8 @@ public class Dot11 {
                         .bind("ssid_id", ssidId)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void createdMonitoredBSSIDFingerprint(long bssidId, String fingerprint) {
@@ -1625,6 +1858,8 @@ public class Dot11 {
                         .bind("fingerprint", fingerprint)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteMonitoredBSSIDFingerprint(long bssidId, UUID fingerprintUUID) {
@@ -1635,6 +1870,8 @@ public class Dot11 {
                         .bind("uuid", fingerprintUUID)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public List<MonitoredChannel> findMonitoredChannelsOfMonitoredNetwork(long ssidId) {
@@ -1656,6 +1893,8 @@ public class Dot11 {
                         .bind("frequency", frequency)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteMonitoredChannel(long monitoredNetworkId, UUID channelUUID) {
@@ -1666,6 +1905,8 @@ public class Dot11 {
                         .bind("uuid", channelUUID)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public List<MonitoredSecuritySuite> findMonitoredSecuritySuitesOfMonitoredNetwork(long ssidId) {
@@ -1687,6 +1928,8 @@ public class Dot11 {
                         .bind("suite", suite)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteMonitoredSecuritySuite(long monitoredNetworkId, UUID suiteUUID) {
@@ -1697,6 +1940,8 @@ public class Dot11 {
                         .bind("uuid", suiteUUID)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void setMonitorAlertStatus(long monitoredNetworkId, MonitorActiveStatusTypeColumn type, boolean status) {
@@ -1707,6 +1952,8 @@ public class Dot11 {
                         .bind("status", status)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void setSimilarSSIDMonitorConfiguration(long monitoredNetworkId, int threshold) {
@@ -1718,6 +1965,8 @@ public class Dot11 {
                         .bind("threshold", threshold)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public List<RestrictedSSIDSubstring> findAllRestrictedSSIDSubstrings(long monitoredNetworkId) {
@@ -1775,6 +2024,8 @@ public class Dot11 {
                         .bind("description", description)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void editCustomBandit(long id, String name, String description) {
@@ -1786,6 +2037,8 @@ public class Dot11 {
                         .bind("description", description)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void deleteCustomBandit(long id) {
@@ -1794,6 +2047,8 @@ public class Dot11 {
                         .bind("id", id)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public List<CustomBanditDescription> findAllCustomBandits(UUID organizationId,
@@ -1852,6 +2107,8 @@ public class Dot11 {
                         .bind("fingerprint", fingerprint)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public void removeFingerprintOfCustomBandit(long banditId, String fingerprint) {
@@ -1862,6 +2119,8 @@ public class Dot11 {
                         .bind("fingerprint", fingerprint)
                         .execute()
         );
+
+        monitoringConfigurationChanged();
     }
 
     public List<DiscoHistogramEntry> getDiscoHistogram(DiscoType discoType,
@@ -1902,7 +2161,7 @@ public class Dot11 {
         List<DiscoHistogramEntry> senders;
         if (bssids != null) {
             // BSSID filter applied.
-            senders = nzyme.getDatabase().withHandle(handle ->
+            senders = nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT SUM(senders.sent_frames) " +
                                     "AS frame_count, DATE_TRUNC(:date_trunc, senders.created_at) AS bucket " +
                                     "FROM dot11_disco_activity AS senders " +
@@ -1922,7 +2181,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            senders = nzyme.getDatabase().withHandle(handle ->
+            senders = nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT SUM(senders.sent_frames) " +
                                     "AS frame_count, DATE_TRUNC(:date_trunc, senders.created_at) AS bucket " +
                                     "FROM dot11_disco_activity AS senders " +
@@ -1943,7 +2202,7 @@ public class Dot11 {
         List<DiscoHistogramEntry> receivers;
         if (bssids != null) {
             // BSSID filter applied.
-            receivers = nzyme.getDatabase().withHandle(handle ->
+            receivers = nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT SUM(receivers.received_frames) " +
                                     "AS frame_count, DATE_TRUNC(:date_trunc, senders.created_at) AS bucket " +
                                     "FROM dot11_disco_activity_receivers AS receivers " +
@@ -2020,7 +2279,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT senders.bssid, SUM(senders.sent_frames) AS frame_count " +
                                     "FROM dot11_disco_activity AS senders " +
                                     "LEFT JOIN dot11_disco_activity_receivers AS receivers " +
@@ -2041,7 +2300,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT bssid, SUM(sent_frames) AS frame_count " +
                                     "FROM dot11_disco_activity " +
                                     "WHERE created_at >= :tr_from AND created_at <= :tr_to " +
@@ -2070,7 +2329,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(senders.bssid)) " +
                                     "FROM dot11_disco_activity AS senders " +
                                     "LEFT JOIN dot11_disco_activity_receivers AS receivers " +
@@ -2087,7 +2346,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(bssid)) " +
                                     "FROM dot11_disco_activity " +
                                     "WHERE created_at >= :tr_from AND created_at <= :tr_to " +
@@ -2116,7 +2375,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT receivers.bssid, SUM(received_frames) AS frame_count " +
                                     "FROM dot11_disco_activity_receivers AS receivers " +
                                     "LEFT JOIN dot11_disco_activity AS senders " +
@@ -2137,7 +2396,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT receivers.bssid, SUM(received_frames) AS frame_count " +
                                     "FROM dot11_disco_activity_receivers AS receivers " +
                                     "LEFT JOIN dot11_disco_activity AS senders " +
@@ -2168,7 +2427,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(receivers.bssid)) " +
                                     "FROM dot11_disco_activity_receivers AS receivers " +
                                     "LEFT JOIN dot11_disco_activity AS senders " +
@@ -2185,7 +2444,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(receivers.bssid)) " +
                                     "FROM dot11_disco_activity_receivers AS receivers " +
                                     "LEFT JOIN dot11_disco_activity AS senders " +
@@ -2216,7 +2475,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT senders.bssid AS sender, receivers.bssid AS receiver, " +
                                     "SUM(receivers.received_frames) AS frame_count " +
                                     "FROM dot11_disco_activity AS senders " +
@@ -2239,7 +2498,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT senders.bssid AS sender, receivers.bssid AS receiver, " +
                                     "SUM(receivers.received_frames) AS frame_count " +
                                     "FROM dot11_disco_activity AS senders " +
@@ -2272,7 +2531,7 @@ public class Dot11 {
 
         if (bssids != null) {
             // BSSID filter applied.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(senders.bssid, receivers.bssid)) " +
                                     "FROM dot11_disco_activity AS senders " +
                                     "LEFT JOIN dot11_disco_activity_receivers AS receivers " +
@@ -2289,7 +2548,7 @@ public class Dot11 {
             );
         } else {
             // No BSSID filter.
-            return nzyme.getDatabase().withHandle(handle ->
+            return nzyme.getReadOnlyDatabase().withHandle(handle ->
                     handle.createQuery("SELECT COUNT(DISTINCT(senders.bssid, receivers.bssid)) " +
                                     "FROM dot11_disco_activity AS senders " +
                                     "LEFT JOIN dot11_disco_activity_receivers AS receivers " +
@@ -2345,7 +2604,7 @@ public class Dot11 {
     }
 
     public List<String> findBSSIDsAdvertisingSSID(String ssid, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(bssid) FROM dot11_ssids " +
                                 "WHERE ssid = :ssid AND tap_uuid IN (<taps>) " +
                                 "AND created_at >= (NOW() - INTERVAL '24 hours') " +
@@ -2358,7 +2617,7 @@ public class Dot11 {
     }
 
     public List<String> findFingerprintsOfBSSID(String bssid, TimeRange timeRange, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT fingerprints_elem FROM dot11_bssids " +
                                 "LEFT JOIN LATERAL UNNEST(fingerprints) AS fingerprints_elem ON TRUE " +
                                 "WHERE bssid = :bssid AND tap_uuid IN (<taps>) " +
@@ -2373,7 +2632,7 @@ public class Dot11 {
     }
 
     public List<Dot11SecuritySuiteJson> findSecuritySuitesOfSSID(String ssid, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COALESCE(ARRAY_AGG(DISTINCT security_elem) FILTER (WHERE security_elem IS NOT NULL), " +
                                 "ARRAY[]::jsonb[]) AS security_settings FROM dot11_ssids AS s " +
                                 "LEFT JOIN LATERAL JSONB_ARRAY_ELEMENTS(s.security_settings) AS security_elem ON TRUE  " +
@@ -2390,7 +2649,7 @@ public class Dot11 {
     }
 
     public List<Long> findChannelsOfSSID(String ssid, List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DISTINCT(c.frequency) FROM dot11_ssids AS s " +
                                 "LEFT JOIN dot11_channels AS c ON s.id = c.ssid_id " +
                                 "WHERE s.ssid = :ssid AND s.tap_uuid IN (<taps>) AND c.frequency IS NOT NULL " +
@@ -2406,7 +2665,7 @@ public class Dot11 {
     public List<TapBasedSignalStrengthResult> findBSSIDSignalStrengthPerTap(String bssid,
                                                                             TimeRange timeRange,
                                                                             List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT b.tap_uuid AS tap_uuid, t.name AS tap_name, " +
                                 "AVG(b.signal_strength_average) AS signal_strength " +
                                 "FROM dot11_bssids AS b " +
@@ -2427,7 +2686,7 @@ public class Dot11 {
                                                                                                   TimeRange timeRange,
                                                                                                   Bucketing.BucketingConfiguration bucketing,
                                                                                                   List<UUID> taps) {
-        return nzyme.getDatabase().withHandle(handle ->
+        return nzyme.getReadOnlyDatabase().withHandle(handle ->
                 handle.createQuery("SELECT DATE_TRUNC(:date_trunc, b.created_at) AS bucket, " +
                                 "b.tap_uuid AS tap_uuid, t.name AS tap_name, " +
                                 "AVG(b.signal_strength_average) AS signal_strength " +
@@ -2473,6 +2732,14 @@ public class Dot11 {
         );
     }
 
+    public Set<String> findMonitoredProbeRequestSSIDs(UUID organizationId, UUID tenantId) {
+        return monitoredProbeRequestSSIDs.getUnchecked(Dot11TenantCacheKey.create(organizationId, tenantId));
+    }
+
+    public void invalidateMonitoredProbeRequestCache() {
+        monitoredProbeRequestSSIDs.invalidateAll();
+    }
+
     public Optional<MonitoredProbeRequestEntry> findMonitoredProbeRequest(UUID uuid,
                                                                           UUID organizationId,
                                                                           UUID tenantId) {
@@ -2518,6 +2785,8 @@ public class Dot11 {
                         .bind("tenant_id", tenantId)
                         .execute()
         );
+
+        invalidateMonitoredProbeRequestCache();
     }
 
     public void updateMonitoredProbeRequest(UUID uuid,
@@ -2543,6 +2812,8 @@ public class Dot11 {
                         .bind("tenant_id", tenantId)
                         .execute()
         );
+
+        invalidateMonitoredProbeRequestCache();
     }
 
     public void deleteMonitoredProbeRequest(UUID uuid,
@@ -2556,6 +2827,8 @@ public class Dot11 {
                         .bind("tenant_id", tenantId)
                         .execute()
         );
+
+        invalidateMonitoredProbeRequestCache();
     }
 
     public long countAllKnownNetworks(UUID organizationId, UUID tenantId) {
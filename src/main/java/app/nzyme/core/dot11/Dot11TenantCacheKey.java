@@ -0,0 +1,32 @@
+package app.nzyme.core.dot11;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.UUID;
+
+@AutoValue
+public abstract class Dot11TenantCacheKey {
+
+    public abstract UUID organizationId();
+    public abstract UUID tenantId();
+
+    public static Dot11TenantCacheKey create(UUID organizationId, UUID tenantId) {
+        return builder()
+                .organizationId(organizationId)
+                .tenantId(tenantId)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Dot11TenantCacheKey.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder organizationId(UUID organizationId);
+
+        public abstract Builder tenantId(UUID tenantId);
+
+        public abstract Dot11TenantCacheKey build();
+    }
+}
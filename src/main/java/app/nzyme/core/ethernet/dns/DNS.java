@@ -5,6 +5,8 @@ import app.nzyme.core.database.generic.DateTimeNumberAggregationResult;
 import app.nzyme.core.ethernet.Ethernet;
 import app.nzyme.core.ethernet.dns.db.*;
 import app.nzyme.core.ethernet.dns.filters.DnsFilters;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitterDimension;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.util.Bucketing;
 import app.nzyme.core.util.TimeRange;
 import app.nzyme.core.util.filters.FilterSqlFragment;
@@ -73,6 +75,11 @@ public class DNS {
             return 0;
         }
 
+        HeavyHitters heavyHitters = nzyme.getTablesService().getHeavyHitters();
+        if (heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, timeRange, taps)) {
+            return heavyHitters.countDistinctKeys(HeavyHitterDimension.DNS_SERVER, timeRange, taps);
+        }
+
         return nzyme.getDatabase().withHandle(handle ->
                 handle.createQuery("SELECT COUNT(*) FROM(SELECT server_address, server_address_geo_asn_number, " +
                                 "server_address_geo_asn_name, server_address_geo_asn_domain, " +
@@ -97,6 +104,10 @@ public class DNS {
             return Collections.emptyList();
         }
 
+        if (nzyme.getTablesService().getHeavyHitters().covers(HeavyHitterDimension.DNS_SERVER, timeRange, taps)) {
+            return getPairsFromHeavyHitters(timeRange, limit, offset, taps);
+        }
+
         return nzyme.getDatabase().withHandle(handle ->
                 handle.createQuery("SELECT server_address, server_port, server_address_geo_asn_number, " +
                                 "server_address_geo_asn_name, server_address_geo_asn_domain, " +
@@ -125,6 +136,59 @@ public class DNS {
         );
     }
 
+    /**
+     * Large time ranges are answered from the heavy hitter sketches. Request counts are approximate and client counts
+     * are estimated. See {@link HeavyHitters}.
+     */
+    private List<DNSPairSummary> getPairsFromHeavyHitters(TimeRange timeRange, int limit, int offset, List<UUID> taps) {
+        List<DNSPairSummary> pairs = nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT MIN(e.address) AS server_address, MIN(e.port) AS server_port, " +
+                                "MIN(e.address_geo_asn_number) AS server_address_geo_asn_number, " +
+                                "MIN(e.address_geo_asn_name) AS server_address_geo_asn_name, " +
+                                "MIN(e.address_geo_asn_domain) AS server_address_geo_asn_domain, " +
+                                "MIN(e.address_geo_city) AS server_address_geo_city, " +
+                                "MIN(e.address_geo_country_code) AS server_address_geo_country_code, " +
+                                "MIN(e.address_geo_latitude) AS server_address_geo_latitude, " +
+                                "MIN(e.address_geo_longitude) AS server_address_geo_longitude, " +
+                                "BOOL_AND(e.address_is_site_local) AS server_address_is_site_local, " +
+                                "BOOL_AND(e.address_is_multicast) AS server_address_is_multicast, " +
+                                "BOOL_AND(e.address_is_loopback) AS server_address_is_loopback, " +
+                                "SUM(e.value1) AS request_count, 0 AS client_count " +
+                                "FROM heavy_hitter_entries AS e " +
+                                "JOIN heavy_hitter_buckets AS b ON b.id = e.bucket_id " +
+                                "WHERE b.dimension = :dimension AND b.bucket_start >= :bucket_from " +
+                                "AND b.bucket_start <= :tr_to AND b.tap_uuid IN (<taps>) " +
+                                "GROUP BY e.item_key " +
+                                "ORDER BY SUM(e.weight) DESC LIMIT :limit OFFSET :offset")
+                        .bind("dimension", HeavyHitterDimension.DNS_SERVER.name())
+                        .bind("bucket_from", HeavyHitters.bucketStart(timeRange.from()))
+                        .bind("tr_to", timeRange.to())
+                        .bind("limit", limit)
+                        .bind("offset", offset)
+                        .bindList("taps", taps)
+                        .mapTo(DNSPairSummary.class)
+                        .list()
+        );
+
+        List<String> keys = Lists.newArrayList();
+        for (DNSPairSummary pair : pairs) {
+            keys.add(HeavyHitters.buildDNSServerKey(pair.server().address(), pair.server().port()));
+        }
+
+        Map<String, Long> clients = nzyme.getTablesService().getHeavyHitters()
+                .countMembers(HeavyHitterDimension.DNS_SERVER, timeRange, taps, keys);
+
+        List<DNSPairSummary> result = Lists.newArrayListWithCapacity(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            DNSPairSummary pair = pairs.get(i);
+            result.add(DNSPairSummary.create(
+                    pair.server(), pair.requestCount(), clients.getOrDefault(keys.get(i), 0L)
+            ));
+        }
+
+        return result;
+    }
+
     public long countAllEntropyLogs(TimeRange timeRange, List<UUID> taps) {
         if (taps.isEmpty()) {
             return 0;
@@ -0,0 +1,75 @@
+package app.nzyme.core.ethernet.heavyhitters;
+
+import app.nzyme.core.integrations.geoip.GeoIpLookupResult;
+import com.google.auto.value.AutoValue;
+import jakarta.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.util.Optional;
+
+/**
+ * Address information of a heavy hitter. Kept with the sketch entry so that top-N views do not have to look it up
+ * in the raw tables.
+ */
+@AutoValue
+public abstract class HeavyHitterAddress {
+
+    public abstract String address();
+
+    @Nullable
+    public abstract Integer port();
+
+    @Nullable
+    public abstract GeoIpLookupResult geo();
+
+    public abstract boolean isSiteLocal();
+    public abstract boolean isLoopback();
+    public abstract boolean isMulticast();
+
+    public static HeavyHitterAddress of(String address,
+                                        @Nullable Integer port,
+                                        InetAddress inetAddress,
+                                        Optional<GeoIpLookupResult> geo) {
+        return create(
+                address,
+                port,
+                geo.orElse(null),
+                inetAddress.isSiteLocalAddress(),
+                inetAddress.isLoopbackAddress(),
+                inetAddress.isMulticastAddress()
+        );
+    }
+
+    public static HeavyHitterAddress create(String address, Integer port, GeoIpLookupResult geo, boolean isSiteLocal, boolean isLoopback, boolean isMulticast) {
+        return builder()
+                .address(address)
+                .port(port)
+                .geo(geo)
+                .isSiteLocal(isSiteLocal)
+                .isLoopback(isLoopback)
+                .isMulticast(isMulticast)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_HeavyHitterAddress.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder address(String address);
+
+        public abstract Builder port(Integer port);
+
+        public abstract Builder geo(GeoIpLookupResult geo);
+
+        public abstract Builder isSiteLocal(boolean isSiteLocal);
+
+        public abstract Builder isLoopback(boolean isLoopback);
+
+        public abstract Builder isMulticast(boolean isMulticast);
+
+        public abstract HeavyHitterAddress build();
+    }
+
+}
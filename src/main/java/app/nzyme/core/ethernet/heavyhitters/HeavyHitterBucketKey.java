@@ -0,0 +1,38 @@
+package app.nzyme.core.ethernet.heavyhitters;
+
+import com.google.auto.value.AutoValue;
+import org.joda.time.DateTime;
+
+import java.util.UUID;
+
+@AutoValue
+public abstract class HeavyHitterBucketKey {
+
+    public abstract UUID tapUuid();
+    public abstract HeavyHitterDimension dimension();
+    public abstract DateTime bucketStart();
+
+    public static HeavyHitterBucketKey create(UUID tapUuid, HeavyHitterDimension dimension, DateTime bucketStart) {
+        return builder()
+                .tapUuid(tapUuid)
+                .dimension(dimension)
+                .bucketStart(bucketStart)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_HeavyHitterBucketKey.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder tapUuid(UUID tapUuid);
+
+        public abstract Builder dimension(HeavyHitterDimension dimension);
+
+        public abstract Builder bucketStart(DateTime bucketStart);
+
+        public abstract HeavyHitterBucketKey build();
+    }
+
+}
@@ -0,0 +1,11 @@
+package app.nzyme.core.ethernet.heavyhitters;
+
+public enum HeavyHitterDimension {
+
+    L4_SOURCE_MAC,
+    L4_DESTINATION_MAC,
+    L4_SOURCE_ADDRESS,
+    L4_DESTINATION_ADDRESS,
+    DNS_SERVER
+
+}
@@ -0,0 +1,537 @@
+package app.nzyme.core.ethernet.heavyhitters;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
+import app.nzyme.core.util.TimeRange;
+import app.nzyme.core.util.sketches.HyperLogLog;
+import app.nzyme.core.util.sketches.SpaceSaving;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Hours;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incrementally maintained heavy hitters of L4 and DNS traffic. Every tap report is fed into a Space-Saving sketch
+ * per tap, dimension and hour. The sketches are kept in memory while their hour is open and persisted per bucket on a
+ * fixed interval. Top-N views over large time ranges are answered by summing up the persisted buckets instead of
+ * aggregating all raw rows.
+ *
+ * Weights of persisted entries overestimate the true weight by at most their error. Keys that were not persisted in a
+ * bucket had a weight of at most the floor weight of that bucket. The number of distinct keys is estimated with a
+ * HyperLogLog per bucket.
+ *
+ * Reports that arrive after the bucket of their hour was evicted are dropped. Their bucket is marked as a gap, and
+ * time ranges that include a gap are answered from the raw tables instead.
+ */
+public class HeavyHitters {
+
+    private static final Logger LOG = LogManager.getLogger(HeavyHitters.class);
+
+    // Time ranges shorter than this are cheap enough to answer from the raw tables.
+    public static final int MINIMUM_RANGE_HOURS = 6;
+
+    private static final int SKETCH_CAPACITY = 2048;
+    private static final int PERSISTED_ENTRIES = 512;
+    private static final int DISTINCT_KEYS_PRECISION = 12;
+    private static final int MEMBERS_PRECISION = 8;
+    private static final int FLUSH_INTERVAL_SECONDS = 60;
+
+    // Buckets are kept in memory for a while after their hour ended to include late reports.
+    private static final long BUCKET_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final NzymeNode nzyme;
+
+    /*
+     * Sketches are not restored after a restart. Every process writes its buckets under its own recorder ID, next to
+     * the buckets of earlier processes, and all of them are summed up at query time.
+     */
+    private final UUID recorderId;
+
+    private final Map<HeavyHitterBucketKey, Bucket> buckets;
+
+    // Buckets that missed late reports. Persisted with the next flush.
+    private final Set<HeavyHitterBucketKey> gaps;
+
+    private final Timer flushTimer;
+    private final Meter lateRecordsDroppedMeter;
+
+    private final ScheduledExecutorService flusher;
+
+    public HeavyHitters(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+        this.recorderId = UUID.randomUUID();
+        this.buckets = Maps.newConcurrentMap();
+        this.gaps = Sets.newConcurrentHashSet();
+
+        this.flushTimer = nzyme.getMetrics().timer(MetricNames.HEAVY_HITTERS_FLUSH_TIMER);
+        this.lateRecordsDroppedMeter = nzyme.getMetrics().meter(MetricNames.HEAVY_HITTERS_LATE_RECORDS_DROPPED);
+
+        nzyme.getMetrics().register(MetricNames.HEAVY_HITTERS_BUCKETS, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return (long) buckets.size();
+            }
+        });
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("heavy-hitters-flusher-%d")
+                        .setDaemon(true)
+                        .build()
+        );
+
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Records the traffic of a TCP session or UDP conversation since the previous report.
+     */
+    public void recordL4(UUID tapUuid,
+                         DateTime timestamp,
+                         @Nullable String sourceMac,
+                         @Nullable String destinationMac,
+                         HeavyHitterAddress source,
+                         HeavyHitterAddress destination,
+                         long bytesRx,
+                         long bytesTx) {
+        if (sourceMac != null) {
+            record(tapUuid, HeavyHitterDimension.L4_SOURCE_MAC, timestamp, sourceMac, bytesRx, bytesTx, null, null);
+        }
+
+        if (destinationMac != null) {
+            record(tapUuid, HeavyHitterDimension.L4_DESTINATION_MAC, timestamp,
+                    destinationMac, bytesRx, bytesTx, null, null);
+        }
+
+        record(tapUuid, HeavyHitterDimension.L4_SOURCE_ADDRESS, timestamp,
+                source.address(), bytesRx, bytesTx, source, null);
+        record(tapUuid, HeavyHitterDimension.L4_DESTINATION_ADDRESS, timestamp,
+                destination.address(), bytesRx, bytesTx, destination, null);
+    }
+
+    /**
+     * Records requests of a DNS client to a DNS server.
+     */
+    public void recordDNSPair(UUID tapUuid,
+                              DateTime timestamp,
+                              String clientAddress,
+                              HeavyHitterAddress server,
+                              long requestCount) {
+        record(tapUuid, HeavyHitterDimension.DNS_SERVER, timestamp,
+                buildDNSServerKey(server.address(), server.port()), requestCount, 0, server, clientAddress);
+    }
+
+    /**
+     * Starts a batch of records that are only offered to the sketches on {@link Batch#commit()}. Lets the report
+     * tables record the traffic of a report after the report was written.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Entries are ranked by the sum of both values.
+     */
+    private void record(UUID tapUuid,
+                        HeavyHitterDimension dimension,
+                        DateTime timestamp,
+                        String key,
+                        long value1,
+                        long value2,
+                        @Nullable HeavyHitterAddress address,
+                        @Nullable String member) {
+        HeavyHitterBucketKey bucketKey = HeavyHitterBucketKey.create(tapUuid, dimension, bucketStart(timestamp));
+
+        if (isEnded(bucketKey.bucketStart(), System.currentTimeMillis())) {
+            // The bucket was already persisted and evicted. A new sketch would overwrite it.
+            lateRecordsDroppedMeter.mark();
+            gaps.add(bucketKey);
+            return;
+        }
+
+        buckets.computeIfAbsent(bucketKey, k -> new Bucket()).offer(key, value1, value2, address, member);
+    }
+
+    /**
+     * Persists all buckets that changed since the last flush and evicts buckets whose hour has ended.
+     */
+    public void flush() {
+        try (Timer.Context ignored = flushTimer.time()) {
+            long now = System.currentTimeMillis();
+
+            flushGaps();
+
+            for (Map.Entry<HeavyHitterBucketKey, Bucket> bucket : buckets.entrySet()) {
+                HeavyHitterBucketKey key = bucket.getKey();
+
+                if (isEnded(key.bucketStart(), now)) {
+                    buckets.remove(key);
+                }
+
+                BucketSnapshot snapshot = bucket.getValue().drain();
+                if (snapshot == null) {
+                    continue;
+                }
+
+                try {
+                    nzyme.getDatabase().useHandle(h -> h.useTransaction(handle -> write(handle, key, snapshot)));
+                } catch (Exception e) {
+                    LOG.error("Could not persist heavy hitter bucket [{}]. Retrying with next flush.", key, e);
+
+                    bucket.getValue().markDirty();
+                    buckets.putIfAbsent(key, bucket.getValue());
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Could not flush heavy hitters.", e);
+        }
+    }
+
+    private void flushGaps() {
+        List<HeavyHitterBucketKey> pending = new ArrayList<>(gaps);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        gaps.removeAll(pending);
+
+        try {
+            nzyme.getDatabase().useHandle(handle -> {
+                PreparedBatch batch = handle.prepareBatch("INSERT INTO heavy_hitter_gaps(tap_uuid, dimension, " +
+                        "bucket_start, created_at) VALUES(:tap_uuid, :dimension, :bucket_start, NOW()) " +
+                        "ON CONFLICT (dimension, tap_uuid, bucket_start) DO NOTHING");
+
+                for (HeavyHitterBucketKey key : pending) {
+                    batch.bind("tap_uuid", key.tapUuid())
+                            .bind("dimension", key.dimension().name())
+                            .bind("bucket_start", key.bucketStart())
+                            .add();
+                }
+
+                batch.execute();
+            });
+        } catch (Exception e) {
+            LOG.error("Could not persist <{}> heavy hitter gaps. Retrying with next flush.", pending.size(), e);
+            gaps.addAll(pending);
+        }
+    }
+
+    private void write(Handle handle, HeavyHitterBucketKey key, BucketSnapshot snapshot) {
+        long bucketId = handle.createQuery("INSERT INTO heavy_hitter_buckets(recorder_id, tap_uuid, dimension, " +
+                        "bucket_start, total_weight, floor_weight, distinct_keys, updated_at) " +
+                        "VALUES(:recorder_id, :tap_uuid, :dimension, :bucket_start, :total_weight, :floor_weight, " +
+                        ":distinct_keys, NOW()) " +
+                        "ON CONFLICT (recorder_id, tap_uuid, dimension, bucket_start) DO UPDATE SET " +
+                        "total_weight = EXCLUDED.total_weight, floor_weight = EXCLUDED.floor_weight, " +
+                        "distinct_keys = EXCLUDED.distinct_keys, updated_at = NOW() RETURNING id")
+                .bind("recorder_id", recorderId)
+                .bind("tap_uuid", key.tapUuid())
+                .bind("dimension", key.dimension().name())
+                .bind("bucket_start", key.bucketStart())
+                .bind("total_weight", snapshot.totalWeight)
+                .bind("floor_weight", snapshot.floorWeight)
+                .bind("distinct_keys", snapshot.distinctKeys)
+                .mapTo(Long.class)
+                .one();
+
+        handle.createUpdate("DELETE FROM heavy_hitter_entries WHERE bucket_id = :bucket_id")
+                .bind("bucket_id", bucketId)
+                .execute();
+
+        PreparedBatch batch = handle.prepareBatch("INSERT INTO heavy_hitter_entries(bucket_id, item_key, weight, " +
+                "error, value1, value2, address, port, address_geo_asn_number, address_geo_asn_name, " +
+                "address_geo_asn_domain, address_geo_city, address_geo_country_code, address_geo_latitude, " +
+                "address_geo_longitude, address_is_site_local, address_is_loopback, address_is_multicast, " +
+                "members) VALUES(:bucket_id, :item_key, :weight, :error, :value1, :value2, :address, :port, " +
+                ":address_geo_asn_number, :address_geo_asn_name, :address_geo_asn_domain, :address_geo_city, " +
+                ":address_geo_country_code, :address_geo_latitude, :address_geo_longitude, " +
+                ":address_is_site_local, :address_is_loopback, :address_is_multicast, :members)");
+
+        for (SpaceSaving.Entry<HeavyHitterAddress> entry : snapshot.entries) {
+            Optional<HeavyHitterAddress> address = Optional.ofNullable(entry.attachment());
+            Optional<HeavyHitterAddress> geo = address.filter(a -> a.geo() != null);
+
+            batch.bind("bucket_id", bucketId)
+                    .bind("item_key", entry.key())
+                    .bind("weight", entry.weight())
+                    .bind("error", entry.error())
+                    .bind("value1", entry.value1())
+                    .bind("value2", entry.value2())
+                    .bind("address", address.map(HeavyHitterAddress::address).orElse(null))
+                    .bind("port", address.map(HeavyHitterAddress::port).orElse(null))
+                    .bind("address_geo_asn_number", geo.map(g -> g.geo().asn().number()).orElse(null))
+                    .bind("address_geo_asn_name", geo.map(g -> g.geo().asn().name()).orElse(null))
+                    .bind("address_geo_asn_domain", geo.map(g -> g.geo().asn().domain()).orElse(null))
+                    .bind("address_geo_city", geo.map(g -> g.geo().geo().city()).orElse(null))
+                    .bind("address_geo_country_code", geo.map(g -> g.geo().geo().countryCode()).orElse(null))
+                    .bind("address_geo_latitude", geo.map(g -> g.geo().geo().latitude()).orElse(null))
+                    .bind("address_geo_longitude", geo.map(g -> g.geo().geo().longitude()).orElse(null))
+                    .bind("address_is_site_local", address.map(HeavyHitterAddress::isSiteLocal).orElse(null))
+                    .bind("address_is_loopback", address.map(HeavyHitterAddress::isLoopback).orElse(null))
+                    .bind("address_is_multicast", address.map(HeavyHitterAddress::isMulticast).orElse(null))
+                    .bind("members", entry.members() == null ? null : entry.members().toByteArray())
+                    .add();
+        }
+
+        if (batch.size() > 0) {
+            batch.execute();
+        }
+    }
+
+    /**
+     * Heavy hitters can answer a time range if it is long enough to be worth it, if buckets were recorded since the
+     * start of the range and if no bucket in the range missed late reports. Buckets are hourly and a range is extended
+     * to the start of the hour it starts in.
+     *
+     * Hours without any bucket of a tap are not gaps. The tap had no traffic in that hour.
+     */
+    public boolean covers(HeavyHitterDimension dimension, TimeRange timeRange, List<UUID> taps) {
+        if (taps.isEmpty() || timeRange.isAllTime()
+                || Hours.hoursBetween(timeRange.from(), timeRange.to()).getHours() < MINIMUM_RANGE_HOURS) {
+            return false;
+        }
+
+        // Gaps that are not persisted yet.
+        DateTime bucketFrom = bucketStart(timeRange.from());
+        for (HeavyHitterBucketKey gap : gaps) {
+            if (gap.dimension() == dimension && taps.contains(gap.tapUuid())
+                    && !gap.bucketStart().isBefore(bucketFrom) && !gap.bucketStart().isAfter(timeRange.to())) {
+                return false;
+            }
+        }
+
+        return nzyme.getDatabase().withHandle(handle -> {
+            Optional<Timestamp> firstBucket = handle.createQuery("SELECT MIN(bucket_start) FROM heavy_hitter_buckets " +
+                            "WHERE dimension = :dimension AND tap_uuid IN (<taps>)")
+                    .bind("dimension", dimension.name())
+                    .bindList("taps", taps)
+                    .mapTo(Timestamp.class)
+                    .findOne();
+
+            if (firstBucket.isEmpty() || new DateTime(firstBucket.get()).isAfter(bucketFrom)) {
+                return false;
+            }
+
+            return !handle.createQuery("SELECT EXISTS(SELECT 1 FROM heavy_hitter_gaps " +
+                            "WHERE dimension = :dimension AND tap_uuid IN (<taps>) " +
+                            "AND bucket_start >= :bucket_from AND bucket_start <= :tr_to)")
+                    .bind("dimension", dimension.name())
+                    .bindList("taps", taps)
+                    .bind("bucket_from", bucketFrom)
+                    .bind("tr_to", timeRange.to())
+                    .mapTo(Boolean.class)
+                    .one();
+        });
+    }
+
+    /**
+     * Estimated number of distinct keys in the time range.
+     */
+    public long countDistinctKeys(HeavyHitterDimension dimension, TimeRange timeRange, List<UUID> taps) {
+        if (taps.isEmpty()) {
+            return 0;
+        }
+
+        HyperLogLog distinctKeys = new HyperLogLog(DISTINCT_KEYS_PRECISION);
+
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createQuery("SELECT distinct_keys FROM heavy_hitter_buckets " +
+                                "WHERE dimension = :dimension AND bucket_start >= :bucket_from " +
+                                "AND bucket_start <= :tr_to AND tap_uuid IN (<taps>)")
+                        .bind("dimension", dimension.name())
+                        .bind("bucket_from", bucketStart(timeRange.from()))
+                        .bind("tr_to", timeRange.to())
+                        .bindList("taps", taps)
+                        .map((rs, ctx) -> HyperLogLog.fromByteArray(rs.getBytes("distinct_keys")))
+                        .forEach(distinctKeys::merge)
+        );
+
+        return distinctKeys.estimate();
+    }
+
+    /**
+     * Estimated number of distinct members of the given keys in the time range.
+     */
+    public Map<String, Long> countMembers(HeavyHitterDimension dimension,
+                                          TimeRange timeRange,
+                                          List<UUID> taps,
+                                          Collection<String> keys) {
+        if (taps.isEmpty() || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, HyperLogLog> members = Maps.newHashMap();
+
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createQuery("SELECT e.item_key, e.members FROM heavy_hitter_entries AS e " +
+                                "JOIN heavy_hitter_buckets AS b ON b.id = e.bucket_id " +
+                                "WHERE b.dimension = :dimension AND b.bucket_start >= :bucket_from " +
+                                "AND b.bucket_start <= :tr_to AND b.tap_uuid IN (<taps>) " +
+                                "AND e.item_key IN (<keys>) AND e.members IS NOT NULL")
+                        .bind("dimension", dimension.name())
+                        .bind("bucket_from", bucketStart(timeRange.from()))
+                        .bind("tr_to", timeRange.to())
+                        .bindList("taps", taps)
+                        .bindList("keys", keys)
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                rs.getString("item_key"), HyperLogLog.fromByteArray(rs.getBytes("members"))
+                        ))
+                        .forEach(e -> members.merge(e.getKey(), e.getValue(), (a, b) -> {
+                            a.merge(b);
+                            return a;
+                        }))
+        );
+
+        Map<String, Long> result = Maps.newHashMap();
+        for (Map.Entry<String, HyperLogLog> member : members.entrySet()) {
+            result.put(member.getKey(), member.getValue().estimate());
+        }
+
+        return result;
+    }
+
+    public void shutdown() {
+        // Let a running flush finish before the final one. The database is closed right after.
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Timed out waiting for running flush.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private static boolean isEnded(DateTime bucketStart, long now) {
+        return bucketStart.plusHours(1).getMillis() + BUCKET_GRACE_MILLIS < now;
+    }
+
+    public static DateTime bucketStart(DateTime timestamp) {
+        return timestamp.withZone(DateTimeZone.UTC).hourOfDay().roundFloorCopy();
+    }
+
+    public static String buildDNSServerKey(String address, @Nullable Integer port) {
+        return address + "/" + port;
+    }
+
+    public final class Batch {
+
+        private final List<Runnable> records = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        public void recordL4(UUID tapUuid,
+                             DateTime timestamp,
+                             @Nullable String sourceMac,
+                             @Nullable String destinationMac,
+                             HeavyHitterAddress source,
+                             HeavyHitterAddress destination,
+                             long bytesRx,
+                             long bytesTx) {
+            records.add(() -> HeavyHitters.this.recordL4(
+                    tapUuid, timestamp, sourceMac, destinationMac, source, destination, bytesRx, bytesTx
+            ));
+        }
+
+        public void recordDNSPair(UUID tapUuid,
+                                  DateTime timestamp,
+                                  String clientAddress,
+                                  HeavyHitterAddress server,
+                                  long requestCount) {
+            records.add(() -> HeavyHitters.this.recordDNSPair(
+                    tapUuid, timestamp, clientAddress, server, requestCount
+            ));
+        }
+
+        public void commit() {
+            records.forEach(Runnable::run);
+            records.clear();
+        }
+
+    }
+
+    private static final class Bucket {
+
+        private final SpaceSaving<HeavyHitterAddress> sketch;
+        private final HyperLogLog distinctKeys;
+
+        private boolean dirty = false;
+
+        Bucket() {
+            this.sketch = new SpaceSaving<>(SKETCH_CAPACITY, MEMBERS_PRECISION);
+            this.distinctKeys = new HyperLogLog(DISTINCT_KEYS_PRECISION);
+        }
+
+        synchronized void offer(String key,
+                                long value1,
+                                long value2,
+                                @Nullable HeavyHitterAddress address,
+                                @Nullable String member) {
+            sketch.offer(key, value1 + value2, value1, value2, address, member);
+            distinctKeys.offer(key);
+            dirty = true;
+        }
+
+        @Nullable
+        synchronized BucketSnapshot drain() {
+            if (!dirty) {
+                return null;
+            }
+
+            dirty = false;
+
+            List<SpaceSaving.Entry<HeavyHitterAddress>> entries = sketch.top(PERSISTED_ENTRIES);
+
+            // Keys that are not persisted were at most as heavy as the lightest persisted key.
+            long floorWeight = sketch.size() > entries.size()
+                    ? entries.get(entries.size() - 1).weight()
+                    : sketch.minimumWeight();
+
+            return new BucketSnapshot(entries, sketch.totalWeight(), floorWeight, distinctKeys.toByteArray());
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+    }
+
+    private static final class BucketSnapshot {
+
+        private final List<SpaceSaving.Entry<HeavyHitterAddress>> entries;
+        private final long totalWeight;
+        private final long floorWeight;
+        private final byte[] distinctKeys;
+
+        BucketSnapshot(List<SpaceSaving.Entry<HeavyHitterAddress>> entries,
+                       long totalWeight,
+                       long floorWeight,
+                       byte[] distinctKeys) {
+            this.entries = entries;
+            this.totalWeight = totalWeight;
+            this.floorWeight = floorWeight;
+            this.distinctKeys = distinctKeys;
+        }
+
+    }
+
+}
@@ -6,6 +6,8 @@ import app.nzyme.core.database.generic.L4AddressDataAddressNumberNumberAggregati
 import app.nzyme.core.database.generic.NumberNumberNumberAggregationResult;
 import app.nzyme.core.database.generic.StringNumberNumberAggregationResult;
 import app.nzyme.core.ethernet.Ethernet;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitterDimension;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.ethernet.l4.db.L4AddressData;
 import app.nzyme.core.ethernet.L4Type;
 import app.nzyme.core.ethernet.l4.db.L4Numbers;
@@ -261,6 +263,11 @@ public class L4 {
             return 0;
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_SOURCE_MAC, timeRange, filters, taps)) {
+            return nzyme.getTablesService().getHeavyHitters()
+                    .countDistinctKeys(HeavyHitterDimension.L4_SOURCE_MAC, timeRange, taps);
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -288,6 +295,12 @@ public class L4 {
             return Collections.emptyList();
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_SOURCE_MAC, timeRange, filters, taps)) {
+            return getTopTrafficMacsFromHeavyHitters(
+                    HeavyHitterDimension.L4_SOURCE_MAC, timeRange, limit, offset, taps
+            );
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -315,6 +328,11 @@ public class L4 {
             return 0;
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_DESTINATION_MAC, timeRange, filters, taps)) {
+            return nzyme.getTablesService().getHeavyHitters()
+                    .countDistinctKeys(HeavyHitterDimension.L4_DESTINATION_MAC, timeRange, taps);
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -342,6 +360,12 @@ public class L4 {
             return Collections.emptyList();
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_DESTINATION_MAC, timeRange, filters, taps)) {
+            return getTopTrafficMacsFromHeavyHitters(
+                    HeavyHitterDimension.L4_DESTINATION_MAC, timeRange, limit, offset, taps
+            );
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -370,6 +394,11 @@ public class L4 {
             return 0;
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_SOURCE_ADDRESS, timeRange, filters, taps)) {
+            return nzyme.getTablesService().getHeavyHitters()
+                    .countDistinctKeys(HeavyHitterDimension.L4_SOURCE_ADDRESS, timeRange, taps);
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -396,6 +425,12 @@ public class L4 {
             return Collections.emptyList();
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_SOURCE_ADDRESS, timeRange, filters, taps)) {
+            return getTopTrafficAddressesFromHeavyHitters(
+                    HeavyHitterDimension.L4_SOURCE_ADDRESS, timeRange, limit, offset, taps
+            );
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -432,6 +467,11 @@ public class L4 {
             return 0;
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_DESTINATION_ADDRESS, timeRange, filters, taps)) {
+            return nzyme.getTablesService().getHeavyHitters()
+                    .countDistinctKeys(HeavyHitterDimension.L4_DESTINATION_ADDRESS, timeRange, taps);
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -459,6 +499,12 @@ public class L4 {
             return Collections.emptyList();
         }
 
+        if (useHeavyHitters(HeavyHitterDimension.L4_DESTINATION_ADDRESS, timeRange, filters, taps)) {
+            return getTopTrafficAddressesFromHeavyHitters(
+                    HeavyHitterDimension.L4_DESTINATION_ADDRESS, timeRange, limit, offset, taps
+            );
+        }
+
         FilterSqlFragment filterFragment = FilterSql.generate(filters, new L4Filters());
 
         return nzyme.getDatabase().withHandle(handle ->
@@ -625,4 +671,72 @@ public class L4 {
         );
     }
 
+    /**
+     * Unfiltered top-N views over large time ranges are answered from the heavy hitter sketches instead of the raw
+     * sessions. The result is approximate and the range is extended to full hours. See {@link HeavyHitters}.
+     */
+    private boolean useHeavyHitters(HeavyHitterDimension dimension,
+                                    TimeRange timeRange,
+                                    Filters filters,
+                                    List<UUID> taps) {
+        return filters.filters().values().stream().allMatch(List::isEmpty)
+                && nzyme.getTablesService().getHeavyHitters().covers(dimension, timeRange, taps);
+    }
+
+    private List<StringNumberNumberAggregationResult> getTopTrafficMacsFromHeavyHitters(HeavyHitterDimension dimension,
+                                                                                        TimeRange timeRange,
+                                                                                        int limit,
+                                                                                        int offset,
+                                                                                        List<UUID> taps) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT e.item_key AS key, SUM(e.value1) AS value1, SUM(e.value2) AS value2 " +
+                                "FROM heavy_hitter_entries AS e " +
+                                "JOIN heavy_hitter_buckets AS b ON b.id = e.bucket_id " +
+                                "WHERE b.dimension = :dimension AND b.bucket_start >= :bucket_from " +
+                                "AND b.bucket_start <= :tr_to AND b.tap_uuid IN (<taps>) " +
+                                "GROUP BY e.item_key " +
+                                "ORDER BY SUM(e.weight) DESC LIMIT :limit OFFSET :offset")
+                        .bind("dimension", dimension.name())
+                        .bind("bucket_from", HeavyHitters.bucketStart(timeRange.from()))
+                        .bind("tr_to", timeRange.to())
+                        .bind("limit", limit)
+                        .bind("offset", offset)
+                        .bindList("taps", taps)
+                        .mapTo(StringNumberNumberAggregationResult.class)
+                        .list()
+        );
+    }
+
+    private List<L4AddressDataAddressNumberNumberAggregationResult> getTopTrafficAddressesFromHeavyHitters(
+            HeavyHitterDimension dimension, TimeRange timeRange, int limit, int offset, List<UUID> taps) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT e.item_key AS key_address, NULL as key_port, " +
+                                "MIN(e.address_geo_asn_number) AS key_address_geo_asn_number, " +
+                                "MIN(e.address_geo_asn_name) AS key_address_geo_asn_name, " +
+                                "MIN(e.address_geo_asn_domain) AS key_address_geo_asn_domain, " +
+                                "MIN(e.address_geo_city) AS key_address_geo_city, " +
+                                "MIN(e.address_geo_country_code) AS key_address_geo_country_code, " +
+                                "MIN(e.address_geo_latitude) AS key_address_geo_latitude, " +
+                                "MIN(e.address_geo_longitude) AS key_address_geo_longitude, " +
+                                "BOOL_AND(e.address_is_site_local) AS key_address_is_site_local, " +
+                                "BOOL_AND(e.address_is_loopback) AS key_address_is_loopback, " +
+                                "BOOL_AND(e.address_is_multicast) AS key_address_is_multicast, " +
+                                "SUM(e.value1) AS value1, SUM(e.value2) AS value2 " +
+                                "FROM heavy_hitter_entries AS e " +
+                                "JOIN heavy_hitter_buckets AS b ON b.id = e.bucket_id " +
+                                "WHERE b.dimension = :dimension AND b.bucket_start >= :bucket_from " +
+                                "AND b.bucket_start <= :tr_to AND b.tap_uuid IN (<taps>) " +
+                                "GROUP BY e.item_key " +
+                                "ORDER BY SUM(e.weight) DESC LIMIT :limit OFFSET :offset")
+                        .bind("dimension", dimension.name())
+                        .bind("bucket_from", HeavyHitters.bucketStart(timeRange.from()))
+                        .bind("tr_to", timeRange.to())
+                        .bind("limit", limit)
+                        .bind("offset", offset)
+                        .bindList("taps", taps)
+                        .mapTo(L4AddressDataAddressNumberNumberAggregationResult.class)
+                        .list()
+        );
+    }
+
 }
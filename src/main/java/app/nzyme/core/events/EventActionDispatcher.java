@@ -0,0 +1,326 @@
+package app.nzyme.core.events;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.detection.alerts.DetectionType;
+import app.nzyme.core.events.actions.Action;
+import app.nzyme.core.events.actions.ActionExecutionResult;
+import app.nzyme.core.events.actions.EventActionFactory;
+import app.nzyme.core.events.db.EventActionDeliveryEntry;
+import app.nzyme.core.events.db.EventActionEntry;
+import app.nzyme.core.events.types.DetectionEvent;
+import app.nzyme.core.events.types.EventType;
+import app.nzyme.core.events.types.SystemEvent;
+import app.nzyme.core.events.types.SystemEventType;
+import app.nzyme.core.util.MetricNames;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes event actions outside the thread that raised the event. Every delivery is persisted before it is attempted,
+ * and failed deliveries are retried with exponential backoff. Deliveries are claimed with a lease by pushing their
+ * next attempt into the future, so that every delivery is only attempted by one node at a time.
+ */
+public class EventActionDispatcher {
+
+    private static final Logger LOG = LogManager.getLogger(EventActionDispatcher.class);
+
+    private static final int WORKERS = 4;
+    private static final int QUEUE_SIZE = 1000;
+
+    // Maximum number of concurrent executions of the same action. Protects slow receivers.
+    private static final int MAX_CONCURRENT_EXECUTIONS_PER_ACTION = 2;
+
+    // Must be longer than the longest possible execution of an action, including its timeouts.
+    private static final int LEASE_SECONDS = 120;
+
+    private static final int MAX_ATTEMPTS = 10;
+    private static final int INITIAL_BACKOFF_SECONDS = 15;
+    private static final int MAX_BACKOFF_SECONDS = 3600;
+    private static final int CONCURRENCY_POSTPONE_SECONDS = 5;
+
+    private static final int RETRY_POLL_INTERVAL_SECONDS = 15;
+
+    private final NzymeNode nzyme;
+    private final EventEngineImpl eventEngine;
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<UUID, Semaphore> actionPermits;
+
+    // Built actions, so that connections and HTTP clients are reused. Rebuilt if an action was changed.
+    private final Cache<UUID, BuiltAction> actions;
+
+    private final Timer deliveryLatencyTimer;
+    private final Timer executionTimer;
+    private final Meter failureMeter;
+    private final Meter abandonedMeter;
+    private final Meter rejectedMeter;
+
+    public EventActionDispatcher(NzymeNode nzyme, EventEngineImpl eventEngine) {
+        this.nzyme = nzyme;
+        this.eventEngine = eventEngine;
+
+        this.executor = new ThreadPoolExecutor(
+                WORKERS,
+                WORKERS,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("event-actions-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.actionPermits = new ConcurrentHashMap<>();
+
+        // Email actions read the SMTP configuration when they are built. Make sure to pick up changes eventually.
+        this.actions = CacheBuilder.newBuilder()
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+
+        MetricRegistry metrics = nzyme.getMetrics();
+        this.deliveryLatencyTimer = metrics.timer(MetricNames.EVENT_ACTIONS_DELIVERY_LATENCY_TIMER);
+        this.executionTimer = metrics.timer(MetricNames.EVENT_ACTIONS_EXECUTION_TIMER);
+        this.failureMeter = metrics.meter(MetricNames.EVENT_ACTIONS_FAILURES);
+        this.abandonedMeter = metrics.meter(MetricNames.EVENT_ACTIONS_ABANDONED);
+        this.rejectedMeter = metrics.meter(MetricNames.EVENT_ACTIONS_REJECTED);
+        metrics.register(MetricNames.EVENT_ACTIONS_QUEUE_DEPTH, (Gauge<Integer>) () -> executor.getQueue().size());
+    }
+
+    public void initialize() {
+        Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("event-actions-retry-%d")
+                        .setDaemon(true)
+                        .build()
+        ).scheduleWithFixedDelay(this::retryDueDeliveries,
+                RETRY_POLL_INTERVAL_SECONDS, RETRY_POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void dispatch(UUID actionId, SystemEvent event) {
+        submit(persist(actionId, EventType.SYSTEM, event.type().name(), null, event.details(), event.timestamp()));
+    }
+
+    public void dispatch(UUID actionId, DetectionEvent event) {
+        submit(persist(actionId, EventType.DETECTION, event.detectionType().name(), event.alertId(),
+                event.details(), event.timestamp()));
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private EventActionDeliveryEntry persist(UUID actionId,
+                                             EventType eventType,
+                                             String eventReference,
+                                             @Nullable UUID alertId,
+                                             String details,
+                                             DateTime eventTimestamp) {
+        // Inserted with a lease because we attempt the first delivery right away.
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("INSERT INTO event_action_deliveries(action_id, event_type, event_reference, " +
+                                "alert_id, details, event_timestamp, attempts, next_attempt_at, created_at) " +
+                                "VALUES(:action_id, :event_type, :event_reference, :alert_id, :details, " +
+                                ":event_timestamp, 0, NOW() + make_interval(secs => :lease), NOW()) RETURNING *")
+                        .bind("action_id", actionId)
+                        .bind("event_type", eventType)
+                        .bind("event_reference", eventReference)
+                        .bind("alert_id", alertId)
+                        .bind("details", details)
+                        .bind("event_timestamp", eventTimestamp)
+                        .bind("lease", LEASE_SECONDS)
+                        .mapTo(EventActionDeliveryEntry.class)
+                        .one()
+        );
+    }
+
+    private void submit(EventActionDeliveryEntry delivery) {
+        try {
+            executor.execute(() -> deliver(delivery));
+        } catch (RejectedExecutionException e) {
+            // The delivery stays persisted and will be picked up again after the lease expired.
+            rejectedMeter.mark();
+            LOG.warn("Event action queue is full. Delaying delivery [{}] of action [{}].",
+                    delivery.id(), delivery.actionId());
+        }
+    }
+
+    void retryDueDeliveries() {
+        try {
+            int capacity = executor.getQueue().remainingCapacity();
+            if (capacity == 0) {
+                return;
+            }
+
+            List<EventActionDeliveryEntry> due = nzyme.getDatabase().withHandle(handle ->
+                    handle.createQuery("UPDATE event_action_deliveries " +
+                                    "SET next_attempt_at = NOW() + make_interval(secs => :lease) " +
+                                    "WHERE id IN (SELECT id FROM event_action_deliveries " +
+                                    "WHERE next_attempt_at <= NOW() ORDER BY next_attempt_at " +
+                                    "LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *")
+                            .bind("lease", LEASE_SECONDS)
+                            .bind("limit", capacity)
+                            .mapTo(EventActionDeliveryEntry.class)
+                            .list()
+            );
+
+            for (EventActionDeliveryEntry delivery : due) {
+                submit(delivery);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not retry event action deliveries.", e);
+        }
+    }
+
+    private void deliver(EventActionDeliveryEntry delivery) {
+        Semaphore permits = actionPermits.computeIfAbsent(
+                delivery.actionId(), id -> new Semaphore(MAX_CONCURRENT_EXECUTIONS_PER_ACTION)
+        );
+
+        if (!permits.tryAcquire()) {
+            // Too many concurrent executions of this action. Try again soon, without counting as an attempt.
+            reschedule(delivery.id(), delivery.attempts(), CONCURRENCY_POSTPONE_SECONDS, null);
+            return;
+        }
+
+        try {
+            Optional<EventActionEntry> ea = eventEngine.findEventAction(delivery.actionId());
+            if (ea.isEmpty()) {
+                LOG.warn("Event action [{}] of delivery [{}] not found. Discarding.",
+                        delivery.actionId(), delivery.id());
+                delete(delivery.id());
+                return;
+            }
+
+            ActionExecutionResult result;
+            String error = null;
+            try (Timer.Context ignored = executionTimer.time()) {
+                result = execute(buildAction(ea.get()), delivery);
+            } catch (Exception e) {
+                LOG.error("Could not execute event action [{}/{}].",
+                        ea.get().actionType(), ea.get().uuid(), e);
+                result = ActionExecutionResult.FAILURE;
+                error = e.getMessage();
+            }
+
+            if (result == ActionExecutionResult.SUCCESS) {
+                delete(delivery.id());
+                deliveryLatencyTimer.update(
+                        System.currentTimeMillis() - delivery.createdAt().getMillis(), TimeUnit.MILLISECONDS
+                );
+            } else {
+                failed(delivery, ea.get(), error);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not process event action delivery [{}].", delivery.id(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private ActionExecutionResult execute(Action action, EventActionDeliveryEntry delivery) {
+        switch (EventType.valueOf(delivery.eventType())) {
+            case SYSTEM:
+                return action.execute(SystemEvent.create(
+                        SystemEventType.valueOf(delivery.eventReference()),
+                        delivery.eventTimestamp(),
+                        delivery.details()
+                ));
+            case DETECTION:
+                return action.execute(DetectionEvent.create(
+                        delivery.alertId(),
+                        DetectionType.valueOf(delivery.eventReference()),
+                        delivery.details(),
+                        delivery.eventTimestamp()
+                ));
+            default:
+                throw new IllegalArgumentException("Unknown event type: " + delivery.eventType());
+        }
+    }
+
+    private Action buildAction(EventActionEntry ea) throws Exception {
+        BuiltAction built = actions.getIfPresent(ea.uuid());
+
+        if (built == null || !built.updatedAt.equals(ea.updatedAt())) {
+            built = new BuiltAction(ea.updatedAt(), EventActionFactory.build(nzyme, ea));
+            actions.put(ea.uuid(), built);
+        }
+
+        return built.action;
+    }
+
+    private void failed(EventActionDeliveryEntry delivery, EventActionEntry ea, @Nullable String error) {
+        failureMeter.mark();
+
+        int attempts = delivery.attempts() + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            LOG.error("Giving up on event action [{}/{}] for event [{}/{}] after <{}> failed attempts.",
+                    ea.actionType(), ea.uuid(), delivery.eventType(), delivery.eventReference(), attempts);
+            abandonedMeter.mark();
+            delete(delivery.id());
+            return;
+        }
+
+        long backoff = Math.min((long) INITIAL_BACKOFF_SECONDS << (attempts - 1), MAX_BACKOFF_SECONDS);
+
+        LOG.warn("Event action [{}/{}] failed. Retrying in <{}s>. (Attempt <{}/{}>)",
+                ea.actionType(), ea.uuid(), backoff, attempts, MAX_ATTEMPTS);
+
+        reschedule(delivery.id(), attempts, backoff, error == null ? "Action execution failed." : error);
+    }
+
+    private void reschedule(long deliveryId, int attempts, long delaySeconds, @Nullable String error) {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createUpdate("UPDATE event_action_deliveries SET attempts = :attempts, " +
+                                "next_attempt_at = NOW() + make_interval(secs => :delay), " +
+                                "last_error = COALESCE(:last_error, last_error) WHERE id = :id")
+                        .bind("attempts", attempts)
+                        .bind("delay", delaySeconds)
+                        .bind("last_error", error)
+                        .bind("id", deliveryId)
+                        .execute()
+        );
+    }
+
+    private void delete(long deliveryId) {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createUpdate("DELETE FROM event_action_deliveries WHERE id = :id")
+                        .bind("id", deliveryId)
+                        .execute()
+        );
+    }
+
+    private static final class BuiltAction {
+
+        private final DateTime updatedAt;
+        private final Action action;
+
+        private BuiltAction(DateTime updatedAt, Action action) {
+            this.updatedAt = updatedAt;
+            this.action = action;
+        }
+
+    }
+
+}
@@ -8,6 +8,9 @@ import java.util.UUID;
 
 public interface EventEngine {
 
+    void initialize();
+    void shutdown();
+
     void processEvent(SystemEvent event, @Nullable UUID organizationId, @Nullable UUID tenantId);
     void processEvent(DetectionEvent event, UUID organizationId, UUID tenantId);
 
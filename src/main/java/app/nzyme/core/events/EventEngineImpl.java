@@ -2,7 +2,6 @@ package app.nzyme.core.events;
 
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.detection.alerts.DetectionType;
-import app.nzyme.core.events.actions.EventActionFactory;
 import app.nzyme.core.events.db.EventActionEntry;
 import app.nzyme.core.events.db.EventEntry;
 import app.nzyme.core.events.db.SubscriptionEntry;
@@ -22,8 +21,25 @@ public class EventEngineImpl implements EventEngine {
 
     private final NzymeNode nzyme;
 
+    private final EventActionDispatcher dispatcher;
+
     public EventEngineImpl(NzymeNode nzyme) {
         this.nzyme = nzyme;
+        this.dispatcher = new EventActionDispatcher(nzyme, this);
+    }
+
+    @Override
+    public void initialize() {
+        dispatcher.initialize();
+    }
+
+    @Override
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    EventActionDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     @Override
@@ -68,24 +84,15 @@ public class EventEngineImpl implements EventEngine {
             );
         }
 
-        // Process.
+        // Actions are executed asynchronously.
         for (UUID actionId : actionIds) {
-            Optional<EventActionEntry> ea = findEventAction(actionId);
-
-            if (ea.isEmpty()) {
-                LOG.warn("Event action [{}] referenced by event [{}] not found.", actionId, event.type());
-                continue;
-            }
-
             try {
-                EventActionFactory.build(nzyme, ea.get())
-                        .execute(event);
+                dispatcher.dispatch(actionId, event);
             } catch (Exception e) {
-                LOG.error("Could not execute event action [{}/{}] referenced by event [{}]",
-                        ea.get().actionType(), ea.get().uuid(), event.type(), e);
+                LOG.error("Could not dispatch event action [{}] referenced by event [{}]",
+                        actionId, event.type(), e);
             }
         }
-
     }
 
     @Override
@@ -116,21 +123,13 @@ public class EventEngineImpl implements EventEngine {
                         .list()
         );
 
-        // Process.
+        // Actions are executed asynchronously.
         for (UUID actionId : actionIds) {
-            Optional<EventActionEntry> ea = findEventAction(actionId);
-
-            if (ea.isEmpty()) {
-                LOG.warn("Event action [{}] referenced by detection event [{}/{}] not found.",
-                        actionId, event.detectionType(), event.alertId());
-                continue;
-            }
-
             try {
-                EventActionFactory.build(nzyme, ea.get()).execute(event);
+                dispatcher.dispatch(actionId, event);
             } catch (Exception e) {
-                LOG.error("Could not execute event action [{}/{}] referenced by detection event [{}/{}]",
-                        ea.get().actionType(), ea.get().uuid(), event.detectionType(), event.alertId(), e);
+                LOG.error("Could not dispatch event action [{}] referenced by detection event [{}/{}]",
+                        actionId, event.detectionType(), event.alertId(), e);
             }
         }
     }
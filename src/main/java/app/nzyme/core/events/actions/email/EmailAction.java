@@ -111,6 +111,7 @@ public class EmailAction implements Action {
         this.mailer = MailerBuilder
                 .withSMTPServer(hostname, port, username, password)
                 .withTransportStrategy(parsedTransportStrategy)
+                .withSessionTimeout(30 * 1000)
                 .clearEmailAddressCriteria()
                 .buildMailer();
 
@@ -27,6 +27,9 @@ public class WebhookAction implements Action {
 
     private static final Logger LOG = LogManager.getLogger(WebhookAction.class);
 
+    // All webhook clients are derived from this client and share its connection pool and dispatcher.
+    private static final OkHttpClient BASE_HTTP_CLIENT = new OkHttpClient();
+
     private final NzymeNode nzyme;
 
     private final ObjectMapper om;
@@ -40,10 +43,11 @@ public class WebhookAction implements Action {
 
         this.om = new ObjectMapper();
 
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        OkHttpClient.Builder builder = BASE_HTTP_CLIENT.newBuilder();
         builder.connectTimeout(15, TimeUnit.SECONDS)
                 .readTimeout(15, TimeUnit.SECONDS)
-                .writeTimeout(15, TimeUnit.SECONDS);
+                .writeTimeout(15, TimeUnit.SECONDS)
+                .callTimeout(30, TimeUnit.SECONDS);
 
         if (configuration.allowInsecure()) {
             try {
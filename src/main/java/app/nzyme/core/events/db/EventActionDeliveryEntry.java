@@ -0,0 +1,63 @@
+package app.nzyme.core.events.db;
+
+import com.google.auto.value.AutoValue;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+@AutoValue
+public abstract class EventActionDeliveryEntry {
+
+    public abstract long id();
+    public abstract UUID actionId();
+    public abstract String eventType();
+    public abstract String eventReference();
+    @Nullable
+    public abstract UUID alertId();
+    public abstract String details();
+    public abstract DateTime eventTimestamp();
+    public abstract int attempts();
+    public abstract DateTime createdAt();
+
+    public static EventActionDeliveryEntry create(long id, UUID actionId, String eventType, String eventReference, UUID alertId, String details, DateTime eventTimestamp, int attempts, DateTime createdAt) {
+        return builder()
+                .id(id)
+                .actionId(actionId)
+                .eventType(eventType)
+                .eventReference(eventReference)
+                .alertId(alertId)
+                .details(details)
+                .eventTimestamp(eventTimestamp)
+                .attempts(attempts)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_EventActionDeliveryEntry.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder id(long id);
+
+        public abstract Builder actionId(UUID actionId);
+
+        public abstract Builder eventType(String eventType);
+
+        public abstract Builder eventReference(String eventReference);
+
+        public abstract Builder alertId(UUID alertId);
+
+        public abstract Builder details(String details);
+
+        public abstract Builder eventTimestamp(DateTime eventTimestamp);
+
+        public abstract Builder attempts(int attempts);
+
+        public abstract Builder createdAt(DateTime createdAt);
+
+        public abstract EventActionDeliveryEntry build();
+    }
+}
@@ -0,0 +1,29 @@
+package app.nzyme.core.events.db;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.joda.time.DateTime;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+public class EventActionDeliveryEntryMapper implements RowMapper<EventActionDeliveryEntry> {
+
+    @Override
+    public EventActionDeliveryEntry map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return EventActionDeliveryEntry.create(
+                rs.getLong("id"),
+                UUID.fromString(rs.getString("action_id")),
+                rs.getString("event_type"),
+                rs.getString("event_reference"),
+                rs.getString("alert_id") == null ?
+                        null : UUID.fromString(rs.getString("alert_id")),
+                rs.getString("details"),
+                new DateTime(rs.getTimestamp("event_timestamp")),
+                rs.getInt("attempts"),
+                new DateTime(rs.getTimestamp("created_at"))
+        );
+    }
+
+}
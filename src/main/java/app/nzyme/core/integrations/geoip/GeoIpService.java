@@ -12,7 +12,9 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.net.HttpHeaders;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.maxmind.db.ClosedDatabaseException;
 import com.maxmind.db.Reader;
+import jakarta.annotation.Nullable;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -21,13 +23,17 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class GeoIpService {
@@ -39,20 +45,28 @@ public class GeoIpService {
 
     private final LoadingCache<InetAddress, Optional<GeoIpLookupResult>> cache;
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private Reader mmdb = null;
+    // Only serializes reloads. Lookups never lock and always use the reader that is current when they start.
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final AtomicReference<Reader> mmdb = new AtomicReference<>();
 
     private final ScheduledExecutorService refresher;
 
+    private final Path mmdbFile;
+    private final Path versionFile;
+
     // Can be disabled if Connect is not set up or GeoIp data source is not enabled in Connect.
-    private boolean isEnabled = false;
+    private volatile boolean isEnabled = false;
 
     public GeoIpService(NzymeNode nzyme) {
         this.nzyme = nzyme;
 
-        this.cache = CacheBuilder.newBuilder() // TODO Configurable
-                .maximumSize(10000)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
+        this.mmdbFile = nzyme.getDataDirectory().resolve("geoip").resolve("ipinfo.mmdb");
+        this.versionFile = nzyme.getDataDirectory().resolve("geoip").resolve("ipinfo.mmdb.version");
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(nzyme.getConfiguration().performance().geoIpCacheSize())
+                .expireAfterWrite(nzyme.getConfiguration().performance().geoIpCacheTtlMinutes(), TimeUnit.MINUTES)
+                .recordStats()
                 .build(new CacheLoader<>() {
                     @Override
                     public Optional<GeoIpLookupResult> load(@NotNull InetAddress address) {
@@ -71,6 +85,27 @@ public class GeoIpService {
             }
         });
 
+        nzyme.getMetrics().register(MetricNames.GEOIP_CACHE_HIT_COUNT, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().hitCount();
+            }
+        });
+
+        nzyme.getMetrics().register(MetricNames.GEOIP_CACHE_MISS_COUNT, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().missCount();
+            }
+        });
+
+        nzyme.getMetrics().register(MetricNames.GEOIP_CACHE_HIT_RATE, new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return cache.stats().hitRate();
+            }
+        });
+
         // Reload on configuration change.
         nzyme.getRegistryChangeMonitor()
                 .onChange("core", ConnectRegistryKeys.CONNECT_API_KEY.key(), this::reload);
@@ -92,11 +127,8 @@ public class GeoIpService {
     }
 
     private void reload() {
-        // Reload with new registry settings.
+        // Reload with new registry settings. The cache is only cleared if the GeoIP data actually changed.
         initialize();
-
-        // Clear cache.
-        cache.invalidateAll();
     }
 
     public void initialize() {
@@ -108,32 +140,74 @@ public class GeoIpService {
             return;
         }
 
-        lock.lock();
-
-        try {
-            // Load MMDB from connect.
-            Optional<byte[]> bytes = fetchMmdbFromConnect();
+        /*
+         * On startup, use the database from a previous run right away and check for a new version in the
+         * background. Nodes start fast and keep working if Connect is not reachable.
+         */
+        if (mmdb.get() == null && Files.isReadable(mmdbFile)) {
+            try {
+                reloadLock.lock();
+                try {
+                    swapReader(mmdbFile);
+                } finally {
+                    reloadLock.unlock();
+                }
 
-            // Check if GeoIP data was disabled in Connect for this cluster.
-            if (bytes.isEmpty()) {
-                this.isEnabled = false;
+                LOG.info("Loaded local GeoIP data from [{}]. Checking for updates in background.", mmdbFile);
+                refresher.execute(this::refreshFromConnect);
                 return;
+            } catch (Exception e) {
+                LOG.warn("Could not load local GeoIP data from [{}]. Downloading from Connect.", mmdbFile, e);
             }
+        }
 
-            // We have (new) data. Close current reader in preparation for switch.
-            if (this.mmdb != null) {
-                this.mmdb.close();
-            }
+        refreshFromConnect();
+    }
 
-            // Create new reader with (new) data.
-            this.mmdb = new Reader(new ByteArrayInputStream(bytes.get()));
-            this.isEnabled = true;
+    private void refreshFromConnect() {
+        reloadLock.lock();
+
+        try {
+            switch (fetchMmdbFromConnect()) {
+                case UPDATED:
+                    // Create new reader with new data and switch to it.
+                    swapReader(mmdbFile);
+                    this.isEnabled = true;
+                    cache.invalidateAll();
+                    break;
+                case NOT_MODIFIED:
+                    if (mmdb.get() == null) {
+                        swapReader(mmdbFile);
+                    }
+                    this.isEnabled = true;
+                    break;
+                case DISABLED:
+                    // GeoIP data was disabled in Connect for this cluster.
+                    this.isEnabled = false;
+                    break;
+                case FAILED:
+                    // Keep using the data we have, if any.
+                    this.isEnabled = mmdb.get() != null;
+                    break;
+            }
         } catch (Exception e) {
             LOG.error("Could not create MMDB reader.", e);
             this.isEnabled = false;
             throw new RuntimeException(e);
         } finally {
-            lock.unlock();
+            reloadLock.unlock();
+        }
+    }
+
+    /*
+     * The database is memory-mapped and not held on heap. Lookups in flight finish on the previous reader. Replacing
+     * the file does not affect the mapping of the previous reader because we always move a new file into place.
+     */
+    private void swapReader(Path file) throws IOException {
+        Reader previous = this.mmdb.getAndSet(new Reader(file.toFile(), Reader.FileMode.MEMORY_MAPPED));
+
+        if (previous != null) {
+            previous.close();
         }
     }
 
@@ -147,10 +221,8 @@ public class GeoIpService {
 
     private Optional<GeoIpLookupResult> mmdbLookup(InetAddress address) {
         try (Timer.Context ignored = lookupTimerUncached.time()) {
-            lock.lock();
-
             try {
-                IpInfoFreeCountryAsnLookupResult lookup = mmdb.get(address, IpInfoFreeCountryAsnLookupResult.class);
+                IpInfoFreeCountryAsnLookupResult lookup = readerLookup(address);
 
                 if (lookup == null) {
                     return Optional.empty();
@@ -186,13 +258,26 @@ public class GeoIpService {
             } catch (Exception e) {
                 LOG.info("Could not look up IP address [{}].", address, e);
                 return Optional.empty();
-            } finally {
-                lock.unlock();
             }
         }
     }
 
-    private Optional<byte[]> fetchMmdbFromConnect() {
+    @Nullable
+    private IpInfoFreeCountryAsnLookupResult readerLookup(InetAddress address) throws IOException {
+        Reader reader = mmdb.get();
+        if (reader == null) {
+            return null;
+        }
+
+        try {
+            return reader.get(address, IpInfoFreeCountryAsnLookupResult.class);
+        } catch (ClosedDatabaseException e) {
+            // The reader was replaced and closed by a reload while we were using it. Retry with the new one.
+            return mmdb.get().get(address, IpInfoFreeCountryAsnLookupResult.class);
+        }
+    }
+
+    private FetchResult fetchMmdbFromConnect() {
         LOG.debug("Loading new GeoIP data from Connect.");
 
         try {
@@ -210,39 +295,75 @@ public class GeoIpService {
                     .addPathSegment("ip")
                     .build();
 
-            Response response = c.newCall(new Request.Builder()
-                            .addHeader("User-Agent", "nzyme")
-                            .get()
-                            .url(url)
-                            .addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + nzyme.getConnect().getApiKey())
-                            .addHeader("Content-Type", "application/octet-stream")
-                            .addHeader(HttpHeaders.USER_AGENT, "nzyme-node")
-                            .build()
-                    ).execute();
+            Request.Builder request = new Request.Builder()
+                    .addHeader("User-Agent", "nzyme")
+                    .get()
+                    .url(url)
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + nzyme.getConnect().getApiKey())
+                    .addHeader("Content-Type", "application/octet-stream")
+                    .addHeader(HttpHeaders.USER_AGENT, "nzyme-node");
+
+            // Only download the database if the version in Connect differs from our local copy.
+            if (Files.isReadable(mmdbFile) && Files.isReadable(versionFile)) {
+                request.addHeader(HttpHeaders.IF_NONE_MATCH, Files.readString(versionFile).trim());
+            }
+
+            Response response = c.newCall(request.build()).execute();
 
             try (response) {
+                if (response.code() == 304) {
+                    LOG.debug("Local GeoIP data is up to date.");
+                    return FetchResult.NOT_MODIFIED;
+                }
+
                 if (!response.isSuccessful()) {
                     if (response.code() == 403) {
                         // GeoIP data disabled in Connect for this cluster.
-                        return Optional.empty();
+                        return FetchResult.DISABLED;
                     }
 
-                    throw new RuntimeException("Expected HTTP 200 or 403 but got HTTP " + response.code());
+                    throw new RuntimeException("Expected HTTP 200, 304 or 403 but got HTTP " + response.code());
                 }
 
-
                 if (response.body() == null) {
                     throw new RuntimeException("Empty response.");
                 }
 
+                // Stream to a temporary file and move it into place once complete.
+                Files.createDirectories(mmdbFile.getParent());
+                Path tmp = Files.createTempFile(mmdbFile.getParent(), "ipinfo", ".mmdb.tmp");
+                try {
+                    try (InputStream body = response.body().byteStream()) {
+                        Files.copy(body, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+
+                    Files.move(tmp, mmdbFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+
+                String version = response.header(HttpHeaders.ETAG);
+                if (version != null) {
+                    Files.writeString(versionFile, version);
+                } else {
+                    Files.deleteIfExists(versionFile);
+                }
+
                 LOG.info("GeoIP data download from Connect complete.");
 
-                return Optional.of(response.body().bytes());
+                return FetchResult.UPDATED;
             }
-        }catch (Exception e) {
+        } catch (Exception e) {
             LOG.error("Could not download GeoIP data from Connect.", e);
-            return Optional.empty();
+            return FetchResult.FAILED;
         }
     }
 
+    private enum FetchResult {
+        UPDATED,
+        NOT_MODIFIED,
+        DISABLED,
+        FAILED
+    }
+
 }
@@ -0,0 +1,34 @@
+package app.nzyme.core.metrics;
+
+/**
+ * Raw metrics tables that are rolled up into the metrics_rollups tiers.
+ */
+public enum MetricsRollupSource {
+
+    TAP_GAUGES("tap_metrics_gauges", "tap_uuid", "metric_value"),
+    TAP_TIMERS("tap_metrics_timers", "tap_uuid", "mean"),
+    NODE_GAUGES("node_metrics_gauges", "node_id", "metric_value");
+
+    private final String table;
+    private final String sourceIdColumn;
+    private final String valueColumn;
+
+    MetricsRollupSource(String table, String sourceIdColumn, String valueColumn) {
+        this.table = table;
+        this.sourceIdColumn = sourceIdColumn;
+        this.valueColumn = valueColumn;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getSourceIdColumn() {
+        return sourceIdColumn;
+    }
+
+    public String getValueColumn() {
+        return valueColumn;
+    }
+
+}
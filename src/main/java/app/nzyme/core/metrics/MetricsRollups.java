@@ -0,0 +1,166 @@
+package app.nzyme.core.metrics;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.taps.db.metrics.BucketSize;
+import jakarta.annotation.Nullable;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.Query;
+import org.joda.time.DateTime;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Tap and node metrics are written as raw rows and rolled up into two tiers: 1-minute and 1-hour buckets. Raw rows
+ * are only kept for a short time and serve "latest value" lookups. Histograms are read from the tiers.
+ *
+ * The start of the most recent minute bucket that was rolled up is persisted as a watermark. Every run continues from
+ * there, so buckets of runs that were missed are rolled up later. Raw rows are kept until they were rolled up.
+ */
+public class MetricsRollups {
+
+    public static final int RAW_RETENTION_HOURS = 2;
+
+    private static final int MINUTE_TIER_RETENTION_HOURS = 48;
+    private static final int HOUR_TIER_RETENTION_DAYS = 90;
+
+    // Recently written buckets are recomputed on every run to include rows that arrived late.
+    private static final int RECOMPUTE_MINUTES = 5;
+
+    // Raw rows that were never rolled up are still deleted after this time, even if rollups are not running at all.
+    private static final int MAXIMUM_RAW_RETENTION_HOURS = MINUTE_TIER_RETENTION_HOURS;
+
+    private static final String UPSERT = "ON CONFLICT (source, source_id, metric_name, resolution, bucket_start) " +
+            "DO UPDATE SET sample_count = EXCLUDED.sample_count, value_sum = EXCLUDED.value_sum, " +
+            "value_min = EXCLUDED.value_min, value_max = EXCLUDED.value_max";
+
+    private final NzymeNode nzyme;
+
+    public MetricsRollups(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+    }
+
+    /**
+     * Computes all 1-minute buckets from raw rows and all 1-hour buckets from 1-minute buckets since the last run.
+     * The most recent buckets are recomputed. Idempotent.
+     */
+    public void rollUp(Handle handle) {
+        DateTime from = findWatermark(handle)
+                .map(watermark -> watermark.minusMinutes(RECOMPUTE_MINUTES))
+                .orElse(DateTime.now().minusHours(RAW_RETENTION_HOURS));
+
+        for (MetricsRollupSource source : MetricsRollupSource.values()) {
+            handle.createUpdate("INSERT INTO metrics_rollups(source, source_id, metric_name, resolution, " +
+                            "bucket_start, sample_count, value_sum, value_min, value_max) " +
+                            "SELECT :source, " + source.getSourceIdColumn() + ", metric_name, :resolution, " +
+                            "date_trunc('minute', created_at) AS minute_bucket, COUNT(*), " +
+                            "SUM(" + source.getValueColumn() + "), MIN(" + source.getValueColumn() + "), " +
+                            "MAX(" + source.getValueColumn() + ") FROM " + source.getTable() + " " +
+                            "WHERE created_at >= date_trunc('minute', CAST(:from AS timestamptz)) " +
+                            "AND " + source.getValueColumn() + " IS NOT NULL " +
+                            "GROUP BY " + source.getSourceIdColumn() + ", metric_name, minute_bucket " + UPSERT)
+                    .bind("source", source.name())
+                    .bind("resolution", BucketSize.MINUTE.name())
+                    .bind("from", from)
+                    .execute();
+        }
+
+        handle.createUpdate("INSERT INTO metrics_rollups(source, source_id, metric_name, resolution, " +
+                        "bucket_start, sample_count, value_sum, value_min, value_max) " +
+                        "SELECT source, source_id, metric_name, :resolution, " +
+                        "date_trunc('hour', bucket_start) AS hour_bucket, SUM(sample_count), SUM(value_sum), " +
+                        "MIN(value_min), MAX(value_max) FROM metrics_rollups " +
+                        "WHERE resolution = :source_resolution " +
+                        "AND bucket_start >= date_trunc('hour', CAST(:from AS timestamptz)) " +
+                        "GROUP BY source, source_id, metric_name, hour_bucket " + UPSERT)
+                .bind("resolution", BucketSize.HOUR.name())
+                .bind("source_resolution", BucketSize.MINUTE.name())
+                .bind("from", from)
+                .execute();
+
+        handle.createUpdate("INSERT INTO metrics_rollup_watermarks(resolution, rolled_up_until) " +
+                        "VALUES(:resolution, date_trunc('minute', NOW())) " +
+                        "ON CONFLICT (resolution) DO UPDATE SET rolled_up_until = EXCLUDED.rolled_up_until")
+                .bind("resolution", BucketSize.MINUTE.name())
+                .execute();
+    }
+
+    /**
+     * Deletes expired buckets of both tiers. Must run on the same handle and under the same lock as the rollup.
+     */
+    public void retentionClean(Handle handle) {
+        handle.createUpdate("DELETE FROM metrics_rollups WHERE resolution = :resolution " +
+                        "AND bucket_start < :cutoff")
+                .bind("resolution", BucketSize.MINUTE.name())
+                .bind("cutoff", DateTime.now().minusHours(MINUTE_TIER_RETENTION_HOURS))
+                .execute();
+
+        handle.createUpdate("DELETE FROM metrics_rollups WHERE resolution = :resolution " +
+                        "AND bucket_start < :cutoff")
+                .bind("resolution", BucketSize.HOUR.name())
+                .bind("cutoff", DateTime.now().minusDays(HOUR_TIER_RETENTION_DAYS))
+                .execute();
+    }
+
+    /**
+     * Raw rows created before this time can be deleted. Usually {@link #RAW_RETENTION_HOURS} ago, but never before
+     * the rows were rolled up.
+     */
+    public DateTime rawRetentionCutoff() {
+        DateTime cutoff = DateTime.now().minusHours(RAW_RETENTION_HOURS);
+
+        Optional<DateTime> watermark = nzyme.getDatabase().withHandle(this::findWatermark);
+        if (watermark.isPresent() && watermark.get().minusMinutes(RECOMPUTE_MINUTES).isBefore(cutoff)) {
+            cutoff = watermark.get().minusMinutes(RECOMPUTE_MINUTES);
+        }
+
+        DateTime maximum = DateTime.now().minusHours(MAXIMUM_RAW_RETENTION_HOURS);
+        return cutoff.isBefore(maximum) ? maximum : cutoff;
+    }
+
+    private Optional<DateTime> findWatermark(Handle handle) {
+        return handle.createQuery("SELECT rolled_up_until FROM metrics_rollup_watermarks " +
+                        "WHERE resolution = :resolution")
+                .bind("resolution", BucketSize.MINUTE.name())
+                .mapTo(DateTime.class)
+                .findOne();
+    }
+
+    /**
+     * Histogram buckets with the columns bucket, sum, average, maximum and minimum, mapped to the requested type.
+     * Minute buckets are served from the 1-minute tier, everything coarser from the 1-hour tier.
+     *
+     * @param sourceId Tap or node to return the histogram for. All taps or nodes if null.
+     */
+    public <T> List<T> findHistogram(MetricsRollupSource source,
+                                     @Nullable UUID sourceId,
+                                     String metricName,
+                                     int hours,
+                                     BucketSize bucketSize,
+                                     Class<T> type) {
+        BucketSize resolution = bucketSize == BucketSize.MINUTE ? BucketSize.MINUTE : BucketSize.HOUR;
+
+        return nzyme.getDatabase().withHandle(handle -> {
+            Query query = handle.createQuery("SELECT date_trunc(:bucket_size, bucket_start) AS bucket, " +
+                            "SUM(value_sum) AS sum, SUM(value_sum) / SUM(sample_count) AS average, " +
+                            "MAX(value_max) AS maximum, MIN(value_min) AS minimum FROM metrics_rollups " +
+                            "WHERE source = :source AND metric_name = :metric_name AND resolution = :resolution " +
+                            "AND bucket_start > :since" +
+                            (sourceId == null ? "" : " AND source_id = :source_id") +
+                            " GROUP BY bucket ORDER BY bucket DESC")
+                    .bind("bucket_size", bucketSize.toString().toLowerCase())
+                    .bind("source", source.name())
+                    .bind("metric_name", metricName)
+                    .bind("resolution", resolution.name())
+                    .bind("since", DateTime.now().minusHours(hours));
+
+            if (sourceId != null) {
+                query.bind("source_id", sourceId);
+            }
+
+            return query.mapTo(type).list();
+        });
+    }
+
+}
@@ -17,6 +17,7 @@ import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executors;
@@ -33,11 +34,12 @@ public class OuiService {
 
     private final ScheduledExecutorService refresher;
 
+    // Only serializes reloads. Lookups read the current table without locking.
     private final ReentrantLock lock = new ReentrantLock();
-    private Map<String, String> ouis;
+    private volatile OuiTable ouis = OuiTable.build(Collections.emptyMap());
 
     // Can be disabled if Connect is not set up or OUI data source is not enabled in Connect.
-    private boolean isEnabled = false;
+    private volatile boolean isEnabled = false;
 
     public OuiService(NzymeNode nzyme) {
         this.nzyme = nzyme;
@@ -87,8 +89,10 @@ public class OuiService {
                 return;
             }
 
-            this.ouis = data.get();
+            this.ouis = OuiTable.build(data.get());
             this.isEnabled = true;
+
+            LOG.debug("Loaded [{}] OUI assignments.", ouis.size());
         } catch (Exception e) {
             LOG.error("Could not download OUI data from Connect.", e);
             this.isEnabled = false;
@@ -108,14 +112,7 @@ public class OuiService {
         }
 
         try(Timer.Context ignored = lookupTimer.time()) {
-            lock.lock();
-
-            try {
-                String oui = ouis.get(mac.toUpperCase().substring(0, 8).replace(":", ""));
-                return oui == null ? Optional.empty() : Optional.of(oui);
-            } finally {
-                lock.unlock();
-            }
+            return Optional.ofNullable(ouis.lookup(mac));
         }
     }
 
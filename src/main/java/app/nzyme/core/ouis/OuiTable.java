@@ -0,0 +1,225 @@
+package app.nzyme.core.ouis;
+
+import com.google.common.collect.Maps;
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable lookup table of IEEE MAC address block assignments. Supports MA-L (24 bit), MA-M (28 bit) and MA-S
+ * (36 bit) assignments and always returns the most specific match. Prefixes are stored as primitive keys in open
+ * addressing tables, so a lookup parses the MAC address in place and does not allocate.
+ */
+public final class OuiTable {
+
+    private static final int MAL_BITS = 24;
+    private static final int MAM_BITS = 28;
+    private static final int MAS_BITS = 36;
+
+    private final PrefixTable mal;
+    private final PrefixTable mam;
+    private final PrefixTable mas;
+
+    private final int size;
+
+    private OuiTable(PrefixTable mal, PrefixTable mam, PrefixTable mas) {
+        this.mal = mal;
+        this.mam = mam;
+        this.mas = mas;
+        this.size = mal.size + mam.size + mas.size;
+    }
+
+    /**
+     * Builds a table from assignments as delivered by Connect. Keys are hex prefixes with optional separators, like
+     * <code>001122</code> (MA-L), <code>0011223</code> (MA-M) or <code>001122334</code> (MA-S). A prefix length can
+     * be set explicitly in CIDR notation, like <code>00:11:22:30:00:00/28</code>. Invalid keys are skipped.
+     */
+    public static OuiTable build(Map<String, String> assignments) {
+        Map<String, String> vendors = Maps.newHashMap();
+
+        PrefixTable.Builder mal = new PrefixTable.Builder();
+        PrefixTable.Builder mam = new PrefixTable.Builder();
+        PrefixTable.Builder mas = new PrefixTable.Builder();
+
+        for (Map.Entry<String, String> assignment : assignments.entrySet()) {
+            if (assignment.getKey() == null || assignment.getValue() == null) {
+                continue;
+            }
+
+            String key = assignment.getKey();
+            int prefixBits = -1;
+            int slash = key.indexOf('/');
+            if (slash >= 0) {
+                try {
+                    prefixBits = Integer.parseInt(key.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                key = key.substring(0, slash);
+            }
+
+            long prefix = 0;
+            int nibbles = 0;
+            boolean valid = true;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c == ':' || c == '-' || c == '.') {
+                    continue;
+                }
+
+                int nibble = Character.digit(c, 16);
+                if (nibble < 0 || nibbles == 12) {
+                    valid = false;
+                    break;
+                }
+
+                prefix = (prefix << 4) | nibble;
+                nibbles++;
+            }
+
+            if (!valid) {
+                continue;
+            }
+
+            if (prefixBits == -1) {
+                prefixBits = nibbles * 4;
+            } else {
+                if (prefixBits % 4 != 0 || prefixBits > nibbles * 4) {
+                    continue;
+                }
+
+                prefix = prefix >>> (nibbles * 4 - prefixBits);
+            }
+
+            // De-duplicate vendor names. Large vendors own hundreds of blocks.
+            String vendor = vendors.computeIfAbsent(assignment.getValue(), v -> v);
+
+            switch (prefixBits) {
+                case MAL_BITS -> mal.put(prefix, vendor);
+                case MAM_BITS -> mam.put(prefix, vendor);
+                case MAS_BITS -> mas.put(prefix, vendor);
+            }
+        }
+
+        return new OuiTable(mal.build(), mam.build(), mas.build());
+    }
+
+    /**
+     * @param mac MAC address in <code>AA:BB:CC:DD:EE:FF</code> notation, upper or lower case.
+     * @return The vendor of the most specific assignment or null if there is none or the address is invalid.
+     */
+    @Nullable
+    public String lookup(String mac) {
+        if (mac == null || mac.length() != 17) {
+            return null;
+        }
+
+        // Parse the first 36 bits (9 nibbles) of the address.
+        long bits = 0;
+        for (int i = 0; i <= 12; i++) {
+            if (i % 3 == 2) {
+                continue; // Separator.
+            }
+
+            int nibble = Character.digit(mac.charAt(i), 16);
+            if (nibble < 0) {
+                return null;
+            }
+
+            bits = (bits << 4) | nibble;
+        }
+
+        String vendor = mas.get(bits);
+        if (vendor != null) {
+            return vendor;
+        }
+
+        vendor = mam.get(bits >>> (MAS_BITS - MAM_BITS));
+        if (vendor != null) {
+            return vendor;
+        }
+
+        return mal.get(bits >>> (MAS_BITS - MAL_BITS));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Open addressing hash table with linear probing that maps non-negative long prefixes to vendor names.
+     */
+    private static final class PrefixTable {
+
+        private static final long EMPTY = -1;
+
+        private final long[] keys;
+        private final String[] values;
+        private final int mask;
+        private final int size;
+
+        private PrefixTable(long[] keys, String[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.size = size;
+        }
+
+        @Nullable
+        String get(long key) {
+            int slot = hash(key) & mask;
+
+            while (true) {
+                long existing = keys[slot];
+                if (existing == key) {
+                    return values[slot];
+                }
+
+                if (existing == EMPTY) {
+                    return null;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static final class Builder {
+
+            private final Map<Long, String> entries = Maps.newHashMap();
+
+            void put(long key, String value) {
+                entries.put(key, value);
+            }
+
+            PrefixTable build() {
+                // Keep the load factor at or below 0.5 so that probe sequences stay short.
+                int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+                long[] keys = new long[capacity];
+                String[] values = new String[capacity];
+                Arrays.fill(keys, EMPTY);
+
+                int mask = capacity - 1;
+                for (Map.Entry<Long, String> entry : entries.entrySet()) {
+                    int slot = hash(entry.getKey()) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+
+                    keys[slot] = entry.getKey();
+                    values[slot] = entry.getValue();
+                }
+
+                return new PrefixTable(keys, values, entries.size());
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package app.nzyme.core.periodicals.housekeeping;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.database.DataCategory;
+import app.nzyme.core.database.DatabaseTools;
+import app.nzyme.core.periodicals.Periodical;
+import app.nzyme.core.security.authentication.db.OrganizationEntry;
+import app.nzyme.core.security.authentication.db.TenantEntry;
+import com.google.common.collect.Maps;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Handle;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.Map;
+
+/**
+ * Maintains the daily partitions of high-volume, append-only tap tables: Partitions are created a few days ahead and
+ * partitions that only contain data older than the longest retention time of any tenant are dropped as a whole. The
+ * regular per-tenant retention cleaning still runs and deletes everything that is younger than that.
+ */
+public class DatabasePartitionManager extends Periodical {
+
+    private static final Logger LOG = LogManager.getLogger(DatabasePartitionManager.class);
+
+    private static final int PRECREATE_DAYS = 3;
+    private static final long ADVISORY_LOCK_KEY = 7424130985L;
+    private static final String PARTITION_COLUMN = "timestamp";
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT = DateTimeFormat.forPattern("yyyyMMdd");
+
+    private static final Map<String, DataCategory> TABLES = Map.of(
+            "dns_log", DataCategory.ETHERNET_DNS,
+            "dns_entropy_log", DataCategory.ETHERNET_DNS,
+            "arp_packets", DataCategory.ETHERNET_L4,
+            "l4_statistics", DataCategory.ETHERNET_L4
+    );
+
+    private final NzymeNode nzyme;
+
+    public DatabasePartitionManager(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+    }
+
+    @Override
+    protected void execute() {
+        for (Map.Entry<String, DataCategory> table : TABLES.entrySet()) {
+            try {
+                createPartitions(table.getKey());
+                dropExpiredPartitions(table.getKey(), table.getValue());
+            } catch (Exception e) {
+                LOG.error("Could not maintain partitions of table [{}].", table.getKey(), e);
+            }
+        }
+    }
+
+    private void createPartitions(String table) {
+        DateTime until = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay().plusDays(PRECREATE_DAYS + 1);
+
+        DateTime from = findPartitionUpperBounds(table).values().stream()
+                .max(DateTime::compareTo)
+                .orElse(null);
+
+        if (from == null) {
+            LOG.warn("Table [{}] has no range partitions. Not creating any partitions.", table);
+            return;
+        }
+
+        while (from.isBefore(until)) {
+            DateTime to = from.withZone(DateTimeZone.UTC).withTimeAtStartOfDay().plusDays(1);
+            createPartition(table, from, to);
+            from = to;
+        }
+    }
+
+    private void createPartition(String table, DateTime from, DateTime to) {
+        String partition = table + "_p" + PARTITION_NAME_FORMAT.print(from.withZone(DateTimeZone.UTC));
+        String defaultPartition = table + "_default";
+        String where = " WHERE " + PARTITION_COLUMN + " >= '" + from + "' AND " + PARTITION_COLUMN + " < '" + to + "'";
+
+        nzyme.getDatabase().useHandle(h -> h.useTransaction(handle -> {
+            if (!tryLock(handle)) {
+                LOG.debug("Partitions are maintained by another node. Skipping.");
+                return;
+            }
+
+            if (handle.createQuery("SELECT to_regclass(:partition) IS NOT NULL")
+                    .bind("partition", partition)
+                    .mapTo(Boolean.class)
+                    .one()) {
+                // Created by another node in the meantime.
+                return;
+            }
+
+            LOG.info("Creating partition [{}] for range [{} - {}].", partition, from, to);
+
+            handle.execute("CREATE TABLE " + partition + " (LIKE " + table
+                    + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+
+            // Rows that arrived before the partition existed are in the default partition and would block the attach.
+            handle.execute("INSERT INTO " + partition + " SELECT * FROM " + defaultPartition
+                    + where);
+            handle.execute("DELETE FROM " + defaultPartition + where);
+
+            handle.execute("ALTER TABLE " + table + " ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        }));
+    }
+
+    private void dropExpiredPartitions(String table, DataCategory category) {
+        int maxRetentionDays = -1;
+        for (OrganizationEntry org : nzyme.getAuthenticationService().findAllOrganizations()) {
+            for (TenantEntry tenant : nzyme.getAuthenticationService().findAllTenantsOfOrganization(org.uuid())) {
+                maxRetentionDays = Math.max(maxRetentionDays,
+                        DatabaseTools.getDataCategoryRetentionTimeDays(nzyme, category, org.uuid(), tenant.uuid()));
+            }
+        }
+
+        if (maxRetentionDays < 0) {
+            // No tenants. Nothing to compare against.
+            return;
+        }
+
+        DateTime cutoff = DateTime.now().minusDays(maxRetentionDays);
+
+        for (Map.Entry<String, DateTime> partition : findPartitionUpperBounds(table).entrySet()) {
+            if (partition.getValue().isAfter(cutoff)) {
+                continue;
+            }
+
+            nzyme.getDatabase().useHandle(h -> h.useTransaction(handle -> {
+                if (!tryLock(handle)) {
+                    return;
+                }
+
+                LOG.info("Dropping expired partition [{}] of table [{}]. All data older than [{}].",
+                        partition.getKey(), table, partition.getValue());
+
+                handle.execute("DROP TABLE IF EXISTS " + partition.getKey());
+            }));
+        }
+    }
+
+    /**
+     * Returns the range partitions of a table and their exclusive upper bound. The default partition is not included.
+     */
+    private Map<String, DateTime> findPartitionUpperBounds(String table) {
+        Map<String, DateTime> result = Maps.newHashMap();
+
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createQuery("SELECT c.relname AS partition_name, " +
+                                "substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \\(''([^'']+)''\\)')" +
+                                "::timestamptz AS upper_bound FROM pg_inherits AS i " +
+                                "JOIN pg_class AS c ON c.oid = i.inhrelid " +
+                                "WHERE i.inhparent = :table::regclass")
+                        .bind("table", table)
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                rs.getString("partition_name"),
+                                rs.getTimestamp("upper_bound") == null
+                                        ? null : new DateTime(rs.getTimestamp("upper_bound"))
+                        ))
+                        .forEach(e -> {
+                            if (e.getValue() != null) {
+                                result.put(e.getKey(), e.getValue());
+                            }
+                        })
+        );
+
+        return result;
+    }
+
+    /**
+     * All nodes run this periodical. The transaction-scoped advisory lock makes sure only one of them changes the
+     * partition layout at a time. It is released on commit or rollback.
+     */
+    private static boolean tryLock(Handle handle) {
+        return handle.createQuery("SELECT pg_try_advisory_xact_lock(:key)")
+                .bind("key", ADVISORY_LOCK_KEY)
+                .mapTo(Boolean.class)
+                .one();
+    }
+
+    @Override
+    public String getName() {
+        return "DatabasePartitionManager";
+    }
+
+}
@@ -0,0 +1,47 @@
+package app.nzyme.core.periodicals.housekeeping;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.metrics.MetricsRollups;
+import app.nzyme.core.periodicals.Periodical;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class MetricsRollupCalculator extends Periodical {
+
+    private static final Logger LOG = LogManager.getLogger(MetricsRollupCalculator.class);
+
+    private static final long ADVISORY_LOCK_KEY = 7424130986L;
+
+    private final NzymeNode nzyme;
+    private final MetricsRollups rollups;
+
+    public MetricsRollupCalculator(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+        this.rollups = new MetricsRollups(nzyme);
+    }
+
+    @Override
+    protected void execute() {
+        // All nodes run this periodical. Only one of them has to calculate the rollups.
+        nzyme.getDatabase().useHandle(h -> h.useTransaction(handle -> {
+            boolean locked = handle.createQuery("SELECT pg_try_advisory_xact_lock(:key)")
+                    .bind("key", ADVISORY_LOCK_KEY)
+                    .mapTo(Boolean.class)
+                    .one();
+
+            if (!locked) {
+                LOG.debug("Metrics rollups are calculated by another node. Skipping.");
+                return;
+            }
+
+            rollups.rollUp(handle);
+            rollups.retentionClean(handle);
+        }));
+    }
+
+    @Override
+    public String getName() {
+        return "MetricsRollupCalculator";
+    }
+
+}
@@ -0,0 +1,189 @@
+package app.nzyme.core.registry;
+
+import app.nzyme.core.NzymeNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Node-local copy of the registry. Every write to the registry tables bumps the version in the
+ * <code>registry_version</code> table through a database trigger. A refresh only reloads the registry if that version
+ * changed, and local writes force a reload before the next read, so that a node always reads its own writes.
+ */
+public class RegistryCache {
+
+    private static final Logger LOG = LogManager.getLogger(RegistryCache.class);
+
+    private final NzymeNode nzyme;
+
+    private final Object lock = new Object();
+    private final AtomicLong localWrites = new AtomicLong(0);
+    private final List<Consumer<Set<String>>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot;
+
+    public RegistryCache(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+    }
+
+    public Optional<String> getValue(String key, @Nullable UUID organizationId, @Nullable UUID tenantId) {
+        return Optional.ofNullable(current().values.get(RegistryCacheKey.create(key, organizationId, tenantId)));
+    }
+
+    public Optional<String> getEncryptedValue(String key) {
+        return Optional.ofNullable(current().encryptedValues.get(key));
+    }
+
+    /**
+     * Must be called after every write to the registry tables from this node.
+     */
+    public void invalidate() {
+        localWrites.incrementAndGet();
+    }
+
+    /**
+     * Reloads the registry if it changed in the database. Listeners are called with the keys that changed.
+     */
+    public void refresh() {
+        Set<String> changedKeys;
+
+        synchronized (lock) {
+            Snapshot previous = snapshot;
+            long writes = localWrites.get();
+            long version = fetchVersion();
+
+            if (previous != null && previous.version == version && previous.localWrites == writes) {
+                return;
+            }
+
+            Snapshot current = load(version, writes);
+            this.snapshot = current;
+
+            if (previous == null) {
+                // First load. Nothing to compare to.
+                return;
+            }
+
+            changedKeys = findChangedKeys(previous, current);
+        }
+
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+
+        for (Consumer<Set<String>> listener : changeListeners) {
+            try {
+                listener.accept(changedKeys);
+            } catch (Exception e) {
+                LOG.error("Registry change listener failed.", e);
+            }
+        }
+    }
+
+    public void onChange(Consumer<Set<String>> listener) {
+        changeListeners.add(listener);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+
+        if (current == null || current.localWrites != localWrites.get()) {
+            refresh();
+            current = snapshot;
+        }
+
+        return current;
+    }
+
+    private long fetchVersion() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT version FROM registry_version WHERE id = 1")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private Snapshot load(long version, long writes) {
+        /*
+         * The version was read before loading. Changes that happen while we are loading bump the version again and
+         * cause another reload on the next refresh.
+         */
+        Map<RegistryCacheKey, String> values = Maps.newHashMap();
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createQuery("SELECT key, value, organization_id, tenant_id FROM registry")
+                        .map((rs, ctx) -> Maps.immutableEntry(
+                                RegistryCacheKey.create(
+                                        rs.getString("key"),
+                                        rs.getObject("organization_id", UUID.class),
+                                        rs.getObject("tenant_id", UUID.class)
+                                ),
+                                rs.getString("value")
+                        ))
+                        .forEach(e -> values.put(e.getKey(), e.getValue()))
+        );
+
+        List<RegistryEntry> encryptedEntries = nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT key, value FROM registry_encrypted")
+                        .mapTo(RegistryEntry.class)
+                        .list()
+        );
+
+        Map<String, String> encryptedValues = Maps.newHashMap();
+        for (RegistryEntry entry : encryptedEntries) {
+            encryptedValues.put(entry.key(), entry.value());
+        }
+
+        return new Snapshot(version, writes, ImmutableMap.copyOf(values), ImmutableMap.copyOf(encryptedValues));
+    }
+
+    private static Set<String> findChangedKeys(Snapshot previous, Snapshot current) {
+        Set<String> changed = Sets.newHashSet();
+
+        for (RegistryCacheKey key : Sets.union(previous.values.keySet(), current.values.keySet())) {
+            if (!Objects.equals(previous.values.get(key), current.values.get(key))) {
+                changed.add(key.key());
+            }
+        }
+
+        for (String key : Sets.union(previous.encryptedValues.keySet(), current.encryptedValues.keySet())) {
+            if (!Objects.equals(previous.encryptedValues.get(key), current.encryptedValues.get(key))) {
+                changed.add(key);
+            }
+        }
+
+        return changed;
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+        private final long localWrites;
+        private final Map<RegistryCacheKey, String> values;
+        private final Map<String, String> encryptedValues;
+
+        private Snapshot(long version,
+                         long localWrites,
+                         Map<RegistryCacheKey, String> values,
+                         Map<String, String> encryptedValues) {
+            this.version = version;
+            this.localWrites = localWrites;
+            this.values = values;
+            this.encryptedValues = encryptedValues;
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package app.nzyme.core.registry;
+
+import com.google.auto.value.AutoValue;
+import jakarta.annotation.Nullable;
+
+import java.util.UUID;
+
+@AutoValue
+public abstract class RegistryCacheKey {
+
+    public abstract String key();
+
+    @Nullable
+    public abstract UUID organizationId();
+
+    @Nullable
+    public abstract UUID tenantId();
+
+    public static RegistryCacheKey create(String key, UUID organizationId, UUID tenantId) {
+        return builder()
+                .key(key)
+                .organizationId(organizationId)
+                .tenantId(tenantId)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_RegistryCacheKey.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder key(String key);
+
+        public abstract Builder organizationId(UUID organizationId);
+
+        public abstract Builder tenantId(UUID tenantId);
+
+        public abstract RegistryCacheKey build();
+    }
+}
@@ -11,84 +11,60 @@ import org.apache.logging.log4j.Logger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class RegistryChangeMonitorImpl implements RegistryChangeMonitor {
 
     private static final Logger LOG = LogManager.getLogger(RegistryChangeMonitorImpl.class);
 
-    private final NzymeNode nzyme;
-
     private final Map<String, List<Runnable>> subscribers;
 
-    private Map<String, String> snapshot = null;
-
     private final List<String> ignoredKeys;
 
-    public RegistryChangeMonitorImpl(NzymeNode nzyme) {
-        this.nzyme = nzyme;
+    private final ScheduledExecutorService executor;
 
+    public RegistryChangeMonitorImpl(NzymeNode nzyme) {
         this.ignoredKeys = new ArrayList<>(){{
             add("core.connect_last_successful_report");
         }};
 
-        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                        .setNameFormat("registry-change-processor-%d")
-                        .build())
-                .scheduleAtFixedRate(this::processChanges, 0, 5, TimeUnit.SECONDS);
-
         this.subscribers = Maps.newHashMap();
-    }
-
-    private void processChanges() {
-        try {
-            if (snapshot == null) {
-                // First run. Fill image.
-                snapshot = takeSnapshot();
 
-                // Exit. (No changes on first run)
-                return;
+        /*
+         * Changes are detected by the registry cache, which only reloads the registry when its version in the
+         * database changed. Reactions are executed on our own thread and never on the thread that refreshed the cache.
+         */
+        RegistryCache cache = nzyme.getRegistryCache();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("registry-change-processor-%d")
+                .setDaemon(true)
+                .build());
+
+        cache.onChange(keys -> executor.execute(() -> processChanges(keys)));
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                cache.refresh();
+            } catch (Exception e) {
+                LOG.error("Error while refreshing registry.", e);
             }
+        }, 0, 1, TimeUnit.SECONDS);
+    }
 
-            Map<String, String> previous = Maps.newHashMap(this.snapshot);
-
-            // Create new snapshot. Do this immediately to avoid missing changes that happen during processing.
-            this.snapshot = takeSnapshot();
-
-            Map<String, String> current = takeSnapshot();
-
-            for (Map.Entry<String, String> entry : current.entrySet()) {
-                if (ignoredKeys.contains(entry.getKey())) {
-                    continue;
-                }
+    public void shutdown() {
+        executor.shutdownNow();
+    }
 
-                if (!previous.containsKey(entry.getKey())) {
-                    // New entry.
-                    LOG.debug("Registry key [{}] now has a value. Notifying subscribers.", entry.getKey());
-                    notifyChange(entry.getKey());
-                } else {
-                    // Existing entry. Compare.
-                    if (!entry.getValue().equals(previous.get(entry.getKey()))) {
-                        // Value changed.
-                        LOG.debug("Registry key [{}] has a new value. Notifying subscribers.", entry.getKey());
-                        notifyChange(entry.getKey());
-                    }
-                }
+    private void processChanges(Set<String> keys) {
+        for (String key : keys) {
+            if (ignoredKeys.contains(key)) {
+                continue;
             }
 
-            for (Map.Entry<String, String> entry : previous.entrySet()) {
-                if (ignoredKeys.contains(entry.getKey())) {
-                    continue;
-                }
-                // Did a value disappear?
-                if (!current.containsKey(entry.getKey())) {
-                    LOG.debug("Registry key [{}] has disappeared. Notifying subscribers.", entry.getKey());
-                    notifyChange(entry.getKey());
-                }
-            }
-        } catch (Exception e) {
-            LOG.error("Error while processing registry changes.", e);
+            LOG.debug("Registry key [{}] changed. Notifying subscribers.", key);
+            notifyChange(key);
         }
     }
 
@@ -117,32 +93,6 @@ public class RegistryChangeMonitorImpl implements RegistryChangeMonitor {
         }
     }
 
-    private Map<String, String> takeSnapshot() {
-        List<RegistryEntry> entries = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT key, value FROM registry")
-                        .mapTo(RegistryEntry.class)
-                        .list()
-        );
-
-        List<RegistryEntry> encryptedEntries = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT key, value FROM registry_encrypted")
-                        .mapTo(RegistryEntry.class)
-                        .list()
-        );
-
-        Map<String, String> result = Maps.newHashMap();
-
-        for (RegistryEntry entry : entries) {
-            result.put(entry.key(), entry.value());
-        }
-
-        for (RegistryEntry entry : encryptedEntries) {
-            result.put(entry.key(), entry.value());
-        }
-
-        return result;
-    }
-
     @Override
     public void onChange(String namespace, String key, Runnable runnable) {
         String namespacedKey = RegistryImpl.buildNamespacedKey(namespace, key);
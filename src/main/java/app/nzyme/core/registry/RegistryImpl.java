@@ -29,53 +29,27 @@ public class RegistryImpl implements Registry {
     @Override
     public Optional<String> getValue(String key) {
         LOG.debug("Getting value for [{}] from registry.", buildNamespacedKey(namespace, key));
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT value FROM registry WHERE key = :key " +
-                                "AND organization_id IS NULL AND tenant_id IS NULL")
-                        .bind("key", buildNamespacedKey(namespace, key))
-                        .mapTo(String.class)
-                        .findOne()
-        );
+        return nzyme.getRegistryCache().getValue(buildNamespacedKey(namespace, key), null, null);
     }
 
     @Override
     public Optional<String> getValue(String key, UUID organizationId) {
         LOG.debug("Getting value for [{}] (Org <{}>) from registry.",
                 buildNamespacedKey(namespace, key), organizationId);
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT value FROM registry WHERE key = :key " +
-                                "AND organization_id = :organization_id AND tenant_id IS NULL")
-                        .bind("key", buildNamespacedKey(namespace, key))
-                        .bind("organization_id", organizationId)
-                        .mapTo(String.class)
-                        .findOne()
-        );
+        return nzyme.getRegistryCache().getValue(buildNamespacedKey(namespace, key), organizationId, null);
     }
 
     @Override
     public Optional<String> getValue(String key, UUID organizationId, UUID tenantId) {
         LOG.debug("Getting value for [{}] (Org <{}>, Tenant <{}>) from registry.",
                 buildNamespacedKey(namespace, key), organizationId, tenantId);
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT value FROM registry WHERE key = :key " +
-                                "AND organization_id = :organization_id AND tenant_id = :tenant_id")
-                        .bind("key", buildNamespacedKey(namespace, key))
-                        .bind("organization_id", organizationId)
-                        .bind("tenant_id", tenantId)
-                        .mapTo(String.class)
-                        .findOne()
-        );
+        return nzyme.getRegistryCache().getValue(buildNamespacedKey(namespace, key), organizationId, tenantId);
     }
 
     @Override
     public Optional<String> getEncryptedValue(String key) throws RegistryCryptoException {
         LOG.debug("Getting encrypted value for [{}] from registry.", buildNamespacedKey(namespace, key));
-        Optional<String> encrypted = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT value FROM registry_encrypted WHERE key = :key")
-                        .bind("key", buildNamespacedKey(namespace, key))
-                        .mapTo(String.class)
-                        .findOne()
-        );
+        Optional<String> encrypted = nzyme.getRegistryCache().getEncryptedValue(buildNamespacedKey(namespace, key));
 
         return dbResultToResult(key, encrypted);
     }
@@ -171,6 +145,9 @@ public class RegistryImpl implements Registry {
     public void setValue(String key, String value) {
         setValuePreflightChecks(key, value);
 
+        // Make sure we decide between update and insert based on the latest state of the database.
+        nzyme.getRegistryCache().refresh();
+
         if (getValue(key).isPresent()) {
             // Update existing entry.
             LOG.debug("Updating existing value for key [{}] in registry.", buildNamespacedKey(namespace, key));
@@ -192,12 +169,16 @@ public class RegistryImpl implements Registry {
                             .execute()
             );
         }
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
     public void setValue(String key, String value, UUID organizationId) {
         setValuePreflightChecks(key, value);
 
+        nzyme.getRegistryCache().refresh();
+
         if (getValue(key, organizationId).isPresent()) {
             // Update existing entry.
             LOG.debug("Updating existing value for key [{}] (Org <{}>) in registry.",
@@ -225,12 +206,16 @@ public class RegistryImpl implements Registry {
                             .execute()
             );
         }
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
     public void setValue(String key, String value, UUID organizationId, UUID tenantId) {
         setValuePreflightChecks(key, value);
 
+        nzyme.getRegistryCache().refresh();
+
         if (getValue(key, organizationId, tenantId).isPresent()) {
             // Update existing entry.
             LOG.debug("Updating existing value for key [{}] (Org <{}>, Tenant <{}>) in registry.",
@@ -260,6 +245,8 @@ public class RegistryImpl implements Registry {
                             .execute()
             );
         }
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
@@ -278,6 +265,8 @@ public class RegistryImpl implements Registry {
             throw new RegistryCryptoException("Could not encrypt registry value for key [" + key + "]", e);
         }
 
+        nzyme.getRegistryCache().refresh();
+
         if (getEncryptedValue(key).isPresent()) {
             // Update existing entry.
             LOG.debug("Updating existing encrypted value for key [{}] in registry.", buildNamespacedKey(namespace, key));
@@ -302,6 +291,8 @@ public class RegistryImpl implements Registry {
                             .execute()
             );
         }
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
@@ -322,6 +313,8 @@ public class RegistryImpl implements Registry {
                         .bind("key", buildNamespacedKey(namespace, key))
                         .execute()
         );
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
@@ -335,6 +328,8 @@ public class RegistryImpl implements Registry {
                         .bind("organization_id", organizationId)
                         .execute()
         );
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     @Override
@@ -349,6 +344,8 @@ public class RegistryImpl implements Registry {
                         .bind("tenant_id", tenantId)
                         .execute()
         );
+
+        nzyme.getRegistryCache().invalidate();
     }
 
     private void setValuePreflightChecks(String key, String value) {
@@ -2,18 +2,38 @@ package app.nzyme.core.rest.interceptors;
 
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.util.MetricNames;
+import com.github.luben.zstd.ZstdInputStream;
+import com.google.common.io.CountingInputStream;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.ReaderInterceptor;
 import jakarta.ws.rs.ext.ReaderInterceptorContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+/*
+ * Runs before the generic Jersey content decoders so that it sees the request body as it came over the wire. Tap
+ * reports are counted and decompressed as they are streamed into the JSON deserializer. Nothing is buffered.
+ *
+ * The decompressed size is recorded for identity, gzip, deflate and zstd bodies. Bodies in any other encoding are
+ * left to the Jersey decoders and their size is recorded as received, compressed.
+ *
+ * Reports that decompress to more than the configured maximum size are rejected with HTTP 413 as soon as the limit is
+ * reached. A small compressed body can not make us inflate and parse gigabytes of data. The limit applies to the
+ * received size of bodies in encodings we do not decode.
+ */
+@Priority(Priorities.ENTITY_CODER - 100)
 public class TapTableSizeInterceptor implements ReaderInterceptor {
 
     private static final Logger LOG = LogManager.getLogger(TapTableSizeInterceptor.class);
@@ -22,29 +42,159 @@ public class TapTableSizeInterceptor implements ReaderInterceptor {
     private UriInfo uriInfo;
 
     private NzymeNode nzyme;
+    private final long maxDecompressedSize;
 
     public TapTableSizeInterceptor(NzymeNode nzyme) {
+        this(nzyme, nzyme.getConfiguration().performance().tapReportMaxDecompressedSize());
+    }
+
+    TapTableSizeInterceptor(NzymeNode nzyme, long maxDecompressedSize) {
         this.nzyme = nzyme;
+        this.maxDecompressedSize = maxDecompressedSize;
     }
 
     @Override
     public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
-        if (uriInfo.getPath().contains("api/taps/tables")) {
-            // We do not want to consume the InputStream because we need it later in the resource of course. Copy it.
-            ByteArrayOutputStream cloner = new ByteArrayOutputStream();
-            context.getInputStream().transferTo(cloner);
+        if (!uriInfo.getPath().contains("api/taps/tables")) {
+            return context.proceed();
+        }
+
+        return readCounted(context);
+    }
+
+    Object readCounted(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+
+        if (encoding == null || encoding.isBlank() || encoding.equalsIgnoreCase("identity")) {
+            // No need to read anything if the declared size of an uncompressed body is already too large.
+            String contentLength = context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH);
+            if (contentLength != null) {
+                try {
+                    if (Long.parseLong(contentLength.trim()) > maxDecompressedSize) {
+                        throw tooLarge();
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Invalid header. The limit is still enforced while reading.
+                }
+            }
+        }
+
+        CountingInputStream wire = new CountingInputStream(context.getInputStream());
+        InputStream decoded;
+        if (encoding == null || encoding.isBlank() || encoding.equalsIgnoreCase("identity")) {
+            decoded = wire;
+        } else if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            decoded = new GZIPInputStream(wire);
+        } else if (encoding.equalsIgnoreCase("deflate")) {
+            // HTTP "deflate" is zlib-wrapped DEFLATE. (RFC 9110)
+            decoded = new InflaterInputStream(wire);
+        } else if (encoding.equalsIgnoreCase("zstd")) {
+            decoded = new ZstdInputStream(wire);
+        } else {
+            LOG.debug("Unsupported tap table report content encoding [{}]. Not decoding and recording " +
+                    "compressed size.", encoding);
+            decoded = wire;
+            encoding = null;
+        }
+
+        if (encoding != null) {
+            // Already decoded. Make sure no other content decoder touches the stream again.
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        }
+
+        SizeLimitedInputStream body = new SizeLimitedInputStream(decoded, maxDecompressedSize);
+        context.setInputStream(body);
+
+        try {
+            return context.proceed();
+        } catch (Exception e) {
+            // The deserializer may have wrapped our exception. Don't let it turn into a 400 or 500.
+            if (body.isLimitExceeded()) {
+                throw tooLarge();
+            }
 
-            int size = cloner.toByteArray().length;
-            LOG.debug("Tap table report size: {}", size);
+            throw e;
+        } finally {
+            long size = body.getCount();
+            long compressedSize = wire.getCount();
+
+            LOG.debug("Tap table report size: {} (received: {})", size, compressedSize);
 
             nzyme.getMetrics().histogram(MetricNames.TAP_TABLE_REQUEST_SIZES).update(size);
+            nzyme.getMetrics().histogram(MetricNames.TAP_TABLE_REQUEST_WIRE_SIZES).update(compressedSize);
+            nzyme.getMetrics().meter(MetricNames.TAP_TABLE_DECOMPRESSED_BYTES).mark(size);
+            nzyme.getMetrics().meter(MetricNames.TAP_TABLE_WIRE_BYTES).mark(compressedSize);
             nzyme.getNodeManager().recordTapReportSize(size);
+        }
+    }
+
+    private WebApplicationException tooLarge() {
+        LOG.warn("Rejecting tap table report larger than maximum decompressed size of <{}> bytes.",
+                maxDecompressedSize);
+
+        return new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+    }
+
+    /*
+     * Counts the bytes read and fails the read that goes past the limit.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count = 0;
+        private boolean limitExceeded = false;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                count(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result != -1) {
+                count(result);
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            count(result);
+            return result;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long bytes) throws IOException {
+            count += bytes;
+            if (count > limit) {
+                limitExceeded = true;
+                throw new IOException("Decompressed tap table report exceeds maximum size of <" + limit + "> bytes.");
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
 
-            // Stick another clone right back into the request context.
-            context.setInputStream(new ByteArrayInputStream(cloner.toByteArray()));
+        boolean isLimitExceeded() {
+            return limitExceeded;
         }
 
-        return context.proceed();
     }
 
 }
@@ -7,6 +7,8 @@ import app.nzyme.core.rest.requests.CreateMonitoredProbeRequestRequest;
 import app.nzyme.core.rest.requests.UpdateMonitoredProbeRequestRequest;
 import app.nzyme.core.rest.responses.dot11.monitoring.probereq.MonitoredProbeRequestDetailsResponse;
 import app.nzyme.core.rest.responses.dot11.monitoring.probereq.MonitoredProbeRequestListResponse;
+import app.nzyme.plugin.distributed.messaging.ClusterMessage;
+import app.nzyme.plugin.distributed.messaging.MessageType;
 import app.nzyme.plugin.rest.security.PermissionLevel;
 import app.nzyme.plugin.rest.security.RESTSecured;
 import com.google.common.collect.Lists;
@@ -22,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -110,6 +113,8 @@ public class Dot11MonitoredProbeRequestResource extends UserAuthenticatedResourc
 
         nzyme.getDot11().createMonitoredProbeRequest(req.organizationId(), req.tenantId(), req.ssid(), req.notes());
 
+        invalidateMonitoredProbeRequestCachesClusterWide();
+
         return Response.status(Response.Status.CREATED).build();
     }
 
@@ -132,6 +137,8 @@ public class Dot11MonitoredProbeRequestResource extends UserAuthenticatedResourc
 
         nzyme.getDot11().updateMonitoredProbeRequest(uuid, req.organizationId(), req.tenantId(), req.ssid(), req.notes());
 
+        invalidateMonitoredProbeRequestCachesClusterWide();
+
         return Response.ok().build();
     }
 
@@ -148,7 +155,17 @@ public class Dot11MonitoredProbeRequestResource extends UserAuthenticatedResourc
 
         nzyme.getDot11().deleteMonitoredProbeRequest(uuid, ssid.get().organizationId(), ssid.get().tenantId());
 
+        invalidateMonitoredProbeRequestCachesClusterWide();
+
         return Response.ok().build();
     }
 
+    private void invalidateMonitoredProbeRequestCachesClusterWide() {
+        nzyme.getMessageBus().sendToAllOnlineNodes(ClusterMessage.create(
+                MessageType.INVALIDATE_CACHE,
+                Map.of("cache_type", "dot11_monitored_probereqs"),
+                false
+        ));
+    }
+
 }
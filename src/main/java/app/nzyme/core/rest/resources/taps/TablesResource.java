@@ -20,6 +20,7 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
@@ -34,6 +35,8 @@ public class TablesResource {
 
     private static final Logger LOG = LogManager.getLogger(StatusResource.class);
 
+    private static final int RETRY_AFTER_SECONDS = 5;
+
     @Inject
     private NzymeNode nzyme;
 
@@ -53,9 +56,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received 802.11 summary report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().dot11().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("dot11", tap, () ->
+                nzyme.getTablesService().dot11().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -69,9 +73,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received Bluetooth devices report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().bluetooth().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("bluetooth", tap, () ->
+                nzyme.getTablesService().bluetooth().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -85,9 +90,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received TCP session table report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().tcp().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("tcp", tap, () ->
+                nzyme.getTablesService().tcp().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -103,9 +109,10 @@ public class TablesResource {
         LOG.debug("Received UDP conversations table report from tap [{}]: {}", tap.getUuid(), report);
 
         // Store in combined TCP/UDP table.
-        nzyme.getTablesService().udp().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("udp", tap, () ->
+                nzyme.getTablesService().udp().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -119,9 +126,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received DNS summary report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().dns().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("dns", tap, () ->
+                nzyme.getTablesService().dns().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -135,9 +143,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received SSH sessions report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().ssh().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("ssh", tap, () ->
+                nzyme.getTablesService().ssh().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -151,9 +160,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received SOCKS tunnels report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().socks().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("socks", tap, () ->
+                nzyme.getTablesService().socks().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -167,9 +177,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received UAVs report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().uav().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("uav", tap, () ->
+                nzyme.getTablesService().uav().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -183,9 +194,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received DHCP transactions report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().dhcp().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("dhcp", tap, () ->
+                nzyme.getTablesService().dhcp().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -199,9 +211,10 @@ public class TablesResource {
         }
 
         LOG.debug("Received ARP packets report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().arp().handleReport(tap.getUuid(), DateTime.now(), report);
-
-        return Response.status(Response.Status.CREATED).build();
+        DateTime receivedAt = DateTime.now();
+        return enqueue("arp", tap, () ->
+                nzyme.getTablesService().arp().handleReport(tap.getUuid(), receivedAt, report)
+        );
     }
 
     @POST
@@ -215,7 +228,23 @@ public class TablesResource {
         }
 
         LOG.debug("Received NTP transactions report from tap [{}]: {}", tap.getUuid(), report);
-        nzyme.getTablesService().ntp().handleReport(tap.getUuid(), DateTime.now(), report);
+        DateTime receivedAt = DateTime.now();
+        return enqueue("ntp", tap, () ->
+                nzyme.getTablesService().ntp().handleReport(tap.getUuid(), receivedAt, report)
+        );
+    }
+
+    /*
+     * Reports are processed asynchronously by the ingest workers of each table. If the ingest queue of a table is
+     * full, we reject the report and let the tap retry instead of buffering without limit.
+     */
+    private Response enqueue(String tableName, AuthenticatedTap tap, Runnable report) {
+        if (!nzyme.getTablesService().enqueueReport(tableName, report)) {
+            LOG.warn("Rejecting [{}] report from tap [{}]: Ingest queue is full.", tableName, tap.getUuid());
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
 
         return Response.status(Response.Status.CREATED).build();
     }
@@ -11,6 +11,9 @@ import app.nzyme.core.security.authentication.db.TenantEntry;
 import app.nzyme.core.security.authentication.db.UserEntry;
 import app.nzyme.core.security.sessions.db.SessionEntry;
 import app.nzyme.core.security.sessions.db.SessionEntryWithUserDetails;
+import app.nzyme.core.taps.Tap;
+import app.nzyme.core.taps.TapChangeType;
+import app.nzyme.core.taps.TapDirectory;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
@@ -18,6 +21,10 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -27,24 +34,48 @@ import org.jetbrains.annotations.NotNull;
 import org.joda.time.DateTime;
 
 import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AuthenticationService {
 
     private static final Logger LOG = LogManager.getLogger(AuthenticationService.class);
 
+    // Safety net in case a cache invalidation message was lost.
+    private static final long TAP_SECRET_INDEX_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    // Rebuilds caused by unknown secrets are rate limited to not let invalid requests hammer the database.
+    private static final long TAP_SECRET_INDEX_MISS_REBUILD_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
     public final NzymeNode nzyme;
 
     private final LoadingCache<String, String> keysCache;
 
+    /*
+     * Taps are looked up by a HMAC of their secret. The HMAC key is random and only ever exists in memory, so the
+     * index does not hold any plaintext secrets or hashes that could be attacked offline.
+     */
+    private final HashFunction tapSecretHmac;
+    private final AtomicLong tapSecretIndexGeneration = new AtomicLong(0);
+    private final Object tapSecretIndexLock = new Object();
+    private volatile TapSecretIndex tapSecretIndex;
+    private long lastTapSecretIndexRebuild = 0;
+
     public AuthenticationService(NzymeNode nzyme) {
         this.nzyme = nzyme;
 
+        byte[] tapSecretHmacKey = new byte[32];
+        new SecureRandom().nextBytes(tapSecretHmacKey);
+        this.tapSecretHmac = Hashing.hmacSha256(tapSecretHmacKey);
+
         this.keysCache = CacheBuilder.newBuilder()
                 .maximumSize(1000)
                 .expireAfterAccess(15, TimeUnit.MINUTES) // Evict old keys when a tap secret changed.
@@ -71,6 +102,8 @@ public class AuthenticationService {
     public void initialize() {
         seedDatabase();
 
+        nzyme.getTapManager().onTapChanged((tapUuid, changeType) -> invalidateTapSecretIndex());
+
         Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder()
                         .setNameFormat("session-cleaner-%d")
@@ -929,7 +962,7 @@ public class AuthenticationService {
             throw new RuntimeException("Could not encrypt tap secret.", e);
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
+        TapPermissionEntry tap = nzyme.getDatabase().withHandle(handle ->
                 handle.createQuery("INSERT INTO taps(uuid, organization_id, tenant_id, secret, name, " +
                                 "description, location_uuid, floor_uuid, latitude, longitude, deleted, created_at, " +
                                 "updated_at) VALUES(:uuid, :organization_id, :tenant_id, :secret, :name, " +
@@ -950,6 +983,10 @@ public class AuthenticationService {
                         .mapTo(TapPermissionEntry.class)
                         .one()
         );
+
+        tapChanged(tap.uuid(), TapChangeType.CREATED);
+
+        return tap;
     }
 
     public List<TapPermissionEntry> findAllTapsOfTenant(UUID organizationId, UUID tenantId) {
@@ -957,59 +994,98 @@ public class AuthenticationService {
     }
 
     public List<TapPermissionEntry> findAllTapsOfTenant(UUID organizationId, UUID tenantId, int limit, int offset) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps " +
-                                "WHERE deleted = false AND organization_id = :organization_id " +
-                                "AND tenant_id = :tenant_id " +
-                                "ORDER BY name ASC LIMIT :limit OFFSET :offset")
-                        .bind("organization_id", organizationId)
-                        .bind("tenant_id", tenantId)
-                        .bind("limit", limit)
-                        .bind("offset", offset)
-                        .mapTo(TapPermissionEntry.class)
-                        .list()
-        );
+        // Served from the node-local tap directory. It is rebuilt whenever a tap is changed anywhere in the cluster.
+        TapDirectory directory = nzyme.getTapManager().getDirectory();
+
+        return directory.ofTenant(organizationId, tenantId).stream()
+                .sorted(Comparator.comparing(Tap::name))
+                .skip(offset)
+                .limit(limit)
+                .map(tap -> directory.findPermissionEntry(tap.uuid()))
+                .flatMap(Optional::stream)
+                .toList();
     }
 
     public Optional<TapPermissionEntry> findTap(UUID organizationId, UUID tenantId, UUID tapId) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps " +
-                                "WHERE deleted = false AND organization_id = :organization_id " +
-                                "AND tenant_id = :tenant_id " +
-                                "AND uuid = :uuid")
-                        .bind("organization_id", organizationId)
-                        .bind("tenant_id", tenantId)
-                        .bind("uuid", tapId)
-                        .mapTo(TapPermissionEntry.class)
-                        .findOne()
-        );
+        return nzyme.getTapManager().getDirectory().findPermissionEntry(tapId)
+                .filter(tap -> organizationId.equals(tap.organizationId()) && tenantId.equals(tap.tenantId()));
     }
 
     public Optional<TapPermissionEntry> findTapBySecret(String secret) {
-        /*
-         * We have to pull all taps here and then loop over them because the secret is encrypted, and we can't use
-         * a SELECT WHERE with a non-deterministic encryption like PGP.
-         */
+        HashCode secretHmac = tapSecretHmac.hashString(secret, StandardCharsets.UTF_8);
 
-        List<TapPermissionEntry> taps = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false")
-                        .mapTo(TapPermissionEntry.class)
-                        .list()
-        );
+        TapSecretIndex index = tapSecretIndex;
+        if (index == null || isStale(index)) {
+            index = rebuildTapSecretIndex(index, false);
+        }
 
-        for (TapPermissionEntry tap : taps) {
-            try {
-                String decryptedSecret = keysCache.get(tap.secret());
+        TapPermissionEntry tap = index.taps.get(secretHmac);
+        if (tap == null) {
+            // The tap may have just been created on another node and the invalidation message is still on its way.
+            index = rebuildTapSecretIndex(index, true);
+            tap = index.taps.get(secretHmac);
+        }
+
+        return Optional.ofNullable(tap);
+    }
 
-                if (secret.equals(decryptedSecret)) {
-                    return Optional.of(tap);
+    public void invalidateTapSecretIndex() {
+        tapSecretIndexGeneration.incrementAndGet();
+    }
+
+    private void tapChanged(UUID tapUuid, TapChangeType changeType) {
+        // Invalidates the tap directory and, through the listener registered in initialize(), the tap secret index.
+        nzyme.getTapManager().tapChanged(tapUuid, changeType);
+    }
+
+    private boolean isStale(TapSecretIndex index) {
+        return index.generation != tapSecretIndexGeneration.get()
+                || System.currentTimeMillis() - index.builtAt > TAP_SECRET_INDEX_MAX_AGE_MS;
+    }
+
+    private TapSecretIndex rebuildTapSecretIndex(@Nullable TapSecretIndex previous, boolean causedByMiss) {
+        synchronized (tapSecretIndexLock) {
+            // Another thread may have rebuilt the index while we were waiting for the lock.
+            TapSecretIndex current = tapSecretIndex;
+            if (current != null && current != previous && !isStale(current)) {
+                return current;
+            }
+
+            if (causedByMiss && previous != null && !isStale(previous)
+                    && System.currentTimeMillis() - lastTapSecretIndexRebuild < TAP_SECRET_INDEX_MISS_REBUILD_INTERVAL_MS) {
+                return previous;
+            }
+
+            /*
+             * We have to pull all taps here and decrypt their secrets because the secret is encrypted, and we can't
+             * use a SELECT WHERE with a non-deterministic encryption like PGP. The keys cache makes sure we only
+             * decrypt secrets that changed since the last rebuild.
+             */
+            long generation = tapSecretIndexGeneration.get();
+
+            List<TapPermissionEntry> taps = nzyme.getDatabase().withHandle(handle ->
+                    handle.createQuery("SELECT * FROM taps WHERE deleted = false")
+                            .mapTo(TapPermissionEntry.class)
+                            .list()
+            );
+
+            Map<HashCode, TapPermissionEntry> index = Maps.newHashMapWithExpectedSize(taps.size());
+            for (TapPermissionEntry tap : taps) {
+                try {
+                    String decryptedSecret = keysCache.get(tap.secret());
+                    index.put(tapSecretHmac.hashString(decryptedSecret, StandardCharsets.UTF_8), tap);
+                } catch (Exception e) {
+                    LOG.error("Could not decrypt secret of tap [{}]. Tap will not be able to authenticate.",
+                            tap.uuid(), e);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not decrypt tap key.", e);
             }
-        }
 
-        return Optional.empty();
+            TapSecretIndex rebuilt = new TapSecretIndex(generation, System.currentTimeMillis(), index);
+            this.tapSecretIndex = rebuilt;
+            this.lastTapSecretIndexRebuild = rebuilt.builtAt;
+
+            return rebuilt;
+        }
     }
 
     public void deleteTap(UUID organizationId, UUID tenantId, UUID tapId) {
@@ -1027,6 +1103,8 @@ public class AuthenticationService {
                         .bind("uuid", tapId)
                         .execute()
         );
+
+        tapChanged(tapId, TapChangeType.DELETED);
     }
 
     public void editTap(UUID organizationId,
@@ -1054,6 +1132,8 @@ public class AuthenticationService {
                         .bind("uuid", tapId)
                         .execute()
         );
+
+        tapChanged(tapId, TapChangeType.UPDATED);
     }
 
     public void cycleTapSecret(UUID organizationId, UUID tenantId, UUID tapId, String newSecret) {
@@ -1073,6 +1153,8 @@ public class AuthenticationService {
                         .bind("uuid", tapId)
                         .execute()
         );
+
+        tapChanged(tapId, TapChangeType.UPDATED);
     }
 
     public List<TenantLocationEntry> findAllTenantLocations(UUID organizationId, UUID tenantId, int limit, int offset) {
@@ -1331,28 +1413,35 @@ public class AuthenticationService {
     }
 
     public void placeTapOnFloor(long tapId, UUID locationId, UUID floorId, int x, int y) {
-        nzyme.getDatabase().useHandle(handle ->
-                handle.createUpdate("UPDATE taps SET location_uuid = :location_id, floor_uuid = :floor_id, " +
-                                "floor_location_x = :x, floor_location_y = :y WHERE id = :tap_id")
+        Optional<UUID> tapUuid = nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("UPDATE taps SET location_uuid = :location_id, floor_uuid = :floor_id, " +
+                                "floor_location_x = :x, floor_location_y = :y WHERE id = :tap_id RETURNING uuid")
                         .bind("tap_id", tapId)
                         .bind("location_id", locationId)
                         .bind("floor_id", floorId)
                         .bind("x", x)
                         .bind("y", y)
-                        .execute()
+                        .mapTo(UUID.class)
+                        .findOne()
         );
+
+        tapUuid.ifPresent(uuid -> tapChanged(uuid, TapChangeType.UPDATED));
     }
 
     public void removeTapFromFloor(long tapId, UUID locationId, UUID floorId) {
-        nzyme.getDatabase().useHandle(handle ->
-                handle.createUpdate("UPDATE taps SET location_uuid = NULL, floor_uuid = NULL, " +
+        Optional<UUID> tapUuid = nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("UPDATE taps SET location_uuid = NULL, floor_uuid = NULL, " +
                                 "floor_location_x = NULL, floor_location_y = NULL " +
-                                "WHERE location_uuid = :location_id AND floor_uuid = :floor_id AND id = :tap_id")
+                                "WHERE location_uuid = :location_id AND floor_uuid = :floor_id AND id = :tap_id " +
+                                "RETURNING uuid")
                         .bind("tap_id", tapId)
                         .bind("location_id", locationId)
                         .bind("floor_id", floorId)
-                        .execute()
+                        .mapTo(UUID.class)
+                        .findOne()
         );
+
+        tapUuid.ifPresent(uuid -> tapChanged(uuid, TapChangeType.UPDATED));
     }
 
     public void updateUpdatedAtOfTFloor(long floorId) {
@@ -1460,4 +1549,18 @@ public class AuthenticationService {
         return countTapsOfTenant(t) == 0 && countUsersOfTenant(t) == 0;
     }
 
+    private static final class TapSecretIndex {
+
+        private final long generation;
+        private final long builtAt;
+        private final Map<HashCode, TapPermissionEntry> taps;
+
+        private TapSecretIndex(long generation, long builtAt, Map<HashCode, TapPermissionEntry> taps) {
+            this.generation = generation;
+            this.builtAt = builtAt;
+            this.taps = taps;
+        }
+
+    }
+
 }
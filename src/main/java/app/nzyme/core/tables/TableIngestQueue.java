@@ -0,0 +1,137 @@
+/*
+ * This file is part of nzyme.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package app.nzyme.core.tables;
+
+import app.nzyme.core.configuration.node.TableIngestConfiguration;
+import app.nzyme.core.util.MetricNames;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue and worker pool that processes the reports of a single data table. Reports are rejected instead of
+ * queued without limit once the queue is full, so the REST resource can tell the tap to back off and retry.
+ */
+public class TableIngestQueue {
+
+    private static final Logger LOG = LogManager.getLogger(TableIngestQueue.class);
+
+    private final String tableName;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueWaitTimer;
+    private final Timer processingTimer;
+    private final Meter rejectedMeter;
+
+    public TableIngestQueue(String tableName, TableIngestConfiguration configuration, MetricRegistry metrics) {
+        this.tableName = tableName;
+
+        this.executor = new ThreadPoolExecutor(
+                configuration.workers(),
+                configuration.workers(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(configuration.queueSize()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("table-ingest-" + tableName + "-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.queueWaitTimer = metrics.timer(MetricNames.TABLES_INGEST_QUEUE_WAIT_TIMER_BASE + tableName);
+        this.processingTimer = metrics.timer(MetricNames.TABLES_INGEST_PROCESSING_TIMER_BASE + tableName);
+        this.rejectedMeter = metrics.meter(MetricNames.TABLES_INGEST_REJECTED_METER_BASE + tableName);
+
+        metrics.register(MetricNames.TABLES_INGEST_QUEUE_DEPTH_BASE + tableName, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return (long) executor.getQueue().size();
+            }
+        });
+    }
+
+    /**
+     * Queues a report for processing.
+     *
+     * @param report The report processing logic.
+     * @return false if the queue is full and the report was not accepted.
+     */
+    public boolean submit(Runnable report) {
+        long enqueuedAt = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                queueWaitTimer.update(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+
+                try (Timer.Context ignored = processingTimer.time()) {
+                    report.run();
+                } catch (Exception e) {
+                    LOG.error("Could not process report for data table [{}].", tableName, e);
+                }
+            });
+
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedMeter.mark();
+            return false;
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting reports. Already queued reports are still processed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for queued and running reports after {@link #shutdown()}. Reports still queued after the timeout are
+     * dropped.
+     *
+     * @return false if reports were dropped.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        try {
+            if (executor.awaitTermination(timeout, unit)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int dropped = executor.shutdownNow().size();
+        LOG.warn("Dropped <{}> queued reports of data table [{}] on shutdown.", dropped, tableName);
+
+        return false;
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package app.nzyme.core.tables;
 
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.tables.bluetooth.BluetoothTable;
 import app.nzyme.core.tables.dot11.Dot11Table;
 import app.nzyme.core.tables.ethernet.*;
@@ -28,7 +29,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -36,15 +36,22 @@ public class TablesService {
 
     private static final Logger LOG = LogManager.getLogger(TablesService.class);
 
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     private final NzymeNode nzyme;
 
     private final Map<String, DataTable> tables;
+    private final Map<String, TableIngestQueue> ingestQueues;
 
-    private final ExecutorService processorPool;
+    private final L4SessionCache l4SessionCache;
+    private final HeavyHitters heavyHitters;
 
     public TablesService(NzymeNode nzyme) {
         this.nzyme = nzyme;
 
+        this.l4SessionCache = new L4SessionCache(nzyme);
+        this.heavyHitters = new HeavyHitters(nzyme);
+
         this.tables = new ImmutableMap.Builder<String, DataTable>()
                 .put("dot11", new Dot11Table(this))
                 .put("bluetooth", new BluetoothTable(this))
@@ -59,13 +66,15 @@ public class TablesService {
                 .put("ntp", new NTPTable(this))
                 .build();
 
-        this.processorPool = Executors.newFixedThreadPool(
-                nzyme.getConfiguration().performance().reportProcessorPoolSize(),
-                new ThreadFactoryBuilder()
-                        .setNameFormat("dot11-report-writer-%d")
-                        .setDaemon(true)
-                        .build()
-        );
+        ImmutableMap.Builder<String, TableIngestQueue> ingestQueues = new ImmutableMap.Builder<>();
+        for (String tableName : tables.keySet()) {
+            ingestQueues.put(tableName, new TableIngestQueue(
+                    tableName,
+                    nzyme.getConfiguration().performance().tableIngest(tableName),
+                    nzyme.getMetrics()
+            ));
+        }
+        this.ingestQueues = ingestQueues.build();
 
         Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder()
@@ -83,6 +92,23 @@ public class TablesService {
 
     }
 
+    /**
+     * Queues a tap report for asynchronous processing by the workers of the given table.
+     *
+     * @param tableName Name of the data table, for example "dot11" or "tcp".
+     * @param report The report processing logic.
+     * @return false if the ingest queue of the table is full and the tap should retry later.
+     */
+    public boolean enqueueReport(String tableName, Runnable report) {
+        TableIngestQueue queue = ingestQueues.get(tableName);
+
+        if (queue == null) {
+            throw new IllegalArgumentException("Unknown data table [" + tableName + "].");
+        }
+
+        return queue.submit(report);
+    }
+
     public Dot11Table dot11() {
         return (Dot11Table) tables.get("dot11");
     }
@@ -123,8 +149,31 @@ public class TablesService {
 
     public UAVTable uav() { return (UAVTable) tables.get("uav"); }
 
-    public ExecutorService getProcessorPool() {
-        return processorPool;
+    public L4SessionCache getL4SessionCache() {
+        return l4SessionCache;
+    }
+
+    public HeavyHitters getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    /**
+     * Writes all queued reports and cached state. Must complete before the database is closed.
+     */
+    public void shutdown() {
+        for (TableIngestQueue queue : ingestQueues.values()) {
+            queue.shutdown();
+        }
+
+        // Queues drain in parallel and share one deadline.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        for (TableIngestQueue queue : ingestQueues.values()) {
+            queue.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+
+        // Reports feed the caches. Flush them last.
+        l4SessionCache.shutdown();
+        heavyHitters.shutdown();
     }
 
     public NzymeNode getNzyme() {
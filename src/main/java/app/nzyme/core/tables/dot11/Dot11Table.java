@@ -3,13 +3,14 @@ package app.nzyme.core.tables.dot11;
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.detection.alerts.DetectionType;
 import app.nzyme.core.dot11.Dot11;
+import app.nzyme.core.dot11.Dot11TenantCacheKey;
 import app.nzyme.core.dot11.db.monitoring.*;
 import app.nzyme.core.dot11.bandits.Dot11BanditDescription;
 import app.nzyme.core.dot11.bandits.Dot11Bandits;
-import app.nzyme.core.dot11.db.monitoring.probereq.MonitoredProbeRequestEntry;
 import app.nzyme.core.rest.resources.taps.reports.tables.dot11.*;
 import app.nzyme.core.tables.DataTable;
 import app.nzyme.core.tables.TablesService;
+import app.nzyme.core.tables.dot11.monitoring.Dot11MonitoringSnapshot;
 import app.nzyme.core.tables.dot11.monitoring.PreLoadedMonitoredBSSID;
 import app.nzyme.core.tables.dot11.monitoring.PreLoadedMonitoredSSID;
 import app.nzyme.core.taps.Tap;
@@ -19,6 +20,7 @@ import app.nzyme.plugin.Subsystem;
 import tools.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import info.debatty.java.stringsimilarity.JaroWinkler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,16 +31,19 @@ import com.codahale.metrics.Timer;
 
 import java.sql.Types;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 public class Dot11Table implements DataTable {
 
     private static final Logger LOG = LogManager.getLogger(Dot11Table.class);
 
+    private static final long MONITORING_SNAPSHOT_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(1);
+
     private final TablesService tablesService;
     private final ObjectMapper om;
 
+    private final Map<Dot11TenantCacheKey, Dot11MonitoringSnapshot> monitoringSnapshots;
+
     private final Timer totalReportTimer;
     private final Timer bssidReportTimer;
     private final Timer clientsReportTimer;
@@ -48,6 +53,7 @@ public class Dot11Table implements DataTable {
     public Dot11Table(TablesService tablesService) {
         this.tablesService = tablesService;
         this.om = new ObjectMapper();
+        this.monitoringSnapshots = Maps.newConcurrentMap();
 
         this.totalReportTimer = tablesService.getNzyme().getMetrics()
                 .timer(MetricNames.DOT11_TOTAL_REPORT_PROCESSING_TIMER);
@@ -89,145 +95,220 @@ public class Dot11Table implements DataTable {
     }
 
     private void writeClients(Tap tap, DateTime timestamp, Map<String, Dot11ClientReport> clients) {
-        Map<String, MonitoredProbeRequestEntry> monitoredProbeRequests = tablesService.getNzyme().getDot11()
-                .findAllMonitoredProbeRequests(tap.organizationId(), tap.tenantId(), Integer.MAX_VALUE, 0)
-                .stream()
-                .collect(Collectors.toMap(MonitoredProbeRequestEntry::ssid, entry -> entry));
+        if (clients.isEmpty()) {
+            return;
+        }
+
+        Set<String> monitoredProbeRequests = tablesService.getNzyme().getDot11()
+                .findMonitoredProbeRequestSSIDs(tap.organizationId(), tap.tenantId());
+
+        List<String> clientMacs = Lists.newArrayListWithCapacity(clients.size());
+        List<Boolean> clientMacsRandomized = Lists.newArrayListWithCapacity(clients.size());
+        List<Long> wildcardProbeRequests = Lists.newArrayListWithCapacity(clients.size());
+        List<Float> signalStrengthAverages = Lists.newArrayListWithCapacity(clients.size());
+        List<Long> signalStrengthMaximums = Lists.newArrayListWithCapacity(clients.size());
+        List<Long> signalStrengthMinimums = Lists.newArrayListWithCapacity(clients.size());
 
         for (Map.Entry<String, Dot11ClientReport> entry : clients.entrySet()) {
-            String clientMac = entry.getKey();
-            Dot11ClientReport report = entry.getValue();
-
-            long clientDatabaseId = tablesService.getNzyme().getDatabase().withHandle(handle ->
-                    handle.createQuery("INSERT INTO dot11_clients(tap_uuid, client_mac, client_mac_is_randomized, " +
-                                    "wildcard_probe_requests, signal_strength_average, signal_strength_max, " +
-                                    "signal_strength_min, created_at) VALUES(:tap_uuid, :client_mac, " +
-                                    ":client_mac_is_randomized, :wildcard_probe_requests, :signal_strength_average, " +
-                                    ":signal_strength_max, :signal_strength_min, :created_at) RETURNING id")
-                            .bind("tap_uuid", tap.uuid())
-                            .bind("client_mac", clientMac)
-                            .bind("client_mac_is_randomized", Tools.macAddressIsRandomized(clientMac))
-                            .bind("wildcard_probe_requests", report.wildcardProbeRequests())
-                            .bind("signal_strength_average", report.signalStrength().average())
-                            .bind("signal_strength_min", report.signalStrength().min())
-                            .bind("signal_strength_max", report.signalStrength().max())
-                            .bind("created_at", timestamp)
-                            .mapTo(Long.class)
-                            .one()
-            );
+            clientMacs.add(entry.getKey());
+            clientMacsRandomized.add(Tools.macAddressIsRandomized(entry.getKey()));
+            wildcardProbeRequests.add(entry.getValue().wildcardProbeRequests());
+            signalStrengthAverages.add(entry.getValue().signalStrength().average());
+            signalStrengthMaximums.add(entry.getValue().signalStrength().max());
+            signalStrengthMinimums.add(entry.getValue().signalStrength().min());
+        }
 
-            tablesService.getNzyme().getDatabase().useHandle(handle -> {
-                PreparedBatch batch = handle.prepareBatch(
-                        "INSERT INTO dot11_client_probereq_ssids(client_id, ssid, frame_count, tap_uuid) " +
-                                "VALUES(:client_id, :ssid, :frame_count, :tap_uuid)"
-                );
+        List<Map<String, String>> alerts = Lists.newArrayList();
+
+        // Two statements per report, independent of the number of clients.
+        tablesService.getNzyme().getDatabase().useHandle(h -> h.useTransaction(handle -> {
+            Map<String, Long> clientIds = Maps.newHashMapWithExpectedSize(clients.size());
+            handle.createQuery("INSERT INTO dot11_clients(tap_uuid, client_mac, client_mac_is_randomized, " +
+                            "wildcard_probe_requests, signal_strength_average, signal_strength_max, " +
+                            "signal_strength_min, created_at) SELECT :tap_uuid, c.client_mac, " +
+                            "c.client_mac_is_randomized, c.wildcard_probe_requests, c.signal_strength_average, " +
+                            "c.signal_strength_max, c.signal_strength_min, :created_at " +
+                            "FROM UNNEST(:client_macs, :client_macs_randomized, :wildcard_probe_requests, " +
+                            ":signal_strength_averages, :signal_strength_maximums, :signal_strength_minimums) " +
+                            "AS c(client_mac, client_mac_is_randomized, wildcard_probe_requests, " +
+                            "signal_strength_average, signal_strength_max, signal_strength_min) " +
+                            "RETURNING id, client_mac")
+                    .bind("tap_uuid", tap.uuid())
+                    .bind("created_at", timestamp)
+                    .bindArray("client_macs", String.class, clientMacs)
+                    .bindArray("client_macs_randomized", Boolean.class, clientMacsRandomized)
+                    .bindArray("wildcard_probe_requests", Long.class, wildcardProbeRequests)
+                    .bindArray("signal_strength_averages", Float.class, signalStrengthAverages)
+                    .bindArray("signal_strength_maximums", Long.class, signalStrengthMaximums)
+                    .bindArray("signal_strength_minimums", Long.class, signalStrengthMinimums)
+                    .map((rs, ctx) -> Maps.immutableEntry(rs.getString("client_mac"), rs.getLong("id")))
+                    .forEach(e -> clientIds.put(e.getKey(), e.getValue()));
+
+            List<Long> probeRequestClientIds = Lists.newArrayList();
+            List<String> probeRequestSSIDs = Lists.newArrayList();
+            List<Long> probeRequestFrameCounts = Lists.newArrayList();
+
+            for (Map.Entry<String, Dot11ClientReport> entry : clients.entrySet()) {
+                String clientMac = entry.getKey();
+                Long clientDatabaseId = clientIds.get(clientMac);
+                if (clientDatabaseId == null) {
+                    LOG.warn("Client [{}] was not written. Skipping its probe requests.", clientMac);
+                    continue;
+                }
 
-                for (Map.Entry<String, Long> pr : report.probeRequestSSIDs().entrySet()) {
+                for (Map.Entry<String, Long> pr : entry.getValue().probeRequestSSIDs().entrySet()) {
                     String ssid = Tools.sanitizeSSID(pr.getKey());
 
                     // Check if we are monitoring for this probe request SSID and raise alert if so.
-                    if (monitoredProbeRequests.containsKey(ssid)) {
-                        // Raise alert.
+                    if (monitoredProbeRequests.contains(ssid)) {
                         Map<String, String> attributes = Maps.newHashMap();
                         attributes.put("ssid", ssid);
                         attributes.put("client_mac", clientMac);
-
-                        tablesService.getNzyme().getDetectionAlertService().raiseAlert(
-                                tap.organizationId(),
-                                tap.tenantId(),
-                                null,
-                                tap.uuid(),
-                                DetectionType.DOT11_PROBEREQ,
-                                Subsystem.DOT11,
-                                "Monitored probe request for SSID \"" + ssid + "\" detected in range.",
-                                attributes,
-                                Set.of("ssid")
-                        );
+                        alerts.add(attributes);
                     }
 
-                    batch.bind("client_id", clientDatabaseId)
-                            .bind("ssid", ssid)
-                            .bind("frame_count", pr.getValue())
-                            .bind("tap_uuid", tap.uuid())
-                            .add();
+                    probeRequestClientIds.add(clientDatabaseId);
+                    probeRequestSSIDs.add(ssid);
+                    probeRequestFrameCounts.add(pr.getValue());
                 }
+            }
 
-                batch.execute();
-            });
+            if (!probeRequestClientIds.isEmpty()) {
+                handle.createUpdate("INSERT INTO dot11_client_probereq_ssids(client_id, ssid, frame_count, tap_uuid) " +
+                                "SELECT p.client_id, p.ssid, p.frame_count, :tap_uuid " +
+                                "FROM UNNEST(:client_ids, :ssids, :frame_counts) AS p(client_id, ssid, frame_count)")
+                        .bind("tap_uuid", tap.uuid())
+                        .bindArray("client_ids", Long.class, probeRequestClientIds)
+                        .bindArray("ssids", String.class, probeRequestSSIDs)
+                        .bindArray("frame_counts", Long.class, probeRequestFrameCounts)
+                        .execute();
+            }
+        }));
+
+        // Raise alerts after the transaction is committed.
+        for (Map<String, String> attributes : alerts) {
+            tablesService.getNzyme().getDetectionAlertService().raiseAlert(
+                    tap.organizationId(),
+                    tap.tenantId(),
+                    null,
+                    tap.uuid(),
+                    DetectionType.DOT11_PROBEREQ,
+                    Subsystem.DOT11,
+                    "Monitored probe request for SSID \"" + attributes.get("ssid") + "\" detected in range.",
+                    attributes,
+                    Set.of("ssid")
+            );
         }
     }
 
-    public void writeBSSIDs(Tap tap, DateTime timestamp,
-                            Map<String, Dot11BSSIDReport> bssids,
-                            UUID organizationId,
-                            UUID tenantId) {
-        // Collect all monitored SSIDs and their attributes.
-        Map<String, PreLoadedMonitoredSSID> monitoredSSIDs = Maps.newHashMap();
-        List<String> monitoredSSIDNames = Lists.newArrayList();
-        NzymeNode nzyme = tablesService.getNzyme();
+    /**
+     * Returns the monitoring configuration of a tenant. Rebuilt from the database if the monitoring configuration
+     * changed since the cached snapshot was built, or after MONITORING_SNAPSHOT_MAX_AGE_MS in case a change
+     * notification from another node was lost.
+     */
+    private Dot11MonitoringSnapshot getMonitoringSnapshot(UUID organizationId, UUID tenantId) {
+        Dot11TenantCacheKey key = Dot11TenantCacheKey.create(organizationId, tenantId);
+        long currentVersion = tablesService.getNzyme().getDot11().getMonitoringConfigurationVersion();
+
+        Dot11MonitoringSnapshot snapshot = monitoringSnapshots.get(key);
+        if (snapshot != null && snapshot.version() == currentVersion
+                && System.currentTimeMillis() - snapshot.builtAt() <= MONITORING_SNAPSHOT_MAX_AGE_MS) {
+            return snapshot;
+        }
 
-        nzyme.getDatabase().useHandle(handle -> {
-            for (MonitoredSSID s : nzyme.getDot11().findAllMonitoredSSIDs(tap.organizationId(), tap.tenantId())) {
-                if (!s.isEnabled()) {
-                    continue;
-                }
+        /*
+         * Tag the snapshot with the version we read before loading. A change during the load bumps the version
+         * again and leads to another rebuild with the next report.
+         */
+        snapshot = buildMonitoringSnapshot(currentVersion, organizationId, tenantId);
+        monitoringSnapshots.put(key, snapshot);
 
-                monitoredSSIDNames.add(s.ssid());
+        return snapshot;
+    }
 
-                Map<String, PreLoadedMonitoredBSSID> preLoadedBSSIDs = Maps.newHashMap();
-                for (MonitoredBSSID b : nzyme.getDot11().findMonitoredBSSIDsOfMonitoredNetwork(s.id())) {
-                    List<String> fingerprints = Lists.newArrayList();
-                    for (MonitoredFingerprint f : nzyme.getDot11().findMonitoredFingerprintsOfMonitoredBSSID(b.id())) {
-                        fingerprints.add(f.fingerprint());
-                    }
+    private Dot11MonitoringSnapshot buildMonitoringSnapshot(long version, UUID organizationId, UUID tenantId) {
+        Dot11 dot11 = tablesService.getNzyme().getDot11();
 
-                    preLoadedBSSIDs.put(b.bssid(), PreLoadedMonitoredBSSID.create(b.bssid(), fingerprints));
-                }
+        // Collect all monitored SSIDs and their attributes.
+        Map<String, PreLoadedMonitoredSSID> monitoredSSIDs = Maps.newHashMap();
+        for (MonitoredSSID s : dot11.findAllMonitoredSSIDs(organizationId, tenantId)) {
+            if (!s.isEnabled()) {
+                continue;
+            }
 
-                List<Integer> preLoadedChannels = Lists.newArrayList();
-                for (MonitoredChannel c : nzyme.getDot11().findMonitoredChannelsOfMonitoredNetwork(s.id())) {
-                    preLoadedChannels.add((int) c.frequency());
+            Map<String, PreLoadedMonitoredBSSID> preLoadedBSSIDs = Maps.newHashMap();
+            for (MonitoredBSSID b : dot11.findMonitoredBSSIDsOfMonitoredNetwork(s.id())) {
+                List<String> fingerprints = Lists.newArrayList();
+                for (MonitoredFingerprint f : dot11.findMonitoredFingerprintsOfMonitoredBSSID(b.id())) {
+                    fingerprints.add(f.fingerprint());
                 }
 
-                List<String> preLoadedSecuritySuites = Lists.newArrayList();
-                for (MonitoredSecuritySuite ss : nzyme.getDot11().findMonitoredSecuritySuitesOfMonitoredNetwork(s.id())) {
-                    preLoadedSecuritySuites.add(ss.securitySuite());
-                }
+                preLoadedBSSIDs.put(b.bssid(), PreLoadedMonitoredBSSID.create(b.bssid(), fingerprints));
+            }
 
-                monitoredSSIDs.put(s.ssid(), PreLoadedMonitoredSSID.create(
-                        s.id(),
-                        s.uuid(),
-                        s.ssid(),
-                        preLoadedBSSIDs,
-                        preLoadedChannels,
-                        preLoadedSecuritySuites,
-                        s.enabledUnexpectedBSSID(),
-                        s.enabledUnexpectedChannel(),
-                        s.enabledUnexpectedSecuritySuites(),
-                        s.enabledUnexpectedFingerprint(),
-                        s.enabledUnexpectedSignalTracks(),
-                        s.enabledSimilarLookingSSID(),
-                        s.enabledSSIDSubstring(),
-                        s.detectionConfigSimilarLookingSSIDThreshold()
-                ));
+            List<Integer> preLoadedChannels = Lists.newArrayList();
+            for (MonitoredChannel c : dot11.findMonitoredChannelsOfMonitoredNetwork(s.id())) {
+                preLoadedChannels.add((int) c.frequency());
             }
 
+            List<String> preLoadedSecuritySuites = Lists.newArrayList();
+            for (MonitoredSecuritySuite ss : dot11.findMonitoredSecuritySuitesOfMonitoredNetwork(s.id())) {
+                preLoadedSecuritySuites.add(ss.securitySuite());
+            }
 
-            // Load all bandits.
-            List<Dot11BanditDescription> bandits = Lists.newArrayList(Dot11Bandits.BUILT_IN);
-            for (CustomBanditDescription bandit : nzyme.getDot11()
-                    .findAllCustomBandits(organizationId, tenantId, Integer.MAX_VALUE, 0)) {
-                List<String> fingerprints = nzyme.getDot11().findFingerprintsOfCustomBandit(bandit.id());
+            monitoredSSIDs.put(s.ssid(), PreLoadedMonitoredSSID.create(
+                    s.id(),
+                    s.uuid(),
+                    s.ssid(),
+                    preLoadedBSSIDs,
+                    preLoadedChannels,
+                    preLoadedSecuritySuites,
+                    s.enabledUnexpectedBSSID(),
+                    s.enabledUnexpectedChannel(),
+                    s.enabledUnexpectedSecuritySuites(),
+                    s.enabledUnexpectedFingerprint(),
+                    s.enabledUnexpectedSignalTracks(),
+                    s.enabledSimilarLookingSSID(),
+                    s.enabledSSIDSubstring(),
+                    s.detectionConfigSimilarLookingSSIDThreshold()
+            ));
+        }
 
-                bandits.add(Dot11BanditDescription.create(
-                        bandit.uuid().toString(),
-                        true,
-                        bandit.name(),
-                        bandit.description(),
-                        fingerprints
-                ));
-            }
+        // Load all bandits.
+        List<Dot11BanditDescription> bandits = Lists.newArrayList(Dot11Bandits.BUILT_IN);
+        for (CustomBanditDescription bandit : dot11.findAllCustomBandits(organizationId, tenantId, Integer.MAX_VALUE, 0)) {
+            List<String> fingerprints = dot11.findFingerprintsOfCustomBandit(bandit.id());
+
+            bandits.add(Dot11BanditDescription.create(
+                    bandit.uuid().toString(),
+                    true,
+                    bandit.name(),
+                    bandit.description(),
+                    fingerprints
+            ));
+        }
 
+        return Dot11MonitoringSnapshot.create(
+                version,
+                System.currentTimeMillis(),
+                Collections.unmodifiableMap(monitoredSSIDs),
+                Collections.unmodifiableSet(Sets.newHashSet(monitoredSSIDs.keySet())),
+                Collections.unmodifiableList(bandits)
+        );
+    }
+
+    public void writeBSSIDs(Tap tap, DateTime timestamp,
+                            Map<String, Dot11BSSIDReport> bssids,
+                            UUID organizationId,
+                            UUID tenantId) {
+        NzymeNode nzyme = tablesService.getNzyme();
+
+        Dot11MonitoringSnapshot monitoring = getMonitoringSnapshot(organizationId, tenantId);
+        Map<String, PreLoadedMonitoredSSID> monitoredSSIDs = monitoring.monitoredSSIDs();
+        Set<String> monitoredSSIDNames = monitoring.monitoredSSIDNames();
+        List<Dot11BanditDescription> bandits = monitoring.bandits();
+
+        nzyme.getDatabase().useHandle(handle -> {
             List<SSIDProcessingTask> ssidProcessingTasks = Lists.newArrayList();
 
             for (Map.Entry<String, Dot11BSSIDReport> entry : bssids.entrySet()) {
@@ -318,28 +399,16 @@ public class Dot11Table implements DataTable {
                 }
             }
 
-            // Write all SSIDs.
-            CountDownLatch latch = new CountDownLatch(ssidProcessingTasks.size());
+            // Write all SSIDs. Runs on the dot11 ingest worker that owns this handle.
             for (SSIDProcessingTask ssidProcessingTask : ssidProcessingTasks) {
-                tablesService.getProcessorPool().submit(() -> {
-                    writeSSID(nzyme, handle, monitoredSSIDNames, monitoredSSIDs, ssidProcessingTask);
-
-                    latch.countDown();
-                });
-            }
-
-            // Wait for SSID processing to finish.
-            try {
-                latch.await();
-            } catch (InterruptedException e) {
-                LOG.error("SSID writer process interrupted.", e);
+                writeSSID(nzyme, handle, monitoredSSIDNames, monitoredSSIDs, ssidProcessingTask);
             }
         });
     }
 
     private void writeSSID(NzymeNode nzyme,
                            Handle handle,
-                           List<String> monitoredSSIDNames,
+                           Set<String> monitoredSSIDNames,
                            Map<String, PreLoadedMonitoredSSID> monitoredSSIDs,
                            SSIDProcessingTask task) {
 
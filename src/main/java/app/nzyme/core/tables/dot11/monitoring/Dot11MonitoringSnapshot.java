@@ -0,0 +1,51 @@
+package app.nzyme.core.tables.dot11.monitoring;
+
+import app.nzyme.core.dot11.bandits.Dot11BanditDescription;
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the monitored networks and bandits of a tenant, as of the monitoring configuration version it
+ * was built from. Shared by all report processing threads. builtAt is the build time in epoch milliseconds.
+ */
+@AutoValue
+public abstract class Dot11MonitoringSnapshot {
+
+    public abstract long version();
+    public abstract long builtAt();
+    public abstract Map<String, PreLoadedMonitoredSSID> monitoredSSIDs();
+    public abstract Set<String> monitoredSSIDNames();
+    public abstract List<Dot11BanditDescription> bandits();
+
+    public static Dot11MonitoringSnapshot create(long version, long builtAt, Map<String, PreLoadedMonitoredSSID> monitoredSSIDs, Set<String> monitoredSSIDNames, List<Dot11BanditDescription> bandits) {
+        return builder()
+                .version(version)
+                .builtAt(builtAt)
+                .monitoredSSIDs(monitoredSSIDs)
+                .monitoredSSIDNames(monitoredSSIDNames)
+                .bandits(bandits)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Dot11MonitoringSnapshot.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder version(long version);
+
+        public abstract Builder builtAt(long builtAt);
+
+        public abstract Builder monitoredSSIDs(Map<String, PreLoadedMonitoredSSID> monitoredSSIDs);
+
+        public abstract Builder monitoredSSIDNames(Set<String> monitoredSSIDNames);
+
+        public abstract Builder bandits(List<Dot11BanditDescription> bandits);
+
+        public abstract Dot11MonitoringSnapshot build();
+    }
+}
@@ -17,6 +17,8 @@
 
 package app.nzyme.core.tables.ethernet;
 
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitterAddress;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.integrations.geoip.GeoIpLookupResult;
 import app.nzyme.core.rest.resources.taps.reports.tables.dns.DnsEntropyLogReport;
 import app.nzyme.core.rest.resources.taps.reports.tables.dns.DnsIpStatisticsReport;
@@ -147,6 +149,8 @@ public class DNSTable implements DataTable {
                 ":server_address_geo_longitude, :server_address_is_site_local, :server_address_is_multicast, " +
                 ":server_address_is_loopback, :count, :timestamp)");
 
+        HeavyHitters.Batch heavyHitters = tablesService.getHeavyHitters().batch();
+
         for (Map.Entry<String, Map<Integer, Map<String, Long>>> pair : pairs.entrySet()) {
             for (Map.Entry<Integer, Map<String, Long>> server : pair.getValue().entrySet()) {
                 for (Map.Entry<String, Long> port : server.getValue().entrySet()) {
@@ -170,11 +174,22 @@ public class DNSTable implements DataTable {
                             .bind("count", port.getValue())
                             .bind("timestamp", timestamp)
                             .add();
+
+                    heavyHitters.recordDNSPair(
+                            tapUuid,
+                            timestamp,
+                            pair.getKey(),
+                            HeavyHitterAddress.of(port.getKey(), server.getKey(), serverAddress, geo),
+                            port.getValue()
+                    );
                 }
             }
         }
 
         batch.execute();
+
+        // Only record pairs that made it into the database.
+        heavyHitters.commit();
     }
 
     /*
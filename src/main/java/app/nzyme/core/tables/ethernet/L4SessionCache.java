@@ -0,0 +1,309 @@
+/*
+ * This file is part of nzyme.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package app.nzyme.core.tables.ethernet;
+
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local table of open TCP sessions and UDP conversations. Taps report every open session in every report
+ * cycle, and we only have to write the most recent state of each session. Updates of known sessions are kept in
+ * memory and written to the database in coalesced batches on a fixed interval. Sessions are evicted after they
+ * were closed or have not been reported for a while.
+ *
+ * Byte and segment counters are written as increments, so sessions that are written by more than one node or
+ * that changed in the database otherwise are not overwritten with stale totals. Sessions that no longer exist in
+ * the database, for example because retention cleaning deleted them, are evicted on the next flush.
+ */
+public class L4SessionCache {
+
+    private static final Logger LOG = LogManager.getLogger(L4SessionCache.class);
+
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final NzymeNode nzyme;
+
+    private final Map<L4SessionCacheKey, CachedSession> sessions;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Timer flushTimer;
+
+    private final ScheduledExecutorService flusher;
+
+    public L4SessionCache(NzymeNode nzyme) {
+        this.nzyme = nzyme;
+        this.sessions = Maps.newConcurrentMap();
+
+        this.hitMeter = nzyme.getMetrics().meter(MetricNames.L4_SESSION_CACHE_HITS);
+        this.missMeter = nzyme.getMetrics().meter(MetricNames.L4_SESSION_CACHE_MISSES);
+        this.flushTimer = nzyme.getMetrics().timer(MetricNames.L4_SESSION_CACHE_FLUSH_TIMER);
+
+        nzyme.getMetrics().register(MetricNames.L4_SESSION_CACHE_SIZE, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return (long) sessions.size();
+            }
+        });
+
+        nzyme.getMetrics().register(MetricNames.L4_SESSION_CACHE_HIT_RATIO, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hitMeter.getOneMinuteRate(), hitMeter.getOneMinuteRate() + missMeter.getOneMinuteRate());
+            }
+        });
+
+        int flushInterval = nzyme.getConfiguration().performance().l4SessionFlushIntervalSeconds();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("l4-session-flusher-%d")
+                        .setDaemon(true)
+                        .build()
+        );
+
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Makes sure all open sessions of the given keys that exist in the database are known to the cache. Sessions
+     * that are not cached yet are resolved with a single query.
+     */
+    public void resolve(Handle handle, UUID tapUuid, String l4Type, Collection<String> sessionKeys) {
+        Set<String> misses = Sets.newHashSet();
+        for (String sessionKey : sessionKeys) {
+            if (sessionKey == null) {
+                continue;
+            }
+
+            if (sessions.containsKey(L4SessionCacheKey.create(tapUuid, l4Type, sessionKey))) {
+                hitMeter.mark();
+            } else {
+                missMeter.mark();
+                misses.add(sessionKey);
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return;
+        }
+
+        handle.createQuery("SELECT id, session_key FROM l4_sessions " +
+                        "WHERE l4_type = :l4_type AND session_key = ANY(:session_keys) AND end_time IS NULL " +
+                        "AND tap_uuid = :tap_uuid")
+                .bind("l4_type", l4Type)
+                .bindArray("session_keys", String.class, misses)
+                .bind("tap_uuid", tapUuid)
+                .map((rs, ctx) -> Maps.immutableEntry(rs.getString("session_key"), rs.getLong("id")))
+                .forEach(e -> register(L4SessionCacheKey.create(tapUuid, l4Type, e.getKey()), e.getValue()));
+    }
+
+    /**
+     * Registers a session that exists in the database and has no pending changes.
+     */
+    public void register(L4SessionCacheKey key, long id) {
+        sessions.putIfAbsent(key, new CachedSession(id));
+    }
+
+    /**
+     * Records the most recent state of a known session. The state and the counter increments of all updates since
+     * the last flush are written to the database with the next flush.
+     *
+     * @return false if the session is not known and has to be inserted.
+     */
+    public boolean update(L4SessionCacheKey key, L4SessionUpdate update) {
+        return sessions.computeIfPresent(key, (k, session) -> {
+            session.setPending(update);
+            return session;
+        }) != null;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void flush() {
+        try (Timer.Context ignored = flushTimer.time()) {
+            long now = System.currentTimeMillis();
+            Map<Long, L4SessionUpdate> updates = Maps.newHashMap();
+            Map<Long, L4SessionCacheKey> keys = Maps.newHashMap();
+            Map<L4SessionCacheKey, CachedSession> evicted = Maps.newHashMap();
+
+            for (L4SessionCacheKey key : sessions.keySet()) {
+                sessions.computeIfPresent(key, (k, session) -> {
+                    L4SessionUpdate pending = session.drain();
+                    if (pending != null) {
+                        updates.put(session.id, pending);
+                        keys.put(session.id, k);
+                    }
+
+                    if (session.isEvictable(now)) {
+                        evicted.put(k, session);
+                        return null;
+                    }
+
+                    return session;
+                });
+            }
+
+            if (updates.isEmpty()) {
+                return;
+            }
+
+            List<Long> ids = Lists.newArrayList(updates.keySet());
+            int[] updated;
+            try {
+                updated = nzyme.getDatabase().withHandle(handle -> {
+                    PreparedBatch batch = handle.prepareBatch("UPDATE l4_sessions SET state = :state, " +
+                            "bytes_rx_count = bytes_rx_count + :bytes_rx_increment, " +
+                            "bytes_tx_count = bytes_tx_count + :bytes_tx_increment, " +
+                            "segments_count = segments_count + :segments_increment, tags = :tags::jsonb, " +
+                            "end_time = :end_time, most_recent_segment_time = :most_recent_segment_time " +
+                            "WHERE id = :id");
+
+                    for (Long id : ids) {
+                        L4SessionUpdate update = updates.get(id);
+                        batch.bind("state", update.state())
+                                .bind("bytes_rx_increment", update.bytesRxIncrement())
+                                .bind("bytes_tx_increment", update.bytesTxIncrement())
+                                .bind("segments_increment", update.segmentsIncrement())
+                                .bind("tags", update.tags())
+                                .bind("end_time", update.endTime())
+                                .bind("most_recent_segment_time", update.mostRecentSegmentTime())
+                                .bind("id", id)
+                                .add();
+                    }
+
+                    return batch.execute();
+                });
+            } catch (Exception e) {
+                LOG.error("Could not flush [{}] L4 session updates. Retrying with next flush.", updates.size(), e);
+
+                // Put failed updates and sessions we just evicted back.
+                for (Map.Entry<L4SessionCacheKey, CachedSession> e2 : evicted.entrySet()) {
+                    sessions.putIfAbsent(e2.getKey(), e2.getValue());
+                }
+
+                for (L4SessionCacheKey key : sessions.keySet()) {
+                    sessions.computeIfPresent(key, (k, session) -> {
+                        L4SessionUpdate failed = updates.get(session.id);
+                        if (failed != null) {
+                            session.restore(failed);
+                        }
+                        return session;
+                    });
+                }
+
+                return;
+            }
+
+            // Sessions that no longer exist in the database would be updated into the void forever.
+            int vanished = 0;
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    sessions.remove(keys.get(ids.get(i)));
+                    vanished++;
+                }
+            }
+
+            if (vanished > 0) {
+                LOG.debug("Evicted [{}] sessions that no longer exist in the database.", vanished);
+            }
+
+            LOG.debug("Flushed [{}] L4 session updates. Evicted [{}] sessions.", updates.size(), evicted.size());
+        } catch (Exception e) {
+            LOG.error("Could not flush L4 session cache.", e);
+        }
+    }
+
+    public void shutdown() {
+        // Let a running flush finish before the final one. The database is closed right after.
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Timed out waiting for running flush.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private static final class CachedSession {
+
+        private final long id;
+
+        @Nullable
+        private L4SessionUpdate pending;
+
+        private boolean closed;
+        private long lastUpdated;
+
+        CachedSession(long id) {
+            this.id = id;
+            this.lastUpdated = System.currentTimeMillis();
+        }
+
+        void setPending(L4SessionUpdate update) {
+            this.pending = pending == null ? update : pending.merge(update);
+            this.closed = update.isClosed();
+            this.lastUpdated = System.currentTimeMillis();
+        }
+
+        @Nullable
+        L4SessionUpdate drain() {
+            L4SessionUpdate result = pending;
+            pending = null;
+            return result;
+        }
+
+        void restore(L4SessionUpdate update) {
+            // Keep the increments of the failed write. Updates that arrived since are more recent.
+            pending = pending == null ? update : update.merge(pending);
+        }
+
+        boolean isEvictable(long now) {
+            return pending == null && (closed || now - lastUpdated > IDLE_TIMEOUT_MILLIS);
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package app.nzyme.core.tables.ethernet;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.UUID;
+
+@AutoValue
+public abstract class L4SessionCacheKey {
+
+    public abstract UUID tapUuid();
+    public abstract String l4Type();
+    public abstract String sessionKey();
+
+    public static L4SessionCacheKey create(UUID tapUuid, String l4Type, String sessionKey) {
+        return builder()
+                .tapUuid(tapUuid)
+                .l4Type(l4Type)
+                .sessionKey(sessionKey)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_L4SessionCacheKey.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder tapUuid(UUID tapUuid);
+
+        public abstract Builder l4Type(String l4Type);
+
+        public abstract Builder sessionKey(String sessionKey);
+
+        public abstract L4SessionCacheKey build();
+    }
+
+}
@@ -0,0 +1,78 @@
+package app.nzyme.core.tables.ethernet;
+
+import com.google.auto.value.AutoValue;
+import jakarta.annotation.Nullable;
+import org.joda.time.DateTime;
+
+@AutoValue
+public abstract class L4SessionUpdate {
+
+    public abstract String state();
+    public abstract long bytesRxIncrement();
+    public abstract long bytesTxIncrement();
+    public abstract long segmentsIncrement();
+
+    @Nullable
+    public abstract DateTime endTime();
+
+    public abstract DateTime mostRecentSegmentTime();
+
+    @Nullable
+    public abstract String tags();
+
+    public boolean isClosed() {
+        return endTime() != null;
+    }
+
+    /**
+     * Combines this update with a more recent one of the same session. Increments add up and the most recent state
+     * wins.
+     */
+    public L4SessionUpdate merge(L4SessionUpdate newer) {
+        return create(
+                newer.state(),
+                bytesRxIncrement() + newer.bytesRxIncrement(),
+                bytesTxIncrement() + newer.bytesTxIncrement(),
+                segmentsIncrement() + newer.segmentsIncrement(),
+                newer.endTime(),
+                newer.mostRecentSegmentTime(),
+                newer.tags()
+        );
+    }
+
+    public static L4SessionUpdate create(String state, long bytesRxIncrement, long bytesTxIncrement, long segmentsIncrement, DateTime endTime, DateTime mostRecentSegmentTime, String tags) {
+        return builder()
+                .state(state)
+                .bytesRxIncrement(bytesRxIncrement)
+                .bytesTxIncrement(bytesTxIncrement)
+                .segmentsIncrement(segmentsIncrement)
+                .endTime(endTime)
+                .mostRecentSegmentTime(mostRecentSegmentTime)
+                .tags(tags)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_L4SessionUpdate.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder state(String state);
+
+        public abstract Builder bytesRxIncrement(long bytesRxIncrement);
+
+        public abstract Builder bytesTxIncrement(long bytesTxIncrement);
+
+        public abstract Builder segmentsIncrement(long segmentsIncrement);
+
+        public abstract Builder endTime(DateTime endTime);
+
+        public abstract Builder mostRecentSegmentTime(DateTime mostRecentSegmentTime);
+
+        public abstract Builder tags(String tags);
+
+        public abstract L4SessionUpdate build();
+    }
+
+}
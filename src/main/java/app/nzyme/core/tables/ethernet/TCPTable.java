@@ -2,9 +2,10 @@ package app.nzyme.core.tables.ethernet;
 
 import app.nzyme.core.assets.AssetInformation;
 import app.nzyme.core.assets.db.AssetEntry;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitterAddress;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.ethernet.l4.tcp.TCPFingerprint;
 import app.nzyme.core.ethernet.l4.tcp.TcpSessionState;
-import app.nzyme.core.ethernet.l4.tcp.db.TcpSessionEntry;
 import app.nzyme.core.integrations.geoip.GeoIpLookupResult;
 import app.nzyme.core.integrations.geoip.GeoIpService;
 import app.nzyme.core.rest.resources.taps.reports.tables.tcp.TcpSessionReport;
@@ -18,6 +19,7 @@ import app.nzyme.plugin.Subsystem;
 import com.codahale.metrics.Timer;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -67,21 +69,19 @@ public class TCPTable implements DataTable {
 
     public void handleReport(UUID tapUuid, DateTime timestamp, TcpSessionsReport report) {
         try (Timer.Context ignored = totalReportTimer.time()) {
-            tablesService.getProcessorPool().submit(() -> {
-                Optional<Tap> tap = tablesService.getNzyme().getTapManager().findTap(tapUuid);
-                if (tap.isEmpty()) {
-                    throw new RuntimeException("Reporting tap [" + tapUuid + "] not found. Not processing report.");
-                }
+            Optional<Tap> tap = tablesService.getNzyme().getTapManager().findTap(tapUuid);
+            if (tap.isEmpty()) {
+                throw new RuntimeException("Reporting tap [" + tapUuid + "] not found. Not processing report.");
+            }
 
-                tablesService.getNzyme().getDatabase().useHandle(handle -> {
-                    try (Timer.Context ignored2 = sessionsReportTimer.time()) {
-                        writeSessions(handle, tap.get(), timestamp, report.sessions());
-                    }
+            tablesService.getNzyme().getDatabase().useHandle(handle -> {
+                try (Timer.Context ignored2 = sessionsReportTimer.time()) {
+                    writeSessions(handle, tap.get(), timestamp, report.sessions());
+                }
 
-                    try (Timer.Context ignored2 = assetRegistrationTimer.time()) {
-                        registerAssets(handle, tap.get(), timestamp, report.sessions());
-                    }
-                });
+                try (Timer.Context ignored2 = assetRegistrationTimer.time()) {
+                    registerAssets(handle, tap.get(), timestamp, report.sessions());
+                }
             });
         }
     }
@@ -116,10 +116,6 @@ public class TCPTable implements DataTable {
                 ":destination_address_geo_latitude, :destination_address_geo_longitude, :ip_ttl, :ip_tos, :ip_df, " +
                 ":tcp_syn_window_size, :tcp_syn_maximum_segment_size, :tcp_syn_window_scale_multiplier, " +
                 ":tcp_syn_cwr, :tcp_syn_ece, :tcp_syn_options::jsonb, :fingerprint, :tags::jsonb, :created_at)");
-        PreparedBatch updateBatch = handle.prepareBatch("UPDATE l4_sessions SET state = :state, " +
-                "bytes_rx_count = :bytes_rx_count, bytes_tx_count = :bytes_tx_count, " +
-                "segments_count = :segments_count, tags = tags::jsonb, end_time = :end_time, " +
-                "most_recent_segment_time = :most_recent_segment_time WHERE id = :id");
 
         long totalRxBytes = 0;
         long totalTxBytes = 0;
@@ -129,7 +125,37 @@ public class TCPTable implements DataTable {
         long totalSessions = 0;
         long totalInternalSessions = 0;
 
+        L4SessionCache l4Sessions = tablesService.getL4SessionCache();
+        HeavyHitters.Batch heavyHitters = tablesService.getHeavyHitters().batch();
+
+        // Make sure all open sessions of this report are known to the session cache.
+        List<String> sessionKeys = Lists.newArrayListWithCapacity(sessions.size());
         for (TcpSessionReport session : sessions) {
+            if (session.mostRecentSegmentTime().isAfter(DateTime.now().minusMinutes(1))) {
+                try {
+                    sessionKeys.add(Tools.buildL4Key(
+                            session.startTime(),
+                            session.sourceAddress(),
+                            session.destinationAddress(),
+                            session.sourcePort(),
+                            session.destinationPort()
+                    ));
+                } catch (Exception e) {
+                    LOG.error("Could not build TCP session key.", e);
+                    sessionKeys.add(null);
+                }
+            } else {
+                sessionKeys.add(null);
+            }
+        }
+
+        try (Timer.Context ignored = sessionDiscoveryTimer.time()) {
+            l4Sessions.resolve(handle, tap.uuid(), "TCP", sessionKeys);
+        }
+
+        for (int i = 0; i < sessions.size(); i++) {
+            TcpSessionReport session = sessions.get(i);
+            String sessionKey = sessionKeys.get(i);
 
             String tags;
             if (session.tags() != null && !session.tags().isEmpty()) {
@@ -143,45 +169,25 @@ public class TCPTable implements DataTable {
                 tags = null;
             }
 
-            if (session.mostRecentSegmentTime().isAfter(DateTime.now().minusMinutes(1))) {
+            if (sessionKey != null) {
                 try {
-                    String sessionKey = Tools.buildL4Key(
-                            session.startTime(),
-                            session.sourceAddress(),
-                            session.destinationAddress(),
-                            session.sourcePort(),
-                            session.destinationPort()
-                    );
-
                     InetAddress sourceAddress = stringtoInetAddress(session.sourceAddress());
                     InetAddress destinationAddress = stringtoInetAddress(session.destinationAddress());
                     Optional<GeoIpLookupResult> sourceGeo = geoIp.lookup(sourceAddress);
                     Optional<GeoIpLookupResult> destinationGeo = geoIp.lookup(destinationAddress);
 
-                    Optional<TcpSessionEntry> existingSession;
-                    try (Timer.Context ignored = sessionDiscoveryTimer.time()) {
-                        existingSession = handle.createQuery("SELECT * FROM l4_sessions " +
-                                        "WHERE l4_type = 'TCP' AND session_key = :session_key AND end_time IS NULL " +
-                                        "AND tap_uuid = :tap_uuid")
-                                .bind("session_key", sessionKey)
-                                .bind("tap_uuid", tap.uuid())
-                                .mapTo(TcpSessionEntry.class)
-                                .findOne();
-                    }
+                    L4SessionUpdate update = L4SessionUpdate.create(
+                            TcpSessionState.valueOf(session.state().toUpperCase()).name(),
+                            session.bytesCountRxIncremental(),
+                            session.bytesCountTxIncremental(),
+                            session.segmentsCountIncremental(),
+                            session.endTime(),
+                            session.mostRecentSegmentTime(),
+                            tags
+                    );
 
-                    if (existingSession.isPresent()) {
-                        // Existing session. Update.
-                        updateBatch
-                                .bind("state", TcpSessionState.valueOf(session.state().toUpperCase()))
-                                .bind("bytes_rx_count", session.bytesCountRx())
-                                .bind("bytes_tx_count", session.bytesCountTx())
-                                .bind("segments_count", session.segmentsCount())
-                                .bind("end_time", session.endTime())
-                                .bind("most_recent_segment_time", session.mostRecentSegmentTime())
-                                .bind("tags", tags)
-                                .bind("id", existingSession.get().id())
-                                .add();
-                    } else {
+                    // Existing sessions are updated in the session cache and written in batches.
+                    if (!l4Sessions.update(L4SessionCacheKey.create(tap.uuid(), "TCP", sessionKey), update)) {
                         String synOptions;
                         try {
                             synOptions = om.writeValueAsString(session.synOptions());
@@ -252,6 +258,17 @@ public class TCPTable implements DataTable {
                                 .add();
                     }
 
+                    heavyHitters.recordL4(
+                            tap.uuid(),
+                            timestamp,
+                            session.sourceMac(),
+                            session.destinationMac(),
+                            HeavyHitterAddress.of(session.sourceAddress(), null, sourceAddress, sourceGeo),
+                            HeavyHitterAddress.of(session.destinationAddress(), null, destinationAddress, destinationGeo),
+                            session.bytesCountRxIncremental(),
+                            session.bytesCountTxIncremental()
+                    );
+
                     totalRxBytes += session.bytesCountRxIncremental();
                     totalTxBytes += session.bytesCountTxIncremental();
                     totalSegments += session.segmentsCountIncremental();
@@ -287,8 +304,17 @@ public class TCPTable implements DataTable {
                     .bind("timestamp", timestamp)
                     .execute();
 
-            updateBatch.execute();
-            insertBatch.execute();
+            // Insert new sessions and add them to the session cache.
+            if (insertBatch.size() > 0) {
+                insertBatch.executePreparedBatch("id", "session_key")
+                        .map((rs, ctx) -> Maps.immutableEntry(rs.getString("session_key"), rs.getLong("id")))
+                        .forEach(e -> l4Sessions.register(
+                                L4SessionCacheKey.create(tap.uuid(), "TCP", e.getKey()), e.getValue()
+                        ));
+            }
+
+            // Only record traffic that made it into the database.
+            heavyHitters.commit();
         } catch (Exception e) {
             LOG.error("Could not write TCP sessions.", e);
         }
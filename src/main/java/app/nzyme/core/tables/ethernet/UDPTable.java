@@ -2,8 +2,9 @@ package app.nzyme.core.tables.ethernet;
 
 import app.nzyme.core.assets.AssetInformation;
 import app.nzyme.core.assets.db.AssetEntry;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitterAddress;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
 import app.nzyme.core.ethernet.l4.udp.UdpConversationState;
-import app.nzyme.core.ethernet.l4.udp.db.UdpConversationEntry;
 import app.nzyme.core.integrations.geoip.GeoIpLookupResult;
 import app.nzyme.core.integrations.geoip.GeoIpService;
 import app.nzyme.core.rest.resources.taps.reports.tables.udp.UdpConversationReport;
@@ -17,6 +18,7 @@ import app.nzyme.plugin.Subsystem;
 import com.codahale.metrics.Timer;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,10 +27,7 @@ import org.jdbi.v3.core.statement.PreparedBatch;
 import org.joda.time.DateTime;
 
 import java.net.InetAddress;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 import static app.nzyme.core.util.Tools.stringtoInetAddress;
 
@@ -69,21 +68,19 @@ public class UDPTable implements DataTable {
 
     public void handleReport(UUID tapUuid, DateTime timestamp, UdpConversationsReport report) {
         try (Timer.Context ignored = totalReportTimer.time()) {
-            tablesService.getProcessorPool().submit(() -> {
-                Optional<Tap> tap = tablesService.getNzyme().getTapManager().findTap(tapUuid);
-                if (tap.isEmpty()) {
-                    throw new RuntimeException("Reporting tap [" + tapUuid + "] not found. Not processing report.");
-                }
+            Optional<Tap> tap = tablesService.getNzyme().getTapManager().findTap(tapUuid);
+            if (tap.isEmpty()) {
+                throw new RuntimeException("Reporting tap [" + tapUuid + "] not found. Not processing report.");
+            }
 
-                tablesService.getNzyme().getDatabase().useHandle(handle -> {
-                    try (Timer.Context ignored2 = conversationsReportTimer.time()) {
-                        writeConversations(handle, tap.get(), timestamp, report.conversations());
-                    }
+            tablesService.getNzyme().getDatabase().useHandle(handle -> {
+                try (Timer.Context ignored2 = conversationsReportTimer.time()) {
+                    writeConversations(handle, tap.get(), timestamp, report.conversations());
+                }
 
-                    try (Timer.Context ignored2 = assetRegistrationTimer.time()) {
-                        registerAssets(handle, tap.get(), timestamp, report.conversations());
-                    }
-                });
+                try (Timer.Context ignored2 = assetRegistrationTimer.time()) {
+                    registerAssets(handle, tap.get(), timestamp, report.conversations());
+                }
             });
         }
     }
@@ -117,10 +114,6 @@ public class UDPTable implements DataTable {
                 ":destination_address_geo_asn_name, :destination_address_geo_asn_domain, " +
                 ":destination_address_geo_city, :destination_address_geo_country_code, " +
                 ":destination_address_geo_latitude, :destination_address_geo_longitude, :tags::jsonb, :created_at)");
-        PreparedBatch updateBatch = handle.prepareBatch("UPDATE l4_sessions SET state = :state, " +
-                "bytes_rx_count = :bytes_rx_count, bytes_tx_count = :bytes_tx_count, " +
-                "segments_count = :segments_count, tags = :tags::jsonb, end_time = :end_time, " +
-                "most_recent_segment_time = :most_recent_segment_time WHERE id = :id");
 
         long totalRxBytes = 0;
         long totalTxBytes = 0;
@@ -130,7 +123,38 @@ public class UDPTable implements DataTable {
         long totalSessions = 0;
         long totalInternalSessions = 0;
 
+        L4SessionCache l4Sessions = tablesService.getL4SessionCache();
+        HeavyHitters.Batch heavyHitters = tablesService.getHeavyHitters().batch();
+
+        // Make sure all open conversations of this report are known to the session cache.
+        List<String> sessionKeys = Lists.newArrayListWithCapacity(conversations.size());
         for (UdpConversationReport conversation : conversations) {
+            try {
+                sessionKeys.add(Tools.buildL4Key(
+                        conversation.startTime(),
+                        conversation.sourceAddress(),
+                        conversation.destinationAddress(),
+                        conversation.sourcePort(),
+                        conversation.destinationPort()
+                ));
+            } catch (Exception e) {
+                LOG.error("Could not build UDP conversation key.", e);
+                sessionKeys.add(null);
+            }
+        }
+
+        try (Timer.Context ignored = conversationsDiscoveryTimer.time()) {
+            l4Sessions.resolve(handle, tap.uuid(), "UDP", sessionKeys);
+        }
+
+        for (int i = 0; i < conversations.size(); i++) {
+            UdpConversationReport conversation = conversations.get(i);
+            String sessionKey = sessionKeys.get(i);
+
+            if (sessionKey == null) {
+                continue;
+            }
+
             String tags;
             if (conversation.tags() != null && !conversation.tags().isEmpty()) {
                 try {
@@ -144,43 +168,23 @@ public class UDPTable implements DataTable {
             }
 
             try {
-                String sessionKey = Tools.buildL4Key(
-                        conversation.startTime(),
-                        conversation.sourceAddress(),
-                        conversation.destinationAddress(),
-                        conversation.sourcePort(),
-                        conversation.destinationPort()
-                );
-
                 InetAddress sourceAddress = stringtoInetAddress(conversation.sourceAddress());
                 InetAddress destinationAddress = stringtoInetAddress(conversation.destinationAddress());
                 Optional<GeoIpLookupResult> sourceGeo = geoIp.lookup(sourceAddress);
                 Optional<GeoIpLookupResult> destinationGeo = geoIp.lookup(destinationAddress);
 
-                Optional<UdpConversationEntry> existingConversation;
-                try (Timer.Context ignored = conversationsDiscoveryTimer.time()) {
-                    existingConversation = handle.createQuery("SELECT * FROM l4_sessions " +
-                                    "WHERE l4_type = 'UDP' AND session_key = :session_key AND end_time IS NULL " +
-                                    "AND tap_uuid = :tap_uuid")
-                            .bind("session_key", sessionKey)
-                            .bind("tap_uuid", tap.uuid())
-                            .mapTo(UdpConversationEntry.class)
-                            .findOne();
-                }
+                L4SessionUpdate update = L4SessionUpdate.create(
+                        UdpConversationState.valueOf(conversation.state().toUpperCase()).name(),
+                        conversation.bytesCountRxIncremental(),
+                        conversation.bytesCountTxIncremental(),
+                        conversation.datagramsCountIncremental(),
+                        conversation.endTime(),
+                        conversation.mostRecentSegmentTime(),
+                        tags
+                );
 
-                if (existingConversation.isPresent()) {
-                    // Existing session. Update.
-                    updateBatch
-                            .bind("state", UdpConversationState.valueOf(conversation.state().toUpperCase()))
-                            .bind("bytes_rx_count", conversation.bytesCountRx())
-                            .bind("bytes_tx_count", conversation.bytesCountTx())
-                            .bind("segments_count", conversation.datagramsCount())
-                            .bind("tags", tags)
-                            .bind("end_time", conversation.endTime())
-                            .bind("most_recent_segment_time", conversation.mostRecentSegmentTime())
-                            .bind("id", existingConversation.get().id())
-                            .add();
-                } else {
+                // Existing conversations are updated in the session cache and written in batches.
+                if (!l4Sessions.update(L4SessionCacheKey.create(tap.uuid(), "UDP", sessionKey), update)) {
                     // This is a new session.
                     insertBatch
                             .bind("tap_uuid", tap.uuid())
@@ -224,6 +228,17 @@ public class UDPTable implements DataTable {
                             .add();
                 }
 
+                heavyHitters.recordL4(
+                        tap.uuid(),
+                        timestamp,
+                        conversation.sourceMac(),
+                        conversation.destinationMac(),
+                        HeavyHitterAddress.of(conversation.sourceAddress(), null, sourceAddress, sourceGeo),
+                        HeavyHitterAddress.of(conversation.destinationAddress(), null, destinationAddress, destinationGeo),
+                        conversation.bytesCountRxIncremental(),
+                        conversation.bytesCountTxIncremental()
+                );
+
                 totalRxBytes += conversation.bytesCountRxIncremental();
                 totalTxBytes += conversation.bytesCountTxIncremental();
                 totalDatagrams += conversation.datagramsCountIncremental();
@@ -258,8 +273,17 @@ public class UDPTable implements DataTable {
                     .bind("timestamp", timestamp)
                     .execute();
 
-            updateBatch.execute();
-            insertBatch.execute();
+            // Insert new conversations and add them to the session cache.
+            if (insertBatch.size() > 0) {
+                insertBatch.executePreparedBatch("id", "session_key")
+                        .map((rs, ctx) -> Maps.immutableEntry(rs.getString("session_key"), rs.getLong("id")))
+                        .forEach(e -> l4Sessions.register(
+                                L4SessionCacheKey.create(tap.uuid(), "UDP", e.getKey()), e.getValue()
+                        ));
+            }
+
+            // Only record traffic that made it into the database.
+            heavyHitters.commit();
         } catch (Exception e) {
             LOG.error("Could not write UDP conversations.", e);
         }
@@ -0,0 +1,12 @@
+package app.nzyme.core.taps;
+
+import java.util.UUID;
+
+public interface TapChangeListener {
+
+    /**
+     * Called on every node after a tap was created, updated or deleted. The tap directory is already invalidated.
+     */
+    void onTapChanged(UUID tapUuid, TapChangeType changeType);
+
+}
@@ -0,0 +1,9 @@
+package app.nzyme.core.taps;
+
+public enum TapChangeType {
+
+    CREATED,
+    UPDATED,
+    DELETED
+
+}
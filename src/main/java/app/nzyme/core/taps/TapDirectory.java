@@ -0,0 +1,127 @@
+package app.nzyme.core.taps;
+
+import app.nzyme.core.security.authentication.db.TapPermissionEntry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.*;
+
+/**
+ * Immutable, node-local snapshot of all taps that are not deleted, indexed by the ways taps are looked up. Built and
+ * replaced as a whole by the {@link TapManager}.
+ */
+public final class TapDirectory {
+
+    private final long generation;
+    private final long builtAt;
+
+    private final List<Tap> all;
+    private final Map<UUID, Tap> byUuid;
+    private final Map<UUID, TapPermissionEntry> permissionEntries;
+    private final Map<UUID, List<Tap>> byOrganization;
+    private final Map<UUID, Map<UUID, List<Tap>>> byTenant;
+    private final Map<UUID, List<Tap>> byLocation;
+    private final Map<TapManager.TapPositionKey, List<Tap>> byFloor;
+
+    /**
+     * @param permissionEntries The same taps as authentication entries, including their encrypted secret.
+     */
+    TapDirectory(long generation, long builtAt, List<Tap> taps, Map<UUID, TapPermissionEntry> permissionEntries) {
+        this.generation = generation;
+        this.builtAt = builtAt;
+
+        Map<UUID, Tap> byUuid = Maps.newHashMapWithExpectedSize(taps.size());
+        Map<UUID, List<Tap>> byOrganization = Maps.newHashMap();
+        Map<UUID, Map<UUID, List<Tap>>> byTenant = Maps.newHashMap();
+        Map<UUID, List<Tap>> byLocation = Maps.newHashMap();
+        Map<TapManager.TapPositionKey, List<Tap>> byFloor = Maps.newHashMap();
+
+        for (Tap tap : taps) {
+            byUuid.put(tap.uuid(), tap);
+
+            if (tap.organizationId() != null) {
+                byOrganization.computeIfAbsent(tap.organizationId(), k -> new ArrayList<>()).add(tap);
+
+                if (tap.tenantId() != null) {
+                    byTenant.computeIfAbsent(tap.organizationId(), k -> Maps.newHashMap())
+                            .computeIfAbsent(tap.tenantId(), k -> new ArrayList<>())
+                            .add(tap);
+                }
+            }
+
+            if (tap.locationId() != null) {
+                byLocation.computeIfAbsent(tap.locationId(), k -> new ArrayList<>()).add(tap);
+
+                if (tap.floorId() != null) {
+                    byFloor.computeIfAbsent(
+                            TapManager.TapPositionKey.create(tap.locationId(), tap.floorId()),
+                            k -> new ArrayList<>()
+                    ).add(tap);
+                }
+            }
+        }
+
+        this.all = ImmutableList.copyOf(taps);
+        this.byUuid = ImmutableMap.copyOf(byUuid);
+        this.permissionEntries = ImmutableMap.copyOf(permissionEntries);
+        this.byOrganization = ImmutableMap.copyOf(byOrganization);
+        this.byTenant = ImmutableMap.copyOf(byTenant);
+        this.byLocation = ImmutableMap.copyOf(byLocation);
+        this.byFloor = ImmutableMap.copyOf(byFloor);
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long builtAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public List<Tap> all() {
+        return all;
+    }
+
+    public Optional<Tap> find(UUID uuid) {
+        return Optional.ofNullable(byUuid.get(uuid));
+    }
+
+    public Optional<TapPermissionEntry> findPermissionEntry(UUID uuid) {
+        return Optional.ofNullable(permissionEntries.get(uuid));
+    }
+
+    public List<Tap> ofOrganization(UUID organizationId) {
+        return unmodifiable(byOrganization.get(organizationId));
+    }
+
+    public List<Tap> ofTenant(UUID organizationId, UUID tenantId) {
+        Map<UUID, List<Tap>> tenants = byTenant.get(organizationId);
+        if (tenants == null) {
+            return Collections.emptyList();
+        }
+
+        return unmodifiable(tenants.get(tenantId));
+    }
+
+    public List<Tap> atLocation(UUID locationId) {
+        return unmodifiable(byLocation.get(locationId));
+    }
+
+    public List<Tap> onFloor(UUID locationId, UUID floorId) {
+        return unmodifiable(byFloor.get(TapManager.TapPositionKey.create(locationId, floorId)));
+    }
+
+    private static List<Tap> unmodifiable(List<Tap> taps) {
+        if (taps == null) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(taps);
+    }
+
+}
@@ -9,10 +9,17 @@ import app.nzyme.core.rest.resources.taps.reports.context.TapContextReport;
 import app.nzyme.core.rest.resources.taps.reports.context.TapMacContextReport;
 import app.nzyme.core.shared.db.TapBasedSignalStrengthResult;
 import app.nzyme.core.floorplans.db.TenantLocationFloorEntry;
+import app.nzyme.core.metrics.MetricsRollupSource;
+import app.nzyme.core.metrics.MetricsRollups;
 import app.nzyme.core.rest.authentication.AuthenticatedUser;
 import app.nzyme.core.rest.resources.taps.reports.*;
+import app.nzyme.core.security.authentication.db.TapPermissionEntry;
+import app.nzyme.core.security.authentication.db.TapPermissionEntryMapper;
 import app.nzyme.core.taps.db.EngagementLogEntry;
+import app.nzyme.core.taps.db.TapMapper;
 import app.nzyme.core.taps.db.metrics.*;
+import app.nzyme.plugin.distributed.messaging.ClusterMessage;
+import app.nzyme.plugin.distributed.messaging.MessageType;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
 import com.google.auto.value.AutoValue;
@@ -29,19 +36,31 @@ import org.joda.time.DateTime;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TapManager {
 
     private static final Logger LOG = LogManager.getLogger(TapManager.class);
 
+    // Safety net in case a cache invalidation message was lost.
+    private static final long DIRECTORY_MAX_AGE_MS = TimeUnit.SECONDS.toMillis(15);
+
     private final NzymeNode nzyme;
     private final ObjectMapper om;
+    private final MetricsRollups metricsRollups;
+
+    private final AtomicLong directoryGeneration = new AtomicLong(0);
+    private final Object directoryLock = new Object();
+    private volatile TapDirectory directory;
+    private final List<TapChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     public TapManager(NzymeNode nzyme) {
         this.nzyme = nzyme;
         this.om = new ObjectMapper();
+        this.metricsRollups = new MetricsRollups(nzyme);
 
         Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder()
@@ -591,15 +610,17 @@ public class TapManager {
     }
 
     private void retentionCleanMetrics() {
+        DateTime rawCutoff = metricsRollups.rawRetentionCutoff();
+
         nzyme.getDatabase().useHandle(handle -> {
             handle.createUpdate("DELETE FROM tap_metrics_gauges WHERE created_at < :created_at")
-                    .bind("created_at", DateTime.now().minusHours(24))
+                    .bind("created_at", rawCutoff)
                     .execute();
         });
 
         nzyme.getDatabase().useHandle(handle -> {
             handle.createUpdate("DELETE FROM tap_metrics_timers WHERE created_at < :created_at")
-                    .bind("created_at", DateTime.now().minusHours(24))
+                    .bind("created_at", rawCutoff)
                     .execute();
         });
 
@@ -616,105 +637,59 @@ public class TapManager {
             return Collections.emptyList();
         }
 
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false AND uuid IN (<ids>) " +
-                                "ORDER BY name ASC")
-                        .bindList("ids", tapIds)
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        TapDirectory directory = getDirectory();
+
+        List<Tap> taps = Lists.newArrayList();
+        for (UUID tapId : tapIds) {
+            directory.find(tapId).ifPresent(taps::add);
+        }
+
+        taps.sort(Comparator.comparing(Tap::name));
+
+        return taps;
     }
 
     public List<Tap> findAllTapsOfAllUsers() {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false")
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        return getDirectory().all();
     }
 
     public List<Tap> findAllTapsOfOrganization(UUID organizationUUID) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false " +
-                                "AND organization_id = :organization_uuid")
-                        .bind("organization_uuid", organizationUUID)
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        return getDirectory().ofOrganization(organizationUUID);
     }
 
     public List<Tap> findAllTapsOfTenant(UUID organizationUUID, UUID tenantUUID) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps " +
-                                "WHERE deleted = false AND organization_id = :organization_uuid " +
-                                "AND tenant_id = :tenant_uuid")
-                        .bind("organization_uuid", organizationUUID)
-                        .bind("tenant_uuid", tenantUUID)
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        return getDirectory().ofTenant(organizationUUID, tenantUUID);
     }
 
     public List<Tap> findAllTapsOnFloor(UUID organizationUUID, UUID tenantUUID, UUID locationUUID, UUID floorUUID) {
+        List<Tap> taps = getDirectory().onFloor(locationUUID, floorUUID);
+
         if (organizationUUID == null && tenantUUID == null) {
-            return nzyme.getDatabase().withHandle(handle ->
-                    handle.createQuery("SELECT * FROM taps " +
-                                    "WHERE deleted = false AND location_uuid = :location_uuid " +
-                                    "AND floor_uuid = :floor_uuid")
-                            .bind("location_uuid", locationUUID)
-                            .bind("floor_uuid", floorUUID)
-                            .mapTo(Tap.class)
-                            .list()
-            );
+            return taps;
         }
 
         if (organizationUUID != null && tenantUUID == null) {
             // Org Admin.
-            return nzyme.getDatabase().withHandle(handle ->
-                    handle.createQuery("SELECT * FROM taps WHERE deleted = false " +
-                                    "AND organization_id = :organization_uuid " +
-                                    "AND location_uuid = :location_uuid AND floor_uuid = :floor_uuid")
-                            .bind("organization_uuid", organizationUUID)
-                            .bind("location_uuid", locationUUID)
-                            .bind("floor_uuid", floorUUID)
-                            .mapTo(Tap.class)
-                            .list()
-            );
+            return taps.stream()
+                    .filter(t -> organizationUUID.equals(t.organizationId()))
+                    .toList();
         }
 
         // Tenant user.
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false AND " +
-                                "organization_id = :organization_uuid " +
-                                "AND tenant_id = :tenant_uuid AND location_uuid = :location_uuid " +
-                                "AND floor_uuid = :floor_uuid")
-                        .bind("organization_uuid", organizationUUID)
-                        .bind("tenant_uuid", tenantUUID)
-                        .bind("location_uuid", locationUUID)
-                        .bind("floor_uuid", floorUUID)
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        return taps.stream()
+                .filter(t -> organizationUUID.equals(t.organizationId()) && tenantUUID.equals(t.tenantId()))
+                .toList();
     }
 
     public List<Tap> findAllTapsAtLocation(UUID locationUUID) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false AND location_uuid = :location_uuid")
-                        .bind("location_uuid", locationUUID)
-                        .mapTo(Tap.class)
-                        .list()
-        );
+        return getDirectory().atLocation(locationUUID);
     }
 
     public List<UUID> allTapUUIDsAccessibleByUser(AuthenticatedUser user) {
-        List<UUID> allTaps = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT uuid FROM taps WHERE deleted = false")
-                        .mapTo(UUID.class)
-                        .list()
-        );
+        TapDirectory directory = getDirectory();
 
         if (user.isSuperAdministrator()) {
-            return allTaps;
+            return directory.all().stream().map(Tap::uuid).toList();
         }
 
         if (user.isOrganizationAdministrator()) {
@@ -722,13 +697,7 @@ public class TapManager {
                 throw new RuntimeException("NULL organization ID.");
             }
 
-            return nzyme.getDatabase().withHandle(handle ->
-                    handle.createQuery("SELECT uuid FROM taps WHERE deleted = false " +
-                                    "AND organization_id = :organization_id")
-                            .bind("organization_id", user.getOrganizationId())
-                            .mapTo(UUID.class)
-                            .list()
-            );
+            return directory.ofOrganization(user.getOrganizationId()).stream().map(Tap::uuid).toList();
         }
 
         // User is tenant user, check that it has required fields.
@@ -742,15 +711,10 @@ public class TapManager {
         if (tapPermissions.isEmpty()) {
             // User has no specific tap permissions. Check if all taps are allowed.
             if (user.accessAllTenantTaps) {
-                return nzyme.getDatabase().withHandle(handle ->
-                        handle.createQuery("SELECT uuid FROM taps " +
-                                        "WHERE deleted = false AND organization_id = :organization_id " +
-                                        "AND tenant_id = :tenant_id")
-                                .bind("organization_id", user.getOrganizationId())
-                                .bind("tenant_id", user.getTenantId())
-                                .mapTo(UUID.class)
-                                .list()
-                );
+                return directory.ofTenant(user.getOrganizationId(), user.getTenantId())
+                        .stream()
+                        .map(Tap::uuid)
+                        .toList();
             } else {
                 // User is not allowed to use all taps and has no specific tap permissions.
                 return Collections.emptyList();
@@ -759,7 +723,7 @@ public class TapManager {
             // Return only specifically allowed taps.
             List<UUID> validatedTaps = Lists.newArrayList();
             for (UUID permission : tapPermissions) {
-                if (allTaps.contains(permission)) {
+                if (directory.find(permission).isPresent()) {
                     validatedTaps.add(permission);
                 }
             }
@@ -769,20 +733,8 @@ public class TapManager {
     }
 
     public List<UUID> allTapUUIDsAccessibleByScope(@Nullable UUID organizationId, @Nullable UUID tenantId) {
-        List<Tap> taps;
-        if (organizationId == null && tenantId == null) {
-            // Super Admin.
-            taps = findAllTapsOfAllUsers();
-        } else if (organizationId != null && tenantId == null) {
-            // Organization Admin.
-            taps = findAllTapsOfOrganization(organizationId);
-        } else {
-            // Tenant User.
-            taps = findAllTapsOfTenant(organizationId, tenantId);
-        }
-
         List<UUID> tapUUIDs = Lists.newArrayList();
-        for (Tap tap : taps) {
+        for (Tap tap : allTapsAccessibleByScope(organizationId, tenantId)) {
             tapUUIDs.add(tap.uuid());
         }
 
@@ -803,12 +755,96 @@ public class TapManager {
     }
 
     public Optional<Tap> findTap(UUID uuid) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM taps WHERE deleted = false AND uuid = :uuid")
-                        .bind("uuid", uuid)
-                        .mapTo(Tap.class)
-                        .findOne()
-        );
+        return getDirectory().find(uuid);
+    }
+
+    /**
+     * Taps are read from a node-local directory. It is rebuilt after taps were created, changed or deleted on any
+     * node and after DIRECTORY_MAX_AGE_MS, which also limits how old the status fields of a returned tap can be.
+     */
+    public TapDirectory getDirectory() {
+        TapDirectory current = directory;
+        if (current == null || isStale(current)) {
+            current = rebuildDirectory(current);
+        }
+
+        return current;
+    }
+
+    public void invalidateDirectory() {
+        directoryGeneration.incrementAndGet();
+    }
+
+    public void onTapChanged(TapChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Must be called after a tap was created, changed or deleted. Invalidates the tap directory and notifies change
+     * listeners on this and all other nodes.
+     */
+    public void tapChanged(UUID tapUuid, TapChangeType changeType) {
+        handleTapChange(tapUuid, changeType);
+
+        nzyme.getMessageBus().sendToAllOnlineNodes(ClusterMessage.create(
+                MessageType.INVALIDATE_CACHE,
+                Map.of(
+                        "cache_type", "taps",
+                        "tap_uuid", tapUuid.toString(),
+                        "change_type", changeType.name()
+                ),
+                false
+        ));
+    }
+
+    public void handleTapChange(UUID tapUuid, TapChangeType changeType) {
+        invalidateDirectory();
+
+        for (TapChangeListener listener : changeListeners) {
+            try {
+                listener.onTapChanged(tapUuid, changeType);
+            } catch (Exception e) {
+                LOG.error("Tap change listener failed for tap [{}] and change [{}].", tapUuid, changeType, e);
+            }
+        }
+    }
+
+    private boolean isStale(TapDirectory directory) {
+        return directory.generation() != directoryGeneration.get()
+                || System.currentTimeMillis() - directory.builtAt() > DIRECTORY_MAX_AGE_MS;
+    }
+
+    private TapDirectory rebuildDirectory(@Nullable TapDirectory previous) {
+        synchronized (directoryLock) {
+            // Another thread may have rebuilt the directory while we were waiting for the lock.
+            TapDirectory current = directory;
+            if (current != null && current != previous && !isStale(current)) {
+                return current;
+            }
+
+            long generation = directoryGeneration.get();
+
+            // Every row is mapped twice. The authentication service serves tap management from the directory, too.
+            TapMapper tapMapper = new TapMapper();
+            TapPermissionEntryMapper permissionEntryMapper = new TapPermissionEntryMapper();
+            List<Tap> taps = Lists.newArrayList();
+            Map<UUID, TapPermissionEntry> permissionEntries = Maps.newHashMap();
+            nzyme.getDatabase().useHandle(handle ->
+                    handle.createQuery("SELECT * FROM taps WHERE deleted = false")
+                            .map((rs, ctx) -> Maps.immutableEntry(
+                                    tapMapper.map(rs, ctx), permissionEntryMapper.map(rs, ctx)
+                            ))
+                            .forEach(e -> {
+                                taps.add(e.getKey());
+                                permissionEntries.put(e.getValue().uuid(), e.getValue());
+                            })
+            );
+
+            TapDirectory rebuilt = new TapDirectory(generation, System.currentTimeMillis(), taps, permissionEntries);
+            this.directory = rebuilt;
+
+            return rebuilt;
+        }
     }
 
     public List<TapMetricsGauge> findGaugesOfTap(UUID tapUUID) {
@@ -841,25 +877,14 @@ public class TapManager {
                                                                                                   BucketSize bucketSize) {
         Map<DateTime, TapMetricsTimerHistogramAggregation> result = Maps.newHashMap();
 
-        List<TapMetricsTimerHistogramAggregation> agg = nzyme.getDatabase().withHandle(handle -> {
-            String query = "SELECT AVG(metric_value) AS average, MAX(metric_value) AS maximum, " +
-                    "MIN(metric_value) AS minimum, date_trunc(:bucket_size, created_at) AS bucket " +
-                    "FROM tap_metrics_gauges WHERE";
-
-            if (tapUUID != null) {
-                query += " tap_uuid = :tap_uuid AND ";
-            }
-
-            query += " metric_name = :metric_name AND created_at > :created_at GROUP BY bucket ORDER BY bucket DESC ";
-
-            return handle.createQuery(query)
-                    .bind("bucket_size", bucketSize.toString().toLowerCase())
-                    .bind("tap_uuid", tapUUID)
-                    .bind("metric_name", metricName)
-                    .bind("created_at", DateTime.now().minusHours(hours))
-                    .mapTo(TapMetricsTimerHistogramAggregation.class)
-                    .list();
-        });
+        List<TapMetricsTimerHistogramAggregation> agg = metricsRollups.findHistogram(
+                MetricsRollupSource.TAP_GAUGES,
+                tapUUID,
+                metricName,
+                hours,
+                bucketSize,
+                TapMetricsTimerHistogramAggregation.class
+        );
 
         if (agg == null || agg.isEmpty()) {
             return Optional.empty();
@@ -900,17 +925,13 @@ public class TapManager {
                                                                                                   BucketSize bucketSize) {
         Map<DateTime, TapMetricsTimerHistogramAggregation> result = Maps.newHashMap();
 
-        List<TapMetricsTimerHistogramAggregation> agg = nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT AVG(mean) AS average, MAX(mean) AS maximum, " +
-                                "MIN(mean) AS minimum, date_trunc(:bucket_size, created_at) AS bucket " +
-                                "FROM tap_metrics_timers WHERE tap_uuid = :tap_uuid AND metric_name = :metric_name " +
-                                "AND created_at > :created_at GROUP BY bucket ORDER BY bucket DESC")
-                        .bind("bucket_size", bucketSize.toString().toLowerCase())
-                        .bind("tap_uuid", tapUUID)
-                        .bind("metric_name", metricName)
-                        .bind("created_at", DateTime.now().minusHours(hours))
-                        .mapTo(TapMetricsTimerHistogramAggregation.class)
-                        .list()
+        List<TapMetricsTimerHistogramAggregation> agg = metricsRollups.findHistogram(
+                MetricsRollupSource.TAP_TIMERS,
+                tapUUID,
+                metricName,
+                hours,
+                bucketSize,
+                TapMetricsTimerHistogramAggregation.class
         );
 
         if (agg == null || agg.isEmpty()) {
@@ -0,0 +1,40 @@
+package app.nzyme.core.timelines;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Map;
+
+@AutoValue
+public abstract class PendingTimelineEvent {
+
+    public abstract TimelineAddressType addressType();
+    public abstract String address();
+    public abstract TimelineEventType eventType();
+    public abstract Map<String, Object> eventDetails();
+
+    public static PendingTimelineEvent create(TimelineAddressType addressType, String address, TimelineEventType eventType, Map<String, Object> eventDetails) {
+        return builder()
+                .addressType(addressType)
+                .address(address)
+                .eventType(eventType)
+                .eventDetails(eventDetails)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_PendingTimelineEvent.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder addressType(TimelineAddressType addressType);
+
+        public abstract Builder address(String address);
+
+        public abstract Builder eventType(TimelineEventType eventType);
+
+        public abstract Builder eventDetails(Map<String, Object> eventDetails);
+
+        public abstract PendingTimelineEvent build();
+    }
+}
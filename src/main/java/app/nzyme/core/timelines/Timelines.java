@@ -6,6 +6,7 @@ import app.nzyme.core.timelines.db.TimelineActivityHistogramBucket;
 import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.util.Bucketing;
 import app.nzyme.core.util.TimeRange;
+import org.jdbi.v3.core.statement.PreparedBatch;
 import org.joda.time.DateTime;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.cfg.DateTimeFeature;
@@ -53,6 +54,36 @@ public class Timelines {
         );
     }
 
+    public void writeDot11TimelineEvents(UUID organizationId,
+                                         UUID tenantId,
+                                         List<PendingTimelineEvent> events,
+                                         DateTime timestamp) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        nzyme.getDatabase().useHandle(handle -> {
+            PreparedBatch batch = handle.prepareBatch("INSERT INTO dot11_timeline_events(uuid, organization_id, " +
+                    "tenant_id, address, address_type, event_type, event_details, timestamp) " +
+                    "VALUES(:uuid, :organization_id, :tenant_id, :address, :address_type, " +
+                    ":event_type, :event_details::jsonb, :timestamp)");
+
+            for (PendingTimelineEvent event : events) {
+                batch.bind("uuid", UUID.randomUUID())
+                        .bind("organization_id", organizationId)
+                        .bind("tenant_id", tenantId)
+                        .bind("address", event.address())
+                        .bind("address_type", event.addressType())
+                        .bind("event_type", event.eventType())
+                        .bind("event_details", objectMapper.writeValueAsString(event.eventDetails()))
+                        .bind("timestamp", timestamp)
+                        .add();
+            }
+
+            batch.execute();
+        });
+    }
+
     public long countAllEventsOfAddress(UUID organizationId,
                                         UUID tenantId,
                                         TimelineAddressType addressType,
@@ -330,25 +361,39 @@ public class Timelines {
         );
     }
 
-    public Optional<TimelineEventEntry> findLatestEventOfTypeAndAddress(UUID organizationId,
-                                                                        UUID tenantId,
-                                                                        TimelineAddressType addressType,
-                                                                        String address,
-                                                                        TimelineEventType eventType) {
-        return nzyme.getDatabase().withHandle(handle ->
-                handle.createQuery("SELECT * FROM dot11_timeline_events " +
+    /**
+     * Latest event of each requested type for each of the given addresses.
+     *
+     * @return Address -> event type -> latest event. Addresses without any matching event are not included.
+     */
+    public Map<String, Map<TimelineEventType, TimelineEventEntry>> findLatestEventsOfAddresses(
+            UUID organizationId,
+            UUID tenantId,
+            TimelineAddressType addressType,
+            List<String> addresses,
+            List<TimelineEventType> eventTypes) {
+        if (addresses.isEmpty() || eventTypes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Map<TimelineEventType, TimelineEventEntry>> result = new HashMap<>();
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createQuery("SELECT DISTINCT ON (address, event_type) * FROM dot11_timeline_events " +
                                 "WHERE organization_id = :organization_id AND tenant_id = :tenant_id " +
-                                "AND address_type = :address_type AND address = :address " +
-                                "AND event_type = :event_type " +
-                                "ORDER BY timestamp DESC LIMIT 1")
+                                "AND address_type = :address_type AND address = ANY(:addresses) " +
+                                "AND event_type IN (<event_types>) " +
+                                "ORDER BY address, event_type, timestamp DESC")
                         .bind("organization_id", organizationId)
                         .bind("tenant_id", tenantId)
                         .bind("address_type", addressType)
-                        .bind("address", address)
-                        .bind("event_type", eventType)
+                        .bindArray("addresses", String.class, addresses)
+                        .bindList("event_types", eventTypes.stream().map(Enum::name).toList())
                         .mapTo(TimelineEventEntry.class)
-                        .findOne()
+                        .forEach(event -> result.computeIfAbsent(event.address(), k -> new HashMap<>())
+                                .put(TimelineEventType.valueOf(event.eventType()), event))
         );
+
+        return result;
     }
 
 }
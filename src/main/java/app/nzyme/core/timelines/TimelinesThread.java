@@ -2,6 +2,7 @@ package app.nzyme.core.timelines;
 
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.periodicals.Periodical;
+import app.nzyme.core.security.authentication.db.TenantEntry;
 import app.nzyme.core.timelines.tasks.Dot11BSSIDTimelineCalculationTask;
 import app.nzyme.core.timelines.tasks.Dot11SSIDTimelineCalculationTask;
 import app.nzyme.plugin.RegistryKey;
@@ -19,8 +20,8 @@ public class TimelinesThread extends Periodical {
     private final NzymeNode nzyme;
 
     /*
-     * This thread runs on all nodes and submits a task to run timeline calculations if due. This makes sure that only
-     * one node is calculating timelines.
+     * This thread runs on all nodes and submits one task per tenant to run timeline calculations if due. The tasks
+     * queue spreads the tenants across all nodes of the cluster.
      */
 
     public TimelinesThread(NzymeNode nzyme) {
@@ -35,7 +36,12 @@ public class TimelinesThread extends Periodical {
                     TimelinesRegistryKeys.TIMELINES_DOT11_BSSIDS_LAST_EXECUTION
             );
             if (checkForPendingExecution(bssidsLastExecution)) {
-                nzyme.getTasksQueue().publish(new Dot11BSSIDTimelineCalculationTask());
+                markExecution(TimelinesRegistryKeys.TIMELINES_DOT11_BSSIDS_LAST_EXECUTION);
+                for (TenantEntry tenant : nzyme.getAuthenticationService().findAllTenantsOfAllOrganizations()) {
+                    nzyme.getTasksQueue().publish(
+                            new Dot11BSSIDTimelineCalculationTask(tenant.organizationUuid(), tenant.uuid())
+                    );
+                }
             }
 
             // 802.11 SSIDs
@@ -43,7 +49,12 @@ public class TimelinesThread extends Periodical {
                     TimelinesRegistryKeys.TIMELINES_DOT11_SSIDS_LAST_EXECUTION
             );
             if (checkForPendingExecution(ssidsLastExecution)) {
-                nzyme.getTasksQueue().publish(new Dot11SSIDTimelineCalculationTask());
+                markExecution(TimelinesRegistryKeys.TIMELINES_DOT11_SSIDS_LAST_EXECUTION);
+                for (TenantEntry tenant : nzyme.getAuthenticationService().findAllTenantsOfAllOrganizations()) {
+                    nzyme.getTasksQueue().publish(
+                            new Dot11SSIDTimelineCalculationTask(tenant.organizationUuid(), tenant.uuid())
+                    );
+                }
             }
 
             // 802.11 Connected Clients
@@ -63,6 +74,10 @@ public class TimelinesThread extends Periodical {
         return nzyme.getDatabaseCoreRegistry().getValue(registryKey.key()).map(DateTime::parse);
     }
 
+    private void markExecution(RegistryKey registryKey) {
+        nzyme.getDatabaseCoreRegistry().setValue(registryKey.key(), DateTime.now().toString());
+    }
+
     private boolean checkForPendingExecution(Optional<DateTime> lastExecution) {
         return lastExecution.isEmpty()
                 || lastExecution.get().isBefore(DateTime.now().minusMinutes(1).plusSeconds(10));
@@ -1,34 +1,33 @@
 package app.nzyme.core.timelines.resolvers;
 
-import app.nzyme.core.NzymeNode;
-import app.nzyme.core.timelines.Timelines;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
+import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.cfg.DateTimeFeature;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.datatype.joda.JodaModule;
 
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
 
+/*
+ * Resolvers compare the current state of an address with the details of its latest timeline event of the same
+ * type. They do not query anything themselves: The calculation task handlers load the current and previous state
+ * of all addresses of a tenant in bulk and pass it in.
+ */
 public abstract class TimelineResolver {
 
-    protected final NzymeNode nzyme;
-    protected final Timelines timelines;
-
-    protected final UUID organizationId;
-    protected final UUID tenantId;
-
     protected final ObjectMapper objectMapper;
 
-    protected TimelineResolver(NzymeNode nzyme, UUID organizationId, UUID tenantId) {
-        this.nzyme = nzyme;
-        this.timelines = new Timelines(nzyme);
-        this.organizationId = organizationId;
-        this.tenantId = tenantId;
-
+    protected TimelineResolver() {
         this.objectMapper = JsonMapper.builder()
                 .addModule(new JodaModule())
                 .disable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .build();
     }
 
+    protected Optional<Map<String, Object>> parseDetails(Optional<TimelineEventEntry> event) {
+        return event.map(e -> objectMapper.readValue(e.eventDetails(), new TypeReference<>() {}));
+    }
+
 }
@@ -1,46 +1,21 @@
 package app.nzyme.core.timelines.resolvers.dot11.bssid;
 
-import app.nzyme.core.NzymeNode;
-import app.nzyme.core.timelines.TimelineAddressType;
-import app.nzyme.core.timelines.TimelineEventType;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.timelines.resolvers.ResolverResult;
 import app.nzyme.core.timelines.resolvers.TimelineResolver;
 import app.nzyme.core.timelines.resolvers.helpers.StringSetComparison;
-import app.nzyme.core.util.TimeRange;
-import org.joda.time.DateTime;
-import tools.jackson.core.type.TypeReference;
 
 import java.util.*;
 
-import static app.nzyme.core.timelines.Timelines.EVENT_HORIZON_MINUTES;
-
 public class Dot11BSSIDSSIDsAnnouncementResolver extends TimelineResolver {
 
-    public Dot11BSSIDSSIDsAnnouncementResolver(NzymeNode nzyme, UUID organizationId, UUID tenantId) {
-        super(nzyme, organizationId, tenantId);
-    }
-
-    public Optional<ResolverResult> resolve(String bssid, List<UUID> taps) {
-        DateTime now = DateTime.now();
-
-        Set<String> currentSSIDs = nzyme.getDot11().findSSIDNamesOfBSSID(
-                        TimeRange.create(now.minusMinutes(EVENT_HORIZON_MINUTES), now, false),
-                        bssid,
-                        taps
-        );
-
+    public Optional<ResolverResult> resolve(Set<String> currentSSIDs, Optional<TimelineEventEntry> previousEvent) {
         if (currentSSIDs.isEmpty()) {
             return Optional.empty();
         }
 
-        Optional<Set<String>> previousSSIDs = timelines.findLatestEventOfTypeAndAddress(
-                        organizationId,
-                        tenantId,
-                        TimelineAddressType.DOT11_BSSID,
-                        bssid,
-                        TimelineEventType.DOT11_BSSID_SSID_DIFF)
-                .map(event -> {
-                    Map<String, Object> details = objectMapper.readValue(event.eventDetails(), new TypeReference<>() {});
+        Optional<Set<String>> previousSSIDs = parseDetails(previousEvent)
+                .map(details -> {
                     @SuppressWarnings("unchecked")
                     Collection<String> known = (Collection<String>) details.getOrDefault(
                             "known_ssids", Collections.emptyList());
@@ -56,4 +31,4 @@ public class Dot11BSSIDSSIDsAnnouncementResolver extends TimelineResolver {
         );
     }
 
-}
\ No newline at end of file
+}
@@ -1,48 +1,24 @@
 package app.nzyme.core.timelines.resolvers.dot11.bssid;
 
-import app.nzyme.core.NzymeNode;
 import app.nzyme.core.shared.db.TapBasedSignalStrengthResult;
-import app.nzyme.core.timelines.TimelineAddressType;
-import app.nzyme.core.timelines.TimelineEventType;
-import app.nzyme.core.timelines.Timelines;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.timelines.resolvers.ResolverResult;
 import app.nzyme.core.timelines.resolvers.TimelineResolver;
-import app.nzyme.core.util.TimeRange;
 import com.google.common.collect.Maps;
-import org.joda.time.DateTime;
-import tools.jackson.core.type.TypeReference;
 
 import java.util.*;
 
-import static app.nzyme.core.timelines.Timelines.EVENT_HORIZON_MINUTES;
-
 public class Dot11BSSIDStrongestTapResolver extends TimelineResolver {
 
-    public Dot11BSSIDStrongestTapResolver(NzymeNode nzyme, UUID organizationId, UUID tenantId) {
-        super(nzyme, organizationId, tenantId);
-    }
-
-    public Optional<ResolverResult> resolve(String bssid, List<UUID> taps) {
-        DateTime now = DateTime.now();
-
-        Optional<TapBasedSignalStrengthResult> currentStrongest = nzyme.getDot11()
-                .findBSSIDSignalStrengthPerTap(bssid, TimeRange.create(now.minusMinutes(EVENT_HORIZON_MINUTES), now, false), taps)
-                .stream()
-                .max(Comparator.comparingDouble(TapBasedSignalStrengthResult::signalStrength));
-
+    public Optional<ResolverResult> resolve(Optional<TapBasedSignalStrengthResult> currentStrongest,
+                                            Optional<TimelineEventEntry> previousEvent) {
         if (currentStrongest.isEmpty()) {
             return Optional.empty();
         }
 
         UUID currentTapUuid = currentStrongest.get().tapUuid();
 
-        Optional<Map<String, Object>> previousTap = timelines.findLatestEventOfTypeAndAddress(
-                        organizationId,
-                        tenantId,
-                        TimelineAddressType.DOT11_BSSID,
-                        bssid,
-                        TimelineEventType.DOT11_BSSID_STRONGEST_TAP)
-                .map(event -> objectMapper.readValue(event.eventDetails(), new TypeReference<>() {}));
+        Optional<Map<String, Object>> previousTap = parseDetails(previousEvent);
 
         if (previousTap.isPresent()) {
             UUID previousTapUuid = UUID.fromString((String) previousTap.get().get("strongest_tap_uuid"));
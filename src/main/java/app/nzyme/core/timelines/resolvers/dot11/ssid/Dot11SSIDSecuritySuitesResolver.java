@@ -1,28 +1,18 @@
 package app.nzyme.core.timelines.resolvers.dot11.ssid;
 
-import app.nzyme.core.NzymeNode;
 import app.nzyme.core.dot11.Dot11;
 import app.nzyme.core.dot11.db.SSIDDetails;
-import app.nzyme.core.timelines.TimelineAddressType;
-import app.nzyme.core.timelines.TimelineEventType;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.timelines.resolvers.ResolverResult;
 import app.nzyme.core.timelines.resolvers.TimelineResolver;
 import app.nzyme.core.timelines.resolvers.helpers.StringSetComparison;
-import tools.jackson.core.type.TypeReference;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static app.nzyme.core.timelines.tasks.Dot11SSIDTimelineCalculationTaskHandler.buildSSIDKey;
-
-
 public class Dot11SSIDSecuritySuitesResolver extends TimelineResolver {
 
-    public Dot11SSIDSecuritySuitesResolver(NzymeNode nzyme, UUID organizationId, UUID tenantId) {
-        super(nzyme, organizationId, tenantId);
-    }
-
-    public Optional<ResolverResult> resolve(SSIDDetails ssidDetails, String bssid, String ssid) {
+    public Optional<ResolverResult> resolve(SSIDDetails ssidDetails, Optional<TimelineEventEntry> previousEvent) {
         Set<String> currentSuites = ssidDetails
                 .securitySuites()
                 .stream()
@@ -33,14 +23,8 @@ public class Dot11SSIDSecuritySuitesResolver extends TimelineResolver {
             return Optional.empty();
         }
 
-        Optional<Set<String>> previousSuites = timelines.findLatestEventOfTypeAndAddress(
-                        organizationId,
-                        tenantId,
-                        TimelineAddressType.DOT11_SSID,
-                        buildSSIDKey(bssid, ssid),
-                        TimelineEventType.DOT11_SSID_SECURITY_SUITES_DIFF)
-                .map(event -> {
-                    Map<String, Object> details = objectMapper.readValue(event.eventDetails(), new TypeReference<>() {});
+        Optional<Set<String>> previousSuites = parseDetails(previousEvent)
+                .map(details -> {
                     @SuppressWarnings("unchecked")
                     Collection<String> known = (Collection<String>) details.getOrDefault(
                             "known_suites", Collections.emptyList());
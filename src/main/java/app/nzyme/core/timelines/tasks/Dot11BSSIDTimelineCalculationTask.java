@@ -3,10 +3,20 @@ package app.nzyme.core.timelines.tasks;
 import app.nzyme.plugin.distributed.tasksqueue.Task;
 import app.nzyme.plugin.distributed.tasksqueue.TaskType;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 public class Dot11BSSIDTimelineCalculationTask extends Task {
 
+    private final UUID organizationId;
+    private final UUID tenantId;
+
+    public Dot11BSSIDTimelineCalculationTask(UUID organizationId, UUID tenantId) {
+        this.organizationId = organizationId;
+        this.tenantId = tenantId;
+    }
+
     @Override
     public TaskType type() {
         return TaskType.TIMELINES_CALCULATION_DOT11_BSSID;
@@ -19,7 +29,10 @@ public class Dot11BSSIDTimelineCalculationTask extends Task {
 
     @Override
     public Map<String, Object> parameters() {
-        return Map.of();
+        return new HashMap<>(){{
+            put("organization_id", organizationId);
+            put("tenant_id", tenantId);
+        }};
     }
 
     @Override
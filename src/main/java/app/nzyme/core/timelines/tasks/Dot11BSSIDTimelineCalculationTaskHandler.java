@@ -1,15 +1,13 @@
 package app.nzyme.core.timelines.tasks;
 
 import app.nzyme.core.NzymeNode;
-import app.nzyme.core.database.OrderDirection;
-import app.nzyme.core.dot11.Dot11;
-import app.nzyme.core.dot11.db.BSSIDSummary;
 import app.nzyme.core.security.authentication.db.TapPermissionEntry;
-import app.nzyme.core.security.authentication.db.TenantEntry;
+import app.nzyme.core.shared.db.TapBasedSignalStrengthResult;
+import app.nzyme.core.timelines.PendingTimelineEvent;
 import app.nzyme.core.timelines.TimelineAddressType;
 import app.nzyme.core.timelines.TimelineEventType;
 import app.nzyme.core.timelines.Timelines;
-import app.nzyme.core.timelines.TimelinesRegistryKeys;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.timelines.resolvers.ResolverResult;
 import app.nzyme.core.timelines.resolvers.dot11.bssid.Dot11BSSIDActiveChannelResolver;
 import app.nzyme.core.timelines.resolvers.dot11.bssid.Dot11BSSIDFingerprintsResolver;
@@ -17,28 +15,38 @@ import app.nzyme.core.timelines.resolvers.dot11.bssid.Dot11BSSIDStrongestTapReso
 import app.nzyme.core.timelines.resolvers.dot11.bssid.Dot11BSSIDSSIDsAnnouncementResolver;
 import app.nzyme.core.util.MetricNames;
 import app.nzyme.core.util.TimeRange;
-import app.nzyme.core.util.filters.Filters;
 import app.nzyme.plugin.distributed.tasksqueue.ReceivedTask;
 import app.nzyme.plugin.distributed.tasksqueue.TaskHandler;
 import app.nzyme.plugin.distributed.tasksqueue.TaskProcessingResult;
 import com.codahale.metrics.Timer;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+
+import static app.nzyme.core.timelines.Timelines.EVENT_HORIZON_MINUTES;
 
 public class Dot11BSSIDTimelineCalculationTaskHandler implements TaskHandler {
 
     private static final Logger LOG = LogManager.getLogger(Dot11BSSIDTimelineCalculationTaskHandler.class);
 
+    private static final List<TimelineEventType> EVENT_TYPES = List.of(
+            TimelineEventType.DOT11_BSSID_ACTIVE_CHANNEL,
+            TimelineEventType.DOT11_BSSID_SSID_DIFF,
+            TimelineEventType.DOT11_BSSID_FINGERPRINT_DIFF,
+            TimelineEventType.DOT11_BSSID_STRONGEST_TAP
+    );
+
     private final NzymeNode nzyme;
     private final Timelines timelines;
 
+    private final Dot11BSSIDActiveChannelResolver channelResolver;
+    private final Dot11BSSIDSSIDsAnnouncementResolver ssidsResolver;
+    private final Dot11BSSIDFingerprintsResolver fingerprintsResolver;
+    private final Dot11BSSIDStrongestTapResolver strongestTapResolver;
+
     private final Timer totalTimer;
     private final Timer individualTimer;
 
@@ -46,6 +54,11 @@ public class Dot11BSSIDTimelineCalculationTaskHandler implements TaskHandler {
         this.nzyme = nzyme;
         this.timelines = new Timelines(nzyme);
 
+        this.channelResolver = new Dot11BSSIDActiveChannelResolver();
+        this.ssidsResolver = new Dot11BSSIDSSIDsAnnouncementResolver();
+        this.fingerprintsResolver = new Dot11BSSIDFingerprintsResolver();
+        this.strongestTapResolver = new Dot11BSSIDStrongestTapResolver();
+
         this.totalTimer = nzyme.getMetrics().timer(MetricNames.TIMELINES_BSSIDS_TOTAL_CALCULATION_TIMER);
         this.individualTimer = nzyme.getMetrics().timer(MetricNames.TIMELINES_BSSIDS_INDIVIDUAL_CALCULATION_TIMER);
     }
@@ -55,128 +68,117 @@ public class Dot11BSSIDTimelineCalculationTaskHandler implements TaskHandler {
         try(Timer.Context ignored = totalTimer.time()) {
             LOG.debug("Received task {}", task);
 
+            UUID organizationId = UUID.fromString((String) task.parametersMap().get("organization_id"));
+            UUID tenantId = UUID.fromString((String) task.parametersMap().get("tenant_id"));
+
             DateTime now = DateTime.now();
+            TimeRange horizon = TimeRange.create(now.minusMinutes(EVENT_HORIZON_MINUTES), now, false);
+
+            List<UUID> taps = nzyme.getAuthenticationService()
+                    .findAllTapsOfTenant(organizationId, tenantId)
+                    .stream()
+                    .map(TapPermissionEntry::uuid).toList();
+
+            List<String> bssids = nzyme.getDot11().findActiveBSSIDAddresses(
+                    TimeRange.create(now.minusMinutes(1), now, false), taps
+            );
 
-            nzyme.getDatabaseCoreRegistry().setValue(
-                    TimelinesRegistryKeys.TIMELINES_DOT11_BSSIDS_LAST_EXECUTION.key(),
-                    DateTime.now().toString()
+            if (bssids.isEmpty()) {
+                return TaskProcessingResult.SUCCESS;
+            }
+
+            /*
+             * Load the current and the previous state of all active BSSIDs of this tenant in bulk. The per-BSSID
+             * comparison below happens in memory only.
+             */
+            Map<String, Integer> channels = nzyme.getDot11().findMostActiveChannelsOfBSSIDs(horizon, bssids, taps);
+            Map<String, Set<String>> ssids = nzyme.getDot11().findSSIDNamesOfBSSIDs(horizon, bssids, taps);
+            Map<String, Set<String>> fingerprints = nzyme.getDot11().findFingerprintsOfBSSIDs(horizon, bssids, taps);
+            Map<String, TapBasedSignalStrengthResult> strongestTaps = nzyme.getDot11()
+                    .findStrongestTapsOfBSSIDs(horizon, bssids, taps);
+
+            Map<String, Map<TimelineEventType, TimelineEventEntry>> previous = timelines.findLatestEventsOfAddresses(
+                    organizationId, tenantId, TimelineAddressType.DOT11_BSSID, bssids, EVENT_TYPES
             );
 
-            // For each tenant, find each currently active BSSID and write either a MARK (it's been seen) or an event if there are any.
-            for (TenantEntry tenant : nzyme.getAuthenticationService().findAllTenantsOfAllOrganizations()) {
-                List<UUID> taps = nzyme.getAuthenticationService()
-                        .findAllTapsOfTenant(tenant.organizationUuid(), tenant.uuid())
-                        .stream()
-                        .map(TapPermissionEntry::uuid).toList();
-
-                for (BSSIDSummary bssid : nzyme.getDot11().findBSSIDs(
-                        TimeRange.create(now.minusMinutes(1), now, false),
-                        Filters.create(Maps.newHashMap()),
-                        Dot11.BssidOrderColumn.BSSID,
-                        OrderDirection.ASC,
-                        Integer.MAX_VALUE,
-                        0,
-                        taps)) {
-                    try(Timer.Context ignored2 = individualTimer.time()) {
-                        int eventsWritten = 0;
-
-                        // Active channel.
-                        Dot11BSSIDActiveChannelResolver channel = new Dot11BSSIDActiveChannelResolver(
-                                nzyme, tenant.organizationUuid(), tenant.uuid()
-                        );
-                        Optional<ResolverResult> channelResult = channel.resolve(bssid.bssid(), taps);
-
-                        if (channelResult.isPresent()) {
-                            timelines.writeDot11TimelineEvent(
-                                    tenant.organizationUuid(),
-                                    tenant.uuid(),
-                                    TimelineAddressType.DOT11_BSSID,
-                                    bssid.bssid(),
-                                    TimelineEventType.DOT11_BSSID_ACTIVE_CHANNEL,
-                                    channelResult.get().payload(),
-                                    now
-                            );
-                            eventsWritten++;
-                        }
-
-                        // SSIDs.
-                        Dot11BSSIDSSIDsAnnouncementResolver ssids = new Dot11BSSIDSSIDsAnnouncementResolver(
-                                nzyme, tenant.organizationUuid(), tenant.uuid()
-                        );
-                        Optional<ResolverResult> ssidsResult = ssids.resolve(bssid.bssid(), taps);
-
-                        if (ssidsResult.isPresent()) {
-                            timelines.writeDot11TimelineEvent(
-                                    tenant.organizationUuid(),
-                                    tenant.uuid(),
-                                    TimelineAddressType.DOT11_BSSID,
-                                    bssid.bssid(),
-                                    TimelineEventType.DOT11_BSSID_SSID_DIFF,
-                                    ssidsResult.get().payload(),
-                                    now
-                            );
-                            eventsWritten++;
-                        }
-
-                        // Fingerprints.
-                        Dot11BSSIDFingerprintsResolver fingerprints = new Dot11BSSIDFingerprintsResolver(
-                                nzyme, tenant.organizationUuid(), tenant.uuid()
-                        );
-                        Optional<ResolverResult> fingerprintsResult = fingerprints.resolve(bssid.bssid(), taps);
-
-                        if (fingerprintsResult.isPresent()) {
-                            timelines.writeDot11TimelineEvent(
-                                    tenant.organizationUuid(),
-                                    tenant.uuid(),
-                                    TimelineAddressType.DOT11_BSSID,
-                                    bssid.bssid(),
-                                    TimelineEventType.DOT11_BSSID_FINGERPRINT_DIFF,
-                                    fingerprintsResult.get().payload(),
-                                    now
-                            );
-                            eventsWritten++;
-                        }
-
-                        // Strongest Tap.
-                        Dot11BSSIDStrongestTapResolver strongestTap = new Dot11BSSIDStrongestTapResolver(
-                                nzyme, tenant.organizationUuid(), tenant.uuid()
-                        );
-                        Optional<ResolverResult> strongestTapResult = strongestTap.resolve(bssid.bssid(), taps);
-
-                        if (strongestTapResult.isPresent()) {
-                            timelines.writeDot11TimelineEvent(
-                                    tenant.organizationUuid(),
-                                    tenant.uuid(),
-                                    TimelineAddressType.DOT11_BSSID,
-                                    bssid.bssid(),
-                                    TimelineEventType.DOT11_BSSID_STRONGEST_TAP,
-                                    strongestTapResult.get().payload(),
-                                    now
-                            );
-                            eventsWritten++;
-                        }
-
-                        // No events, but mark that the BSSID was seen.
-                        if (eventsWritten == 0) {
-                            timelines.writeDot11TimelineEvent(
-                                    tenant.organizationUuid(),
-                                    tenant.uuid(),
-                                    TimelineAddressType.DOT11_BSSID,
-                                    bssid.bssid(),
-                                    TimelineEventType.MARK,
-                                    Collections.emptyMap(),
-                                    now
-                            );
-                        }
-
-                    } catch (Exception e) {
-                        LOG.error("Error while calculating timeline for 802.11 BSSID [{}]. Skipping.", "FOO", e);
+            List<PendingTimelineEvent> events = Lists.newArrayList();
+            for (String bssid : bssids) {
+                try(Timer.Context ignored2 = individualTimer.time()) {
+                    Map<TimelineEventType, TimelineEventEntry> previousEvents =
+                            previous.getOrDefault(bssid, Collections.emptyMap());
+                    int eventsWritten = 0;
+
+                    // Active channel.
+                    eventsWritten += addEvent(events, bssid, TimelineEventType.DOT11_BSSID_ACTIVE_CHANNEL,
+                            channelResolver.resolve(
+                                    Optional.ofNullable(channels.get(bssid)),
+                                    Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_BSSID_ACTIVE_CHANNEL))
+                            )
+                    );
+
+                    // SSIDs.
+                    eventsWritten += addEvent(events, bssid, TimelineEventType.DOT11_BSSID_SSID_DIFF,
+                            ssidsResolver.resolve(
+                                    ssids.getOrDefault(bssid, Collections.emptySet()),
+                                    Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_BSSID_SSID_DIFF))
+                            )
+                    );
+
+                    // Fingerprints.
+                    eventsWritten += addEvent(events, bssid, TimelineEventType.DOT11_BSSID_FINGERPRINT_DIFF,
+                            fingerprintsResolver.resolve(
+                                    fingerprints.getOrDefault(bssid, Collections.emptySet()),
+                                    Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_BSSID_FINGERPRINT_DIFF))
+                            )
+                    );
+
+                    // Strongest Tap.
+                    eventsWritten += addEvent(events, bssid, TimelineEventType.DOT11_BSSID_STRONGEST_TAP,
+                            strongestTapResolver.resolve(
+                                    Optional.ofNullable(strongestTaps.get(bssid)),
+                                    Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_BSSID_STRONGEST_TAP))
+                            )
+                    );
+
+                    // No events, but mark that the BSSID was seen.
+                    if (eventsWritten == 0) {
+                        events.add(PendingTimelineEvent.create(
+                                TimelineAddressType.DOT11_BSSID,
+                                bssid,
+                                TimelineEventType.MARK,
+                                Collections.emptyMap()
+                        ));
                     }
+                } catch (Exception e) {
+                    LOG.error("Error while calculating timeline for 802.11 BSSID [{}]. Skipping.", bssid, e);
                 }
             }
 
+            timelines.writeDot11TimelineEvents(organizationId, tenantId, events, now);
+
             return TaskProcessingResult.SUCCESS;
+        } catch (Exception e) {
+            LOG.error("Could not calculate 802.11 BSSID timelines.", e);
+            return TaskProcessingResult.FAILURE;
+        }
+    }
+
+    private static int addEvent(List<PendingTimelineEvent> events,
+                                String bssid,
+                                TimelineEventType eventType,
+                                Optional<ResolverResult> result) {
+        if (result.isEmpty()) {
+            return 0;
         }
+
+        events.add(PendingTimelineEvent.create(
+                TimelineAddressType.DOT11_BSSID,
+                bssid,
+                eventType,
+                result.get().payload()
+        ));
+
+        return 1;
     }
 
     @Override
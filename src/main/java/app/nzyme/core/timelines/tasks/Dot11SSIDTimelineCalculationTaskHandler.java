@@ -1,34 +1,27 @@
 package app.nzyme.core.timelines.tasks;
 
 import app.nzyme.core.NzymeNode;
-import app.nzyme.core.database.OrderDirection;
-import app.nzyme.core.dot11.Dot11;
-import app.nzyme.core.dot11.db.BSSIDSummary;
 import app.nzyme.core.dot11.db.SSIDDetails;
 import app.nzyme.core.security.authentication.db.TapPermissionEntry;
-import app.nzyme.core.security.authentication.db.TenantEntry;
+import app.nzyme.core.timelines.PendingTimelineEvent;
 import app.nzyme.core.timelines.TimelineAddressType;
 import app.nzyme.core.timelines.TimelineEventType;
 import app.nzyme.core.timelines.Timelines;
-import app.nzyme.core.timelines.TimelinesRegistryKeys;
+import app.nzyme.core.timelines.db.TimelineEventEntry;
 import app.nzyme.core.timelines.resolvers.ResolverResult;
 import app.nzyme.core.timelines.resolvers.dot11.ssid.*;
 import app.nzyme.core.util.MetricNames;
 import app.nzyme.core.util.TimeRange;
-import app.nzyme.core.util.filters.Filters;
 import app.nzyme.plugin.distributed.tasksqueue.ReceivedTask;
 import app.nzyme.plugin.distributed.tasksqueue.TaskHandler;
 import app.nzyme.plugin.distributed.tasksqueue.TaskProcessingResult;
 import com.codahale.metrics.Timer;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 import static app.nzyme.core.timelines.Timelines.EVENT_HORIZON_MINUTES;
 
@@ -36,9 +29,23 @@ public class Dot11SSIDTimelineCalculationTaskHandler implements TaskHandler {
 
     private static final Logger LOG = LogManager.getLogger(Dot11SSIDTimelineCalculationTaskHandler.class);
 
+    private static final List<TimelineEventType> EVENT_TYPES = List.of(
+            TimelineEventType.DOT11_SSID_ACTIVE_CHANNEL,
+            TimelineEventType.DOT11_SSID_RATES_DIFF,
+            TimelineEventType.DOT11_SSID_SECURITY_PROTOCOLS_DIFF,
+            TimelineEventType.DOT11_SSID_SECURITY_SUITES_DIFF,
+            TimelineEventType.DOT11_SSID_FINGERPRINTS_DIFF
+    );
+
     private final NzymeNode nzyme;
     private final Timelines timelines;
 
+    private final Dot11SSIDActiveChannelResolver activeChannelResolver;
+    private final Dot11SSIDRatesResolver ratesResolver;
+    private final Dot11SSIDSecurityProtocolsResolver securityProtocolsResolver;
+    private final Dot11SSIDSecuritySuitesResolver securitySuitesResolver;
+    private final Dot11SSIDFingerprintsResolver fingerprintsResolver;
+
     private final Timer totalTimer;
     private final Timer individualTimer;
 
@@ -46,6 +53,12 @@ public class Dot11SSIDTimelineCalculationTaskHandler implements TaskHandler {
         this.nzyme = nzyme;
         this.timelines = new Timelines(nzyme);
 
+        this.activeChannelResolver = new Dot11SSIDActiveChannelResolver();
+        this.ratesResolver = new Dot11SSIDRatesResolver();
+        this.securityProtocolsResolver = new Dot11SSIDSecurityProtocolsResolver();
+        this.securitySuitesResolver = new Dot11SSIDSecuritySuitesResolver();
+        this.fingerprintsResolver = new Dot11SSIDFingerprintsResolver();
+
         this.totalTimer = nzyme.getMetrics().timer(MetricNames.TIMELINES_SSIDS_TOTAL_CALCULATION_TIMER);
         this.individualTimer = nzyme.getMetrics().timer(MetricNames.TIMELINES_SSIDS_INDIVIDUAL_CALCULATION_TIMER);
     }
@@ -55,161 +68,140 @@ public class Dot11SSIDTimelineCalculationTaskHandler implements TaskHandler {
         try(Timer.Context ignored = totalTimer.time()) {
             LOG.debug("Received task {}", task);
 
+            UUID organizationId = UUID.fromString((String) task.parametersMap().get("organization_id"));
+            UUID tenantId = UUID.fromString((String) task.parametersMap().get("tenant_id"));
+
             DateTime now = DateTime.now();
+            TimeRange horizon = TimeRange.create(now.minusMinutes(EVENT_HORIZON_MINUTES), now, false);
+
+            List<UUID> taps = nzyme.getAuthenticationService()
+                    .findAllTapsOfTenant(organizationId, tenantId)
+                    .stream()
+                    .map(TapPermissionEntry::uuid).toList();
+
+            TimeRange lastMinute = TimeRange.create(now.minusMinutes(1), now, false);
+            List<String> bssids = nzyme.getDot11().findActiveBSSIDAddresses(lastMinute, taps);
+
+            // Every currently active SSID, identified by its BSSID/SSID key.
+            List<String> ssidKeys = Lists.newArrayList();
+            for (Map.Entry<String, Set<String>> bssid :
+                    nzyme.getDot11().findSSIDNamesOfBSSIDs(lastMinute, bssids, taps).entrySet()) {
+                for (String ssid : bssid.getValue()) {
+                    if (ssid.isBlank()) {
+                        // Should never happen, but just to make sure.
+                        continue;
+                    }
 
-            nzyme.getDatabaseCoreRegistry().setValue(
-                    TimelinesRegistryKeys.TIMELINES_DOT11_BSSIDS_LAST_EXECUTION.key(),
-                    DateTime.now().toString()
-            );
+                    ssidKeys.add(buildSSIDKey(bssid.getKey(), ssid));
+                }
+            }
 
-            /* For each tenant, find each currently active SSID and write either a
-             * MARK (it's been seen) or an event if there are any.
+            if (ssidKeys.isEmpty()) {
+                return TaskProcessingResult.SUCCESS;
+            }
+
+            /*
+             * Load the current and the previous state of all active SSIDs of this tenant in bulk. The per-SSID
+             * comparison below happens in memory only.
              */
-            for (TenantEntry tenant : nzyme.getAuthenticationService().findAllTenantsOfAllOrganizations()) {
-                List<UUID> taps = nzyme.getAuthenticationService()
-                        .findAllTapsOfTenant(tenant.organizationUuid(), tenant.uuid())
-                        .stream()
-                        .map(TapPermissionEntry::uuid).toList();
-
-                for (BSSIDSummary bssid : nzyme.getDot11().findBSSIDs(
-                        TimeRange.create(now.minusMinutes(1), now, false),
-                        Filters.create(Maps.newHashMap()),
-                        Dot11.BssidOrderColumn.BSSID,
-                        OrderDirection.ASC,
-                        Integer.MAX_VALUE,
-                        0,
-                        taps)) {
-                    for (String ssid : nzyme.getDot11().findSSIDNamesOfBSSID(
-                            TimeRange.create(now.minusMinutes(1), now, false), bssid.bssid(), taps)) {
-                        try(Timer.Context ignored2 = individualTimer.time()) {
-                            if (ssid.isBlank()) {
-                                // Should never happen, but just to make sure.
-                                continue;
-                            }
-
-                            String ssidKey = buildSSIDKey(bssid.bssid(), ssid);
-                            int eventsWritten = 0;
-
-                            Optional<SSIDDetails> ssidDetails = nzyme.getDot11().findSSIDDetails(
-                                    TimeRange.create(now.minusMinutes(EVENT_HORIZON_MINUTES), now, false),
-                                    bssid.bssid(),
-                                    ssid,
-                                    taps
-                            );
-
-                            if (ssidDetails.isPresent()) {
-                                // Active channel.
-                                Optional<ResolverResult> activeChannelResult = new Dot11SSIDActiveChannelResolver(
-                                        nzyme, tenant.organizationUuid(), tenant.uuid()
-                                ).resolve(bssid.bssid(), ssid, taps);
-
-                                if (activeChannelResult.isPresent()) {
-                                    timelines.writeDot11TimelineEvent(
-                                            tenant.organizationUuid(),
-                                            tenant.uuid(),
-                                            TimelineAddressType.DOT11_SSID,
-                                            ssidKey,
-                                            TimelineEventType.DOT11_SSID_ACTIVE_CHANNEL,
-                                            activeChannelResult.get().payload(),
-                                            now
-                                    );
-                                    eventsWritten++;
-                                }
-
-                                // Rates
-                                Optional<ResolverResult> ratesResult = new Dot11SSIDRatesResolver(
-                                        nzyme, tenant.organizationUuid(), tenant.uuid()
-                                ).resolve(ssidDetails.get(), bssid.bssid(), ssid);
-
-                                if (ratesResult.isPresent()) {
-                                    timelines.writeDot11TimelineEvent(
-                                            tenant.organizationUuid(),
-                                            tenant.uuid(),
-                                            TimelineAddressType.DOT11_SSID,
-                                            ssidKey,
-                                            TimelineEventType.DOT11_SSID_RATES_DIFF,
-                                            ratesResult.get().payload(),
-                                            now
-                                    );
-                                    eventsWritten++;
-                                }
-
-                                // Security Protocols.
-                                Optional<ResolverResult> securityProtocolsResult = new Dot11SSIDSecurityProtocolsResolver(
-                                        nzyme, tenant.organizationUuid(), tenant.uuid()
-                                ).resolve(ssidDetails.get(), bssid.bssid(), ssid);
-
-                                if (securityProtocolsResult.isPresent()) {
-                                    timelines.writeDot11TimelineEvent(
-                                            tenant.organizationUuid(),
-                                            tenant.uuid(),
-                                            TimelineAddressType.DOT11_SSID,
-                                            ssidKey,
-                                            TimelineEventType.DOT11_SSID_SECURITY_PROTOCOLS_DIFF,
-                                            securityProtocolsResult.get().payload(),
-                                            now
-                                    );
-                                    eventsWritten++;
-                                }
-
-                                // Security Settings
-                                Optional<ResolverResult> securitySuitesResult = new Dot11SSIDSecuritySuitesResolver(
-                                        nzyme, tenant.organizationUuid(), tenant.uuid()
-                                ).resolve(ssidDetails.get(), bssid.bssid(), ssid);
-
-                                if (securitySuitesResult.isPresent()) {
-                                    timelines.writeDot11TimelineEvent(
-                                            tenant.organizationUuid(),
-                                            tenant.uuid(),
-                                            TimelineAddressType.DOT11_SSID,
-                                            ssidKey,
-                                            TimelineEventType.DOT11_SSID_SECURITY_SUITES_DIFF,
-                                            securitySuitesResult.get().payload(),
-                                            now
-                                    );
-                                    eventsWritten++;
-                                }
-
-                                // Fingerprints
-                                Optional<ResolverResult> fingerprintsResult = new Dot11SSIDFingerprintsResolver(
-                                        nzyme, tenant.organizationUuid(), tenant.uuid()
-                                ).resolve(ssidDetails.get(), bssid.bssid(), ssid);
-
-                                if (fingerprintsResult.isPresent()) {
-                                    timelines.writeDot11TimelineEvent(
-                                            tenant.organizationUuid(),
-                                            tenant.uuid(),
-                                            TimelineAddressType.DOT11_SSID,
-                                            ssidKey,
-                                            TimelineEventType.DOT11_SSID_FINGERPRINTS_DIFF,
-                                            fingerprintsResult.get().payload(),
-                                            now
-                                    );
-                                    eventsWritten++;
-                                }
-                            }
-
-                            // No events, but mark that the SSID was seen.
-                            if (eventsWritten == 0) {
-                                timelines.writeDot11TimelineEvent(
-                                        tenant.organizationUuid(),
-                                        tenant.uuid(),
-                                        TimelineAddressType.DOT11_SSID,
-                                        ssidKey,
-                                        TimelineEventType.MARK,
-                                        Collections.emptyMap(),
-                                        now
-                                );
-                            }
-                        }
+            Map<String, SSIDDetails> details = nzyme.getDot11().findSSIDDetailsOfBSSIDs(horizon, bssids, taps);
+            Map<String, Integer> channels = nzyme.getDot11().findMostActiveChannelsOfSSIDs(horizon, bssids, taps);
+
+            Map<String, Map<TimelineEventType, TimelineEventEntry>> previous = timelines.findLatestEventsOfAddresses(
+                    organizationId, tenantId, TimelineAddressType.DOT11_SSID, ssidKeys, EVENT_TYPES
+            );
+
+            List<PendingTimelineEvent> events = Lists.newArrayList();
+            for (String ssidKey : ssidKeys) {
+                try(Timer.Context ignored2 = individualTimer.time()) {
+                    Map<TimelineEventType, TimelineEventEntry> previousEvents =
+                            previous.getOrDefault(ssidKey, Collections.emptyMap());
+                    int eventsWritten = 0;
+
+                    SSIDDetails ssidDetails = details.get(ssidKey);
+                    if (ssidDetails != null) {
+                        // Active channel.
+                        eventsWritten += addEvent(events, ssidKey, TimelineEventType.DOT11_SSID_ACTIVE_CHANNEL,
+                                activeChannelResolver.resolve(
+                                        Optional.ofNullable(channels.get(ssidKey)),
+                                        Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_SSID_ACTIVE_CHANNEL))
+                                )
+                        );
+
+                        // Rates
+                        eventsWritten += addEvent(events, ssidKey, TimelineEventType.DOT11_SSID_RATES_DIFF,
+                                ratesResolver.resolve(
+                                        ssidDetails,
+                                        Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_SSID_RATES_DIFF))
+                                )
+                        );
+
+                        // Security Protocols.
+                        eventsWritten += addEvent(events, ssidKey, TimelineEventType.DOT11_SSID_SECURITY_PROTOCOLS_DIFF,
+                                securityProtocolsResolver.resolve(
+                                        ssidDetails,
+                                        Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_SSID_SECURITY_PROTOCOLS_DIFF))
+                                )
+                        );
+
+                        // Security Settings
+                        eventsWritten += addEvent(events, ssidKey, TimelineEventType.DOT11_SSID_SECURITY_SUITES_DIFF,
+                                securitySuitesResolver.resolve(
+                                        ssidDetails,
+                                        Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_SSID_SECURITY_SUITES_DIFF))
+                                )
+                        );
+
+                        // Fingerprints
+                        eventsWritten += addEvent(events, ssidKey, TimelineEventType.DOT11_SSID_FINGERPRINTS_DIFF,
+                                fingerprintsResolver.resolve(
+                                        ssidDetails,
+                                        Optional.ofNullable(previousEvents.get(TimelineEventType.DOT11_SSID_FINGERPRINTS_DIFF))
+                                )
+                        );
                     }
+
+                    // No events, but mark that the SSID was seen.
+                    if (eventsWritten == 0) {
+                        events.add(PendingTimelineEvent.create(
+                                TimelineAddressType.DOT11_SSID,
+                                ssidKey,
+                                TimelineEventType.MARK,
+                                Collections.emptyMap()
+                        ));
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error while calculating timeline for 802.11 SSID [{}]. Skipping.", ssidKey, e);
                 }
             }
 
+            timelines.writeDot11TimelineEvents(organizationId, tenantId, events, now);
+
             return TaskProcessingResult.SUCCESS;
+        } catch (Exception e) {
+            LOG.error("Could not calculate 802.11 SSID timelines.", e);
+            return TaskProcessingResult.FAILURE;
         }
     }
 
+    private static int addEvent(List<PendingTimelineEvent> events,
+                                String ssidKey,
+                                TimelineEventType eventType,
+                                Optional<ResolverResult> result) {
+        if (result.isEmpty()) {
+            return 0;
+        }
+
+        events.add(PendingTimelineEvent.create(
+                TimelineAddressType.DOT11_SSID,
+                ssidKey,
+                eventType,
+                result.get().payload()
+        ));
+
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "802.11 SSID Timeline Calculation";
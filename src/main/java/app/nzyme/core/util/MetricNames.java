@@ -21,11 +21,17 @@ import app.nzyme.core.bluetooth.sig.BluetoothSigService;
 import app.nzyme.core.context.ContextService;
 import app.nzyme.core.crypto.Crypto;
 import app.nzyme.core.database.DatabaseImpl;
+import app.nzyme.core.detection.alerts.DetectionAlertService;
+import app.nzyme.core.distributed.messaging.postgres.PostgresMessageBusImpl;
+import app.nzyme.core.distributed.tasksqueue.postgres.PostgresTasksQueueImpl;
+import app.nzyme.core.ethernet.heavyhitters.HeavyHitters;
+import app.nzyme.core.events.EventActionDispatcher;
 import app.nzyme.core.integrations.geoip.GeoIpService;
 import app.nzyme.core.monitors.MonitorExecutionTaskHandler;
 import app.nzyme.core.ouis.OuiService;
 import app.nzyme.core.rest.interceptors.TapTableSizeInterceptor;
 import app.nzyme.core.security.authentication.PasswordHasher;
+import app.nzyme.core.tables.TableIngestQueue;
 import app.nzyme.core.tables.bluetooth.BluetoothTable;
 import app.nzyme.core.tables.ethernet.*;
 import app.nzyme.core.tables.dot11.Dot11Table;
@@ -42,15 +48,53 @@ public class MetricNames {
     public static final String BTSIG_CID_LOOKUP_TIMING = name(BluetoothSigService.class, "company-id-lookup-timing");
     public static final String BTSIG_SUUID_LOOKUP_TIMING = name(BluetoothSigService.class, "service-uuid-lookup-timing");
     public static final String DATABASE_SIZE = name(DatabaseImpl.class, "size");
+    public static final String DATABASE_POOL_ACTIVE = name(DatabaseImpl.class, "pool-active-connections");
+    public static final String DATABASE_POOL_IDLE = name(DatabaseImpl.class, "pool-idle-connections");
+    public static final String DATABASE_POOL_TOTAL = name(DatabaseImpl.class, "pool-total-connections");
+    public static final String DATABASE_POOL_WAITING = name(DatabaseImpl.class, "pool-waiting-threads");
+    public static final String DATABASE_POOL_ACQUIRE_TIMER = name(DatabaseImpl.class, "pool-acquire-timing");
+    public static final String DATABASE_POOL_TIMEOUTS = name(DatabaseImpl.class, "pool-acquire-timeouts");
+    public static final String DATABASE_PREPARED_STATEMENT_HITS = name(DatabaseImpl.class, "prepared-statement-hits");
+    public static final String DATABASE_PREPARED_STATEMENT_MISSES = name(DatabaseImpl.class, "prepared-statement-misses");
+    public static final String DATABASE_PREPARED_STATEMENT_HIT_RATIO = name(DatabaseImpl.class, "prepared-statement-hit-ratio");
     public static final String GEOIP_CACHE_SIZE = name(GeoIpService.class, "cache-size");
+    public static final String GEOIP_CACHE_HIT_COUNT = name(GeoIpService.class, "cache-hits");
+    public static final String GEOIP_CACHE_MISS_COUNT = name(GeoIpService.class, "cache-misses");
+    public static final String GEOIP_CACHE_HIT_RATE = name(GeoIpService.class, "cache-hit-rate");
     public static final String GEOIP_LOOKUP_TIMING_UNCACHED = name(GeoIpService.class, "lookup-timing-uncached");
     public static final String PGP_ENCRYPTION_TIMING = name(Crypto.class, "encryption-timing");
     public static final String PGP_DECRYPTION_TIMING = name(Crypto.class, "decryption-timing");
     public static final String PASSWORD_HASHING_TIMER = name(PasswordHasher.class, "hashing-timer");
     public static final String TAP_TABLE_REQUEST_SIZES = name(TapTableSizeInterceptor.class, "request_size");
+    public static final String TAP_TABLE_REQUEST_WIRE_SIZES = name(TapTableSizeInterceptor.class, "request_wire_size");
+    public static final String TAP_TABLE_DECOMPRESSED_BYTES = name(TapTableSizeInterceptor.class, "decompressed-bytes");
+    public static final String TAP_TABLE_WIRE_BYTES = name(TapTableSizeInterceptor.class, "wire-bytes");
     public static final String CONTEXT_MAC_CACHE_SIZE = name(ContextService.class, "mac-cache-size");
     public static final String CONTEXT_MAC_LOOKUP_TIMING = name(ContextService.class, "mac-lookup-timing");
 
+    public static final String MESSAGE_BUS_DELIVERY_LATENCY_TIMER = name(PostgresMessageBusImpl.class, "delivery-latency");
+    public static final String MESSAGE_BUS_PUSH_WAKEUPS = name(PostgresMessageBusImpl.class, "push-wakeups");
+    public static final String MESSAGE_BUS_HANDLER_TIMER_BASE = name(PostgresMessageBusImpl.class, "handler-timing-");
+
+    public static final String TASKS_QUEUE_DEPTH_BASE = name(PostgresTasksQueueImpl.class, "queue-depth-");
+    public static final String TASKS_QUEUE_WAIT_TIMER_BASE = name(PostgresTasksQueueImpl.class, "wait-timing-");
+    public static final String TASKS_QUEUE_LEASE_EXPIRATIONS = name(PostgresTasksQueueImpl.class, "lease-expirations");
+
+    public static final String EVENT_ACTIONS_DELIVERY_LATENCY_TIMER = name(EventActionDispatcher.class, "delivery-latency");
+    public static final String EVENT_ACTIONS_EXECUTION_TIMER = name(EventActionDispatcher.class, "execution-timing");
+    public static final String EVENT_ACTIONS_FAILURES = name(EventActionDispatcher.class, "failures");
+    public static final String EVENT_ACTIONS_ABANDONED = name(EventActionDispatcher.class, "abandoned");
+    public static final String EVENT_ACTIONS_REJECTED = name(EventActionDispatcher.class, "rejected");
+    public static final String EVENT_ACTIONS_QUEUE_DEPTH = name(EventActionDispatcher.class, "queue-depth");
+
+    public static final String DETECTION_ALERTS_RAISE_TIMER = name(DetectionAlertService.class, "raise-timing");
+    public static final String DETECTION_ALERTS_COLLAPSED_RAISES = name(DetectionAlertService.class, "collapsed-raises");
+
+    public static final String TABLES_INGEST_QUEUE_DEPTH_BASE = name(TableIngestQueue.class, "queue-depth-");
+    public static final String TABLES_INGEST_QUEUE_WAIT_TIMER_BASE = name(TableIngestQueue.class, "queue-wait-timing-");
+    public static final String TABLES_INGEST_PROCESSING_TIMER_BASE = name(TableIngestQueue.class, "processing-timing-");
+    public static final String TABLES_INGEST_REJECTED_METER_BASE = name(TableIngestQueue.class, "rejected-");
+
     public static final String DOT11_TOTAL_REPORT_PROCESSING_TIMER = name(Dot11Table.class, "total-report-processing-timing");
     public static final String DOT11_BSSID_REPORT_PROCESSING_TIMER = name(Dot11Table.class, "bssid-report-processing-timing");
     public static final String DOT11_CLIENTS_REPORT_PROCESSING_TIMER = name(Dot11Table.class, "clients-report-processing-timing");
@@ -73,6 +117,16 @@ public class MetricNames {
     public static final String TCP_SESSION_DISCOVERY_QUERY_TIMER = name(TCPTable.class, "session-discovery-query-timing");
     public static final String TCP_ASSET_REGISTRATION_PROCESSING_TIMER = name(TCPTable.class, "asset-registration-processing-timing");
 
+    public static final String L4_SESSION_CACHE_SIZE = name(L4SessionCache.class, "size");
+    public static final String L4_SESSION_CACHE_HITS = name(L4SessionCache.class, "hits");
+    public static final String L4_SESSION_CACHE_MISSES = name(L4SessionCache.class, "misses");
+    public static final String L4_SESSION_CACHE_HIT_RATIO = name(L4SessionCache.class, "hit-ratio");
+    public static final String L4_SESSION_CACHE_FLUSH_TIMER = name(L4SessionCache.class, "flush-timing");
+
+    public static final String HEAVY_HITTERS_BUCKETS = name(HeavyHitters.class, "buckets");
+    public static final String HEAVY_HITTERS_FLUSH_TIMER = name(HeavyHitters.class, "flush-timing");
+    public static final String HEAVY_HITTERS_LATE_RECORDS_DROPPED = name(HeavyHitters.class, "late-records-dropped");
+
     public static final String UDP_TOTAL_REPORT_PROCESSING_TIMER = name(UDPTable.class, "total-report-processing-timing");
     public static final String UDP_CONVERSATIONS_REPORT_PROCESSING_TIMER = name(UDPTable.class, "conversations-report-processing-timing");
     public static final String UDP_CONVERSATION_DISCOVERY_QUERY_TIMER = name(UDPTable.class, "conversation-discovery-query-timing");
@@ -20,9 +20,7 @@ package app.nzyme.core.util;
 import app.nzyme.core.NzymeNode;
 import app.nzyme.core.floorplans.db.TenantLocationFloorEntry;
 import app.nzyme.core.taps.Tap;
-import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
-import com.google.common.hash.Hashing;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
 import org.apache.logging.log4j.LogManager;
@@ -34,9 +32,13 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -45,7 +47,19 @@ public class Tools {
     private static final Logger LOG = LogManager.getLogger(Tools.class);
 
     private static final Pattern SAFE_ID = Pattern.compile("^[a-zA-Z0-9-_]+$");
-    private static final Pattern VALID_MAC = Pattern.compile("^[a-fA-F0-9]{2}:[a-fA-F0-9]{2}:[a-fA-F0-9]{2}:[a-fA-F0-9]{2}:[a-fA-F0-9]{2}:[a-fA-F0-9]{2}$");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Character types removed from SSIDs: All of \p{C}, line and paragraph separators.
+    private static final int SSID_REMOVED_TYPES = (1 << Character.CONTROL)
+            | (1 << Character.FORMAT)
+            | (1 << Character.PRIVATE_USE)
+            | (1 << Character.SURROGATE)
+            | (1 << Character.UNASSIGNED)
+            | (1 << Character.LINE_SEPARATOR)
+            | (1 << Character.PARAGRAPH_SEPARATOR);
+
+    private static final ThreadLocal<L4KeyHasher> L4_KEY_HASHER = ThreadLocal.withInitial(L4KeyHasher::new);
 
     public static boolean isSafeNodeName(String x) {
         if (x == null) {
@@ -64,8 +78,22 @@ public class Tools {
             return false;
         }
 
-        Matcher m = VALID_MAC.matcher(addr);
-        return m.find();
+        if (addr.length() != 17) {
+            return false;
+        }
+
+        for (int i = 0; i < 17; i++) {
+            char c = addr.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return false;
+                }
+            } else if (hexDigit(c) < 0) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     public static String durationToHumanReadable(Duration duration) {
@@ -88,14 +116,80 @@ public class Tools {
         return duration.getStandardDays() + " days";
     }
 
+    /**
+     * Removes NULL bytes, tabs, invisible control characters, unused code points and line/paragraph separators,
+     * collapses multiple spaces in succession and trims. Returns the passed string if there is nothing to remove.
+     */
     public static String sanitizeSSID(@NotNull String ssid) {
-        return ssid.replaceAll("\0", "") // NULL bytes
-                .replaceAll("\\p{C}", "") // invisible control characters and unused code points.
-                .replaceAll("\\p{Zl}", "") // line separator character U+2028
-                .replaceAll("\\p{Zp}", "") // paragraph separator character U+2029
-                .replaceAll("\t*", "") // Tabs
-                .replaceAll(" +", " ") // Multiple whitespaces in succession
-                .trim();
+        // NULL bytes go first. Characters around them can form a single code point once they are removed.
+        if (ssid.indexOf('\0') >= 0) {
+            ssid = ssid.replace("\0", "");
+        }
+
+        if (isSanitizedSSID(ssid)) {
+            return ssid;
+        }
+
+        StringBuilder sb = new StringBuilder(ssid.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < ssid.length()) {
+            int cp = ssid.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isRemovedFromSSID(cp)) {
+                continue;
+            }
+
+            if (cp == ' ') {
+                // Only written if followed by something that is kept. Collapses runs and trims.
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+
+            sb.appendCodePoint(cp);
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isSanitizedSSID(String ssid) {
+        int length = ssid.length();
+        if (length == 0) {
+            return true;
+        }
+
+        if (ssid.charAt(0) == ' ' || ssid.charAt(length - 1) == ' ') {
+            return false;
+        }
+
+        char previous = 0;
+        int i = 0;
+        while (i < length) {
+            int cp = ssid.codePointAt(i);
+
+            if (isRemovedFromSSID(cp) || (cp == ' ' && previous == ' ')) {
+                return false;
+            }
+
+            previous = ssid.charAt(i);
+            i += Character.charCount(cp);
+        }
+
+        return true;
+    }
+
+    private static boolean isRemovedFromSSID(int codePoint) {
+        if (codePoint >= 0x20 && codePoint < 0x7F) {
+            return false;
+        }
+
+        return ((1 << Character.getType(codePoint)) & SSID_REMOVED_TYPES) != 0;
     }
 
     public static boolean isTapActive(DateTime lastReport) {
@@ -108,18 +202,24 @@ public class Tools {
         return bd.floatValue();
     }
 
+    /**
+     * Hex SHA-256 of the concatenated session attributes. Keys are persisted, so the output must never change. Uses
+     * per-thread digest and buffers instead of building the concatenated string.
+     */
     public static String buildL4Key(DateTime sessionEstablishedAt,
                                     String sourceAddress,
                                     String destinationAddress,
                                     int sourcePort,
                                     int destinationPort) {
-        return Hashing.sha256()
-                .hashString(sessionEstablishedAt.getMillis()
-                        + sourceAddress
-                        + destinationAddress
-                        + sourcePort
-                        + destinationPort, Charsets.UTF_8)
-                .toString();
+        L4KeyHasher hasher = L4_KEY_HASHER.get();
+        hasher.reset();
+        hasher.putLong(sessionEstablishedAt.getMillis());
+        hasher.putString(sourceAddress);
+        hasher.putString(destinationAddress);
+        hasher.putLong(sourcePort);
+        hasher.putLong(destinationPort);
+
+        return hasher.hexDigest();
     }
 
     public static InetAddress stringtoInetAddress(String address) {
@@ -132,23 +232,39 @@ public class Tools {
     }
 
     public static boolean macAddressIsRandomized(String mac) {
-        if (mac == null || mac.trim().isEmpty()) {
+        if (mac == null || mac.isBlank()) {
             return false;
         }
 
-        if (mac.length() != 17 || !mac.contains(":")) {
+        if (mac.length() != 17
+                || mac.charAt(2) != ':'
+                || hexDigit(mac.charAt(0)) < 0
+                || hexDigit(mac.charAt(1)) < 0) {
             LOG.warn("Passed invalid MAC address [{}]", mac);
             return false;
         }
 
-        // Extract the first octet of the MAC address
-        String firstOctet = mac.split(":")[0];
+        /*
+         * Check if the second least significant bit of the first octet is 1 (i.e., if the address is locally
+         * administered). That bit is in the second hex digit, so there is no need to parse the whole octet.
+         */
+        return (hexDigit(mac.charAt(1)) & 0b00000010) != 0;
+    }
 
-        // Convert the first octet to an integer
-        int firstOctetInt = Integer.parseInt(firstOctet, 16);
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
 
-        // Check if the second least significant bit is 1 (i.e., if the address is locally administered)
-        return (firstOctetInt & 0b00000010) != 0;
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        return -1;
     }
 
     public static List<UUID> getTapUuids(NzymeNode nzyme, @Nullable UUID organizationId, @Nullable UUID tenantId) {
@@ -174,4 +290,96 @@ public class Tools {
         }
     }
 
+    /**
+     * Reusable SHA-256 state for {@link #buildL4Key(DateTime, String, String, int, int)}. Not thread-safe.
+     */
+    private static final class L4KeyHasher {
+
+        private final MessageDigest digest;
+        private final byte[] hash = new byte[32];
+        private final char[] hex = new char[64];
+
+        private byte[] input = new byte[128];
+        private int position = 0;
+
+        private L4KeyHasher() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every JVM is required to support SHA-256.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void reset() {
+            position = 0;
+        }
+
+        private void putLong(long value) {
+            ensureCapacity(20);
+
+            if (value < 0) {
+                input[position++] = '-';
+            } else {
+                // Work with negative values to also cover Long.MIN_VALUE.
+                value = -value;
+            }
+
+            int digits = 1;
+            for (long v = value / 10; v != 0; v /= 10) {
+                digits++;
+            }
+
+            for (int i = position + digits - 1; i >= position; i--) {
+                input[i] = (byte) ('0' - (value % 10));
+                value /= 10;
+            }
+
+            position += digits;
+        }
+
+        private void putString(@Nullable String value) {
+            // Same as string concatenation.
+            String s = String.valueOf(value);
+
+            ensureCapacity(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    byte[] remainder = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                    ensureCapacity(remainder.length);
+                    System.arraycopy(remainder, 0, input, position, remainder.length);
+                    position += remainder.length;
+                    return;
+                }
+
+                input[position++] = (byte) c;
+            }
+        }
+
+        private String hexDigest() {
+            digest.update(input, 0, position);
+
+            try {
+                digest.digest(hash, 0, hash.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+                hex[i * 2 + 1] = HEX[hash[i] & 0x0F];
+            }
+
+            return new String(hex);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (position + additional > input.length) {
+                input = Arrays.copyOf(input, Math.max(input.length * 2, position + additional));
+            }
+        }
+
+    }
+
 }
@@ -6,10 +6,17 @@ import org.apache.commons.lang3.math.NumberUtils;
 
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
+/*
+ * Generated SQL only depends on the filtered fields and operators, never on the filter values, and bind names are
+ * derived from the position of a filter. Repeated queries with the same filters produce the same SQL text and can
+ * reuse the server-side prepared statement and plan of the connection.
+ */
 public class FilterSql {
 
+    private static final String WHERE_BIND_PREFIX = "filter_w_";
+    private static final String HAVING_BIND_PREFIX = "filter_h_";
+
     public static FilterSqlFragment generate(Filters filters, SqlFilterProvider filterProvider) {
         String whereSql;
         String havingSql;
@@ -18,17 +25,19 @@ public class FilterSql {
             whereSql = " ";
             havingSql = " ";
         } else {
-            // Build lists of all filtered fields that require a WHERE clause, same for HAVING clause.
-            Map<String, List<Filter>> whereFilteredFields = Maps.newHashMap();
-            Map<String, List<Filter>> havingFilteredFields = Maps.newHashMap();
+            /*
+             * Build lists of all filtered fields that require a WHERE clause, same for HAVING clause. Sorted by field
+             * name so that the order in which filters were passed does not change the SQL.
+             */
+            Map<String, List<Filter>> whereFilteredFields = Maps.newTreeMap();
+            Map<String, List<Filter>> havingFilteredFields = Maps.newTreeMap();
 
             for (Map.Entry<String, List<Filter>> filteredField : filters.filters().entrySet()) {
                 String fieldName = filteredField.getKey();
 
                 for (Filter filter : filteredField.getValue()) {
-                    String bindId = UUID.randomUUID().toString().replace("-", "_");
-
-                    GeneratedSql generatedSql = filterProvider.buildSql(bindId, fieldName, filter.operator());
+                    // Only used to find out which clause the filter goes into.
+                    GeneratedSql generatedSql = filterProvider.buildSql("classify", fieldName, filter.operator());
 
                     if (!generatedSql.where().isEmpty()) {
                         whereFilteredFields.put(fieldName, filteredField.getValue());
@@ -43,7 +52,9 @@ public class FilterSql {
             if (whereFilteredFields.isEmpty()) {
                 whereSql = " ";
             } else {
-                GeneratedFilterTypeSql generated = generateFilterTypeSql(whereFilteredFields, filterProvider);
+                GeneratedFilterTypeSql generated = generateFilterTypeSql(
+                        whereFilteredFields, filterProvider, WHERE_BIND_PREFIX
+                );
                 whereSql = generated.sql();
                 bindings.putAll(generated.bindings());
             }
@@ -51,7 +62,9 @@ public class FilterSql {
             if (havingFilteredFields.isEmpty()) {
                 havingSql = " ";
             } else {
-                GeneratedFilterTypeSql generated = generateFilterTypeSql(havingFilteredFields, filterProvider);
+                GeneratedFilterTypeSql generated = generateFilterTypeSql(
+                        havingFilteredFields, filterProvider, HAVING_BIND_PREFIX
+                );
                 havingSql = generated.sql();
                 bindings.putAll(generated.bindings());
             }
@@ -60,7 +73,9 @@ public class FilterSql {
         return FilterSqlFragment.create(whereSql, havingSql, bindings);
     }
 
-    private static GeneratedFilterTypeSql generateFilterTypeSql(Map<String, List<Filter>> filters, SqlFilterProvider filterProvider) {
+    private static GeneratedFilterTypeSql generateFilterTypeSql(Map<String, List<Filter>> filters,
+                                                                SqlFilterProvider filterProvider,
+                                                                String bindPrefix) {
         Map<String, Object> bindings = Maps.newHashMap();
 
         if (filters.isEmpty()) {
@@ -76,7 +91,7 @@ public class FilterSql {
 
             int x = 0;
             for (Filter filter : filteredField.getValue()) {
-                String bindId = UUID.randomUUID().toString().replace("-", "_");
+                String bindId = bindPrefix + i + "_" + x;
                 bindings.put(bindId, filter.value());
 
                 GeneratedSql generatedSql = filterProvider.buildSql(bindId, fieldName, filter.operator());
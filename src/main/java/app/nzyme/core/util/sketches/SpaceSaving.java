@@ -0,0 +1,207 @@
+package app.nzyme.core.util.sketches;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import jakarta.annotation.Nullable;
+
+import java.util.*;
+
+/**
+ * Weighted Space-Saving summary of the heaviest keys of a stream. Tracks at most {@code capacity} keys. When a key
+ * that is not tracked arrives while the summary is full, it replaces the lightest tracked key and inherits its
+ * weight as error.
+ *
+ * Guarantees: The weight of every tracked key is an upper bound of its true weight and overestimates it by at most
+ * its error. Every key that is not tracked has a true weight of at most {@link #minimumWeight()}, and the error of
+ * any key is at most {@code totalWeight / capacity}. The auxiliary values are only summed up while a key is tracked
+ * and are lower bounds.
+ *
+ * Every entry can carry an attachment (the most recently offered one wins) and a small cardinality estimator of
+ * members that were seen with the key. Not thread-safe.
+ *
+ * @param <A> Type of the attachment.
+ */
+public class SpaceSaving<A> {
+
+    private static final Comparator<Entry<?>> BY_WEIGHT = Comparator
+            .<Entry<?>>comparingLong(e -> e.weight)
+            .thenComparing(e -> e.key);
+
+    private final int capacity;
+    private final int memberPrecision;
+
+    private final Map<String, Entry<A>> entries;
+    private final TreeSet<Entry<A>> byWeight;
+
+    private long totalWeight = 0;
+
+    /**
+     * @param capacity Maximum number of tracked keys.
+     * @param memberPrecision Precision of the per-key {@link HyperLogLog} of members.
+     */
+    public SpaceSaving(int capacity, int memberPrecision) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+
+        this.capacity = capacity;
+        this.memberPrecision = memberPrecision;
+        this.entries = Maps.newHashMapWithExpectedSize(capacity);
+        this.byWeight = new TreeSet<>(BY_WEIGHT);
+    }
+
+    /**
+     * @param weight Weight to add to the key. Offers with a weight of zero or less are ignored.
+     * @param attachment Replaces the attachment of the key if not null.
+     * @param member Added to the members of the key if not null.
+     */
+    public void offer(String key,
+                      long weight,
+                      long value1,
+                      long value2,
+                      @Nullable A attachment,
+                      @Nullable String member) {
+        if (weight <= 0) {
+            return;
+        }
+
+        totalWeight += weight;
+
+        Entry<A> entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() < capacity) {
+                entry = new Entry<>(key, 0);
+            } else {
+                Entry<A> lightest = byWeight.pollFirst();
+                entries.remove(lightest.key);
+                entry = new Entry<>(key, lightest.weight);
+            }
+
+            entries.put(key, entry);
+        } else {
+            byWeight.remove(entry);
+        }
+
+        entry.weight += weight;
+        entry.value1 += value1;
+        entry.value2 += value2;
+
+        if (attachment != null) {
+            entry.attachment = attachment;
+        }
+
+        if (member != null) {
+            if (entry.members == null) {
+                entry.members = new HyperLogLog(memberPrecision);
+            }
+            entry.members.offer(member);
+        }
+
+        byWeight.add(entry);
+    }
+
+    /**
+     * Copies of the heaviest tracked entries, heaviest first.
+     */
+    public List<Entry<A>> top(int limit) {
+        List<Entry<A>> result = Lists.newArrayListWithCapacity(Math.min(limit, entries.size()));
+
+        Iterator<Entry<A>> it = byWeight.descendingIterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next().copy());
+        }
+
+        return result;
+    }
+
+    /**
+     * Upper bound of the true weight of every key that is not tracked.
+     */
+    public long minimumWeight() {
+        if (entries.size() < capacity) {
+            return 0;
+        }
+
+        return byWeight.first().weight;
+    }
+
+    public long totalWeight() {
+        return totalWeight;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public static final class Entry<A> {
+
+        private final String key;
+        private final long error;
+
+        private long weight;
+        private long value1;
+        private long value2;
+
+        @Nullable
+        private A attachment;
+
+        @Nullable
+        private HyperLogLog members;
+
+        private Entry(String key, long error) {
+            this.key = key;
+            this.error = error;
+            this.weight = error;
+        }
+
+        private Entry<A> copy() {
+            Entry<A> copy = new Entry<>(key, error);
+            copy.weight = weight;
+            copy.value1 = value1;
+            copy.value2 = value2;
+            copy.attachment = attachment;
+
+            if (members != null) {
+                copy.members = HyperLogLog.fromByteArray(members.toByteArray());
+            }
+
+            return copy;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public long weight() {
+            return weight;
+        }
+
+        public long error() {
+            return error;
+        }
+
+        public long value1() {
+            return value1;
+        }
+
+        public long value2() {
+            return value2;
+        }
+
+        @Nullable
+        public A attachment() {
+            return attachment;
+        }
+
+        @Nullable
+        public HyperLogLog members() {
+            return members;
+        }
+
+    }
+
+}
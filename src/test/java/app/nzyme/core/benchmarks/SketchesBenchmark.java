@@ -0,0 +1,88 @@
+package app.nzyme.core.benchmarks;
+
+import app.nzyme.core.util.sketches.HyperLogLog;
+import app.nzyme.core.util.sketches.SpaceSaving;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sketches that are updated for every L4 session and DNS pair of every tap report. Sizes match the heavy hitters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SketchesBenchmark {
+
+    private static final int KEYS = 16384;
+
+    private String[] keys;
+    private long[] weights;
+    private int position = 0;
+
+    private HyperLogLog distinctKeys;
+    private HyperLogLog members;
+    private SpaceSaving<Void> heavyHitters;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        // Skewed keys: Few heavy hitters, long tail.
+        keys = new String[KEYS];
+        weights = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            int id = (int) Math.floor(Math.pow(random.nextDouble(), 3) * 65536);
+            keys[i] = "10." + (id >> 8) + "." + (id & 0xFF) + ".1";
+            weights[i] = 64 + random.nextInt(1500);
+        }
+
+        distinctKeys = new HyperLogLog(12);
+        members = new HyperLogLog(8);
+        heavyHitters = new SpaceSaving<>(2048, 8);
+
+        // Start from full, steady-state summaries.
+        for (int i = 0; i < KEYS; i++) {
+            distinctKeys.offer(keys[i]);
+            members.offer(keys[i]);
+            heavyHitters.offer(keys[i], weights[i], weights[i], 0, null, null);
+        }
+    }
+
+    private int next() {
+        position = (position + 1) & (KEYS - 1);
+        return position;
+    }
+
+    @Benchmark
+    public void hyperLogLogOffer() {
+        distinctKeys.offer(keys[next()]);
+    }
+
+    @Benchmark
+    public long hyperLogLogEstimate() {
+        return distinctKeys.estimate();
+    }
+
+    @Benchmark
+    public long hyperLogLogEstimateMembers() {
+        return members.estimate();
+    }
+
+    @Benchmark
+    public void spaceSavingOffer() {
+        int i = next();
+        heavyHitters.offer(keys[i], weights[i], weights[i], 0, null, null);
+    }
+
+    @Benchmark
+    public void spaceSavingOfferWithMember() {
+        int i = next();
+        heavyHitters.offer(keys[i], weights[i], weights[i], 0, null, keys[(i + 1) & (KEYS - 1)]);
+    }
+
+}
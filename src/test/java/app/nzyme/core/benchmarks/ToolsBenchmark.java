@@ -0,0 +1,96 @@
+package app.nzyme.core.benchmarks;
+
+import app.nzyme.core.util.Tools;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilities that run for every record of every tap report.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToolsBenchmark {
+
+    private String cleanSSID;
+    private String dirtySSID;
+    private String unicodeSSID;
+
+    private String macAddress;
+    private String randomizedMacAddress;
+    private String invalidMacAddress;
+
+    private DateTime sessionEstablishedAt;
+    private String sourceAddressV4;
+    private String destinationAddressV4;
+    private String sourceAddressV6;
+    private String destinationAddressV6;
+
+    @Setup
+    public void setup() {
+        cleanSSID = "Lennart's Home Network 5GHz";
+        dirtySSID = "  Lennart's\t Home\0\0  Network  5GHz\u200B  ";
+        unicodeSSID = "Café Zürich 😀 Gäste";
+
+        macAddress = "18:7C:0B:D7:14:38";
+        randomizedMacAddress = "DA:A1:19:00:00:01";
+        invalidMacAddress = "18-7C-0B-D7-14-38";
+
+        sessionEstablishedAt = new DateTime(1700000000123L);
+        sourceAddressV4 = "192.168.178.42";
+        destinationAddressV4 = "142.250.185.78";
+        sourceAddressV6 = "2001:db8:85a3::8a2e:370:7334";
+        destinationAddressV6 = "2a00:1450:4001:82b::200e";
+    }
+
+    @Benchmark
+    public String sanitizeCleanSSID() {
+        return Tools.sanitizeSSID(cleanSSID);
+    }
+
+    @Benchmark
+    public String sanitizeDirtySSID() {
+        return Tools.sanitizeSSID(dirtySSID);
+    }
+
+    @Benchmark
+    public String sanitizeUnicodeSSID() {
+        return Tools.sanitizeSSID(unicodeSSID);
+    }
+
+    @Benchmark
+    public boolean isValidMacAddress() {
+        return Tools.isValidMacAddress(macAddress);
+    }
+
+    @Benchmark
+    public boolean isValidMacAddressInvalid() {
+        return Tools.isValidMacAddress(invalidMacAddress);
+    }
+
+    @Benchmark
+    public boolean macAddressIsRandomized() {
+        return Tools.macAddressIsRandomized(macAddress);
+    }
+
+    @Benchmark
+    public boolean macAddressIsRandomizedRandomized() {
+        return Tools.macAddressIsRandomized(randomizedMacAddress);
+    }
+
+    @Benchmark
+    public String buildL4KeyV4() {
+        return Tools.buildL4Key(sessionEstablishedAt, sourceAddressV4, destinationAddressV4, 52311, 443);
+    }
+
+    @Benchmark
+    public String buildL4KeyV6() {
+        return Tools.buildL4Key(sessionEstablishedAt, sourceAddressV6, destinationAddressV6, 52311, 443);
+    }
+
+}
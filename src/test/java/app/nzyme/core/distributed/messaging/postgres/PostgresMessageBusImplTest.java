@@ -2,6 +2,7 @@ package app.nzyme.core.distributed.messaging.postgres;
 
 import app.nzyme.core.MockNzyme;
 import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
 import app.nzyme.plugin.Database;
 import app.nzyme.plugin.distributed.messaging.*;
 import org.joda.time.DateTime;
@@ -10,6 +11,7 @@ import org.testng.annotations.Test;
 
 import java.util.Collections;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -73,7 +75,7 @@ public class PostgresMessageBusImplTest {
         );
         assertEquals(notNewCount, 0);
 
-        ((PostgresMessageBusImpl) nzyme.getMessageBus()).poll();
+        pollAndWait(nzyme);
 
         assertEquals(counter.get(), 1);
 
@@ -127,7 +129,7 @@ public class PostgresMessageBusImplTest {
         );
         assertEquals(notNewCount, 0);
 
-        ((PostgresMessageBusImpl) nzyme.getMessageBus()).poll();
+        pollAndWait(nzyme);
 
         assertEquals(counter.get(), 1);
 
@@ -240,7 +242,7 @@ public class PostgresMessageBusImplTest {
         );
         assertEquals(notNewCount, 0);
 
-        ((PostgresMessageBusImpl) nzyme.getMessageBus()).poll();
+        pollAndWait(nzyme);
 
         assertEquals(counter.get(), 1);
 
@@ -266,11 +268,115 @@ public class PostgresMessageBusImplTest {
 
         assertEquals(counter.get(), 1);
 
-        ((PostgresMessageBusImpl) nzyme.getMessageBus()).poll();
+        pollAndWait(nzyme);
 
         assertEquals(counter.get(), 1);
     }
 
+    @Test
+    public void testSlowHandlerDoesNotBlockPollingOrOtherTypes() throws InterruptedException {
+        NzymeNode nzyme = new MockNzyme(Integer.MAX_VALUE, TimeUnit.DAYS);
+
+        CountDownLatch release = new CountDownLatch(1);
+        nzyme.getMessageBus().onMessageReceived(MessageType.CHECK_RESTART_HTTP_SERVER, new MessageHandler() {
+            @Override
+            public MessageProcessingResult handle(ReceivedMessage message) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return MessageProcessingResult.SUCCESS;
+            }
+
+            @Override
+            public String getName() {
+                return "slow";
+            }
+        });
+
+        CountDownLatch fastHandled = new CountDownLatch(1);
+        nzyme.getMessageBus().onMessageReceived(MessageType.INVALIDATE_CACHE, new MessageHandler() {
+            @Override
+            public MessageProcessingResult handle(ReceivedMessage message) {
+                fastHandled.countDown();
+                return MessageProcessingResult.SUCCESS;
+            }
+
+            @Override
+            public String getName() {
+                return "fast";
+            }
+        });
+
+        for (MessageType type : new MessageType[]{MessageType.CHECK_RESTART_HTTP_SERVER, MessageType.INVALIDATE_CACHE}) {
+            nzyme.getMessageBus().send(Message.create(
+                    nzyme.getNodeManager().getLocalNodeId(),
+                    type,
+                    Collections.emptyMap(),
+                    false)
+            );
+        }
+
+        PostgresMessageBusImpl bus = (PostgresMessageBusImpl) nzyme.getMessageBus();
+
+        // Returns while the slow handler is still running.
+        bus.poll();
+
+        assertTrue(fastHandled.await(10, TimeUnit.SECONDS));
+        assertFalse(bus.awaitDispatched(100, TimeUnit.MILLISECONDS));
+
+        // The fast message got its result without waiting for the slow one.
+        assertEquals(messageBusMessagesWithStatusCount(nzyme.getDatabase(), "PROCESSED_SUCCESS"), 1L);
+        assertEquals(messageBusMessagesWithStatusCount(nzyme.getDatabase(), "ACK"), 1L);
+
+        release.countDown();
+        assertTrue(bus.awaitDispatched(10, TimeUnit.SECONDS));
+        assertEquals(messageBusMessagesWithStatusCount(nzyme.getDatabase(), "PROCESSED_SUCCESS"), 2L);
+
+        nzyme.shutdown();
+    }
+
+    @Test
+    public void testShutdownStopsListener() throws InterruptedException {
+        NzymeNode nzyme = new MockNzyme(Integer.MAX_VALUE, TimeUnit.DAYS);
+
+        PostgresMessageBusImpl bus = new PostgresMessageBusImpl(nzyme);
+        bus.initialize(Integer.MAX_VALUE, TimeUnit.DAYS, true);
+
+        // The listener wakes up the poller once it is connected.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (nzyme.getMetrics().meter(MetricNames.MESSAGE_BUS_PUSH_WAKEUPS).getCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Listener did not connect in time.");
+            Thread.sleep(50);
+        }
+
+        bus.shutdown();
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("psql-bus-listener")) {
+                assertFalse(thread.isAlive());
+            }
+        }
+
+        nzyme.shutdown();
+    }
+
+    private void pollAndWait(NzymeNode nzyme) throws InterruptedException {
+        PostgresMessageBusImpl bus = (PostgresMessageBusImpl) nzyme.getMessageBus();
+        bus.poll();
+        assertTrue(bus.awaitDispatched(10, TimeUnit.SECONDS));
+    }
+
+    private long messageBusMessagesWithStatusCount(Database db, String status) {
+        return db.withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM message_bus_messages WHERE status = :status")
+                        .bind("status", status)
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
     private long messageBusMessagesTotalCount(Database db) {
         return db.withHandle(handle ->
                 handle.createQuery("SELECT COUNT(*) FROM message_bus_messages")
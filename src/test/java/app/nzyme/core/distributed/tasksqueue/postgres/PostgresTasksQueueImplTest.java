@@ -282,6 +282,63 @@ public class PostgresTasksQueueImplTest {
         assertEquals(calls2.get(), 1);
     }
 
+    @Test
+    public void testPollClaimsBoundedBatchAndLeavesRestForOtherNodes() throws IOException, InterruptedException {
+        MockNzyme nzyme = new MockNzyme(Integer.MAX_VALUE, TimeUnit.DAYS);
+        PostgresTasksQueueImpl tq = (PostgresTasksQueueImpl) nzyme.getTasksQueue();
+        assertEquals(countTotalTasks(nzyme), 0);
+
+        cleanDataFolder(); // This makes nzyme generate new node UUID.
+
+        MockNzyme nzyme2 = new MockNzyme(Integer.MAX_VALUE, TimeUnit.DAYS);
+        PostgresTasksQueueImpl tq2 = (PostgresTasksQueueImpl) nzyme2.getTasksQueue();
+
+        AtomicInteger calls1 = new AtomicInteger(0);
+        tq.onMessageReceived(TaskType.TEST, new TaskHandler() {
+            @Override
+            public TaskProcessingResult handle(ReceivedTask task) {
+                calls1.incrementAndGet();
+                return TaskProcessingResult.SUCCESS;
+            }
+
+            @Override
+            public String getName() {
+                return null;
+            }
+        });
+
+        AtomicInteger calls2 = new AtomicInteger(0);
+        tq2.onMessageReceived(TaskType.TEST, new TaskHandler() {
+            @Override
+            public TaskProcessingResult handle(ReceivedTask task) {
+                calls2.incrementAndGet();
+                return TaskProcessingResult.SUCCESS;
+            }
+
+            @Override
+            public String getName() {
+                return null;
+            }
+        });
+
+        for (int i = 0; i < 6; i++) {
+            tq.publish(Task.create(
+                    TaskType.TEST,
+                    true,
+                    Collections.emptyMap(),
+                    true
+            ));
+        }
+
+        assertEquals(countTotalTasks(nzyme), 6);
+
+        tq.poll();
+        tq2.poll();
+        Thread.sleep(250);
+        assertEquals(calls1.get(), 4);
+        assertEquals(calls2.get(), 2);
+    }
+
     @Test
     public void testRetentionCleaning() {
         MockNzyme nzyme = new MockNzyme(Integer.MAX_VALUE, TimeUnit.DAYS);
@@ -0,0 +1,159 @@
+package app.nzyme.core.ethernet.heavyhitters;
+
+import app.nzyme.core.MockNzyme;
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
+import app.nzyme.core.util.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class HeavyHittersTest {
+
+    private static final HeavyHitterAddress SERVER = HeavyHitterAddress.create(
+            "10.0.0.1", 53, null, true, false, false
+    );
+
+    private NzymeNode nzyme;
+    private HeavyHitters heavyHitters;
+
+    @BeforeMethod
+    public void setUp() {
+        nzyme = new MockNzyme();
+        heavyHitters = new HeavyHitters(nzyme);
+
+        nzyme.getDatabase().useHandle(handle -> {
+            handle.execute("TRUNCATE heavy_hitter_buckets CASCADE");
+            handle.execute("TRUNCATE heavy_hitter_gaps");
+        });
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        heavyHitters.shutdown();
+        nzyme.shutdown();
+    }
+
+    @Test
+    public void testCoversRangeSinceFirstBucket() {
+        UUID tap = UUID.randomUUID();
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+
+        assertFalse(heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, range(now.minusHours(8), now), List.of(tap)));
+
+        writeBucket(tap, now.minusHours(10));
+
+        assertTrue(heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, range(now.minusHours(8), now), List.of(tap)));
+        assertFalse(heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, range(now.minusHours(12), now), List.of(tap)));
+        assertFalse(heavyHitters.covers(HeavyHitterDimension.L4_SOURCE_MAC, range(now.minusHours(8), now), List.of(tap)));
+    }
+
+    @Test
+    public void testLateRecordsAreDroppedAndMarkGap() {
+        UUID tap = UUID.randomUUID();
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        writeBucket(tap, now.minusHours(10));
+
+        heavyHitters.recordDNSPair(tap, now.minusHours(3), "10.0.0.2", SERVER, 5);
+
+        assertEquals(nzyme.getMetrics().meter(MetricNames.HEAVY_HITTERS_LATE_RECORDS_DROPPED).getCount(), 1);
+
+        // Not persisted yet.
+        assertFalse(heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, range(now.minusHours(8), now), List.of(tap)));
+
+        heavyHitters.flush();
+
+        assertEquals(countGaps(), 1L);
+        assertFalse(heavyHitters.covers(HeavyHitterDimension.DNS_SERVER, range(now.minusHours(8), now), List.of(tap)));
+
+        // Ranges without the gap and other taps are not affected.
+        assertTrue(heavyHitters.covers(
+                HeavyHitterDimension.DNS_SERVER,
+                range(now.minusHours(10), HeavyHitters.bucketStart(now.minusHours(3)).minusSeconds(1)),
+                List.of(tap)
+        ));
+
+        UUID otherTap = UUID.randomUUID();
+        writeBucket(otherTap, now.minusHours(10));
+        assertTrue(heavyHitters.covers(
+                HeavyHitterDimension.DNS_SERVER, range(now.minusHours(8), now), List.of(otherTap)
+        ));
+
+        // Repeated late records of the same hour mark a single gap.
+        heavyHitters.recordDNSPair(tap, now.minusHours(3), "10.0.0.3", SERVER, 5);
+        heavyHitters.flush();
+
+        assertEquals(nzyme.getMetrics().meter(MetricNames.HEAVY_HITTERS_LATE_RECORDS_DROPPED).getCount(), 2);
+        assertEquals(countGaps(), 1L);
+    }
+
+    @Test
+    public void testRecordsOfOpenHourAreNotDropped() {
+        UUID tap = UUID.randomUUID();
+
+        heavyHitters.recordDNSPair(tap, DateTime.now(DateTimeZone.UTC), "10.0.0.2", SERVER, 5);
+        heavyHitters.flush();
+
+        assertEquals(nzyme.getMetrics().meter(MetricNames.HEAVY_HITTERS_LATE_RECORDS_DROPPED).getCount(), 0);
+        assertEquals(countGaps(), 0L);
+    }
+
+    @Test
+    public void testBatchIsOnlyRecordedOnCommit() {
+        UUID tap = UUID.randomUUID();
+
+        HeavyHitters.Batch batch = heavyHitters.batch();
+        batch.recordDNSPair(tap, DateTime.now(DateTimeZone.UTC), "10.0.0.2", SERVER, 5);
+        heavyHitters.flush();
+
+        assertEquals(countBuckets(), 0L);
+
+        batch.commit();
+        heavyHitters.flush();
+
+        assertEquals(countBuckets(), 1L);
+    }
+
+    private void writeBucket(UUID tap, DateTime timestamp) {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createUpdate("INSERT INTO heavy_hitter_buckets(recorder_id, tap_uuid, dimension, " +
+                                "bucket_start, total_weight, floor_weight, distinct_keys, updated_at) " +
+                                "VALUES(:recorder_id, :tap_uuid, :dimension, :bucket_start, 0, 0, :distinct_keys, " +
+                                "NOW())")
+                        .bind("recorder_id", UUID.randomUUID())
+                        .bind("tap_uuid", tap)
+                        .bind("dimension", HeavyHitterDimension.DNS_SERVER.name())
+                        .bind("bucket_start", HeavyHitters.bucketStart(timestamp))
+                        .bind("distinct_keys", new byte[0])
+                        .execute()
+        );
+    }
+
+    private long countBuckets() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM heavy_hitter_buckets")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private long countGaps() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM heavy_hitter_gaps")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private static TimeRange range(DateTime from, DateTime to) {
+        return TimeRange.create(from, to, false);
+    }
+
+}
@@ -0,0 +1,308 @@
+package app.nzyme.core.events;
+
+import app.nzyme.core.MockNzyme;
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.events.db.EventActionEntry;
+import app.nzyme.core.events.types.EventActionType;
+import app.nzyme.core.events.types.SystemEvent;
+import app.nzyme.core.events.types.SystemEventType;
+import app.nzyme.core.util.MetricNames;
+import com.sun.net.httpserver.HttpServer;
+import org.joda.time.DateTime;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.testng.Assert.*;
+
+public class EventActionDispatcherTest {
+
+    private NzymeNode nzyme;
+    private EventEngineImpl eventEngine;
+    private EventActionDispatcher dispatcher;
+
+    private HttpServer webhookReceiver;
+    private volatile int webhookResponseCode;
+    private volatile CountDownLatch webhookRelease;
+    private final AtomicInteger webhookRequests = new AtomicInteger(0);
+    private final AtomicInteger webhookInFlight = new AtomicInteger(0);
+    private final AtomicInteger webhookMaxInFlight = new AtomicInteger(0);
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        nzyme = new MockNzyme();
+        eventEngine = (EventEngineImpl) nzyme.getEventEngine();
+        dispatcher = eventEngine.getDispatcher();
+
+        nzyme.getDatabase().useHandle(handle ->
+                handle.execute("TRUNCATE event_action_deliveries, event_subscriptions, event_actions CASCADE")
+        );
+
+        webhookResponseCode = 200;
+        webhookRelease = new CountDownLatch(0);
+        webhookRequests.set(0);
+        webhookInFlight.set(0);
+        webhookMaxInFlight.set(0);
+
+        webhookReceiver = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        webhookReceiver.setExecutor(Executors.newCachedThreadPool());
+        webhookReceiver.createContext("/", exchange -> {
+            webhookRequests.incrementAndGet();
+            webhookMaxInFlight.accumulateAndGet(webhookInFlight.incrementAndGet(), Math::max);
+            try {
+                webhookRelease.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                webhookInFlight.decrementAndGet();
+            }
+
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(webhookResponseCode, -1);
+            exchange.close();
+        });
+        webhookReceiver.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        webhookRelease.countDown();
+        webhookReceiver.stop(0);
+        nzyme.shutdown();
+    }
+
+    @Test
+    public void testFailedDeliveryIsRetriedWithBackoffAndAbandoned() throws InterruptedException {
+        webhookResponseCode = 500;
+        UUID actionId = createWebhookAction();
+
+        dispatcher.dispatch(actionId, buildEvent());
+
+        long[] expectedBackoffs = {15, 30, 60, 120, 240, 480, 960, 1920, 3600};
+        for (int attempt = 1; attempt <= expectedBackoffs.length; attempt++) {
+            final int expectedAttempts = attempt;
+            waitFor(() -> deliveryAttempts().orElse(-1) == expectedAttempts);
+
+            long backoff = secondsUntilNextAttempt();
+            assertTrue(backoff > expectedBackoffs[attempt - 1] - 5 && backoff <= expectedBackoffs[attempt - 1],
+                    "Unexpected backoff of <" + backoff + "s> after attempt <" + attempt + ">.");
+            assertNotNull(lastError());
+
+            // Make the delivery due right away instead of waiting for the backoff.
+            makeDeliveryDue();
+            dispatcher.retryDueDeliveries();
+        }
+
+        // The tenth failed attempt abandons the delivery.
+        waitFor(() -> deliveryAttempts().isEmpty());
+        assertEquals(webhookRequests.get(), 10);
+        assertEquals(nzyme.getMetrics().meter(MetricNames.EVENT_ACTIONS_ABANDONED).getCount(), 1);
+        assertEquals(nzyme.getMetrics().meter(MetricNames.EVENT_ACTIONS_FAILURES).getCount(), 10);
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimed() throws InterruptedException {
+        UUID actionId = createWebhookAction();
+
+        // Deliveries leased by a node that died during the delivery. Only the expired lease must be claimed.
+        long expired = insertLeasedDelivery(actionId, DateTime.now().minusSeconds(1));
+        long leased = insertLeasedDelivery(actionId, DateTime.now().plusSeconds(100));
+        Timestamp leasedUntil = nextAttemptAt(leased);
+
+        // Claiming a delivery renews its lease right away. The active lease must not have been touched.
+        dispatcher.retryDueDeliveries();
+        assertEquals(nextAttemptAt(leased), leasedUntil);
+
+        waitFor(() -> !deliveryExists(expired));
+        assertEquals(webhookRequests.get(), 1);
+
+        dispatcher.retryDueDeliveries();
+        assertEquals(nextAttemptAt(leased), leasedUntil);
+        assertEquals(countDeliveries(), 1L);
+    }
+
+    @Test
+    public void testConcurrentExecutionsPerActionAreLimited() throws InterruptedException {
+        webhookRelease = new CountDownLatch(1);
+        UUID actionId = createWebhookAction();
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch(actionId, buildEvent());
+        }
+
+        waitFor(() -> webhookInFlight.get() == 2);
+        waitFor(() -> countPostponedDeliveries() == 3);
+
+        // Two deliveries hold their lease while executing. Postponed deliveries do not count as attempts.
+        assertEquals(countLeasedDeliveries(), 2L);
+        assertEquals(countDeliveriesWithAttempts(), 0L);
+        assertEquals(webhookRequests.get(), 2);
+        assertEquals(nzyme.getMetrics().meter(MetricNames.EVENT_ACTIONS_FAILURES).getCount(), 0);
+
+        webhookRelease.countDown();
+        waitFor(() -> countDeliveries() == 3);
+
+        // Deliver the postponed ones. The limit applies again, so some of them may be postponed once more.
+        waitFor(() -> {
+            makePostponedDeliveriesDue();
+            dispatcher.retryDueDeliveries();
+            return countDeliveries() == 0;
+        });
+
+        assertEquals(webhookRequests.get(), 5);
+        assertEquals(webhookMaxInFlight.get(), 2);
+    }
+
+    private UUID createWebhookAction() {
+        String name = "test-" + UUID.randomUUID();
+        eventEngine.createEventAction(
+                null,
+                EventActionType.WEBHOOK,
+                name,
+                "Test webhook",
+                "{\"url\": \"http://127.0.0.1:" + webhookReceiver.getAddress().getPort() + "/\", " +
+                        "\"allow_insecure\": false, \"bearer_token\": null}"
+        );
+
+        for (EventActionEntry ea : eventEngine.findAllEventActionsOfSuperadministrators(Integer.MAX_VALUE, 0)) {
+            if (ea.name().equals(name)) {
+                return ea.uuid();
+            }
+        }
+
+        throw new IllegalStateException("Event action was not created.");
+    }
+
+    private SystemEvent buildEvent() {
+        return SystemEvent.create(SystemEventType.AUTHENTICATION_PASSWORD_CHANGED, DateTime.now(), "test");
+    }
+
+    private long insertLeasedDelivery(UUID actionId, DateTime leaseUntil) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("INSERT INTO event_action_deliveries(action_id, event_type, event_reference, " +
+                                "details, event_timestamp, attempts, next_attempt_at, created_at) " +
+                                "VALUES(:action_id, 'SYSTEM', :event_reference, 'test', NOW(), 0, :next_attempt_at, " +
+                                "NOW()) RETURNING id")
+                        .bind("action_id", actionId)
+                        .bind("event_reference", SystemEventType.AUTHENTICATION_PASSWORD_CHANGED.name())
+                        .bind("next_attempt_at", leaseUntil)
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private Timestamp nextAttemptAt(long deliveryId) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT next_attempt_at FROM event_action_deliveries WHERE id = :id")
+                        .bind("id", deliveryId)
+                        .mapTo(Timestamp.class)
+                        .one()
+        );
+    }
+
+    private boolean deliveryExists(long deliveryId) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT EXISTS(SELECT 1 FROM event_action_deliveries WHERE id = :id)")
+                        .bind("id", deliveryId)
+                        .mapTo(Boolean.class)
+                        .one()
+        );
+    }
+
+    private Optional<Integer> deliveryAttempts() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT attempts FROM event_action_deliveries")
+                        .mapTo(Integer.class)
+                        .findOne()
+        );
+    }
+
+    private String lastError() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT last_error FROM event_action_deliveries")
+                        .mapTo(String.class)
+                        .one()
+        );
+    }
+
+    private long secondsUntilNextAttempt() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT EXTRACT(EPOCH FROM next_attempt_at - NOW())::bigint " +
+                                "FROM event_action_deliveries ORDER BY next_attempt_at DESC LIMIT 1")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private long countDeliveries() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM event_action_deliveries")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private long countLeasedDeliveries() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM event_action_deliveries " +
+                                "WHERE next_attempt_at > NOW() + INTERVAL '60 seconds'")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private long countDeliveriesWithAttempts() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM event_action_deliveries WHERE attempts > 0")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private long countPostponedDeliveries() {
+        // Postponed deliveries are due again within seconds. Deliveries in progress hold a lease of minutes.
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM event_action_deliveries WHERE attempts = 0 " +
+                                "AND next_attempt_at < NOW() + INTERVAL '10 seconds'")
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private void makeDeliveryDue() {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.execute("UPDATE event_action_deliveries SET next_attempt_at = NOW() - INTERVAL '1 second'")
+        );
+    }
+
+    private void makePostponedDeliveriesDue() {
+        // Leaves deliveries in progress alone so they are not claimed twice.
+        nzyme.getDatabase().useHandle(handle ->
+                handle.execute("UPDATE event_action_deliveries SET next_attempt_at = NOW() - INTERVAL '1 second' " +
+                        "WHERE next_attempt_at < NOW() + INTERVAL '10 seconds'")
+        );
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(15);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met in time.");
+            }
+
+            Thread.sleep(50);
+        }
+    }
+
+}
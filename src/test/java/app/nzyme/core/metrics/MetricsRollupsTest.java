@@ -0,0 +1,275 @@
+package app.nzyme.core.metrics;
+
+import app.nzyme.core.MockNzyme;
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.distributed.database.metrics.GaugeHistogramBucket;
+import app.nzyme.core.taps.db.metrics.BucketSize;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class MetricsRollupsTest {
+
+    private static final String METRIC = "test.rollups";
+
+    private NzymeNode nzyme;
+    private MetricsRollups rollups;
+
+    @BeforeMethod
+    public void setUp() {
+        nzyme = new MockNzyme();
+        rollups = new MetricsRollups(nzyme);
+
+        nzyme.getDatabase().useHandle(handle -> {
+            handle.execute("TRUNCATE metrics_rollups");
+            handle.execute("TRUNCATE metrics_rollup_watermarks");
+            handle.execute("TRUNCATE tap_metrics_gauges");
+        });
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        nzyme.shutdown();
+    }
+
+    @Test
+    public void testRollUpIsIdempotent() {
+        UUID tap = UUID.randomUUID();
+        DateTime minute = currentMinute();
+
+        writeGauge(tap, 1.0, minute);
+        writeGauge(tap, 2.0, minute.plusSeconds(10));
+        writeGauge(tap, 3.0, minute.plusSeconds(20));
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        Map<String, Object> bucket = findBucket(tap, BucketSize.MINUTE, minute);
+        assertEquals(((Number) bucket.get("sample_count")).longValue(), 3L);
+        assertEquals(bucket.get("value_sum"), 6.0);
+        assertEquals(bucket.get("value_min"), 1.0);
+        assertEquals(bucket.get("value_max"), 3.0);
+
+        assertEquals(countBuckets(BucketSize.MINUTE), 1L);
+        assertEquals(countBuckets(BucketSize.HOUR), 1L);
+    }
+
+    @Test
+    public void testRollUpIncludesLateRows() {
+        UUID tap = UUID.randomUUID();
+        DateTime minute = currentMinute();
+
+        writeGauge(tap, 1.0, minute);
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        writeGauge(tap, 5.0, minute.plusSeconds(30));
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        Map<String, Object> bucket = findBucket(tap, BucketSize.MINUTE, minute);
+        assertEquals(((Number) bucket.get("sample_count")).longValue(), 2L);
+        assertEquals(bucket.get("value_sum"), 6.0);
+    }
+
+    @Test
+    public void testRollUpContinuesAfterMissedRuns() {
+        UUID tap = UUID.randomUUID();
+        DateTime minute = currentMinute().minusMinutes(30);
+
+        // The last run was 40 minutes ago. Far longer than the recomputed minutes.
+        setWatermark(currentMinute().minusMinutes(40));
+        writeGauge(tap, 7.0, minute);
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        Map<String, Object> bucket = findBucket(tap, BucketSize.MINUTE, minute);
+        assertEquals(((Number) bucket.get("sample_count")).longValue(), 1L);
+        assertEquals(bucket.get("value_sum"), 7.0);
+
+        assertTrue(findWatermark().isAfter(minute));
+    }
+
+    @Test
+    public void testRawRetentionKeepsRowsThatWereNotRolledUp() {
+        DateTime regularCutoff = DateTime.now().minusHours(MetricsRollups.RAW_RETENTION_HOURS);
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+        assertTrue(Math.abs(rollups.rawRetentionCutoff().getMillis() - regularCutoff.getMillis()) < 60_000);
+
+        DateTime watermark = currentMinute().minusHours(3);
+        setWatermark(watermark);
+        assertTrue(rollups.rawRetentionCutoff().isBefore(watermark));
+
+        // Raw rows are not kept forever if rollups stopped running.
+        setWatermark(currentMinute().minusDays(30));
+        assertTrue(rollups.rawRetentionCutoff().isAfter(DateTime.now().minusDays(3)));
+    }
+
+    @Test
+    public void testMinuteTierIsRolledIntoHourTier() {
+        UUID tap = UUID.randomUUID();
+        DateTime minute1 = currentMinute();
+        DateTime minute2 = otherMinuteOfSameHour(minute1);
+
+        writeGauge(tap, 1.0, minute1);
+        writeGauge(tap, 2.0, minute1.plusSeconds(10));
+        writeGauge(tap, 3.0, minute1.plusSeconds(20));
+        writeGauge(tap, 10.0, minute2);
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        assertEquals(countBuckets(BucketSize.MINUTE), 2L);
+
+        Map<String, Object> hour = findBucket(tap, BucketSize.HOUR, minute1.hourOfDay().roundFloorCopy());
+        assertEquals(((Number) hour.get("sample_count")).longValue(), 4L);
+        assertEquals(hour.get("value_sum"), 16.0);
+        assertEquals(hour.get("value_min"), 1.0);
+        assertEquals(hour.get("value_max"), 10.0);
+    }
+
+    @Test
+    public void testHistogramAverageIsWeightedBySampleCount() {
+        UUID tap = UUID.randomUUID();
+        DateTime minute1 = currentMinute();
+        DateTime minute2 = otherMinuteOfSameHour(minute1);
+
+        // Averaging the per-minute averages would give (2 + 10) / 2 = 6.
+        writeGauge(tap, 1.0, minute1);
+        writeGauge(tap, 2.0, minute1.plusSeconds(10));
+        writeGauge(tap, 3.0, minute1.plusSeconds(20));
+        writeGauge(tap, 10.0, minute2);
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        List<GaugeHistogramBucket> histogram = rollups.findHistogram(
+                MetricsRollupSource.TAP_GAUGES, tap, METRIC, 2, BucketSize.HOUR, GaugeHistogramBucket.class
+        );
+
+        assertEquals(histogram.size(), 1);
+        assertEquals(histogram.get(0).sum(), 16.0);
+        assertEquals(histogram.get(0).average(), 4.0);
+        assertEquals(histogram.get(0).maximum(), 10.0);
+        assertEquals(histogram.get(0).minimum(), 1.0);
+
+        List<GaugeHistogramBucket> minutes = rollups.findHistogram(
+                MetricsRollupSource.TAP_GAUGES, tap, METRIC, 2, BucketSize.MINUTE, GaugeHistogramBucket.class
+        );
+
+        assertEquals(minutes.size(), 2);
+        for (GaugeHistogramBucket bucket : minutes) {
+            if (bucket.bucket().isEqual(minute1)) {
+                assertEquals(bucket.average(), 2.0);
+            } else {
+                assertTrue(bucket.bucket().isEqual(minute2));
+                assertEquals(bucket.average(), 10.0);
+            }
+        }
+    }
+
+    @Test
+    public void testHistogramOfAllTaps() {
+        UUID tap1 = UUID.randomUUID();
+        UUID tap2 = UUID.randomUUID();
+        DateTime minute = currentMinute();
+
+        writeGauge(tap1, 1.0, minute);
+        writeGauge(tap1, 3.0, minute.plusSeconds(10));
+        writeGauge(tap2, 20.0, minute);
+
+        nzyme.getDatabase().useHandle(rollups::rollUp);
+
+        List<GaugeHistogramBucket> all = rollups.findHistogram(
+                MetricsRollupSource.TAP_GAUGES, null, METRIC, 2, BucketSize.HOUR, GaugeHistogramBucket.class
+        );
+
+        assertEquals(all.size(), 1);
+        assertEquals(all.get(0).sum(), 24.0);
+        assertEquals(all.get(0).average(), 8.0);
+        assertEquals(all.get(0).maximum(), 20.0);
+        assertEquals(all.get(0).minimum(), 1.0);
+
+        List<GaugeHistogramBucket> single = rollups.findHistogram(
+                MetricsRollupSource.TAP_GAUGES, tap1, METRIC, 2, BucketSize.HOUR, GaugeHistogramBucket.class
+        );
+
+        assertEquals(single.size(), 1);
+        assertEquals(single.get(0).sum(), 4.0);
+        assertEquals(single.get(0).average(), 2.0);
+    }
+
+    private void writeGauge(UUID tap, double value, DateTime createdAt) {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createUpdate("INSERT INTO tap_metrics_gauges(tap_uuid, metric_name, metric_value, " +
+                                "created_at) VALUES(:tap_uuid, :metric_name, :metric_value, :created_at)")
+                        .bind("tap_uuid", tap)
+                        .bind("metric_name", METRIC)
+                        .bind("metric_value", value)
+                        .bind("created_at", createdAt)
+                        .execute()
+        );
+    }
+
+    private void setWatermark(DateTime watermark) {
+        nzyme.getDatabase().useHandle(handle ->
+                handle.createUpdate("INSERT INTO metrics_rollup_watermarks(resolution, rolled_up_until) " +
+                                "VALUES('MINUTE', :watermark) ON CONFLICT (resolution) " +
+                                "DO UPDATE SET rolled_up_until = EXCLUDED.rolled_up_until")
+                        .bind("watermark", watermark)
+                        .execute()
+        );
+    }
+
+    private DateTime findWatermark() {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT rolled_up_until FROM metrics_rollup_watermarks " +
+                                "WHERE resolution = 'MINUTE'")
+                        .mapTo(DateTime.class)
+                        .one()
+        );
+    }
+
+    private Map<String, Object> findBucket(UUID tap, BucketSize resolution, DateTime bucketStart) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT sample_count, value_sum, value_min, value_max FROM metrics_rollups " +
+                                "WHERE source = :source AND source_id = :source_id AND metric_name = :metric_name " +
+                                "AND resolution = :resolution AND bucket_start = :bucket_start")
+                        .bind("source", MetricsRollupSource.TAP_GAUGES.name())
+                        .bind("source_id", tap)
+                        .bind("metric_name", METRIC)
+                        .bind("resolution", resolution.name())
+                        .bind("bucket_start", bucketStart)
+                        .mapToMap()
+                        .one()
+        );
+    }
+
+    private long countBuckets(BucketSize resolution) {
+        return nzyme.getDatabase().withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM metrics_rollups WHERE metric_name = :metric_name " +
+                                "AND resolution = :resolution")
+                        .bind("metric_name", METRIC)
+                        .bind("resolution", resolution.name())
+                        .mapTo(Long.class)
+                        .one()
+        );
+    }
+
+    private static DateTime currentMinute() {
+        return DateTime.now(DateTimeZone.UTC).minuteOfHour().roundFloorCopy();
+    }
+
+    /*
+     * Rollups recompute the last few minutes and everything after. Stay within the hour of the given minute.
+     */
+    private static DateTime otherMinuteOfSameHour(DateTime minute) {
+        return minute.getMinuteOfHour() == 59 ? minute.minusMinutes(1) : minute.plusMinutes(1);
+    }
+
+}
@@ -0,0 +1,42 @@
+package app.nzyme.core.ouis;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class OuiTableTest {
+
+    private final OuiTable table = OuiTable.build(ImmutableMap.of(
+            "187C0B", "Large Vendor",
+            "187C0BD", "Medium Vendor",
+            "187C0BD71", "Small Vendor",
+            "00:11:22:30:00:00/28", "CIDR Vendor"
+    ));
+
+    @Test
+    public void testLookupReturnsMostSpecificAssignment() {
+        assertEquals(table.lookup("18:7C:0B:D7:14:38"), "Small Vendor");
+        assertEquals(table.lookup("18:7C:0B:D7:24:38"), "Medium Vendor");
+        assertEquals(table.lookup("18:7C:0B:A7:14:38"), "Large Vendor");
+        assertEquals(table.lookup("00:11:22:3F:FF:FF"), "CIDR Vendor");
+        assertEquals(table.size(), 4);
+    }
+
+    @Test
+    public void testLookupIsCaseInsensitive() {
+        assertEquals(table.lookup("18:7c:0b:d7:14:38"), "Small Vendor");
+        assertEquals(table.lookup("18:7c:0b:a7:14:38"), "Large Vendor");
+    }
+
+    @Test
+    public void testLookupOfUnknownOrInvalidAddress() {
+        assertNull(table.lookup("AA:BB:CC:DD:EE:FF"));
+        assertNull(table.lookup("00:11:22:40:00:00"));
+        assertNull(table.lookup("1x:7C:0B:D7:14:38"));
+        assertNull(table.lookup("187C0BD71438"));
+        assertNull(table.lookup(""));
+        assertNull(table.lookup(null));
+    }
+
+}
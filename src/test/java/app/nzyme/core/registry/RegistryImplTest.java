@@ -270,6 +270,25 @@ public class RegistryImplTest {
         nzyme.shutdown();
     }
 
+    @Test
+    public void testValueChangedOnOtherNode() {
+        Registry r1 = new RegistryImpl(new MockNzyme(), "test");
+        NzymeNode nzyme2 = new MockNzyme();
+        Registry r2 = new RegistryImpl(nzyme2, "test");
+
+        r1.setValue("foo", "bar");
+        nzyme2.getRegistryCache().refresh();
+        assertEquals(r2.getValue("foo").get(), "bar");
+
+        r1.setValue("foo", "baz");
+        nzyme2.getRegistryCache().refresh();
+        assertEquals(r2.getValue("foo").get(), "baz");
+
+        r1.deleteValue("foo");
+        nzyme2.getRegistryCache().refresh();
+        assertTrue(r2.getValue("foo").isEmpty());
+    }
+
     private String randomString(int length) {
         Random random = new Random();
 
@@ -0,0 +1,264 @@
+package app.nzyme.core.rest.interceptors;
+
+import app.nzyme.core.MockNzyme;
+import app.nzyme.core.NzymeNode;
+import app.nzyme.core.util.MetricNames;
+import com.github.luben.zstd.ZstdOutputStream;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.*;
+
+public class TapTableSizeInterceptorTest {
+
+    private static final byte[] REPORT;
+
+    static {
+        StringBuilder sb = new StringBuilder("{\"dot11\":[");
+        for (int i = 0; i < 1000; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"bssid\":\"00:c0:ca:95:68:").append(i % 100).append("\"}");
+        }
+        REPORT = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private NzymeNode nzyme;
+    private TapTableSizeInterceptor interceptor;
+
+    @BeforeMethod
+    public void setUp() {
+        nzyme = new MockNzyme();
+        interceptor = new TapTableSizeInterceptor(nzyme);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        nzyme.shutdown();
+    }
+
+    @Test
+    public void testIdentity() throws IOException {
+        assertRecordedSizes(null, REPORT);
+        assertRecordedSizes("identity", REPORT);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        assertRecordedSizes("gzip", compress(GZIPOutputStream::new));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        assertRecordedSizes("deflate", compress(DeflaterOutputStream::new));
+    }
+
+    @Test
+    public void testZstd() throws IOException {
+        assertRecordedSizes("zstd", compress(ZstdOutputStream::new));
+    }
+
+    @Test
+    public void testUnsupportedEncodingRecordsCompressedSize() throws IOException {
+        byte[] wire = compress(GZIPOutputStream::new);
+        Context context = new Context("br", wire);
+
+        interceptor.readCounted(context);
+
+        // Left to the other decoders.
+        assertEquals(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "br");
+        assertEquals(nzyme.getMetrics().meter(MetricNames.TAP_TABLE_DECOMPRESSED_BYTES).getCount(), wire.length);
+        assertEquals(nzyme.getMetrics().meter(MetricNames.TAP_TABLE_WIRE_BYTES).getCount(), wire.length);
+    }
+
+    @Test
+    public void testDecompressionBombIsRejected() throws IOException {
+        // Compresses to a few kilobytes.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressed = new GZIPOutputStream(out)) {
+            compressed.write(new byte[10 * 1024 * 1024]);
+        }
+
+        interceptor = new TapTableSizeInterceptor(nzyme, REPORT.length);
+
+        try {
+            interceptor.readCounted(new Context("gzip", out.toByteArray()));
+            fail("Oversized report was accepted.");
+        } catch (WebApplicationException e) {
+            assertEquals(e.getResponse().getStatus(), 413);
+        }
+
+        // Stopped reading right after the limit.
+        assertTrue(nzyme.getMetrics().meter(MetricNames.TAP_TABLE_DECOMPRESSED_BYTES).getCount()
+                < REPORT.length + 65536);
+    }
+
+    @Test
+    public void testReportAtLimitIsAccepted() throws IOException {
+        interceptor = new TapTableSizeInterceptor(nzyme, REPORT.length);
+        assertRecordedSizes("gzip", compress(GZIPOutputStream::new));
+    }
+
+    @Test
+    public void testOversizedUncompressedReportIsRejectedBeforeReading() throws IOException {
+        interceptor = new TapTableSizeInterceptor(nzyme, REPORT.length - 1);
+
+        Context context = new Context(null, REPORT);
+        context.getHeaders().putSingle(HttpHeaders.CONTENT_LENGTH, String.valueOf(REPORT.length));
+
+        try {
+            interceptor.readCounted(context);
+            fail("Oversized report was accepted.");
+        } catch (WebApplicationException e) {
+            assertEquals(e.getResponse().getStatus(), 413);
+        }
+
+        assertEquals(nzyme.getMetrics().meter(MetricNames.TAP_TABLE_WIRE_BYTES).getCount(), 0);
+    }
+
+    private void assertRecordedSizes(String encoding, byte[] wire) throws IOException {
+        long decompressedBefore = nzyme.getMetrics().meter(MetricNames.TAP_TABLE_DECOMPRESSED_BYTES).getCount();
+        long wireBefore = nzyme.getMetrics().meter(MetricNames.TAP_TABLE_WIRE_BYTES).getCount();
+
+        Context context = new Context(encoding, wire);
+        Object body = interceptor.readCounted(context);
+
+        assertEquals((byte[]) body, REPORT);
+        assertNull(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        assertEquals(
+                nzyme.getMetrics().meter(MetricNames.TAP_TABLE_DECOMPRESSED_BYTES).getCount() - decompressedBefore,
+                REPORT.length
+        );
+        assertEquals(
+                nzyme.getMetrics().meter(MetricNames.TAP_TABLE_WIRE_BYTES).getCount() - wireBefore,
+                wire.length
+        );
+    }
+
+    private static byte[] compress(Compressor compressor) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressed = compressor.wrap(out)) {
+            compressed.write(REPORT);
+        }
+
+        byte[] result = out.toByteArray();
+        assertTrue(result.length < REPORT.length);
+        return result;
+    }
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    /*
+     * Reads the whole body, like the JSON deserializer would.
+     */
+    private static final class Context implements ReaderInterceptorContext {
+
+        private final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        private InputStream inputStream;
+
+        Context(String encoding, byte[] body) {
+            if (encoding != null) {
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            }
+
+            this.inputStream = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public Object proceed() throws IOException {
+            return inputStream.readAllBytes();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public void setInputStream(InputStream is) {
+            this.inputStream = is;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getPropertyNames() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void setProperty(String name, Object object) {
+        }
+
+        @Override
+        public void removeProperty(String name) {
+        }
+
+        @Override
+        public Annotation[] getAnnotations() {
+            return new Annotation[0];
+        }
+
+        @Override
+        public void setAnnotations(Annotation[] annotations) {
+        }
+
+        @Override
+        public Class<?> getType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setType(Class<?> type) {
+        }
+
+        @Override
+        public Type getGenericType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setGenericType(Type genericType) {
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return MediaType.APPLICATION_JSON_TYPE;
+        }
+
+        @Override
+        public void setMediaType(MediaType mediaType) {
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package app.nzyme.core.tables;
+
+import app.nzyme.core.configuration.node.TableIngestConfiguration;
+import com.codahale.metrics.MetricRegistry;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class TableIngestQueueTest {
+
+    @Test
+    public void testShutdownDrainsQueuedReports() {
+        TableIngestQueue queue = new TableIngestQueue(
+                "test", TableIngestConfiguration.create(1, 10), new MetricRegistry()
+        );
+
+        AtomicInteger processed = new AtomicInteger(0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.submit(processed::incrementAndGet));
+        }
+
+        queue.shutdown();
+
+        assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(processed.get(), 10);
+    }
+
+    @Test
+    public void testShutdownDropsReportsAfterTimeout() throws InterruptedException {
+        TableIngestQueue queue = new TableIngestQueue(
+                "test", TableIngestConfiguration.create(1, 10), new MetricRegistry()
+        );
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(queue.submit(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger processed = new AtomicInteger(0);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.submit(processed::incrementAndGet));
+        }
+
+        queue.shutdown();
+
+        // No new reports after shutdown.
+        assertFalse(queue.submit(processed::incrementAndGet));
+
+        assertFalse(queue.awaitTermination(100, TimeUnit.MILLISECONDS));
+        assertEquals(processed.get(), 0);
+        assertEquals(queue.getQueueDepth(), 0);
+    }
+
+}
@@ -1,7 +1,11 @@
 package app.nzyme.core.util;
 
+import com.google.common.hash.Hashing;
+import org.joda.time.DateTime;
 import org.testng.annotations.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.testng.Assert.*;
 
 public class ToolsTest {
@@ -48,4 +52,90 @@ public class ToolsTest {
         assertFalse(Tools.isSafeNodeName("1$abc"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSanitizeSSID() {
+        assertEquals(Tools.sanitizeSSID("nzyme"), "nzyme");
+        assertEquals(Tools.sanitizeSSID("nzyme wifi"), "nzyme wifi");
+        assertEquals(Tools.sanitizeSSID(""), "");
+        assertEquals(Tools.sanitizeSSID("   "), "");
+        assertEquals(Tools.sanitizeSSID("  nzyme   wifi  "), "nzyme wifi");
+        assertEquals(Tools.sanitizeSSID("nzyme\0\0wifi\0"), "nzymewifi");
+        assertEquals(Tools.sanitizeSSID("\tnzyme\t wifi"), "nzyme wifi");
+        assertEquals(Tools.sanitizeSSID("nzyme\u2028\u2029wifi"), "nzymewifi");
+        assertEquals(Tools.sanitizeSSID("nzyme\u200B\u0007\u007F wifi"), "nzyme wifi");
+        assertEquals(Tools.sanitizeSSID("nzyme \t \u0000 wifi"), "nzyme wifi");
+        assertEquals(Tools.sanitizeSSID("Café \uD83D\uDE00"), "Café \uD83D\uDE00");
+        assertEquals(Tools.sanitizeSSID("nzyme\uD83Dwifi"), "nzymewifi");
+        assertEquals(Tools.sanitizeSSID("nzyme\uD83D\0\uDE00"), "nzyme\uD83D\uDE00");
+        assertEquals(Tools.sanitizeSSID("nzyme\u00A0wifi"), "nzyme\u00A0wifi");
+    }
+
+    @Test
+    public void testSanitizeSSIDReturnsCleanSSIDAsIs() {
+        String ssid = "nzyme wifi";
+        assertSame(Tools.sanitizeSSID(ssid), ssid);
+    }
+
+    @Test
+    public void testMacAddressIsRandomized() {
+        assertTrue(Tools.macAddressIsRandomized("02:00:00:00:00:00"));
+        assertTrue(Tools.macAddressIsRandomized("DA:A1:19:00:00:01"));
+        assertTrue(Tools.macAddressIsRandomized("da:a1:19:00:00:01"));
+        assertTrue(Tools.macAddressIsRandomized("1E:7C:0B:D7:14:38"));
+        assertFalse(Tools.macAddressIsRandomized("18:7C:0B:D7:14:38"));
+        assertFalse(Tools.macAddressIsRandomized("00:00:00:00:00:00"));
+        assertFalse(Tools.macAddressIsRandomized("FC:7C:0B:D7:14:38"));
+
+        assertFalse(Tools.macAddressIsRandomized(null));
+        assertFalse(Tools.macAddressIsRandomized(""));
+        assertFalse(Tools.macAddressIsRandomized(" "));
+        assertFalse(Tools.macAddressIsRandomized("02"));
+        assertFalse(Tools.macAddressIsRandomized("02-00-00-00-00-00"));
+        assertFalse(Tools.macAddressIsRandomized("0x:00:00:00:00:00"));
+    }
+
+    @Test
+    public void testBuildL4Key() {
+        // Keys are persisted and must match the SHA-256 of the concatenated attributes.
+        DateTime establishedAt = new DateTime(1700000000123L);
+
+        assertEquals(
+                Tools.buildL4Key(establishedAt, "10.0.0.1", "192.168.178.2", 52311, 443),
+                legacyL4Key(establishedAt, "10.0.0.1", "192.168.178.2", 52311, 443)
+        );
+        assertEquals(
+                Tools.buildL4Key(establishedAt, "fe80::1", "2001:db8::ff00:42:8329", 0, 65535),
+                legacyL4Key(establishedAt, "fe80::1", "2001:db8::ff00:42:8329", 0, 65535)
+        );
+        assertEquals(
+                Tools.buildL4Key(new DateTime(0), "", "", 0, 0),
+                legacyL4Key(new DateTime(0), "", "", 0, 0)
+        );
+        assertEquals(
+                Tools.buildL4Key(new DateTime(-1), "äöü", "10.0.0.1", -1, Integer.MIN_VALUE),
+                legacyL4Key(new DateTime(-1), "äöü", "10.0.0.1", -1, Integer.MIN_VALUE)
+        );
+
+        String longAddress = "10.0.0.1".repeat(100);
+        assertEquals(
+                Tools.buildL4Key(establishedAt, longAddress, longAddress, 1, 2),
+                legacyL4Key(establishedAt, longAddress, longAddress, 1, 2)
+        );
+
+        assertEquals(
+                Tools.buildL4Key(establishedAt, "10.0.0.1", "10.0.0.2", 1, 2),
+                Tools.buildL4Key(establishedAt, "10.0.0.1", "10.0.0.2", 1, 2)
+        );
+        assertNotEquals(
+                Tools.buildL4Key(establishedAt, "10.0.0.1", "10.0.0.2", 1, 2),
+                Tools.buildL4Key(establishedAt, "10.0.0.2", "10.0.0.1", 1, 2)
+        );
+    }
+
+    private static String legacyL4Key(DateTime establishedAt, String source, String destination, int sp, int dp) {
+        return Hashing.sha256()
+                .hashString(establishedAt.getMillis() + source + destination + sp + dp, StandardCharsets.UTF_8)
+                .toString();
+    }
+
+}
@@ -0,0 +1,66 @@
+package app.nzyme.core.util.filters;
+
+import app.nzyme.core.ethernet.l4.filters.L4Filters;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class FilterSqlTest {
+
+    private static Filters filters(String firstField, String secondField, Object firstValue, Object secondValue) {
+        Map<String, List<Filter>> filters = Maps.newLinkedHashMap();
+        filters.put(firstField, List.of(
+                Filter.create(firstField, FilterOperator.EQUALS_NUMERIC, firstValue, firstValue)
+        ));
+        filters.put(secondField, List.of(
+                Filter.create(secondField, FilterOperator.EQUALS_NUMERIC, secondValue, secondValue)
+        ));
+
+        return Filters.create(filters);
+    }
+
+    @Test
+    public void testSqlDoesNotDependOnValues() {
+        FilterSqlFragment first = FilterSql.generate(
+                filters("source_port", "duration", 53, 1000), new L4Filters()
+        );
+        FilterSqlFragment second = FilterSql.generate(
+                filters("source_port", "duration", 443, 5000), new L4Filters()
+        );
+
+        assertEquals(first.whereSql(), second.whereSql());
+        assertEquals(first.havingSql(), second.havingSql());
+
+        assertEquals(first.whereSql(), " AND (((source_port = :filter_w_0_0)) ) ");
+        assertEquals(first.bindings().get("filter_w_0_0"), 53);
+        assertEquals(second.bindings().get("filter_w_0_0"), 443);
+        assertEquals(second.bindings().get("filter_h_0_0"), 5000);
+    }
+
+    @Test
+    public void testSqlDoesNotDependOnFilterOrder() {
+        FilterSqlFragment first = FilterSql.generate(
+                filters("source_port", "destination_port", 53, 443), new L4Filters()
+        );
+        FilterSqlFragment second = FilterSql.generate(
+                filters("destination_port", "source_port", 443, 53), new L4Filters()
+        );
+
+        assertEquals(first.whereSql(), second.whereSql());
+        assertEquals(first.bindings(), second.bindings());
+    }
+
+    @Test
+    public void testEmptyFilters() {
+        FilterSqlFragment fragment = FilterSql.generate(Filters.create(Maps.newHashMap()), new L4Filters());
+
+        assertEquals(fragment.whereSql(), " ");
+        assertEquals(fragment.havingSql(), " ");
+        assertTrue(fragment.bindings().isEmpty());
+    }
+
+}
@@ -0,0 +1,75 @@
+package app.nzyme.core.util.sketches;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimate() {
+        HyperLogLog hll = new HyperLogLog(12);
+
+        for (int i = 0; i < 100000; i++) {
+            hll.offer("10.0." + (i / 256) + "." + (i % 256));
+
+            // Duplicates do not count.
+            hll.offer("10.0.0.1");
+        }
+
+        // Standard error at precision 12 is about 1.6%.
+        assertEquals(hll.estimate(), 100000, 100000 * 0.05);
+    }
+
+    @Test
+    public void testSmallCardinalities() {
+        HyperLogLog hll = new HyperLogLog(12);
+        assertEquals(hll.estimate(), 0);
+
+        hll.offer("a");
+        hll.offer("b");
+        hll.offer("c");
+        hll.offer("a");
+
+        assertEquals(hll.estimate(), 3);
+    }
+
+    @Test
+    public void testMerge() {
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+
+        for (int i = 0; i < 5000; i++) {
+            a.offer("key" + i);
+            b.offer("key" + (i + 2500));
+        }
+
+        a.merge(b);
+
+        assertEquals(a.estimate(), 7500, 7500 * 0.1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeRejectsDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(11));
+    }
+
+    @Test
+    public void testSerialization() {
+        HyperLogLog hll = new HyperLogLog(8);
+        for (int i = 0; i < 1000; i++) {
+            hll.offer("key" + i);
+        }
+
+        HyperLogLog restored = HyperLogLog.fromByteArray(hll.toByteArray());
+
+        assertEquals(restored.getPrecision(), 8);
+        assertEquals(restored.estimate(), hll.estimate());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsInvalidSerialization() {
+        HyperLogLog.fromByteArray(new byte[]{12, 0, 0});
+    }
+
+}
@@ -0,0 +1,109 @@
+package app.nzyme.core.util.sketches;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void testExactWhileBelowCapacity() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(10, 4);
+
+        sketch.offer("a", 5, 3, 2, null, null);
+        sketch.offer("b", 1, 1, 0, null, null);
+        sketch.offer("a", 10, 4, 6, null, null);
+        sketch.offer("c", 3, 0, 3, null, null);
+
+        List<SpaceSaving.Entry<String>> top = sketch.top(10);
+        assertEquals(top.size(), 3);
+
+        assertEquals(top.get(0).key(), "a");
+        assertEquals(top.get(0).weight(), 15);
+        assertEquals(top.get(0).error(), 0);
+        assertEquals(top.get(0).value1(), 7);
+        assertEquals(top.get(0).value2(), 8);
+
+        assertEquals(top.get(1).key(), "c");
+        assertEquals(top.get(2).key(), "b");
+
+        assertEquals(sketch.totalWeight(), 19);
+        assertEquals(sketch.minimumWeight(), 0);
+    }
+
+    @Test
+    public void testReplacesLightestWhenFull() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2, 4);
+
+        sketch.offer("a", 10, 10, 0, null, null);
+        sketch.offer("b", 2, 2, 0, null, null);
+        sketch.offer("c", 1, 1, 0, null, null);
+
+        List<SpaceSaving.Entry<String>> top = sketch.top(2);
+        assertEquals(top.size(), 2);
+        assertEquals(top.get(0).key(), "a");
+
+        // c replaced b and inherited its weight as error.
+        assertEquals(top.get(1).key(), "c");
+        assertEquals(top.get(1).weight(), 3);
+        assertEquals(top.get(1).error(), 2);
+        assertEquals(top.get(1).value1(), 1);
+
+        assertEquals(sketch.minimumWeight(), 3);
+    }
+
+    @Test
+    public void testFindsHeavyHittersInSkewedStream() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(50, 4);
+
+        long total = 0;
+        for (int i = 0; i < 10000; i++) {
+            String key = i % 10 == 0 ? "heavy" + (i % 3) : "light" + i;
+            sketch.offer(key, 1, 1, 0, null, null);
+            total++;
+        }
+
+        List<SpaceSaving.Entry<String>> top = sketch.top(3);
+        for (SpaceSaving.Entry<String> entry : top) {
+            assertTrue(entry.key().startsWith("heavy"));
+
+            // Every heavy key occurs 333 or 334 times.
+            assertTrue(entry.weight() >= 333);
+            assertTrue(entry.weight() - entry.error() <= 334);
+            assertTrue(entry.error() <= total / 50);
+        }
+    }
+
+    @Test
+    public void testIgnoresEmptyWeights() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2, 4);
+
+        sketch.offer("a", 0, 0, 0, null, null);
+        sketch.offer("b", -1, 0, 0, null, null);
+
+        assertEquals(sketch.size(), 0);
+        assertEquals(sketch.totalWeight(), 0);
+    }
+
+    @Test
+    public void testAttachmentsAndMembers() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2, 8);
+
+        sketch.offer("a", 1, 1, 0, "first", "client1");
+        sketch.offer("a", 1, 1, 0, null, "client2");
+        sketch.offer("a", 1, 1, 0, "second", "client1");
+
+        SpaceSaving.Entry<String> entry = sketch.top(1).get(0);
+        assertEquals(entry.attachment(), "second");
+        assertNotNull(entry.members());
+        assertEquals(entry.members().estimate(), 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsEmptyCapacity() {
+        new SpaceSaving<String>(0, 4);
+    }
+
+}